@@ -0,0 +1,67 @@
+package com.dscvr.orbit360sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the ordering of capture paths: serpentine ordering of a dense panorama, and tours of
+ * random positions on the shared pool and on a single thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CapturePathBenchmark {
+    @Param({"500", "5000"})
+    public int points;
+
+    private final TravelTimeModel model = new TravelTimeModel(1000, 1000);
+    private final CapturePathOptimizer optimizer = new CapturePathOptimizer(model);
+    private final ForkJoinPool singleThread = new ForkJoinPool(1);
+    private final CapturePathOptimizer sequentialOptimizer = new CapturePathOptimizer(model, singleThread);
+    private CapturePath panorama;
+    private CapturePath random;
+
+    @Setup
+    public void setUp() {
+        panorama = CapturePath.sphericalPanorama(10, 8, 0.3f);
+        Random generator = new Random(42);
+        double[] x = new double[points];
+        double[] y = new double[points];
+        for (int i = 0; i < points; i++) {
+            x[i] = generator.nextDouble() * 360;
+            y[i] = generator.nextDouble() * 120 - 60;
+        }
+        random = CapturePath.of(x, y);
+    }
+
+    @Benchmark
+    public CapturePath serpentinePanorama() {
+        return optimizer.optimize(panorama, CapturePathOptimizer.Ordering.SERPENTINE);
+    }
+
+    @Benchmark
+    public CapturePath tour() {
+        return optimizer.optimize(random, CapturePathOptimizer.Ordering.TOUR);
+    }
+
+    @Benchmark
+    public CapturePath tourSingleThread() {
+        return sequentialOptimizer.optimize(random, CapturePathOptimizer.Ordering.TOUR);
+    }
+}
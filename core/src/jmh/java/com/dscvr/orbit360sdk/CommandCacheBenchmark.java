@@ -0,0 +1,63 @@
+package com.dscvr.orbit360sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the moves of a turntable scan, which repeat a few distinct moves, created from degrees
+ * for every shot or looked up in a CommandCache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandCacheBenchmark {
+    private static final float[] TILTS = {-40, -20, 0, 20, 40};
+
+    private final CommandCache cache = new CommandCache(CommandCache.DEFAULT_CAPACITY);
+
+    @State(Scope.Thread)
+    public static class Shot {
+        int counter;
+
+        float degreesX() {
+            // The last shot of a turn returns to the start.
+            return counter % 24 == 23 ? -23 * 15 : 15;
+        }
+
+        float degreesY() {
+            return counter % 24 == 23 ? TILTS[(counter / 24 + 1) % TILTS.length] - TILTS[(counter / 24) % TILTS.length] : 0;
+        }
+    }
+
+    @Benchmark
+    public Command allocateCommand(Shot shot) {
+        shot.counter++;
+        return Command.moveXY(new Point2f(shot.degreesX(), shot.degreesY()), new Point2f(30, 30));
+    }
+
+    @Benchmark
+    public Command cachedCommand(Shot shot) {
+        shot.counter++;
+        return cache.moveXY(shot.degreesX(), shot.degreesY(), 30, 30);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Command cachedCommandConcurrent(Shot shot) {
+        shot.counter++;
+        return cache.moveXY(shot.degreesX(), shot.degreesY(), 30, 30);
+    }
+}
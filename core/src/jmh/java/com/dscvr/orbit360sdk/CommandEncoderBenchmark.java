@@ -0,0 +1,60 @@
+package com.dscvr.orbit360sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of encoding move frames.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandEncoderBenchmark {
+    private final byte[] frames = new byte[CommandEncoder.FRAME_CAPACITY * 16];
+    private final ByteBuffer directFrames = ByteBuffer.allocateDirect(CommandEncoder.FRAME_CAPACITY * 16);
+    private final Command command = new Command();
+    private int counter;
+
+    @Benchmark
+    public int encodeIntoArray() {
+        int i = counter++;
+        return CommandEncoder.encodeMoveXY(i, 500, -i, 800, frames, (i & 15) * CommandEncoder.FRAME_CAPACITY);
+    }
+
+    @Benchmark
+    public int encodeIntoDirectBuffer() {
+        int i = counter++;
+        return CommandEncoder.encodeMoveXY(i, 500, -i, 800, directFrames, (i & 15) * CommandEncoder.FRAME_CAPACITY);
+    }
+
+    @Benchmark
+    public Command refillCommand() {
+        int i = counter++;
+        return command.setMoveXYSteps(i, -i, 500, 800);
+    }
+
+    @Benchmark
+    public Command allocateCommand() {
+        int i = counter++;
+        return Command.moveXYSteps(new Point2f(i, -i), new Point2f(500, 800));
+    }
+
+    @Benchmark
+    public Command allocateCommandFromDegrees() {
+        int i = counter++;
+        return Command.moveXY(new Point2f(i % 360, -(i % 90)), new Point2f(30, 30));
+    }
+}
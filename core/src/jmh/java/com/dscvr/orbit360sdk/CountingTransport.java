@@ -0,0 +1,22 @@
+package com.dscvr.orbit360sdk;
+
+/**
+ * Transport which only counts and checksums the frames written to it.
+ */
+class CountingTransport implements Orbit360Transport {
+    volatile long frames;
+    volatile int lastChecksum;
+
+    @Override
+    public void write(byte[] frame, WriteCallback callback) {
+        lastChecksum = frame[CommandEncoder.HEADER_LENGTH + frame[1]];
+        frames++;
+        if (callback != null) {
+            callback.writeFinished(true);
+        }
+    }
+
+    @Override
+    public void setNotificationListener(NotificationListener listener) {
+    }
+}
@@ -0,0 +1,79 @@
+package com.dscvr.orbit360sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of sending a command with and without metrics, and of recording into a shared
+ * histogram from several threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+    private final Orbit360Control disabled = new Orbit360Control(new CountingTransport());
+    private final Orbit360Control enabled = new Orbit360Control(new InstrumentedTransport());
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final Command command = Command.moveXYSteps(new Point2f(100, 100), new Point2f(500, 500));
+
+    public MetricsBenchmark() {
+        enabled.setMetricsListener(new Orbit360Metrics());
+    }
+
+    /**
+     * Acknowledges every write synchronously and reports its timing.
+     */
+    static class InstrumentedTransport extends CountingTransport implements Orbit360Transport.Instrumented {
+        private volatile MetricsListener metrics = MetricsListener.NONE;
+
+        @Override
+        public void setMetricsListener(MetricsListener listener) {
+            metrics = listener;
+        }
+
+        @Override
+        public void write(byte[] frame, WriteCallback callback) {
+            MetricsListener current = metrics;
+            if (current != MetricsListener.NONE) {
+                long enqueued = System.nanoTime();
+                current.commandEnqueued(enqueued, 1);
+                current.writeIssued(enqueued, enqueued);
+                super.write(frame, callback);
+                current.writeAcknowledged(enqueued, enqueued, System.nanoTime(), true);
+            } else {
+                super.write(frame, callback);
+            }
+        }
+    }
+
+    @Benchmark
+    public void sendWithoutMetrics() {
+        disabled.sendCommand(command);
+    }
+
+    @Benchmark
+    public void sendWithMetrics() {
+        enabled.sendCommand(command);
+    }
+
+    @Benchmark
+    @Group("sharedHistogram")
+    @GroupThreads(4)
+    public void recordShared() {
+        histogram.record(System.nanoTime() & 0xFFFFFF);
+    }
+}
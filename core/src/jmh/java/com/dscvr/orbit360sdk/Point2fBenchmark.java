@@ -0,0 +1,60 @@
+package com.dscvr.orbit360sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures chains of Point2f operations, as used for unit conversion and position estimation, and
+ * the same chains on the mutable Vec2.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Point2fBenchmark {
+    private Point2f position = new Point2f(12.5f, -3f);
+    private Point2f movement = new Point2f(90f, -45f);
+    private Point2f speed = new Point2f(30f, 20f);
+    private final Vec2 vecPosition = new Vec2(12.5f, -3f);
+    private final Vec2 vecMovement = new Vec2(90f, -45f);
+    private final Vec2 vecSpeed = new Vec2(30f, 20f);
+    private final Vec2 steps = new Vec2();
+    private final Vec2 travelled = new Vec2();
+    private final Vec2 result = new Vec2();
+
+    @Benchmark
+    public Point2f degreesToSteps() {
+        return movement.mul(Orbit360Control.DEGREES_TO_STEPS);
+    }
+
+    @Benchmark
+    public Point2f estimationChain() {
+        Point2f steps = movement.mul(Orbit360Control.DEGREES_TO_STEPS);
+        Point2f travelled = speed.mul(Orbit360Control.DEGREES_TO_STEPS).mul(0.25f).min(steps.abs());
+        return position.mul(Orbit360Control.DEGREES_TO_STEPS).add(travelled).div(Orbit360Control.DEGREES_TO_STEPS);
+    }
+
+    @Benchmark
+    public float boundsChain() {
+        Point2f p = position.sub(movement).abs().max(speed).min(movement.abs());
+        return p.getX() + p.getY();
+    }
+
+    @Benchmark
+    public Vec2 vec2EstimationChain() {
+        steps.set(vecMovement).degreesToSteps().abs();
+        travelled.set(vecSpeed).degreesToSteps().mul(0.25).min(steps);
+        return result.set(vecPosition).degreesToSteps().add(travelled).stepsToDegrees();
+    }
+}
@@ -0,0 +1,123 @@
+package com.dscvr.orbit360sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures position estimation while a script is running and the execution overhead of scripts
+ * against a fake transport.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptRunnerBenchmark {
+
+    /**
+     * A runner which executes a single, very slow movement during the whole trial.
+     */
+    @State(Scope.Benchmark)
+    public static class MovingRunner {
+        ScriptRunner runner;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            runner = new ScriptRunner(new Orbit360Control(new CountingTransport()));
+            List<Command> script = new ArrayList<>();
+            script.add(Command.moveXYSteps(new Point2f(1000000, 1000000), new Point2f(10, 10)));
+            runner.runScript(script, null);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            runner.close();
+        }
+    }
+
+    /**
+     * A runner and a script of commands which do not move, so only the execution overhead is measured.
+     */
+    @State(Scope.Thread)
+    public static class ZeroLengthScript {
+        @Param({"100"})
+        int length;
+
+        ScriptRunner runner;
+        CountingTransport transport;
+        List<Command> script;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            transport = new CountingTransport();
+            runner = new ScriptRunner(new Orbit360Control(transport));
+            script = new ArrayList<>();
+            for (int i = 0; i < length; i++) {
+                script.add(Command.moveXYSteps(new Point2f(0, 0), new Point2f(500, 500)));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            runner.close();
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Point2f getPositionContended(MovingRunner state) {
+        return state.runner.getPosition();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Point2f getPositionUncontended(MovingRunner state) {
+        return state.runner.getPosition();
+    }
+
+    /**
+     * Per-thread target for the allocation-free position query.
+     */
+    @State(Scope.Thread)
+    public static class Target {
+        final Vec2 position = new Vec2();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Vec2 getPositionIntoVec2Contended(MovingRunner state, Target target) {
+        return state.runner.getPosition(target.position);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long runScript(ZeroLengthScript state) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        ScriptRunner.ExecutionFinishedHandler handler = new ScriptRunner.ExecutionFinishedHandler() {
+            @Override
+            public void commandExecutionFinished(List<Command> commands, ScriptRunner sender) {
+                done.countDown();
+            }
+        };
+        state.runner.runScript(state.script, handler);
+        done.await();
+        return state.transport.frames;
+    }
+}
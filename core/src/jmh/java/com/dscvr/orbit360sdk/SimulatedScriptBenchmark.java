@@ -0,0 +1,71 @@
+package com.dscvr.orbit360sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs scripts of real movements against an Orbit360Simulator in virtual time.
+ *
+ * The score is the host time per script. The returned value is the distance, in steps, between the
+ * position estimated by the runner and the simulated position after the script, which should stay
+ * close to zero.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulatedScriptBenchmark {
+    @Param({"1000"})
+    int length;
+
+    @Param({"0", "5000000"})
+    long jitterNanos;
+
+    private List<Command> script;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        script = new ArrayList<>();
+        for (int i = 0; i < length; i++) {
+            float direction = (i & 1) == 0 ? 1 : -1;
+            script.add(Command.moveXY(new Point2f(direction * 10, direction * 2), new Point2f(60, 30)));
+        }
+    }
+
+    @Benchmark
+    public float runScript() throws InterruptedException {
+        VirtualClock clock = new VirtualClock();
+        Orbit360Simulator simulator = new Orbit360Simulator(clock, 42);
+        simulator.setJitterNanos(jitterNanos);
+        ScriptRunner runner = new ScriptRunner(new Orbit360Control(simulator), clock);
+        final CountDownLatch done = new CountDownLatch(1);
+        runner.runScript(script, new ScriptRunner.ExecutionFinishedHandler() {
+            @Override
+            public void commandExecutionFinished(List<Command> commands, ScriptRunner sender) {
+                done.countDown();
+            }
+        });
+        done.await();
+        runner.close();
+        clock.advanceBy(TimeUnit.SECONDS.toNanos(1));
+        Point2f error = runner.getPositionSteps().sub(simulator.getPositionSteps()).abs();
+        return error.getX() + error.getY();
+    }
+}
@@ -0,0 +1,93 @@
+package com.dscvr.orbit360sdk;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free queue for any number of producers and consumers.
+ *
+ * Every slot of the ring carries a sequence number which tells producers and consumers whether the
+ * slot is free or filled for their position (D. Vyukov's bounded MPMC queue). Neither offer nor poll
+ * ever blocks; offer fails if the queue is full.
+ */
+final class BoundedQueue<E> {
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity The minimum capacity. It is rounded up to a power of two.
+     */
+    BoundedQueue(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity out of range");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return False if the queue is full.
+     */
+    boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int i = (int) (position & mask);
+            long difference = sequences.get(i) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(i, element);
+                    sequences.set(i, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+            position = tail.get();
+        }
+    }
+
+    /**
+     * @return The oldest element, or null if the queue is empty.
+     */
+    E poll() {
+        long position = head.get();
+        while (true) {
+            int i = (int) (position & mask);
+            long difference = sequences.get(i) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = elements.get(i);
+                    elements.lazySet(i, null);
+                    sequences.set(i, position + mask + 1);
+                    return element;
+                }
+            } else if (difference < 0) {
+                return null;
+            }
+            position = head.get();
+        }
+    }
+
+    /**
+     * @return The approximate count of elements.
+     */
+    int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+}
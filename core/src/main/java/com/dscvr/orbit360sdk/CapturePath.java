@@ -0,0 +1,335 @@
+package com.dscvr.orbit360sdk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An ordered list of positions to take pictures at, in degrees, for example the shots of a
+ * spherical panorama. Positions are absolute, relative to the position of the arm when the script
+ * starts. Y is the tilt, with zero at the start position, which is usually the horizon.
+ *
+ * The factory methods create the points of common capture patterns, in the order they were
+ * generated. CapturePathOptimizer reorders them, so the path can be executed faster. The path can be
+ * executed by ScriptRunner as a list of commands or as a source.
+ *
+ * Instances are immutable.
+ */
+public class CapturePath {
+    private final double[] x;
+    private final double[] y;
+
+    private CapturePath(double[] x, double[] y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Creates a path from positions.
+     * @param x The positions on the X-axis, in degrees.
+     * @param y The positions on the Y-axis, in degrees. Must have the same length as x.
+     * @return The path, visiting the positions in the given order.
+     */
+    public static CapturePath of(double[] x, double[] y) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException("x and y must have the same length");
+        }
+        return new CapturePath(x.clone(), y.clone());
+    }
+
+    /**
+     * Creates the shots of a spherical panorama, covering the whole sphere.
+     * Please refer sphericalPanorama(float, float, float, float, float) for information about the parameters.
+     */
+    public static CapturePath sphericalPanorama(float horizontalFov, float verticalFov, float overlap) {
+        return sphericalPanorama(horizontalFov, verticalFov, overlap, -90, 90);
+    }
+
+    /**
+     * Creates the shots of a spherical panorama, row by row. Rows closer to the poles get fewer
+     * shots, since a full turn there covers less of the sphere. Each row starts at zero on the X-axis.
+     * @param horizontalFov The horizontal field of view of the camera, in degrees.
+     * @param verticalFov The vertical field of view of the camera, in degrees.
+     * @param overlap The overlap of neighbouring shots, between 0 and 1, for example 0.3.
+     * @param minTilt The lowest tilt to cover, in degrees.
+     * @param maxTilt The highest tilt to cover, in degrees.
+     * @return The path.
+     */
+    public static CapturePath sphericalPanorama(float horizontalFov, float verticalFov, float overlap,
+                                                float minTilt, float maxTilt) {
+        if (!(horizontalFov > 0) || !(verticalFov > 0) || !(overlap >= 0 && overlap < 1) || !(minTilt <= maxTilt)) {
+            throw new IllegalArgumentException("Invalid panorama parameters");
+        }
+        double rowSpacing = verticalFov * (1 - overlap);
+        double span = maxTilt - minTilt;
+        int rows = span > verticalFov ? (int) Math.ceil((span - verticalFov) / rowSpacing) + 1 : 1;
+        double firstRow = rows == 1 ? (minTilt + maxTilt) / 2.0 : minTilt + verticalFov / 2.0;
+        double rowStep = rows == 1 ? 0 : (span - verticalFov) / (rows - 1);
+
+        Builder builder = new Builder();
+        for (int row = 0; row < rows; row++) {
+            double tilt = firstRow + row * rowStep;
+            // The edge of the shot closest to the horizon needs the most shots to cover a full turn.
+            double widest = Math.max(0, Math.abs(tilt) - verticalFov / 2.0);
+            double circumference = 360 * Math.cos(Math.toRadians(Math.min(90, widest)));
+            int shots = Math.max(1, (int) Math.ceil(circumference / (horizontalFov * (1 - overlap)) - 1e-9));
+            for (int shot = 0; shot < shots; shot++) {
+                builder.add(shot * 360.0 / shots, tilt);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates a grid of positions, row by row, from left to right.
+     * @param startX The position of the first column, in degrees.
+     * @param startY The position of the first row, in degrees.
+     * @param stepX The distance of the columns, in degrees.
+     * @param stepY The distance of the rows, in degrees.
+     * @param columns The count of columns.
+     * @param rows The count of rows.
+     * @return The path.
+     */
+    public static CapturePath grid(float startX, float startY, float stepX, float stepY, int columns, int rows) {
+        if (columns < 0 || rows < 0) {
+            throw new IllegalArgumentException("columns and rows must not be negative");
+        }
+        Builder builder = new Builder();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                builder.add(startX + column * (double) stepX, startY + row * (double) stepY);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates the shots of a turntable scan: a full turn on the X-axis for each tilt.
+     * @param shotsPerTurn The count of shots per turn, evenly spaced.
+     * @param tilts The positions on the Y-axis of the turns, in degrees.
+     * @return The path.
+     */
+    public static CapturePath turntable(int shotsPerTurn, float... tilts) {
+        if (shotsPerTurn < 1) {
+            throw new IllegalArgumentException("shotsPerTurn must be positive");
+        }
+        Builder builder = new Builder();
+        for (float tilt : tilts) {
+            for (int shot = 0; shot < shotsPerTurn; shot++) {
+                builder.add(shot * 360.0 / shotsPerTurn, tilt);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return The count of positions.
+     */
+    public int size() {
+        return x.length;
+    }
+
+    /**
+     * @param index The index of the position.
+     * @return The position on the X-axis, in degrees.
+     */
+    public double getX(int index) {
+        return x[index];
+    }
+
+    /**
+     * @param index The index of the position.
+     * @return The position on the Y-axis, in degrees.
+     */
+    public double getY(int index) {
+        return y[index];
+    }
+
+    /**
+     * Writes a position to a vector, without allocating.
+     * @param index The index of the position.
+     * @param target The vector to write to.
+     * @return The target vector.
+     */
+    public Vec2 getPoint(int index, Vec2 target) {
+        return target.set(x[index], y[index]);
+    }
+
+    /**
+     * @param order The indices of the positions of this path, in the new order.
+     * @return A path which visits the positions in the given order.
+     */
+    CapturePath reorder(int[] order) {
+        double[] newX = new double[order.length];
+        double[] newY = new double[order.length];
+        for (int i = 0; i < order.length; i++) {
+            newX[i] = x[order[i]];
+            newY[i] = y[order[i]];
+        }
+        return new CapturePath(newX, newY);
+    }
+
+    /**
+     * Predicts the time to visit all positions, without the time spent at the positions.
+     * @param model The model to predict the moves with.
+     * @param startX The start on the X-axis, in degrees.
+     * @param startY The start on the Y-axis, in degrees.
+     * @return The predicted time, in nanoseconds.
+     */
+    public long getTravelTimeNanos(TravelTimeModel model, double startX, double startY) {
+        long total = 0;
+        double lastX = startX;
+        double lastY = startY;
+        for (int i = 0; i < x.length; i++) {
+            total += model.travelTimeNanos(lastX, lastY, x[i], y[i]);
+            lastX = x[i];
+            lastY = y[i];
+        }
+        return total;
+    }
+
+    /**
+     * Creates the moves which visit all positions, starting at zero on both axes.
+     * Please refer toCommands(TravelTimeModel, double, double) for information about the parameters.
+     */
+    public List<Command> toCommands(TravelTimeModel model) {
+        return toCommands(model, 0, 0);
+    }
+
+    /**
+     * Creates the moves which visit all positions, at the speeds of the model. Steps are rounded
+     * along the whole path, so rounding errors do not accumulate. Positions which round to the
+     * position before are skipped. Repeated moves are shared frozen commands of
+     * CommandCache.getShared().
+     * @param model The model which provides the speeds and whether the X-axis wraps.
+     * @param startX The position of the arm on the X-axis when the commands start, in degrees.
+     * @param startY The position of the arm on the Y-axis when the commands start, in degrees.
+     * @return The commands, which can be passed to ScriptRunner or MotionPlanner.
+     */
+    public List<Command> toCommands(TravelTimeModel model, double startX, double startY) {
+        List<Command> commands = new ArrayList<>(x.length);
+        CommandCache cache = CommandCache.getShared();
+        Stepper stepper = new Stepper(model, startX, startY);
+        for (int i = 0; i < x.length; i++) {
+            if (stepper.moveTo(x[i], y[i])) {
+                commands.add(stepper.fill(cache));
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * Creates a source which visits all positions, starting at zero on both axes, and waits at each
+     * position. Each move is predicted to take its nominal time plus the dwell time, so in the TIMED
+     * execution mode of ScriptRunner, the arm rests for the dwell time after every move.
+     * @param model The model which provides the speeds and whether the X-axis wraps.
+     * @param dwellNanos The time to wait at each position, for example to take a picture, in nanoseconds.
+     * @return The source. It can be executed once.
+     */
+    public CommandSource.Timed source(final TravelTimeModel model, final long dwellNanos) {
+        return new CommandSource.Timed() {
+            private final Stepper stepper = new Stepper(model, 0, 0);
+            private int index = 0;
+            private long predicted;
+
+            @Override
+            public boolean next(Command target, ScriptRunner runner) {
+                if (index >= x.length) {
+                    return false;
+                }
+                // A position equal to the previous one still gets its dwell time, as a move without steps.
+                stepper.moveTo(x[index], y[index]);
+                index++;
+                stepper.fill(target);
+                predicted = ScriptRunner.nominalDurationNanos(target) + dwellNanos;
+                return true;
+            }
+
+            @Override
+            public long getPredictedDurationNanos() {
+                return predicted;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("CapturePath[");
+        for (int i = 0; i < x.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append('(').append(x[i]).append(", ").append(y[i]).append(')');
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Converts absolute positions into moves of whole steps.
+     */
+    private static class Stepper {
+        private final TravelTimeModel model;
+        private double lastX;
+        private double targetStepsX;
+        private double targetStepsY;
+        private long emittedX;
+        private long emittedY;
+        private long stepsX;
+        private long stepsY;
+
+        Stepper(TravelTimeModel model, double startX, double startY) {
+            this.model = model;
+            this.lastX = startX;
+            this.targetStepsX = startX * Orbit360Control.DEGREES_TO_STEPS_X;
+            this.targetStepsY = startY * Orbit360Control.DEGREES_TO_STEPS_Y;
+            this.emittedX = Math.round(targetStepsX);
+            this.emittedY = Math.round(targetStepsY);
+        }
+
+        /**
+         * @return False if the move has no steps.
+         */
+        boolean moveTo(double toX, double toY) {
+            // With wrapping, the target on the X-axis is the nearest turn of toX.
+            targetStepsX += model.deltaX(lastX, toX) * Orbit360Control.DEGREES_TO_STEPS_X;
+            targetStepsY = toY * Orbit360Control.DEGREES_TO_STEPS_Y;
+            lastX = toX;
+            stepsX = Math.round(targetStepsX) - emittedX;
+            stepsY = Math.round(targetStepsY) - emittedY;
+            emittedX += stepsX;
+            emittedY += stepsY;
+            return stepsX != 0 || stepsY != 0;
+        }
+
+        Command fill(Command target) {
+            return target.setMoveXYSteps(stepsX, stepsY, model.getSpeedX(), model.getSpeedY());
+        }
+
+        Command fill(CommandCache cache) {
+            return cache.moveXYSteps(stepsX, stepsY, model.getSpeedX(), model.getSpeedY());
+        }
+    }
+
+    /**
+     * Collects positions in growing arrays.
+     */
+    private static class Builder {
+        private double[] x = new double[64];
+        private double[] y = new double[64];
+        private int size = 0;
+
+        void add(double px, double py) {
+            if (size == x.length) {
+                x = Arrays.copyOf(x, size * 2);
+                y = Arrays.copyOf(y, size * 2);
+            }
+            x[size] = px;
+            y[size] = py;
+            size++;
+        }
+
+        CapturePath build() {
+            return new CapturePath(Arrays.copyOf(x, size), Arrays.copyOf(y, size));
+        }
+    }
+}
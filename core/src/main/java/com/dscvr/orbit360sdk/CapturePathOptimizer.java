@@ -0,0 +1,419 @@
+package com.dscvr.orbit360sdk;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reorders the positions of a CapturePath, so it can be executed in less time. The time of a move
+ * is predicted by a TravelTimeModel, which takes the different speeds of both axes into account.
+ *
+ * Two orderings are available:
+ * <ul>
+ *     <li>SERPENTINE visits the positions row by row, or column by column, whichever is faster.
+ *     Each row is entered at the end closest to the previous row. It is fast to compute and optimal
+ *     for regular patterns like grids and panoramas.</li>
+ *     <li>TOUR solves the path as a travelling salesman problem: a nearest-neighbour tour, improved by
+ *     2-opt moves until no move shortens it. It also works for irregular positions. For large paths,
+ *     the nearest neighbours of the positions are searched in parallel on a ForkJoinPool.</li>
+ * </ul>
+ * BEST computes both and returns the faster path.
+ *
+ * The optimizer is thread-safe.
+ */
+public class CapturePathOptimizer {
+    /**
+     * The count of nearest neighbours of each position which 2-opt tries to connect it with.
+     */
+    private static final int NEIGHBOURS = 10;
+
+    /**
+     * The count of cost evaluations below which the neighbour search is not split further.
+     */
+    private static final int SEQUENTIAL_EVALUATIONS = 1 << 15;
+
+    /**
+     * Positions on the Y-axis closer than this are considered the same row, in degrees.
+     */
+    private static final double ROW_TOLERANCE = 1e-6;
+
+    private static ForkJoinPool sharedPool;
+
+    /**
+     * Orderings of the positions.
+     */
+    public enum Ordering {
+        /**
+         * Row by row or column by column, whichever is faster.
+         */
+        SERPENTINE,
+        /**
+         * Heuristic travelling salesman tour.
+         */
+        TOUR,
+        /**
+         * The faster of SERPENTINE and TOUR.
+         */
+        BEST
+    }
+
+    private final TravelTimeModel model;
+    private final ForkJoinPool pool;
+    private int maxPasses = 100;
+
+    /**
+     * Creates a new instance of this class, which uses a pool shared by all optimizers.
+     * @param model The model to predict the moves with.
+     */
+    public CapturePathOptimizer(TravelTimeModel model) {
+        this(model, getSharedPool());
+    }
+
+    /**
+     * Creates a new instance of this class.
+     * @param model The model to predict the moves with.
+     * @param pool The pool which searches the neighbours of the positions of large paths.
+     */
+    public CapturePathOptimizer(TravelTimeModel model, ForkJoinPool pool) {
+        this.model = model;
+        this.pool = pool;
+    }
+
+    private static synchronized ForkJoinPool getSharedPool() {
+        if (sharedPool == null) {
+            sharedPool = new ForkJoinPool();
+        }
+        return sharedPool;
+    }
+
+    /**
+     * Limits the improvement of TOUR orderings. Every pass tries to improve the tour at each position.
+     * @param maxPasses The maximum count of passes. The default is 100.
+     * @return This instance.
+     */
+    public CapturePathOptimizer setMaxPasses(int maxPasses) {
+        this.maxPasses = maxPasses;
+        return this;
+    }
+
+    /**
+     * @return The model to predict the moves with.
+     */
+    public TravelTimeModel getModel() {
+        return model;
+    }
+
+    /**
+     * Reorders a path which starts at zero on both axes.
+     * Please refer optimize(CapturePath, Ordering, double, double) for information about the parameters.
+     */
+    public CapturePath optimize(CapturePath path, Ordering ordering) {
+        return optimize(path, ordering, 0, 0);
+    }
+
+    /**
+     * Reorders a path.
+     * @param path The path to reorder.
+     * @param ordering The ordering to apply.
+     * @param startX The position of the arm on the X-axis when the path starts, in degrees.
+     * @param startY The position of the arm on the Y-axis when the path starts, in degrees.
+     * @return The reordered path.
+     */
+    public CapturePath optimize(CapturePath path, Ordering ordering, double startX, double startY) {
+        if (path.size() < 2) {
+            return path;
+        }
+        switch (ordering) {
+            case SERPENTINE:
+                return path.reorder(serpentine(path, startX, startY));
+            case TOUR:
+                return path.reorder(tour(path, startX, startY));
+            case BEST:
+                CapturePath serpentine = path.reorder(serpentine(path, startX, startY));
+                CapturePath tour = path.reorder(tour(path, startX, startY));
+                return tour.getTravelTimeNanos(model, startX, startY) < serpentine.getTravelTimeNanos(model, startX, startY)
+                        ? tour : serpentine;
+            default:
+                throw new IllegalArgumentException("Unknown ordering " + ordering);
+        }
+    }
+
+    private int[] serpentine(CapturePath path, double startX, double startY) {
+        int[] byRows = serpentine(path, startX, startY, false);
+        int[] byColumns = serpentine(path, startX, startY, true);
+        return cost(path, byColumns, startX, startY) < cost(path, byRows, startX, startY) ? byColumns : byRows;
+    }
+
+    /**
+     * Groups the positions into lines of equal Y, or equal X for columns, and visits the lines in
+     * order. Each line is entered at the position and in the direction which is fastest to reach
+     * from the end of the previous line and to traverse. Wrapped rows are traversed as circles.
+     */
+    private int[] serpentine(final CapturePath path, double startX, double startY, final boolean columns) {
+        Integer[] sorted = new Integer[path.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int byLine = Double.compare(line(path, a, columns), line(path, b, columns));
+                return byLine != 0 ? byLine : Double.compare(along(path, a, columns), along(path, b, columns));
+            }
+        });
+
+        int[] order = new int[sorted.length];
+        int filled = 0;
+        double lastX = startX;
+        double lastY = startY;
+        boolean circular = !columns && model.isWrapX();
+        int lineStart = 0;
+        while (lineStart < sorted.length) {
+            int lineEnd = lineStart + 1;
+            while (lineEnd < sorted.length
+                    && line(path, sorted[lineEnd], columns) - line(path, sorted[lineStart], columns) <= ROW_TOLERANCE) {
+                lineEnd++;
+            }
+            int n = lineEnd - lineStart;
+            // gaps[i] is the time from the i-th to the next position of the line; the last one closes the circle.
+            long[] gaps = new long[n];
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                int from = sorted[lineStart + i];
+                int to = sorted[lineStart + (i + 1) % n];
+                gaps[i] = i + 1 < n || circular ? move(path, from, to) : 0;
+                total += gaps[i];
+            }
+            long bestCost = Long.MAX_VALUE;
+            int bestFirst = 0;
+            int bestDirection = 1;
+            for (int first = 0; first < n; first++) {
+                if (!circular && first != 0 && first != n - 1) {
+                    continue;
+                }
+                int entry = sorted[lineStart + first];
+                long enter = model.travelTimeNanos(lastX, lastY, path.getX(entry), path.getY(entry));
+                for (int direction = 1; direction >= -1; direction -= 2) {
+                    long traverse;
+                    if (circular) {
+                        // A circle is traversed completely except for the gap behind its last position.
+                        traverse = total - (direction > 0 ? gaps[(first + n - 1) % n] : gaps[first]);
+                    } else if ((first == 0) == (direction > 0)) {
+                        traverse = total;
+                    } else {
+                        continue;
+                    }
+                    if (enter + traverse < bestCost) {
+                        bestCost = enter + traverse;
+                        bestFirst = first;
+                        bestDirection = direction;
+                    }
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                order[filled++] = sorted[lineStart + ((bestFirst + bestDirection * i) % n + n) % n];
+            }
+            int last = order[filled - 1];
+            lastX = path.getX(last);
+            lastY = path.getY(last);
+            lineStart = lineEnd;
+        }
+        return order;
+    }
+
+    private static double line(CapturePath path, int index, boolean columns) {
+        return columns ? path.getX(index) : path.getY(index);
+    }
+
+    private static double along(CapturePath path, int index, boolean columns) {
+        return columns ? path.getY(index) : path.getX(index);
+    }
+
+    /**
+     * Builds a nearest-neighbour tour and improves it with 2-opt moves. Only moves which connect a
+     * position with one of its nearest neighbours are tried, so a pass over the tour takes linear
+     * time. The neighbours are searched in parallel for large paths.
+     */
+    private int[] tour(CapturePath path, double startX, double startY) {
+        int n = path.size();
+        // Position 0 of the tour is the start of the arm, so the first move is optimized as well.
+        double[] x = new double[n + 1];
+        double[] y = new double[n + 1];
+        x[0] = startX;
+        y[0] = startY;
+        for (int i = 0; i < n; i++) {
+            x[i + 1] = path.getX(i);
+            y[i + 1] = path.getY(i);
+        }
+        int[][] neighbours = new int[n + 1][];
+        NeighbourSearch search = new NeighbourSearch(x, y, neighbours, 0, n + 1);
+        if ((n + 1) * (long) (n + 1) > SEQUENTIAL_EVALUATIONS) {
+            pool.invoke(search);
+        } else {
+            search.compute();
+        }
+
+        int[] tour = nearestNeighbour(x, y, neighbours);
+        int[] positions = new int[tour.length];
+        for (int i = 0; i < tour.length; i++) {
+            positions[tour[i]] = i;
+        }
+        int last = tour.length - 1;
+        boolean improved = true;
+        for (int pass = 0; pass < maxPasses && improved; pass++) {
+            improved = false;
+            for (int i = 1; i <= last; i++) {
+                int a = tour[i - 1];
+                int b = tour[i];
+                for (int c : neighbours[a]) {
+                    int j = positions[c];
+                    long gain;
+                    if (j > i) {
+                        // Reverse i..j: the edges a-b and c-d become a-c and b-d.
+                        gain = cost(x, y, a, b) - cost(x, y, a, c);
+                        if (j < last) {
+                            int d = tour[j + 1];
+                            gain += cost(x, y, c, d) - cost(x, y, b, d);
+                        }
+                        if (gain > 0) {
+                            reverse(tour, positions, i, j);
+                            improved = true;
+                            break;
+                        }
+                    } else if (j < i - 1) {
+                        // Reverse j+1..i-1: the edges c-e and a-b become c-a and e-b.
+                        int e = tour[j + 1];
+                        gain = cost(x, y, c, e) + cost(x, y, a, b) - cost(x, y, c, a) - cost(x, y, e, b);
+                        if (gain > 0) {
+                            reverse(tour, positions, j + 1, i - 1);
+                            improved = true;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = tour[i + 1] - 1;
+        }
+        return order;
+    }
+
+    /**
+     * Builds a tour which always moves to the nearest unvisited position. The neighbour lists are
+     * tried first; only if all neighbours were visited, all positions are searched.
+     */
+    private int[] nearestNeighbour(double[] x, double[] y, int[][] neighbours) {
+        int n = x.length;
+        int[] tour = new int[n];
+        boolean[] visited = new boolean[n];
+        visited[0] = true;
+        for (int i = 1; i < n; i++) {
+            int last = tour[i - 1];
+            int best = -1;
+            for (int candidate : neighbours[last]) {
+                if (!visited[candidate]) {
+                    best = candidate;
+                    break;
+                }
+            }
+            if (best < 0) {
+                long bestCost = Long.MAX_VALUE;
+                for (int candidate = 1; candidate < n; candidate++) {
+                    if (!visited[candidate]) {
+                        long cost = cost(x, y, last, candidate);
+                        if (cost < bestCost) {
+                            bestCost = cost;
+                            best = candidate;
+                        }
+                    }
+                }
+            }
+            visited[best] = true;
+            tour[i] = best;
+        }
+        return tour;
+    }
+
+    private static void reverse(int[] tour, int[] positions, int from, int to) {
+        for (int i = from, j = to; i < j; i++, j--) {
+            int swap = tour[i];
+            tour[i] = tour[j];
+            tour[j] = swap;
+            positions[tour[i]] = i;
+            positions[tour[j]] = j;
+        }
+    }
+
+    private long cost(double[] x, double[] y, int from, int to) {
+        return model.travelTimeNanos(x[from], y[from], x[to], y[to]);
+    }
+
+    private long cost(CapturePath path, int[] order, double startX, double startY) {
+        return path.reorder(order).getTravelTimeNanos(model, startX, startY);
+    }
+
+    private long move(CapturePath path, int from, int to) {
+        return model.travelTimeNanos(path.getX(from), path.getY(from), path.getX(to), path.getY(to));
+    }
+
+    /**
+     * Finds the NEIGHBOURS nearest positions of each position in a range, splitting the range while
+     * it is large.
+     */
+    private class NeighbourSearch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] x;
+        private final double[] y;
+        private final int[][] neighbours;
+        private final int begin;
+        private final int end;
+
+        NeighbourSearch(double[] x, double[] y, int[][] neighbours, int begin, int end) {
+            this.x = x;
+            this.y = y;
+            this.neighbours = neighbours;
+            this.begin = begin;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - begin > 1 && (end - begin) * (long) x.length > SEQUENTIAL_EVALUATIONS) {
+                int middle = (begin + end) >>> 1;
+                invokeAll(new NeighbourSearch(x, y, neighbours, begin, middle),
+                        new NeighbourSearch(x, y, neighbours, middle, end));
+                return;
+            }
+            int count = Math.min(NEIGHBOURS, x.length - 1);
+            long[] costs = new long[count];
+            for (int i = begin; i < end; i++) {
+                int[] nearest = new int[count];
+                int found = 0;
+                for (int candidate = 0; candidate < x.length; candidate++) {
+                    if (candidate == i) {
+                        continue;
+                    }
+                    long cost = cost(x, y, i, candidate);
+                    if (found == count && cost >= costs[count - 1]) {
+                        continue;
+                    }
+                    // Insertion into the sorted list of the nearest positions found so far.
+                    int slot = found < count ? found++ : count - 1;
+                    while (slot > 0 && costs[slot - 1] > cost) {
+                        costs[slot] = costs[slot - 1];
+                        nearest[slot] = nearest[slot - 1];
+                        slot--;
+                    }
+                    costs[slot] = cost;
+                    nearest[slot] = candidate;
+                }
+                neighbours[i] = nearest;
+            }
+        }
+    }
+}
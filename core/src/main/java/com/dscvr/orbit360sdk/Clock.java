@@ -0,0 +1,64 @@
+package com.dscvr.orbit360sdk;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Monotonic time source used for timing and position estimation.
+ *
+ * SYSTEM is backed by System.nanoTime. VirtualClock can be used to run scripts against a simulated
+ * Orbit360 faster than real-time.
+ */
+public interface Clock {
+    /**
+     * The system's monotonic clock.
+     */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        /**
+         * Parks the thread, which is precise to a few microseconds, unlike Thread.sleep and Object.wait
+         * on many platforms.
+         */
+        @Override
+        public void sleepNanos(long nanos) throws InterruptedException {
+            long deadline = System.nanoTime() + nanos;
+            while (nanos > 0) {
+                LockSupport.parkNanos(nanos);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                nanos = deadline - System.nanoTime();
+            }
+        }
+
+        @Override
+        public void waitNanos(Object monitor, long nanos) throws InterruptedException {
+            if (nanos > 0) {
+                monitor.wait(nanos / 1000000, (int) (nanos % 1000000));
+            }
+        }
+    };
+
+    /**
+     * @return The current time, in nanoseconds. Only differences between two values are meaningful.
+     */
+    long nanoTime();
+
+    /**
+     * Blocks the calling thread for the given time.
+     * @param nanos The time to wait, in nanoseconds.
+     */
+    void sleepNanos(long nanos) throws InterruptedException;
+
+    /**
+     * Waits on the monitor of an object for at most the given time. The calling thread must hold the
+     * monitor. Like Object.wait, this method may return early, so callers have to check the condition
+     * they are waiting for in a loop.
+     * @param monitor The object to wait on.
+     * @param nanos The maximum time to wait, in nanoseconds.
+     */
+    void waitNanos(Object monitor, long nanos) throws InterruptedException;
+}
@@ -0,0 +1,246 @@
+package com.dscvr.orbit360sdk;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * This class represents a single command, which can be sent to the Orbit360.
+ *
+ * Commands are mutable, so a single instance can be re-filled and sent again and again without
+ * allocating. Do not modify a command while it is being sent or executed.
+ *
+ * A frozen command can not be modified anymore, so it can be shared, for example by CommandCache.
+ */
+public class Command {
+    private final byte[] value = new byte[CommandEncoder.FRAME_CAPACITY];
+    private int length;
+
+    private float stepsX;
+    private float stepsY;
+    private float speedX;
+    private float speedY;
+    private boolean frozen;
+
+    /**
+     * Creates a new, reusable command. The command is initialized as stop-command.
+     */
+    public Command() {
+        setStop();
+    }
+
+    /**
+     * @return The speed, in steps per second, for this command.
+     */
+    public Point2f getSpeed() {
+        return new Point2f(speedX, speedY);
+    }
+
+    /**
+     * @return The steps to move for this command.
+     */
+    public Point2f getSteps() {
+        return new Point2f(stepsX, stepsY);
+    }
+
+    /**
+     * @return The steps to move on the X-axis.
+     */
+    public float getStepsX() {
+        return stepsX;
+    }
+
+    /**
+     * @return The steps to move on the Y-axis.
+     */
+    public float getStepsY() {
+        return stepsY;
+    }
+
+    /**
+     * @return The speed on the X-axis, in steps per second.
+     */
+    public float getSpeedX() {
+        return speedX;
+    }
+
+    /**
+     * @return The speed on the Y-axis, in steps per second.
+     */
+    public float getSpeedY() {
+        return speedY;
+    }
+
+    /**
+     * Creates a new command from horizontal (X) and vertical (Y) movement, in degrees.
+     * @param degrees The distance to move, in degrees.
+     * @param speedInDegrees The movement speed, in degrees per second.
+     * @return The command, which can be sent to the Orbit360.
+     */
+    public static Command moveXY(Point2f degrees, Point2f speedInDegrees) {
+        return new Command().setMoveXY(degrees.getX(), degrees.getY(), speedInDegrees.getX(), speedInDegrees.getY());
+    }
+
+    /**
+     * Creates a new command from horizontal (X) and vertical (Y) movement, in steps.
+     * @param steps The distance to move, in steps.
+     * @param speed The movement speed, in steps per second.
+     * @return The command, which can be sent to the Orbit360.
+     */
+    public static Command moveXYSteps(Point2f steps, Point2f speed) {
+        return new Command().setMoveXYSteps(steps.getX(), steps.getY(), speed.getX(), speed.getY());
+    }
+
+    /**
+     * Creates a stop-command, which, if sent, will cause the Orbit360 to cease movement.
+     * @return The command, which can be sent to the Orbit360.
+     */
+    public static Command stop() {
+        return new Command();
+    }
+
+    /**
+     * Re-fills this command with horizontal (X) and vertical (Y) movement, in steps.
+     * @param stepsX The distance to move on the X-axis, in steps.
+     * @param stepsY The distance to move on the Y-axis, in steps.
+     * @param speedX The movement speed on the X-axis, in steps per second.
+     * @param speedY The movement speed on the Y-axis, in steps per second.
+     * @return This command.
+     */
+    public Command setMoveXYSteps(float stepsX, float stepsY, float speedX, float speedY) {
+        checkNotFrozen();
+        this.stepsX = stepsX;
+        this.stepsY = stepsY;
+        this.speedX = speedX;
+        this.speedY = speedY;
+        setLength(CommandEncoder.encodeMoveXY((int) stepsX, (int) speedX, (int) stepsY, (int) speedY, value, 0));
+        return this;
+    }
+
+    /**
+     * Re-fills this command with horizontal (X) and vertical (Y) movement, in degrees.
+     * Please refer setMoveXYSteps for information about the parameters.
+     * @return This command.
+     */
+    public Command setMoveXY(float degreesX, float degreesY, float speedInDegreesX, float speedInDegreesY) {
+        return setMoveXYSteps(degreesX * Orbit360Control.DEGREES_TO_STEPS_X, degreesY * Orbit360Control.DEGREES_TO_STEPS_Y,
+                speedInDegreesX * Orbit360Control.DEGREES_TO_STEPS_X, speedInDegreesY * Orbit360Control.DEGREES_TO_STEPS_Y);
+    }
+
+    /**
+     * Re-fills this command as stop-command.
+     * @return This command.
+     */
+    public Command setStop() {
+        checkNotFrozen();
+        this.stepsX = 0;
+        this.stepsY = 0;
+        this.speedX = 0;
+        this.speedY = 0;
+        setLength(CommandEncoder.encodeStop(value, 0));
+        return this;
+    }
+
+    /**
+     * Re-fills this command with a frame which was already encoded, for example by MotionPlanner.
+     * The frame is copied as it is, so it is sent without the rounding of the float fields.
+     * @param frames The buffer containing the frame.
+     * @param offset The index of the first byte of the frame in frames.
+     * @return This command.
+     */
+    Command setFrame(ByteBuffer frames, int offset) {
+        checkNotFrozen();
+        int length = CommandEncoder.HEADER_LENGTH + (frames.get(offset + 1) & 0xFF) + 1;
+        for (int i = 0; i < length; i++) {
+            value[i] = frames.get(offset + i);
+        }
+        setLength(length);
+        if (getFunction() == CommandEncoder.FUNCTION_MOVE_XY) {
+            this.stepsX = FrameDecoder.moveStepsX(value, 0);
+            this.stepsY = FrameDecoder.moveStepsY(value, 0);
+            this.speedX = FrameDecoder.moveSpeedX(value, 0);
+            this.speedY = FrameDecoder.moveSpeedY(value, 0);
+        } else {
+            this.stepsX = 0;
+            this.stepsY = 0;
+            this.speedX = 0;
+            this.speedY = 0;
+        }
+        return this;
+    }
+
+    /**
+     * Copies the contents of another command into this command.
+     * @param other The command to copy.
+     * @return This command.
+     */
+    public Command set(Command other) {
+        checkNotFrozen();
+        this.stepsX = other.stepsX;
+        this.stepsY = other.stepsY;
+        this.speedX = other.speedX;
+        this.speedY = other.speedY;
+        this.length = other.length;
+        System.arraycopy(other.value, 0, value, 0, value.length);
+        return this;
+    }
+
+    /**
+     * Makes this command immutable. All following calls to the setters throw an IllegalStateException,
+     * and getValue returns a copy of the byte representation.
+     * @return This command.
+     */
+    public Command freeze() {
+        frozen = true;
+        return this;
+    }
+
+    /**
+     * @return True if this command was frozen.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Command is frozen");
+        }
+    }
+
+    private void setLength(int length) {
+        // Clear the remains of a previous, longer frame.
+        if (length < this.length) {
+            Arrays.fill(value, length, this.length, (byte) 0);
+        }
+        this.length = length;
+    }
+
+    /**
+     * @return The function code of this command, for example CommandEncoder.FUNCTION_MOVE_XY.
+     */
+    public byte getFunction() {
+        return value[2];
+    }
+
+    /**
+     * @return The count of meaningful bytes at the start of getValue().
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return The command's byte representation. For a frozen command, this is a copy, since the
+     * command may be shared.
+     */
+    public byte[] getValue() {
+        return frozen ? value.clone() : value;
+    }
+
+    /**
+     * @return The command's byte representation, without copying it. The array must not be modified.
+     */
+    byte[] getFrame() {
+        return value;
+    }
+}
@@ -0,0 +1,303 @@
+package com.dscvr.orbit360sdk;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded cache of frozen move commands, so repeated moves share one encoded instance.
+ *
+ * Grid, panorama and turntable scripts repeat a few moves many times. The cache is keyed on the
+ * steps and speeds which are sent to the Orbit360, as integers, so the conversion from degrees,
+ * the encoding of the frame and the checksum are computed once per distinct move. Looking up a
+ * cached command does not allocate.
+ *
+ * The cache can be used by several runners at the same time. Lookups of cached commands do not
+ * lock. Commands which are not cached are created under the lock of one of several segments. When
+ * a segment is full, it evicts with the clock algorithm, an approximation of least recently used
+ * eviction which does not reorder entries on every hit.
+ *
+ * The returned commands are frozen. Their steps and speeds are the integer values which are sent,
+ * so predicted durations match the executed moves.
+ */
+public class CommandCache {
+    /**
+     * The default count of cached commands.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final int MAX_SEGMENTS = 8;
+
+    private static CommandCache shared;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final int capacity;
+
+    /**
+     * Creates a new instance of this class.
+     * @param capacity The maximum count of cached commands.
+     */
+    public CommandCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int segmentCount = Math.min(MAX_SEGMENTS, Integer.highestOneBit(capacity));
+        this.segments = new Segment[segmentCount];
+        this.segmentMask = segmentCount - 1;
+        this.capacity = capacity;
+        for (int i = 0; i < segmentCount; i++) {
+            // Distribute the remainder, so the capacities add up to the given capacity.
+            segments[i] = new Segment(capacity / segmentCount + (i < capacity % segmentCount ? 1 : 0));
+        }
+    }
+
+    /**
+     * @return The cache with DEFAULT_CAPACITY, which is shared by the whole process, for example
+     * by CapturePath.
+     */
+    public static synchronized CommandCache getShared() {
+        if (shared == null) {
+            shared = new CommandCache(DEFAULT_CAPACITY);
+        }
+        return shared;
+    }
+
+    /**
+     * Returns a move command in steps. The steps and speeds are truncated to integers, like
+     * Command.setMoveXYSteps does.
+     * Please refer Command.setMoveXYSteps for information about the parameters.
+     * @return The frozen command.
+     */
+    public Command moveXYSteps(float stepsX, float stepsY, float speedX, float speedY) {
+        return get((int) stepsX, (int) stepsY, (int) speedX, (int) speedY);
+    }
+
+    /**
+     * Returns a move command in degrees. The degrees are converted to whole steps, like
+     * Command.setMoveXY does.
+     * Please refer Command.setMoveXY for information about the parameters.
+     * @return The frozen command.
+     */
+    public Command moveXY(float degreesX, float degreesY, float speedInDegreesX, float speedInDegreesY) {
+        return get((int) (degreesX * Orbit360Control.DEGREES_TO_STEPS_X), (int) (degreesY * Orbit360Control.DEGREES_TO_STEPS_Y),
+                (int) (speedInDegreesX * Orbit360Control.DEGREES_TO_STEPS_X), (int) (speedInDegreesY * Orbit360Control.DEGREES_TO_STEPS_Y));
+    }
+
+    /**
+     * Returns a move command in whole steps.
+     * @param stepsX The distance to move on the X-axis, in steps.
+     * @param stepsY The distance to move on the Y-axis, in steps.
+     * @param speedX The movement speed on the X-axis, in steps per second.
+     * @param speedY The movement speed on the Y-axis, in steps per second.
+     * @return The frozen command.
+     */
+    public Command get(int stepsX, int stepsY, int speedX, int speedY) {
+        int hash = hash(stepsX, stepsY, speedX, speedY);
+        return segments[(hash >>> 16) & segmentMask].get(hash, stepsX, stepsY, speedX, speedY);
+    }
+
+    /**
+     * @return The maximum count of cached commands.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The count of cached commands.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return The count of lookups which returned a cached command.
+     */
+    public long getHitCount() {
+        long hits = 0;
+        for (Segment segment : segments) {
+            hits += segment.getHits();
+        }
+        return hits;
+    }
+
+    /**
+     * @return The count of lookups which created a new command.
+     */
+    public long getMissCount() {
+        long misses = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                misses += segment.misses;
+            }
+        }
+        return misses;
+    }
+
+    /**
+     * @return The count of commands which were removed to make room for new ones.
+     */
+    public long getEvictionCount() {
+        long evictions = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                evictions += segment.evictions;
+            }
+        }
+        return evictions;
+    }
+
+    /**
+     * Removes all cached commands. The counters are kept.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CommandCache[size=%d/%d, hits=%d, misses=%d, evictions=%d]",
+                size(), capacity, getHitCount(), getMissCount(), getEvictionCount());
+    }
+
+    private static int hash(int stepsX, int stepsY, int speedX, int speedY) {
+        int hash = stepsX;
+        hash = hash * 0x9E3779B1 + stepsY;
+        hash = hash * 0x9E3779B1 + speedX;
+        hash = hash * 0x9E3779B1 + speedY;
+        return hash ^ (hash >>> 15);
+    }
+
+    /**
+     * A cached command in the chain of its hash bucket. Everything but the chain link and the
+     * reference bit is immutable, so entries can be read without locking.
+     */
+    private static final class Entry {
+        final int hash;
+        final int stepsX;
+        final int stepsY;
+        final int speedX;
+        final int speedY;
+        final Command command;
+        volatile Entry next;
+        // Set by hits, cleared by the clock hand. Races only delay an eviction.
+        boolean referenced;
+
+        Entry(int hash, int stepsX, int stepsY, int speedX, int speedY, Command command, Entry next) {
+            this.hash = hash;
+            this.stepsX = stepsX;
+            this.stepsY = stepsY;
+            this.speedX = speedX;
+            this.speedY = speedY;
+            this.command = command;
+            this.next = next;
+        }
+    }
+
+    /**
+     * A hash table whose lookups do not lock. Misses insert under the lock of the segment and evict
+     * with the clock algorithm: the hand passes over the entries in insertion order, clears the
+     * reference bit of entries which were hit since it last passed, and evicts the first one which
+     * was not.
+     */
+    private static final class Segment {
+        private final AtomicReferenceArray<Entry> table;
+        private final Entry[] clock;
+        private final AtomicLong hits = new AtomicLong();
+        private int hand;
+        int size;
+        long misses;
+        long evictions;
+
+        Segment(int capacity) {
+            // At most half of the buckets are used.
+            this.table = new AtomicReferenceArray<>(Integer.highestOneBit(capacity * 2 - 1) * 2);
+            this.clock = new Entry[capacity];
+        }
+
+        Command get(int hash, int stepsX, int stepsY, int speedX, int speedY) {
+            int bucket = hash & (table.length() - 1);
+            Entry entry = find(table.get(bucket), hash, stepsX, stepsY, speedX, speedY);
+            if (entry != null) {
+                hits.incrementAndGet();
+                if (!entry.referenced) {
+                    entry.referenced = true;
+                }
+                return entry.command;
+            }
+            return insert(bucket, hash, stepsX, stepsY, speedX, speedY);
+        }
+
+        long getHits() {
+            return hits.get();
+        }
+
+        private synchronized Command insert(int bucket, int hash, int stepsX, int stepsY, int speedX, int speedY) {
+            // Another thread may have inserted the command since the lookup.
+            Entry entry = find(table.get(bucket), hash, stepsX, stepsY, speedX, speedY);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry.command;
+            }
+            misses++;
+            if (size == clock.length) {
+                while (clock[hand].referenced) {
+                    clock[hand].referenced = false;
+                    hand = (hand + 1) % clock.length;
+                }
+                remove(clock[hand]);
+                evictions++;
+            } else {
+                hand = size++;
+            }
+            Command command = new Command().setMoveXYSteps(stepsX, stepsY, speedX, speedY).freeze();
+            entry = new Entry(hash, stepsX, stepsY, speedX, speedY, command, table.get(bucket));
+            table.set(bucket, entry);
+            clock[hand] = entry;
+            hand = (hand + 1) % clock.length;
+            return command;
+        }
+
+        synchronized void clear() {
+            for (int i = 0; i < table.length(); i++) {
+                table.set(i, null);
+            }
+            Arrays.fill(clock, null);
+            hand = 0;
+            size = 0;
+        }
+
+        private static Entry find(Entry first, int hash, int stepsX, int stepsY, int speedX, int speedY) {
+            for (Entry entry = first; entry != null; entry = entry.next) {
+                if (entry.hash == hash && entry.stepsX == stepsX && entry.stepsY == stepsY &&
+                        entry.speedX == speedX && entry.speedY == speedY) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        private void remove(Entry evicted) {
+            // The link of the evicted entry is kept, so a lookup which is passing it continues on the chain.
+            int bucket = evicted.hash & (table.length() - 1);
+            Entry first = table.get(bucket);
+            if (first == evicted) {
+                table.set(bucket, evicted.next);
+                return;
+            }
+            Entry previous = first;
+            while (previous.next != evicted) {
+                previous = previous.next;
+            }
+            previous.next = evicted.next;
+        }
+    }
+}
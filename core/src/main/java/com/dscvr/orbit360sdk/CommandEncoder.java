@@ -0,0 +1,167 @@
+package com.dscvr.orbit360sdk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class encodes Orbit360 command frames directly into caller-supplied buffers, without
+ * allocating intermediate arrays.
+ *
+ * A frame has the layout 0xFE, payload length, function, payload, checksum. The checksum is the
+ * lowest byte of the sum of all preceding bytes of the frame.
+ */
+public final class CommandEncoder {
+    /**
+     * First byte of every frame.
+     */
+    public static final byte FRAME_START = (byte) 0xFE;
+    /**
+     * Function code to move the X and the Y motor.
+     */
+    public static final byte FUNCTION_MOVE_XY = 0x03;
+    /**
+     * Function code to stop all motors.
+     */
+    public static final byte FUNCTION_STOP = 0x04;
+    /**
+     * Count of bytes before the payload (start byte, length, function).
+     */
+    public static final int HEADER_LENGTH = 3;
+    /**
+     * Payload length of a move command: steps and speed for X, steps, speed and full-step flag for Y.
+     */
+    public static final int MOVE_XY_PAYLOAD_LENGTH = 13;
+    /**
+     * Length of a complete move frame, including the checksum.
+     */
+    public static final int MOVE_XY_FRAME_LENGTH = HEADER_LENGTH + MOVE_XY_PAYLOAD_LENGTH + 1;
+    /**
+     * Length of a complete stop frame, including the checksum.
+     */
+    public static final int STOP_FRAME_LENGTH = HEADER_LENGTH + 1;
+    /**
+     * Size of the buffer the Orbit360 expects for a single write.
+     */
+    public static final int FRAME_CAPACITY = 32;
+
+    private CommandEncoder() {
+    }
+
+    /**
+     * Encodes a move command for both motors.
+     * @param stepsX The steps to move on the X-axis.
+     * @param speedX The speed on the X-axis, in steps per second. Only the lower 16 bits are encoded.
+     * @param stepsY The steps to move on the Y-axis.
+     * @param speedY The speed on the Y-axis, in steps per second. Only the lower 16 bits are encoded.
+     * @param target The buffer to write to.
+     * @param offset The index of the first byte of the frame in target.
+     * @return The count of bytes written.
+     */
+    public static int encodeMoveXY(int stepsX, int speedX, int stepsY, int speedY, byte[] target, int offset) {
+        int i = offset;
+        target[i++] = FRAME_START;
+        target[i++] = (byte) MOVE_XY_PAYLOAD_LENGTH;
+        target[i++] = FUNCTION_MOVE_XY;
+        i = putInt(target, i, stepsX);
+        i = putShort(target, i, speedX);
+        // The Y motor is mounted upside down.
+        i = putInt(target, i, -stepsY);
+        i = putShort(target, i, speedY);
+        //full steps
+        target[i++] = 0x00;
+        target[i] = checksum(target, offset, i);
+        return MOVE_XY_FRAME_LENGTH;
+    }
+
+    /**
+     * Encodes a move command for both motors at an absolute index of a ByteBuffer.
+     * The position of the buffer is not modified.
+     * Please refer encodeMoveXY(int, int, int, int, byte[], int) for information about the parameters.
+     */
+    public static int encodeMoveXY(int stepsX, int speedX, int stepsY, int speedY, ByteBuffer target, int offset) {
+        if (target.hasArray()) {
+            return encodeMoveXY(stepsX, speedX, stepsY, speedY, target.array(), target.arrayOffset() + offset);
+        }
+        int i = offset;
+        target.put(i++, FRAME_START);
+        target.put(i++, (byte) MOVE_XY_PAYLOAD_LENGTH);
+        target.put(i++, FUNCTION_MOVE_XY);
+        target.putInt(i, stepsX);
+        i += 4;
+        target.putShort(i, (short) speedX);
+        i += 2;
+        target.putInt(i, -stepsY);
+        i += 4;
+        target.putShort(i, (short) speedY);
+        i += 2;
+        target.put(i++, (byte) 0x00);
+        target.put(i, checksum(target, offset, i));
+        return MOVE_XY_FRAME_LENGTH;
+    }
+
+    /**
+     * Encodes a stop command.
+     * @param target The buffer to write to.
+     * @param offset The index of the first byte of the frame in target.
+     * @return The count of bytes written.
+     */
+    public static int encodeStop(byte[] target, int offset) {
+        target[offset] = FRAME_START;
+        target[offset + 1] = 0;
+        target[offset + 2] = FUNCTION_STOP;
+        target[offset + 3] = checksum(target, offset, offset + 3);
+        return STOP_FRAME_LENGTH;
+    }
+
+    /**
+     * Encodes a stop command at an absolute index of a ByteBuffer.
+     * The position of the buffer is not modified.
+     * Please refer encodeStop(byte[], int) for information about the parameters.
+     */
+    public static int encodeStop(ByteBuffer target, int offset) {
+        if (target.hasArray()) {
+            return encodeStop(target.array(), target.arrayOffset() + offset);
+        }
+        target.put(offset, FRAME_START);
+        target.put(offset + 1, (byte) 0);
+        target.put(offset + 2, FUNCTION_STOP);
+        target.put(offset + 3, checksum(target, offset, offset + 3));
+        return STOP_FRAME_LENGTH;
+    }
+
+    /**
+     * Calculates the checksum of a frame.
+     * @param frame The buffer containing the frame.
+     * @param from The index of the first byte of the frame.
+     * @param to The index of the checksum byte, exclusive end of the checksummed range.
+     * @return The checksum.
+     */
+    public static byte checksum(byte[] frame, int from, int to) {
+        int sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += frame[i];
+        }
+        return (byte) (sum & 0xFF);
+    }
+
+    private static byte checksum(ByteBuffer frame, int from, int to) {
+        int sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += frame.get(i);
+        }
+        return (byte) (sum & 0xFF);
+    }
+
+    private static int putInt(byte[] target, int i, int value) {
+        target[i] = (byte) (value >>> 24);
+        target[i + 1] = (byte) (value >>> 16);
+        target[i + 2] = (byte) (value >>> 8);
+        target[i + 3] = (byte) value;
+        return i + 4;
+    }
+
+    private static int putShort(byte[] target, int i, int value) {
+        target[i] = (byte) (value >>> 8);
+        target[i + 1] = (byte) value;
+        return i + 2;
+    }
+}
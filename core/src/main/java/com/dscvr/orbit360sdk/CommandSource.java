@@ -0,0 +1,30 @@
+package com.dscvr.orbit360sdk;
+
+/**
+ * A lazy, pull-based source of commands, which ScriptRunner consumes one command at a time.
+ *
+ * Sources can generate arbitrarily long scripts with constant memory, for example spirals or grids,
+ * and can react to the state of the runner, for example to its estimated position. The runner only
+ * requests a bounded number of commands ahead of the command being executed.
+ */
+public interface CommandSource {
+    /**
+     * Fills the next command of the script. Called on a thread of the runner's DeadlineScheduler,
+     * which is shared with other runners, so it must return quickly and must not block.
+     * @param target The command to fill. It is owned by the runner and reused for later commands.
+     * @param runner The runner which executes this source.
+     * @return False if the script is finished. In this case, target is ignored.
+     */
+    boolean next(Command target, ScriptRunner runner);
+
+    /**
+     * A source which also predicts the durations of its commands, instead of relying on the
+     * nominal speed of the commands.
+     */
+    interface Timed extends CommandSource {
+        /**
+         * @return The predicted duration of the command filled by the last call to next, in nanoseconds.
+         */
+        long getPredictedDurationNanos();
+    }
+}
@@ -0,0 +1,230 @@
+package com.dscvr.orbit360sdk;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A script compiled by MotionPlanner: a sequence of encoded frames, each with its exact predicted
+ * duration.
+ *
+ * The script is stored as fixed-size records in a single buffer. Each record holds the frame,
+ * padded to FRAME_AREA bytes, followed by the predicted duration in nanoseconds as big-endian long.
+ * Instances are immutable and can be executed by several ScriptRunner instances.
+ *
+ * Scripts can be written to a file and mapped into memory again, so even very large scripts can be
+ * loaded instantly and executed with almost no heap usage. A file consists of a header of HEADER_SIZE
+ * bytes (magic, version, record size, record count, total duration, total steps on X and Y, all
+ * big-endian), followed by the records.
+ */
+public class CompiledScript {
+    /**
+     * Size of a single record, in bytes.
+     */
+    public static final int RECORD_SIZE = 32;
+    /**
+     * Count of bytes reserved for the frame at the start of every record.
+     */
+    public static final int FRAME_AREA = 24;
+    /**
+     * Size of the header of a script file, in bytes.
+     */
+    public static final int HEADER_SIZE = 40;
+
+    private static final int MAGIC = 0x4F333630; // "O360"
+    private static final int VERSION = 1;
+
+    private final ByteBuffer records;
+    private final int size;
+    private final long totalDuration;
+    private final long totalStepsX;
+    private final long totalStepsY;
+
+    private CompiledScript(ByteBuffer records, int size, long totalDuration, long totalStepsX, long totalStepsY) {
+        this.records = records;
+        this.size = size;
+        this.totalDuration = totalDuration;
+        this.totalStepsX = totalStepsX;
+        this.totalStepsY = totalStepsY;
+    }
+
+    /**
+     * Writes this script to a file. Existing files are overwritten.
+     * @param file The file to write to.
+     */
+    public void writeTo(File file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(size)
+                .putLong(totalDuration).putLong(totalStepsX).putLong(totalStepsY);
+        // Buffer methods are called through Buffer, since newer JDKs return ByteBuffer, which
+        // older runtimes do not have.
+        ((Buffer) header).flip();
+        ByteBuffer content = records.duplicate();
+        ((Buffer) content).position(0).limit(size * RECORD_SIZE);
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            FileChannel channel = stream.getChannel();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+        }
+    }
+
+    /**
+     * Maps a script file written by writeTo into memory. The records are read from the file on demand,
+     * so the file must not be modified while the script is in use.
+     * @param file The file to map.
+     * @return The script.
+     */
+    public static CompiledScript map(File file) throws IOException {
+        try (FileInputStream stream = new FileInputStream(file)) {
+            FileChannel channel = stream.getChannel();
+            long length = channel.size();
+            if (length < HEADER_SIZE) {
+                throw new IOException("Not a compiled script: " + file);
+            }
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION || mapped.getInt(8) != RECORD_SIZE) {
+                throw new IOException("Not a compiled script, or unsupported version: " + file);
+            }
+            int size = mapped.getInt(12);
+            if (size < 0 || HEADER_SIZE + (long) size * RECORD_SIZE > length) {
+                throw new IOException("Truncated compiled script: " + file);
+            }
+            // The mapping stays valid after the channel is closed.
+            ((Buffer) mapped).position(HEADER_SIZE);
+            ByteBuffer records = mapped.slice();
+            return new CompiledScript(records, size, mapped.getLong(16), mapped.getLong(24), mapped.getLong(32));
+        }
+    }
+
+    /**
+     * @return The count of commands of this script.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index The index of the command.
+     * @return The predicted duration of the command, in nanoseconds.
+     */
+    public long getPredictedDurationNanos(int index) {
+        return records.getLong(index * RECORD_SIZE + FRAME_AREA);
+    }
+
+    /**
+     * @return The predicted duration of the whole script, in nanoseconds.
+     */
+    public long getTotalDurationNanos() {
+        return totalDuration;
+    }
+
+    /**
+     * @return The sum of all movements of this script, in steps.
+     */
+    public Point2f getTotalSteps() {
+        return new Point2f(totalStepsX, totalStepsY);
+    }
+
+    /**
+     * Fills a command with a command of this script. The command holds the stored frame, so the
+     * frame which is written is exactly the compiled one.
+     * @param index The index of the command.
+     * @param target The command to fill.
+     * @return The target command.
+     */
+    public Command getCommand(int index, Command target) {
+        return target.setFrame(records, index * RECORD_SIZE);
+    }
+
+    /**
+     * Creates a source which reads the commands of this script, in order. Several sources of the
+     * same script can be used at the same time.
+     * @return The source.
+     */
+    public CommandSource.Timed source() {
+        return new CommandSource.Timed() {
+            private int index = 0;
+
+            @Override
+            public boolean next(Command target, ScriptRunner runner) {
+                if (index >= size) {
+                    return false;
+                }
+                getCommand(index++, target);
+                return true;
+            }
+
+            @Override
+            public long getPredictedDurationNanos() {
+                return CompiledScript.this.getPredictedDurationNanos(index - 1);
+            }
+        };
+    }
+
+    /**
+     * Copies the frame of a command of this script.
+     * @param index The index of the command.
+     * @param target The buffer to copy to.
+     * @param offset The index in target to copy to.
+     * @return The length of the frame.
+     */
+    public int copyFrame(int index, byte[] target, int offset) {
+        int recordOffset = index * RECORD_SIZE;
+        int length = CommandEncoder.HEADER_LENGTH + (records.get(recordOffset + 1) & 0xFF) + 1;
+        for (int i = 0; i < length; i++) {
+            target[offset + i] = records.get(recordOffset + i);
+        }
+        return length;
+    }
+
+    /**
+     * Appends records to a growing buffer.
+     */
+    static class Builder {
+        private ByteBuffer records = ByteBuffer.allocate(64 * RECORD_SIZE);
+        private int size = 0;
+        private long totalDuration = 0;
+        private long totalStepsX = 0;
+        private long totalStepsY = 0;
+
+        void addMove(int stepsX, int stepsY, int speedX, int speedY, long durationNanos) {
+            int offset = reserve();
+            CommandEncoder.encodeMoveXY(stepsX, speedX, stepsY, speedY, records, offset);
+            records.putLong(offset + FRAME_AREA, durationNanos);
+            totalDuration += durationNanos;
+            totalStepsX += stepsX;
+            totalStepsY += stepsY;
+        }
+
+        void addStop() {
+            int offset = reserve();
+            CommandEncoder.encodeStop(records, offset);
+            records.putLong(offset + FRAME_AREA, 0);
+        }
+
+        private int reserve() {
+            int offset = size * RECORD_SIZE;
+            if (offset + RECORD_SIZE > records.capacity()) {
+                ByteBuffer grown = ByteBuffer.allocate(records.capacity() * 2);
+                ((Buffer) records).position(0).limit(offset);
+                grown.put(records);
+                records = grown;
+                ((Buffer) records).clear();
+            }
+            size++;
+            return offset;
+        }
+
+        CompiledScript build() {
+            return new CompiledScript(records, size, totalDuration, totalStepsX, totalStepsY);
+        }
+    }
+}
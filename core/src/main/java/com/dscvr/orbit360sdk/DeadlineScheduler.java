@@ -0,0 +1,269 @@
+package com.dscvr.orbit360sdk;
+
+import java.util.PriorityQueue;
+
+/**
+ * Runs tasks at absolute deadlines on a small, fixed number of threads.
+ *
+ * All ScriptRunners which use Clock.SYSTEM share one scheduler, so the count of threads does not
+ * depend on the count of runners or devices. Tasks must return quickly and must not block, because
+ * a blocked task delays the tasks of all other runners.
+ *
+ * The operating system wakes waiting threads slightly late. The scheduler measures this delay and
+ * wakes up earlier by its moving average, at most MAX_COMPENSATION_NANOS, then sleeps the rest of
+ * the time with Clock.sleepNanos, which parks the thread on Clock.SYSTEM. Parking is much more precise
+ * than waiting on a monitor, and unlike spinning, it leaves the CPU to other threads. This way, tasks
+ * run close to their deadlines without burning CPU and battery.
+ *
+ * The threads of the shared scheduler run the dispatchers of all runners and controllers on
+ * Clock.SYSTEM, the timeouts of the GATT operation queues, and the callbacks these invoke, for example
+ * ScriptRunner's handlers and listeners and CommandSource.next. A callback which blocks delays all of them.
+ *
+ * Waiting is done with Clock.waitNanos, so a scheduler on a VirtualClock advances the clock and
+ * runs its events while waiting for the next deadline.
+ */
+public class DeadlineScheduler {
+    /**
+     * The maximum time the scheduler wakes up before a deadline, in nanoseconds.
+     */
+    public static final long MAX_COMPENSATION_NANOS = 2000000;
+
+    private static final int COMPENSATION_SHIFT = 3;
+
+    private static DeadlineScheduler shared;
+
+    private final Clock clock;
+    private final Thread[] threads;
+    private final PriorityQueue<Task> queue = new PriorityQueue<>();
+    private final LatencyHistogram lateness = new LatencyHistogram();
+    private final Object lock = new Object();
+    private long sequence;
+    private long compensationNanos;
+    private boolean closed;
+
+    /**
+     * Creates a new scheduler and starts its threads.
+     * The scheduler has to be closed when it is no longer used.
+     * @param clock The clock the deadlines refer to.
+     * @param threadCount The count of threads which run the tasks.
+     */
+    public DeadlineScheduler(Clock clock, int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount must be positive");
+        }
+        this.clock = clock;
+        this.threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runLoop();
+                }
+            }, "Orbit360Scheduler-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    /**
+     * @return The scheduler shared by all runners on Clock.SYSTEM. It must not be closed.
+     */
+    public static synchronized DeadlineScheduler getShared() {
+        if (shared == null) {
+            int threadCount = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+            shared = new DeadlineScheduler(Clock.SYSTEM, threadCount);
+        }
+        return shared;
+    }
+
+    /**
+     * Creates a task, which runs the given action whenever it is scheduled.
+     * @param action The action to run.
+     * @return The task. It is not scheduled yet.
+     */
+    public Task newTask(Runnable action) {
+        return new Task(action);
+    }
+
+    /**
+     * @return The clock the deadlines refer to.
+     */
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * @return The count of threads which run the tasks.
+     */
+    public int getThreadCount() {
+        return threads.length;
+    }
+
+    /**
+     * @return How late the tasks started, compared to their deadlines.
+     */
+    public LatencyHistogram.Snapshot getLateness() {
+        return lateness.snapshot();
+    }
+
+    /**
+     * @return The time the scheduler currently wakes up before a deadline, in nanoseconds.
+     */
+    public long getCompensationNanos() {
+        synchronized (lock) {
+            return compensationNanos;
+        }
+    }
+
+    /**
+     * Stops the threads. Tasks which did not start yet are discarded, and later scheduling is ignored.
+     */
+    public void close() {
+        synchronized (DeadlineScheduler.class) {
+            if (this == shared) {
+                throw new IllegalStateException("The shared scheduler can not be closed");
+            }
+        }
+        synchronized (lock) {
+            closed = true;
+            queue.clear();
+            lock.notifyAll();
+        }
+    }
+
+    private void runLoop() {
+        try {
+            while (true) {
+                Task task;
+                long deadline;
+                synchronized (lock) {
+                    while (true) {
+                        if (closed) {
+                            return;
+                        }
+                        Task head = queue.peek();
+                        if (head == null) {
+                            lock.wait();
+                            continue;
+                        }
+                        long wakeAt = head.deadline - compensationNanos;
+                        long remaining = wakeAt - clock.nanoTime();
+                        if (remaining <= 0) {
+                            queue.poll();
+                            head.queued = false;
+                            head.running = true;
+                            task = head;
+                            deadline = head.deadline;
+                            break;
+                        }
+                        clock.waitNanos(lock, remaining);
+                        long overshoot = clock.nanoTime() - wakeAt;
+                        if (overshoot >= 0 && queue.peek() == head) {
+                            // Woken by the timeout, not by a new task: adapt to the delay of the system.
+                            long target = Math.min(MAX_COMPENSATION_NANOS, overshoot);
+                            compensationNanos += (target - compensationNanos) >> COMPENSATION_SHIFT;
+                        }
+                    }
+                }
+                long remaining = deadline - clock.nanoTime();
+                if (remaining > 0) {
+                    clock.sleepNanos(remaining);
+                }
+                lateness.record(clock.nanoTime() - deadline);
+                try {
+                    task.action.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                synchronized (lock) {
+                    task.running = false;
+                    if (task.pendingDeadline != Long.MAX_VALUE) {
+                        long pending = task.pendingDeadline;
+                        task.pendingDeadline = Long.MAX_VALUE;
+                        enqueue(task, pending);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // The thread ends.
+        }
+    }
+
+    private void enqueue(Task task, long deadline) {
+        if (closed) {
+            return;
+        }
+        task.deadline = deadline;
+        task.sequence = sequence++;
+        task.queued = true;
+        queue.add(task);
+        if (queue.peek() == task) {
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * An action which is run by the scheduler whenever it is due. A task never runs on two threads
+     * at the same time.
+     */
+    public final class Task implements Comparable<Task> {
+        private final Runnable action;
+        private long deadline;
+        private long sequence;
+        private long pendingDeadline = Long.MAX_VALUE;
+        private boolean queued;
+        private boolean running;
+
+        private Task(Runnable action) {
+            this.action = action;
+        }
+
+        /**
+         * Makes sure the task runs no later than the given time. If the task is already scheduled
+         * for an earlier time, nothing changes. If it is running, it runs again afterwards.
+         * Like Object.wait, a task can therefore run before the time its action waits for, and has
+         * to check its condition and schedule itself again.
+         * @param deadline The time to run the task at, in nanoseconds of the scheduler's clock.
+         */
+        public void scheduleAt(long deadline) {
+            synchronized (lock) {
+                if (running) {
+                    pendingDeadline = Math.min(pendingDeadline, deadline);
+                } else if (!queued) {
+                    enqueue(this, deadline);
+                } else if (deadline < this.deadline) {
+                    queue.remove(this);
+                    enqueue(this, deadline);
+                }
+            }
+        }
+
+        /**
+         * Runs the task as soon as possible.
+         */
+        public void wake() {
+            scheduleAt(clock.nanoTime());
+        }
+
+        /**
+         * Removes the task from the schedule. If it is running, it finishes.
+         */
+        public void cancel() {
+            synchronized (lock) {
+                pendingDeadline = Long.MAX_VALUE;
+                if (queued) {
+                    queue.remove(this);
+                    queued = false;
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (deadline != other.deadline) {
+                return deadline < other.deadline ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.dscvr.orbit360sdk;
+
+/**
+ * This class reads frames in the format written by CommandEncoder.
+ */
+public final class FrameDecoder {
+    /**
+     * Function code of the notification the Orbit360 sends when a movement finished. The Orbit360
+     * answers with the function code of the finished move.
+     */
+    public static final byte FUNCTION_MOVEMENT_FINISHED = CommandEncoder.FUNCTION_MOVE_XY;
+    /**
+     * Function code of the notification the Orbit360 sends when a remote button was pressed.
+     */
+    public static final byte FUNCTION_BUTTON = 0x08;
+    /**
+     * Payload of a button notification for the upper remote button.
+     */
+    public static final byte BUTTON_TOP = 0x01;
+    /**
+     * Payload of a button notification for the lower remote button.
+     */
+    public static final byte BUTTON_BOTTOM = 0x00;
+
+    private FrameDecoder() {
+    }
+
+    /**
+     * @param frame A notification sent by the Orbit360.
+     * @return True if the notification signals a finished movement.
+     */
+    public static boolean isMovementFinished(byte[] frame) {
+        return isValid(frame, 0, frame.length) && function(frame, 0) == FUNCTION_MOVEMENT_FINISHED;
+    }
+
+    /**
+     * Decodes a notification sent by the Orbit360. Bytes after the checksum, for example the padding
+     * of a characteristic value, are ignored.
+     * @param frame The buffer containing the frame.
+     * @param offset The index of the first byte of the frame.
+     * @param available The count of bytes in the buffer, starting at offset.
+     * @param timestampNanos The time the notification was received.
+     * @return The event, or null if the buffer does not contain a valid frame.
+     */
+    public static Orbit360Event decode(byte[] frame, int offset, int available, long timestampNanos) {
+        if (!isValid(frame, offset, available)) {
+            return null;
+        }
+        byte function = function(frame, offset);
+        int length = payloadLength(frame, offset);
+        int payloadStart = offset + CommandEncoder.HEADER_LENGTH;
+        byte[] payload = new byte[length];
+        System.arraycopy(frame, payloadStart, payload, 0, length);
+
+        if (function == FUNCTION_BUTTON && length == 1 && (payload[0] == BUTTON_TOP || payload[0] == BUTTON_BOTTOM)) {
+            Orbit360Event.Button button = payload[0] == BUTTON_TOP ? Orbit360Event.Button.TOP : Orbit360Event.Button.BOTTOM;
+            return new Orbit360Event(Orbit360Event.Type.BUTTON_PRESSED, function, payload, timestampNanos, button, 0, 0, 0, 0);
+        }
+        if (function == FUNCTION_MOVEMENT_FINISHED) {
+            // Steps and speeds of both axes, without the trailing fullstep flag.
+            boolean hasMove = length >= CommandEncoder.MOVE_XY_PAYLOAD_LENGTH - 1;
+            return new Orbit360Event(Orbit360Event.Type.MOVEMENT_FINISHED, function, payload, timestampNanos, null,
+                    hasMove ? moveStepsX(frame, offset) : 0, hasMove ? moveStepsY(frame, offset) : 0,
+                    hasMove ? moveSpeedX(frame, offset) : 0, hasMove ? moveSpeedY(frame, offset) : 0);
+        }
+        return new Orbit360Event(Orbit360Event.Type.UNKNOWN, function, payload, timestampNanos, null, 0, 0, 0, 0);
+    }
+
+    /**
+     * Checks start byte, length and checksum of a frame.
+     * @param frame The buffer containing the frame.
+     * @param offset The index of the first byte of the frame.
+     * @param available The count of bytes in the buffer, starting at offset.
+     * @return True if the buffer contains a complete, valid frame.
+     */
+    public static boolean isValid(byte[] frame, int offset, int available) {
+        if (available < CommandEncoder.HEADER_LENGTH + 1 || frame[offset] != CommandEncoder.FRAME_START) {
+            return false;
+        }
+        int checksumIndex = offset + CommandEncoder.HEADER_LENGTH + payloadLength(frame, offset);
+        return checksumIndex < offset + available
+                && frame[checksumIndex] == CommandEncoder.checksum(frame, offset, checksumIndex);
+    }
+
+    /**
+     * @return The count of payload bytes of the frame starting at offset.
+     */
+    public static int payloadLength(byte[] frame, int offset) {
+        return frame[offset + 1] & 0xFF;
+    }
+
+    /**
+     * @return The count of bytes of the frame starting at offset, including the checksum.
+     */
+    public static int frameLength(byte[] frame, int offset) {
+        return CommandEncoder.HEADER_LENGTH + payloadLength(frame, offset) + 1;
+    }
+
+    /**
+     * @return The function code of the frame starting at offset.
+     */
+    public static byte function(byte[] frame, int offset) {
+        return frame[offset + 2];
+    }
+
+    /**
+     * @return The steps on the X-axis of the move frame starting at offset.
+     */
+    public static int moveStepsX(byte[] frame, int offset) {
+        return getInt(frame, offset + CommandEncoder.HEADER_LENGTH);
+    }
+
+    /**
+     * @return The speed on the X-axis, in steps per second, of the move frame starting at offset.
+     */
+    public static int moveSpeedX(byte[] frame, int offset) {
+        return getUnsignedShort(frame, offset + CommandEncoder.HEADER_LENGTH + 4);
+    }
+
+    /**
+     * @return The steps on the Y-axis of the move frame starting at offset.
+     */
+    public static int moveStepsY(byte[] frame, int offset) {
+        // The Y motor is mounted upside down.
+        return -getInt(frame, offset + CommandEncoder.HEADER_LENGTH + 6);
+    }
+
+    /**
+     * @return The speed on the Y-axis, in steps per second, of the move frame starting at offset.
+     */
+    public static int moveSpeedY(byte[] frame, int offset) {
+        return getUnsignedShort(frame, offset + CommandEncoder.HEADER_LENGTH + 10);
+    }
+
+    private static int getInt(byte[] frame, int i) {
+        return (frame[i] << 24) | ((frame[i + 1] & 0xFF) << 16) | ((frame[i + 2] & 0xFF) << 8) | (frame[i + 3] & 0xFF);
+    }
+
+    private static int getUnsignedShort(byte[] frame, int i) {
+        return ((frame[i] & 0xFF) << 8) | (frame[i + 1] & 0xFF);
+    }
+}
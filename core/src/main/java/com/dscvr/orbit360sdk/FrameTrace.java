@@ -0,0 +1,197 @@
+package com.dscvr.orbit360sdk;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A trace of the frames exchanged with an Orbit360, as written by TraceRecorder.
+ *
+ * A trace file consists of a header of HEADER_SIZE bytes (magic, version, entry header size and the
+ * wall-clock time the recording started in milliseconds, all big-endian), followed by the entries.
+ * Each entry has a header of ENTRY_HEADER_SIZE bytes (type, outcome, frame length, timestamp and
+ * latency), followed by the frame. Timestamps are nanoseconds since the start of the recording and
+ * do not decrease from one entry to the next.
+ *
+ * The file is mapped into memory, so even long traces are read without copying them to the heap.
+ */
+public class FrameTrace {
+    /**
+     * Size of the header of a trace file, in bytes.
+     */
+    public static final int HEADER_SIZE = 20;
+    /**
+     * Size of the header of a single entry, in bytes.
+     */
+    public static final int ENTRY_HEADER_SIZE = 20;
+
+    /**
+     * Entry type of a frame written to the Orbit360. The entry is recorded when the write finished.
+     */
+    public static final byte TYPE_WRITE = 1;
+    /**
+     * Entry type of a notification received from the Orbit360.
+     */
+    public static final byte TYPE_NOTIFICATION = 2;
+
+    /**
+     * Outcome of a write which was acknowledged, or of a notification which is a valid frame.
+     */
+    public static final byte OUTCOME_OK = 0;
+    /**
+     * Outcome of a write which failed or was dropped.
+     */
+    public static final byte OUTCOME_FAILED = 1;
+    /**
+     * Outcome of a notification which is no valid frame, for example because of a wrong checksum.
+     */
+    public static final byte OUTCOME_INVALID = 2;
+
+    static final int MAGIC = 0x4F335452; // "O3TR"
+    static final int VERSION = 1;
+
+    private final ByteBuffer entries;
+    private final long startTimeMillis;
+
+    private FrameTrace(ByteBuffer entries, long startTimeMillis) {
+        this.entries = entries;
+        this.startTimeMillis = startTimeMillis;
+    }
+
+    /**
+     * Maps a trace file into memory. A trace which is still being recorded can be read up to its
+     * last flushed entry.
+     * @param file The file written by TraceRecorder.
+     * @return The trace.
+     */
+    public static FrameTrace map(File file) throws IOException {
+        FileInputStream stream = new FileInputStream(file);
+        try {
+            FileChannel channel = stream.getChannel();
+            long length = channel.size();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                throw new IOException("Not a frame trace: " + file);
+            }
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION || mapped.getInt(8) != ENTRY_HEADER_SIZE) {
+                throw new IOException("Not a frame trace, or unsupported version: " + file);
+            }
+            // The mapping stays valid after the channel is closed.
+            // Through Buffer, since newer JDKs return ByteBuffer, which older runtimes do not have.
+            ((Buffer) mapped).position(HEADER_SIZE);
+            return new FrameTrace(mapped.slice(), mapped.getLong(12));
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * @return The wall-clock time the recording started, in milliseconds since the epoch.
+     */
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    /**
+     * @return A new cursor, positioned before the first entry.
+     */
+    public Cursor cursor() {
+        return new Cursor(entries.duplicate());
+    }
+
+    static void putEntry(ByteBuffer target, byte type, byte outcome, long timestampNanos, long latencyNanos,
+                         byte[] frame, int length) {
+        target.put(type).put(outcome).putShort((short) length).putLong(timestampNanos).putLong(latencyNanos);
+        target.put(frame, 0, length);
+    }
+
+    /**
+     * Reads the entries of a trace, one after another. A cursor is not thread-safe.
+     */
+    public static final class Cursor {
+        private final ByteBuffer buffer;
+        private int entry = -1;
+
+        Cursor(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Advances to the next entry.
+         * @return False if there is no further complete entry.
+         */
+        public boolean next() {
+            int next = entry < 0 ? 0 : entry + ENTRY_HEADER_SIZE + getFrameLength();
+            if (next + ENTRY_HEADER_SIZE > buffer.limit()) {
+                return false;
+            }
+            int length = buffer.getShort(next + 2) & 0xFFFF;
+            if (next + ENTRY_HEADER_SIZE + length > buffer.limit()) {
+                return false;
+            }
+            entry = next;
+            return true;
+        }
+
+        /**
+         * @return TYPE_WRITE or TYPE_NOTIFICATION.
+         */
+        public byte getType() {
+            return buffer.get(entry);
+        }
+
+        /**
+         * @return OUTCOME_OK, OUTCOME_FAILED or OUTCOME_INVALID.
+         */
+        public byte getOutcome() {
+            return buffer.get(entry + 1);
+        }
+
+        /**
+         * @return The count of bytes of the frame.
+         */
+        public int getFrameLength() {
+            return buffer.getShort(entry + 2) & 0xFFFF;
+        }
+
+        /**
+         * @return The time of the entry, in nanoseconds since the start of the recording. For writes,
+         * this is the time the write finished.
+         */
+        public long getTimestampNanos() {
+            return buffer.getLong(entry + 4);
+        }
+
+        /**
+         * @return For writes, the time from handing the frame to the transport until the write
+         * finished, in nanoseconds. Zero for notifications.
+         */
+        public long getLatencyNanos() {
+            return buffer.getLong(entry + 12);
+        }
+
+        /**
+         * @return For writes, the time the frame was handed to the transport, in nanoseconds since the
+         * start of the recording. For notifications, the timestamp.
+         */
+        public long getSendTimeNanos() {
+            return getTimestampNanos() - getLatencyNanos();
+        }
+
+        /**
+         * Copies the frame of the entry.
+         * @param target The array to copy to. Must hold at least getFrameLength bytes.
+         * @return The count of copied bytes.
+         */
+        public int getFrame(byte[] target) {
+            int length = getFrameLength();
+            for (int i = 0; i < length; i++) {
+                target[i] = buffer.get(entry + ENTRY_HEADER_SIZE + i);
+            }
+            return length;
+        }
+    }
+}
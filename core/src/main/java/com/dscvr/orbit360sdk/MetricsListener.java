@@ -0,0 +1,93 @@
+package com.dscvr.orbit360sdk;
+
+/**
+ * Interface for receiving timing events of the command path, from handing a command to the
+ * transport until the Orbit360 finished the movement. All times are in nanoseconds of the clock of
+ * the reporting component.
+ *
+ * Callbacks are called on the threads of the reporting components, often Bluetooth Binder threads,
+ * and must return quickly. Orbit360Metrics aggregates the events without locking.
+ *
+ * Components use NONE by default, and do not take timestamps while it is set.
+ */
+public interface MetricsListener {
+    /**
+     * A listener which ignores all events.
+     */
+    MetricsListener NONE = new MetricsListener() {
+        @Override
+        public void commandEnqueued(long enqueueTimeNanos, int queueDepth) {
+        }
+
+        @Override
+        public void writeIssued(long enqueueTimeNanos, long issueTimeNanos) {
+        }
+
+        @Override
+        public void writeAcknowledged(long enqueueTimeNanos, long issueTimeNanos, long ackTimeNanos, boolean success) {
+        }
+
+        @Override
+        public void movementCompleted(long sendTimeNanos, long completionTimeNanos) {
+        }
+
+        @Override
+        public void commandRetried() {
+        }
+
+        @Override
+        public void setpointCoalesced() {
+        }
+
+        @Override
+        public void stopCompleted(long requestTimeNanos, long writtenTimeNanos) {
+        }
+    };
+
+    /**
+     * A command was handed to the transport.
+     * @param enqueueTimeNanos The time of the hand-over.
+     * @param queueDepth The count of operations waiting in the transport, including this command.
+     */
+    void commandEnqueued(long enqueueTimeNanos, int queueDepth);
+
+    /**
+     * The write of a command was started on the link, for example as GATT write.
+     * @param enqueueTimeNanos The time the command was handed to the transport.
+     * @param issueTimeNanos The time the write was started.
+     */
+    void writeIssued(long enqueueTimeNanos, long issueTimeNanos);
+
+    /**
+     * The write of a command was acknowledged, or it failed or was dropped.
+     * @param enqueueTimeNanos The time the command was handed to the transport.
+     * @param issueTimeNanos The time the write was started, or -1 if it was never started.
+     * @param ackTimeNanos The time of the acknowledgement.
+     * @param success False if the command was not written.
+     */
+    void writeAcknowledged(long enqueueTimeNanos, long issueTimeNanos, long ackTimeNanos, boolean success);
+
+    /**
+     * The Orbit360 notified that a movement finished.
+     * @param sendTimeNanos The time the move command was sent.
+     * @param completionTimeNanos The time the notification was received.
+     */
+    void movementCompleted(long sendTimeNanos, long completionTimeNanos);
+
+    /**
+     * A command which could not be written is sent again.
+     */
+    void commandRetried();
+
+    /**
+     * A setpoint was discarded because a newer one was submitted before it was sent.
+     */
+    void setpointCoalesced();
+
+    /**
+     * A stop command requested by ScriptRunner.abort or by cancelling a running script was written.
+     * @param requestTimeNanos The time the stop was requested.
+     * @param writtenTimeNanos The time the write of the stop command was acknowledged.
+     */
+    void stopCompleted(long requestTimeNanos, long writtenTimeNanos);
+}
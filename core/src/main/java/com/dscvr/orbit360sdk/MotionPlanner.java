@@ -0,0 +1,204 @@
+package com.dscvr.orbit360sdk;
+
+import java.util.List;
+
+/**
+ * This class compiles scripts into sequences of frames the Orbit360 can execute exactly.
+ *
+ * The planner
+ * <ul>
+ *     <li>keeps track of fractional steps, so rounding errors do not accumulate over many commands,</li>
+ *     <li>synchronizes the speeds of both axes, so both axes arrive at the same time,</li>
+ *     <li>clamps speeds to the encodable range and splits moves which exceed the configured step limit,</li>
+ *     <li>merges consecutive moves in the same direction with the same speed into a single command,</li>
+ *     <li>predicts the duration of each command from the encoded steps and speeds.</li>
+ * </ul>
+ *
+ * The speeds of the commands of a script are treated as maximum speeds.
+ */
+public class MotionPlanner {
+    /**
+     * The highest speed which can be encoded in a frame, in steps per second.
+     */
+    public static final int MAX_ENCODABLE_SPEED = 0xFFFF;
+
+    private int maxSpeedX = MAX_ENCODABLE_SPEED;
+    private int maxSpeedY = MAX_ENCODABLE_SPEED;
+    private int maxStepsPerCommand = Integer.MAX_VALUE;
+    private boolean synchronizeAxes = true;
+    private boolean mergeMoves = true;
+
+    /**
+     * Limits the speed of both axes, for example to the speed the motors can actually reach.
+     * @param maxSpeedX The maximum speed on the X-axis, in steps per second.
+     * @param maxSpeedY The maximum speed on the Y-axis, in steps per second.
+     * @return This instance.
+     */
+    public MotionPlanner setMaxSpeed(float maxSpeedX, float maxSpeedY) {
+        this.maxSpeedX = clampSpeed(maxSpeedX, MAX_ENCODABLE_SPEED);
+        this.maxSpeedY = clampSpeed(maxSpeedY, MAX_ENCODABLE_SPEED);
+        return this;
+    }
+
+    /**
+     * Limits the steps per command. Longer moves are split into several commands.
+     * @param maxSteps The maximum count of steps per axis and command.
+     * @return This instance.
+     */
+    public MotionPlanner setMaxStepsPerCommand(int maxSteps) {
+        if (maxSteps < 1) {
+            throw new IllegalArgumentException("maxSteps must be positive");
+        }
+        this.maxStepsPerCommand = maxSteps;
+        return this;
+    }
+
+    /**
+     * @param synchronizeAxes True if the faster axis is slowed down to arrive together with the slower one. Enabled by default.
+     * @return This instance.
+     */
+    public MotionPlanner setSynchronizeAxes(boolean synchronizeAxes) {
+        this.synchronizeAxes = synchronizeAxes;
+        return this;
+    }
+
+    /**
+     * @param mergeMoves True if consecutive moves in the same direction with the same speed are merged,
+     *                   and moves which round to zero steps are skipped. Enabled by default.
+     * @return This instance.
+     */
+    public MotionPlanner setMergeMoves(boolean mergeMoves) {
+        this.mergeMoves = mergeMoves;
+        return this;
+    }
+
+    /**
+     * Compiles a script.
+     * @param script The commands to compile. Stop-commands are kept as they are.
+     * @return The compiled script.
+     */
+    public CompiledScript compile(List<Command> script) {
+        Compilation compilation = new Compilation();
+        for (int i = 0; i < script.size(); i++) {
+            compilation.add(script.get(i));
+        }
+        return compilation.finish();
+    }
+
+    /**
+     * Predicts the duration of a move with integer steps and speeds.
+     * @return The duration, in nanoseconds.
+     */
+    static long durationNanos(long stepsX, long stepsY, int speedX, int speedY) {
+        double timeX = stepsX != 0 ? Math.abs(stepsX) / (double) speedX : 0;
+        double timeY = stepsY != 0 ? Math.abs(stepsY) / (double) speedY : 0;
+        return (long) Math.ceil(Math.max(timeX, timeY) * 1e9);
+    }
+
+    private static int clampSpeed(float speed, int max) {
+        return (int) Math.max(1, Math.min(max, Math.floor(Math.abs(speed))));
+    }
+
+    /**
+     * State of a single compilation.
+     */
+    private class Compilation {
+        private final CompiledScript.Builder builder = new CompiledScript.Builder();
+        private double targetX = 0;
+        private double targetY = 0;
+        private long emittedX = 0;
+        private long emittedY = 0;
+
+        private boolean hasPending = false;
+        private long pendingX;
+        private long pendingY;
+        private int pendingSpeedX;
+        private int pendingSpeedY;
+
+        void add(Command command) {
+            if (command.getFunction() != CommandEncoder.FUNCTION_MOVE_XY) {
+                flush();
+                builder.addStop();
+                return;
+            }
+            targetX += command.getStepsX();
+            targetY += command.getStepsY();
+            // Round the accumulated target instead of every single move, so the error stays below half a step.
+            long stepsX = Math.round(targetX) - emittedX;
+            long stepsY = Math.round(targetY) - emittedY;
+            emittedX += stepsX;
+            emittedY += stepsY;
+
+            int speedX = clampSpeed(command.getSpeedX(), maxSpeedX);
+            int speedY = clampSpeed(command.getSpeedY(), maxSpeedY);
+            if (synchronizeAxes && stepsX != 0 && stepsY != 0) {
+                double time = Math.max(Math.abs(stepsX) / (double) speedX, Math.abs(stepsY) / (double) speedY);
+                speedX = (int) Math.max(1, Math.min(speedX, Math.ceil(Math.abs(stepsX) / time)));
+                speedY = (int) Math.max(1, Math.min(speedY, Math.ceil(Math.abs(stepsY) / time)));
+            }
+
+            if (stepsX == 0 && stepsY == 0) {
+                if (!mergeMoves) {
+                    flush();
+                    builder.addMove(0, 0, speedX, speedY, 0);
+                }
+                return;
+            }
+
+            long parts = Math.max((Math.abs(stepsX) + maxStepsPerCommand - 1) / maxStepsPerCommand,
+                    (Math.abs(stepsY) + maxStepsPerCommand - 1) / maxStepsPerCommand);
+            long doneX = 0;
+            long doneY = 0;
+            for (long part = 1; part <= parts; part++) {
+                // Distribute the steps evenly, so the parts differ by at most one step.
+                long partX = stepsX * part / parts - doneX;
+                long partY = stepsY * part / parts - doneY;
+                doneX += partX;
+                doneY += partY;
+                offer(partX, partY, speedX, speedY);
+            }
+        }
+
+        private void offer(long stepsX, long stepsY, int speedX, int speedY) {
+            if (hasPending && canMerge(stepsX, stepsY, speedX, speedY)) {
+                pendingX += stepsX;
+                pendingY += stepsY;
+                return;
+            }
+            flush();
+            hasPending = true;
+            pendingX = stepsX;
+            pendingY = stepsY;
+            pendingSpeedX = speedX;
+            pendingSpeedY = speedY;
+            if (!mergeMoves) {
+                flush();
+            }
+        }
+
+        private boolean canMerge(long stepsX, long stepsY, int speedX, int speedY) {
+            return mergeMoves
+                    && Long.signum(stepsX) == Long.signum(pendingX)
+                    && Long.signum(stepsY) == Long.signum(pendingY)
+                    && stepsX * pendingY == stepsY * pendingX
+                    && (stepsX == 0 || speedX == pendingSpeedX)
+                    && (stepsY == 0 || speedY == pendingSpeedY)
+                    && Math.abs(pendingX + stepsX) <= maxStepsPerCommand
+                    && Math.abs(pendingY + stepsY) <= maxStepsPerCommand;
+        }
+
+        private void flush() {
+            if (!hasPending) {
+                return;
+            }
+            hasPending = false;
+            builder.addMove((int) pendingX, (int) pendingY, pendingSpeedX, pendingSpeedY,
+                    durationNanos(pendingX, pendingY, pendingSpeedX, pendingSpeedY));
+        }
+
+        CompiledScript finish() {
+            flush();
+            return builder.build();
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.dscvr.orbit360sdk;
+
+/**
+ * Kinematic model of the two motors of the Orbit360, which predicts how far a motor moved during a
+ * move and how long the move takes.
+ *
+ * Each motor starts at its start speed, accelerates to the speed of the move, and decelerates with
+ * the same rate before the target, which gives a trapezoidal speed profile. Moves which are too
+ * short to reach their speed accelerate to the middle of the move and decelerate right away. Both
+ * motors run independently, so a move takes as long as the slower motor.
+ *
+ * The shape of a move is computed once, when the move starts (see Profile), so evaluating a
+ * position during the move only takes a few multiplications. INSTANT is the model of motors which
+ * reach their speed immediately, which is what the nominal durations assume.
+ *
+ * The parameters of a device can be measured with MotorModelCalibration. Instances are immutable.
+ */
+public class MotorModel {
+    /**
+     * Motors which start and stop immediately. Durations are the nominal durations.
+     */
+    public static final MotorModel INSTANT = new MotorModel(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+    private final double accelerationX;
+    private final double accelerationY;
+    private final double startSpeedX;
+    private final double startSpeedY;
+
+    /**
+     * Creates a new model of motors which start at rest.
+     * Please refer MotorModel(double, double, double, double) for information about the parameters.
+     */
+    public MotorModel(double accelerationX, double accelerationY) {
+        this(accelerationX, accelerationY, 0, 0);
+    }
+
+    /**
+     * Creates a new model.
+     * @param accelerationX The acceleration of the X-axis, in steps per second squared.
+     *                      Double.POSITIVE_INFINITY for a motor which reaches its speed immediately.
+     * @param accelerationY The acceleration of the Y-axis, in steps per second squared.
+     * @param startSpeedX The speed the X-axis starts and stops with, in steps per second. Slower moves
+     *                    run at their speed from the start.
+     * @param startSpeedY The speed the Y-axis starts and stops with, in steps per second.
+     */
+    public MotorModel(double accelerationX, double accelerationY, double startSpeedX, double startSpeedY) {
+        if (!(accelerationX > 0) || !(accelerationY > 0)) {
+            throw new IllegalArgumentException("Accelerations must be positive: " + accelerationX + ", " + accelerationY);
+        }
+        if (!(startSpeedX >= 0) || !(startSpeedY >= 0)) {
+            throw new IllegalArgumentException("Start speeds must not be negative: " + startSpeedX + ", " + startSpeedY);
+        }
+        this.accelerationX = accelerationX;
+        this.accelerationY = accelerationY;
+        this.startSpeedX = startSpeedX;
+        this.startSpeedY = startSpeedY;
+    }
+
+    /**
+     * @return The acceleration of the X-axis, in steps per second squared.
+     */
+    public double getAccelerationX() {
+        return accelerationX;
+    }
+
+    /**
+     * @return The acceleration of the Y-axis, in steps per second squared.
+     */
+    public double getAccelerationY() {
+        return accelerationY;
+    }
+
+    /**
+     * @return The speed the X-axis starts and stops with, in steps per second.
+     */
+    public double getStartSpeedX() {
+        return startSpeedX;
+    }
+
+    /**
+     * @return The speed the Y-axis starts and stops with, in steps per second.
+     */
+    public double getStartSpeedY() {
+        return startSpeedY;
+    }
+
+    /**
+     * @return True if both motors reach their speed immediately.
+     */
+    public boolean isInstant() {
+        return Double.isInfinite(accelerationX) && Double.isInfinite(accelerationY);
+    }
+
+    /**
+     * Predicts the duration of a command.
+     * @param command The command. Stop commands take no time.
+     * @return The time until both motors reached their target, in nanoseconds.
+     */
+    public long durationNanos(Command command) {
+        if (isInstant()) {
+            // Exactly the nominal duration, so predictions do not change without a model.
+            return ScriptRunner.nominalDurationNanos(command);
+        }
+        return durationNanos(command.getStepsX(), command.getStepsY(), command.getSpeedX(), command.getSpeedY());
+    }
+
+    /**
+     * Predicts the duration of a move.
+     * @param stepsX The steps to move on the X-axis.
+     * @param stepsY The steps to move on the Y-axis.
+     * @param speedX The speed on the X-axis, in steps per second.
+     * @param speedY The speed on the Y-axis, in steps per second.
+     * @return The time until both motors reached their target, in nanoseconds.
+     */
+    public long durationNanos(double stepsX, double stepsY, double speedX, double speedY) {
+        double seconds = Math.max(
+                durationSeconds(Math.abs(stepsX), Math.abs(speedX), accelerationX, startSpeedX),
+                durationSeconds(Math.abs(stepsY), Math.abs(speedY), accelerationY, startSpeedY));
+        return seconds >= Long.MAX_VALUE / 1e9 ? Long.MAX_VALUE : (long) (seconds * 1e9);
+    }
+
+    /**
+     * Computes the shape of a move on the X-axis.
+     * @param movement The steps to move.
+     * @param speed The speed of the move, in steps per second.
+     * @param target The profile to write to.
+     * @return The target profile.
+     */
+    public Profile profileX(double movement, double speed, Profile target) {
+        return target.set(movement, speed, accelerationX, startSpeedX);
+    }
+
+    /**
+     * Computes the shape of a move on the Y-axis.
+     * Please refer profileX for information about the parameters.
+     */
+    public Profile profileY(double movement, double speed, Profile target) {
+        return target.set(movement, speed, accelerationY, startSpeedY);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MotorModel[acceleration=(%.0f, %.0f), startSpeed=(%.0f, %.0f)]",
+                accelerationX, accelerationY, startSpeedX, startSpeedY);
+    }
+
+    /**
+     * @return The duration of a move of a single motor, in seconds.
+     */
+    static double durationSeconds(double distance, double speed, double acceleration, double startSpeed) {
+        double peak = peakSpeed(distance, speed, acceleration, startSpeed);
+        double ramp = rampSeconds(peak, acceleration, startSpeed);
+        return durationSeconds(distance, peak, acceleration, startSpeed, ramp);
+    }
+
+    /**
+     * @return The highest speed of the move: its own speed, or less if the motor has to decelerate
+     * before reaching it.
+     */
+    static double peakSpeed(double distance, double speed, double acceleration, double startSpeed) {
+        if (speed <= startSpeed || Double.isInfinite(acceleration)) {
+            return speed;
+        }
+        return Math.min(speed, Math.sqrt(startSpeed * startSpeed + acceleration * distance));
+    }
+
+    /**
+     * @return The time to accelerate to the peak speed, which is also the time to decelerate from it, in seconds.
+     */
+    static double rampSeconds(double peak, double acceleration, double startSpeed) {
+        if (peak <= startSpeed || Double.isInfinite(acceleration)) {
+            return 0;
+        }
+        return (peak - startSpeed) / acceleration;
+    }
+
+    /**
+     * @return The duration of the move, in seconds. Infinite if the motor has to move without speed.
+     */
+    static double durationSeconds(double distance, double peak, double acceleration, double startSpeed, double ramp) {
+        if (distance == 0) {
+            return 0;
+        }
+        if (peak <= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (ramp == 0) {
+            return distance / peak;
+        }
+        return 2 * ramp + (distance - 2 * rampDistance(acceleration, startSpeed, ramp)) / peak;
+    }
+
+    /**
+     * @return The distance travelled after the given time of the move, between zero and the distance.
+     */
+    static double travelled(double distance, double peak, double acceleration, double startSpeed,
+                            double ramp, double duration, double seconds) {
+        if (distance == 0 || seconds <= 0) {
+            return 0;
+        }
+        if (seconds >= duration) {
+            return distance;
+        }
+        if (ramp == 0) {
+            return Math.min(distance, peak * seconds);
+        }
+        if (seconds < ramp) {
+            return rampDistance(acceleration, startSpeed, seconds);
+        }
+        double remaining = duration - seconds;
+        if (remaining < ramp) {
+            return distance - rampDistance(acceleration, startSpeed, remaining);
+        }
+        return rampDistance(acceleration, startSpeed, ramp) + peak * (seconds - ramp);
+    }
+
+    private static double rampDistance(double acceleration, double startSpeed, double seconds) {
+        return startSpeed * seconds + 0.5 * acceleration * seconds * seconds;
+    }
+
+    /**
+     * The precomputed shape of a move of a single motor. Profiles are mutable, so they can be reused
+     * without allocating.
+     */
+    public static final class Profile {
+        private double movement;
+        private double distance;
+        private double peak;
+        private double acceleration;
+        private double startSpeed;
+        private double ramp;
+        private double duration;
+
+        /**
+         * Creates a profile without movement.
+         */
+        public Profile() {
+        }
+
+        Profile set(double movement, double speed, double acceleration, double startSpeed) {
+            this.movement = movement;
+            this.distance = Math.abs(movement);
+            this.acceleration = acceleration;
+            this.startSpeed = startSpeed;
+            this.peak = peakSpeed(distance, Math.abs(speed), acceleration, startSpeed);
+            this.ramp = rampSeconds(peak, acceleration, startSpeed);
+            this.duration = durationSeconds(distance, peak, acceleration, startSpeed, ramp);
+            return this;
+        }
+
+        /**
+         * @param elapsedNanos The time since the start of the move, in nanoseconds.
+         * @return The steps moved until then, with the sign of the movement.
+         */
+        public double travelled(long elapsedNanos) {
+            return Math.signum(movement) * MotorModel.travelled(distance, peak, acceleration, startSpeed,
+                    ramp, duration, elapsedNanos / 1e9);
+        }
+
+        /**
+         * @return The steps to move.
+         */
+        public double getMovement() {
+            return movement;
+        }
+
+        /**
+         * @return The highest speed of the move, in steps per second.
+         */
+        public double getPeakSpeed() {
+            return peak;
+        }
+
+        /**
+         * @return The time to accelerate to the peak speed, in seconds.
+         */
+        public double getRampSeconds() {
+            return ramp;
+        }
+
+        /**
+         * @return The duration of the move, in seconds.
+         */
+        public double getDurationSeconds() {
+            return duration;
+        }
+    }
+}
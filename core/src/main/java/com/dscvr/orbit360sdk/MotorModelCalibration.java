@@ -0,0 +1,292 @@
+package com.dscvr.orbit360sdk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fits a MotorModel to measured durations of moves.
+ *
+ * Register an instance with ScriptRunner.setCommandTimingListener and run a script in the
+ * COMPLETION execution mode, for example the one of createScript. Every move which the Orbit360
+ * notified as finished becomes a sample. fit then searches the accelerations of both axes which
+ * predict the measured durations best.
+ *
+ * A measured duration also contains the latency of the command write and of the notification. This
+ * overhead is fitted as a constant and reported with the fit, but it is not part of the model,
+ * since the runner measures from the time a command is sent.
+ */
+public class MotorModelCalibration implements ScriptRunner.CommandTimingListener {
+    private static final double MIN_ACCELERATION = 10;
+    private static final double MAX_ACCELERATION = 1e7;
+    private static final int GRID_POINTS = 25;
+    private static final int MAX_ROUNDS = 64;
+    private static final double MIN_IMPROVEMENT = 1e-6;
+    private static final int SEARCH_ITERATIONS = 60;
+    private static final double GOLDEN_RATIO = (Math.sqrt(5) - 1) / 2;
+
+    private final double startSpeedX;
+    private final double startSpeedY;
+    private double[] samples = new double[5 * 64];
+    private int count = 0;
+
+    /**
+     * Creates a new calibration of motors which start at rest.
+     */
+    public MotorModelCalibration() {
+        this(0, 0);
+    }
+
+    /**
+     * Creates a new calibration.
+     * @param startSpeedX The speed the X-axis starts and stops with, in steps per second. It is not fitted.
+     * @param startSpeedY The speed the Y-axis starts and stops with, in steps per second. It is not fitted.
+     */
+    public MotorModelCalibration(double startSpeedX, double startSpeedY) {
+        this.startSpeedX = startSpeedX;
+        this.startSpeedY = startSpeedY;
+    }
+
+    /**
+     * Creates a calibration script: moves of growing distances on each axis, at two speeds, each
+     * followed by the move back, so the script ends at its start position. Short moves, which do not
+     * reach their speed, and long moves are both needed to separate acceleration and overhead.
+     * @param speedX The highest speed on the X-axis, in degrees per second.
+     * @param speedY The highest speed on the Y-axis, in degrees per second.
+     * @return The commands. Run them in the COMPLETION execution mode.
+     */
+    public static List<Command> createScript(float speedX, float speedY) {
+        float[] distancesX = {1, 2, 5, 10, 20, 45, 90, 180};
+        float[] distancesY = {1, 2, 5, 10, 20, 45};
+        List<Command> commands = new ArrayList<>();
+        for (float speed : new float[]{speedX, speedX / 2}) {
+            for (float distance : distancesX) {
+                commands.add(Command.moveXY(new Point2f(distance, 0), new Point2f(speed, speedY)));
+                commands.add(Command.moveXY(new Point2f(-distance, 0), new Point2f(speed, speedY)));
+            }
+        }
+        for (float speed : new float[]{speedY, speedY / 2}) {
+            for (float distance : distancesY) {
+                commands.add(Command.moveXY(new Point2f(0, distance), new Point2f(speedX, speed)));
+                commands.add(Command.moveXY(new Point2f(0, -distance), new Point2f(speedX, speed)));
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * Adds the finished move as sample, if the Orbit360 notified that it finished. Do not call.
+     */
+    @Override
+    public void commandFinished(Command command, long predictedNanos, long measuredNanos, boolean completed) {
+        if (completed && command.getFunction() == CommandEncoder.FUNCTION_MOVE_XY) {
+            // The Orbit360 moves the encoded, whole steps and speeds.
+            addSample((int) command.getStepsX(), (int) command.getStepsY(), (int) command.getSpeedX(), (int) command.getSpeedY(),
+                    measuredNanos);
+        }
+    }
+
+    /**
+     * Adds a measured move.
+     * @param stepsX The steps moved on the X-axis.
+     * @param stepsY The steps moved on the Y-axis.
+     * @param speedX The speed on the X-axis, in steps per second.
+     * @param speedY The speed on the Y-axis, in steps per second.
+     * @param measuredNanos The time from sending the move until it was notified as finished, in nanoseconds.
+     */
+    public synchronized void addSample(double stepsX, double stepsY, double speedX, double speedY, long measuredNanos) {
+        if (5 * count == samples.length) {
+            samples = Arrays.copyOf(samples, samples.length * 2);
+        }
+        int i = 5 * count;
+        samples[i] = Math.abs(stepsX);
+        samples[i + 1] = Math.abs(stepsY);
+        samples[i + 2] = Math.abs(speedX);
+        samples[i + 3] = Math.abs(speedY);
+        samples[i + 4] = measuredNanos / 1e9;
+        count++;
+    }
+
+    /**
+     * @return The count of samples.
+     */
+    public synchronized int getSampleCount() {
+        return count;
+    }
+
+    /**
+     * Discards all samples.
+     */
+    public synchronized void clear() {
+        count = 0;
+    }
+
+    /**
+     * Fits the accelerations of both axes and the overhead to the samples, by least squares. An axis
+     * whose acceleration does not improve the fit, for example because it was not moved, gets an
+     * infinite acceleration.
+     * @return The fit.
+     */
+    public synchronized Fit fit() {
+        if (count < 3) {
+            throw new IllegalStateException("At least three samples are needed, got " + count);
+        }
+        // The overhead couples the axes, so a search of one axis after the other converges slowly
+        // from a bad start. A coarse grid over both axes finds the start, which is then refined.
+        double step = Math.log(MAX_ACCELERATION / MIN_ACCELERATION) / (GRID_POINTS - 1);
+        double accelerationX = MAX_ACCELERATION;
+        double accelerationY = MAX_ACCELERATION;
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < GRID_POINTS; i++) {
+            double x = MIN_ACCELERATION * Math.exp(i * step);
+            for (int j = 0; j < GRID_POINTS; j++) {
+                double y = MIN_ACCELERATION * Math.exp(j * step);
+                double error = error(x, y);
+                if (error < best) {
+                    best = error;
+                    accelerationX = x;
+                    accelerationY = y;
+                }
+            }
+        }
+        // Through the overhead, every round only moves part of the way to the optimum. Refine until a
+        // round no longer improves the fit.
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            accelerationX = search(true, accelerationX, accelerationY, step);
+            accelerationY = search(false, accelerationY, accelerationX, step);
+            double error = error(accelerationX, accelerationY);
+            if (error >= best * (1 - MIN_IMPROVEMENT)) {
+                break;
+            }
+            best = error;
+        }
+        if (error(Double.POSITIVE_INFINITY, accelerationY) <= error(accelerationX, accelerationY)) {
+            accelerationX = Double.POSITIVE_INFINITY;
+        }
+        if (error(accelerationX, Double.POSITIVE_INFINITY) <= error(accelerationX, accelerationY)) {
+            accelerationY = Double.POSITIVE_INFINITY;
+        }
+        MotorModel model = new MotorModel(accelerationX, accelerationY, startSpeedX, startSpeedY);
+        return new Fit(model, (long) (overhead(accelerationX, accelerationY) * 1e9),
+                (long) (Math.sqrt(error(accelerationX, accelerationY) / count) * 1e9),
+                (long) (Math.sqrt(error(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY) / count) * 1e9));
+    }
+
+    /**
+     * Golden section search for the acceleration of one axis, on a logarithmic scale, within the
+     * given distance of the current acceleration.
+     */
+    private double search(boolean xAxis, double current, double other, double distance) {
+        double low = Math.max(Math.log(MIN_ACCELERATION), Math.log(current) - distance);
+        double high = Math.min(Math.log(MAX_ACCELERATION), Math.log(current) + distance);
+        double a = high - GOLDEN_RATIO * (high - low);
+        double b = low + GOLDEN_RATIO * (high - low);
+        double errorA = error(xAxis, Math.exp(a), other);
+        double errorB = error(xAxis, Math.exp(b), other);
+        for (int i = 0; i < SEARCH_ITERATIONS; i++) {
+            if (errorA <= errorB) {
+                high = b;
+                b = a;
+                errorB = errorA;
+                a = high - GOLDEN_RATIO * (high - low);
+                errorA = error(xAxis, Math.exp(a), other);
+            } else {
+                low = a;
+                a = b;
+                errorA = errorB;
+                b = low + GOLDEN_RATIO * (high - low);
+                errorB = error(xAxis, Math.exp(b), other);
+            }
+        }
+        return Math.exp((low + high) / 2);
+    }
+
+    private double error(boolean xAxis, double acceleration, double other) {
+        return xAxis ? error(acceleration, other) : error(other, acceleration);
+    }
+
+    /**
+     * @return The sum of the squared residuals, in seconds squared, with the best overhead.
+     */
+    private double error(double accelerationX, double accelerationY) {
+        double overhead = overhead(accelerationX, accelerationY);
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            double residual = residual(i, accelerationX, accelerationY) - overhead;
+            sum += residual * residual;
+        }
+        return sum;
+    }
+
+    /**
+     * @return The overhead which minimizes the squared residuals: their mean, in seconds.
+     */
+    private double overhead(double accelerationX, double accelerationY) {
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += residual(i, accelerationX, accelerationY);
+        }
+        return sum / count;
+    }
+
+    private double residual(int sample, double accelerationX, double accelerationY) {
+        int i = 5 * sample;
+        double predicted = Math.max(
+                MotorModel.durationSeconds(samples[i], samples[i + 2], accelerationX, startSpeedX),
+                MotorModel.durationSeconds(samples[i + 1], samples[i + 3], accelerationY, startSpeedY));
+        return samples[i + 4] - predicted;
+    }
+
+    /**
+     * The result of a calibration.
+     */
+    public static final class Fit {
+        private final MotorModel model;
+        private final long overheadNanos;
+        private final long rmsErrorNanos;
+        private final long instantRmsErrorNanos;
+
+        Fit(MotorModel model, long overheadNanos, long rmsErrorNanos, long instantRmsErrorNanos) {
+            this.model = model;
+            this.overheadNanos = overheadNanos;
+            this.rmsErrorNanos = rmsErrorNanos;
+            this.instantRmsErrorNanos = instantRmsErrorNanos;
+        }
+
+        /**
+         * @return The fitted model. Pass it to ScriptRunner.setMotorModel.
+         */
+        public MotorModel getModel() {
+            return model;
+        }
+
+        /**
+         * @return The time added to every measured move, for example by the latency of the write and
+         * the notification, in nanoseconds.
+         */
+        public long getOverheadNanos() {
+            return overheadNanos;
+        }
+
+        /**
+         * @return The root mean square of the errors of the predicted durations, in nanoseconds.
+         */
+        public long getRmsErrorNanos() {
+            return rmsErrorNanos;
+        }
+
+        /**
+         * @return The root mean square of the errors of the nominal durations, with their own best
+         * overhead, in nanoseconds. Compare it with getRmsErrorNanos to see how much the model helps.
+         */
+        public long getInstantRmsErrorNanos() {
+            return instantRmsErrorNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Fit[%s, overhead=%.1fms, rmsError=%.2fms, instantRmsError=%.2fms]",
+                    model, overheadNanos / 1e6, rmsErrorNanos / 1e6, instantRmsErrorNanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.dscvr.orbit360sdk;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * This class provides a direct interface to send commands to the Orbit360.
+ */
+public class Orbit360Control {
+    /**
+     * Count of steps in one full horizontal rotation (around the X-axis)
+     */
+    public static final float STEPS_FOR_ONE_ROUND_X = 5111;
+    /**
+     * Count of steps in one full vertical rotation (around the Y-axis)
+     */
+    public static final float STEPS_FOR_ONE_ROUND_Y = 15000;
+    /**
+     * Conversion factor from degrees to steps, for the X-axis.
+     */
+    public static final float DEGREES_TO_STEPS_X = STEPS_FOR_ONE_ROUND_X / 360f;
+    /**
+     * Conversion factor from degrees to steps, for the Y-axis.
+     */
+    public static final float DEGREES_TO_STEPS_Y = STEPS_FOR_ONE_ROUND_Y / 360f;
+    /**
+     * Conversion factors from degrees to steps, for both axis.
+     */
+    public static final Point2f DEGREES_TO_STEPS = new Point2f(DEGREES_TO_STEPS_X, DEGREES_TO_STEPS_Y);
+
+    private final Orbit360Transport transport;
+    private volatile MetricsListener metricsListener = MetricsListener.NONE;
+    private final Command scratchCommand = new Command();
+    private final Command stopCommand = Command.stop();
+    private final CopyOnWriteArrayList<Orbit360Transport.NotificationListener> notificationListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a new instance of this class.
+     * @param transport The link to the Orbit360.
+     */
+    public Orbit360Control(Orbit360Transport transport) {
+        this.transport = transport;
+        transport.setNotificationListener(new Orbit360Transport.NotificationListener() {
+            @Override
+            public void notificationReceived(byte[] frame) {
+                for (Orbit360Transport.NotificationListener listener : notificationListeners) {
+                    listener.notificationReceived(frame);
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets the listener which receives the timing of all following writes, if the transport reports it.
+     * @param listener The listener. MetricsListener.NONE disables reporting.
+     */
+    public void setMetricsListener(MetricsListener listener) {
+        this.metricsListener = listener;
+        if (transport instanceof Orbit360Transport.Instrumented) {
+            ((Orbit360Transport.Instrumented) transport).setMetricsListener(listener);
+        }
+    }
+
+    /**
+     * @return The listener set by setMetricsListener.
+     */
+    public MetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Registers a listener for notifications sent by the Orbit360. Listeners are called on the
+     * thread of the transport and must return quickly. Please refer Orbit360EventDispatcher for
+     * receiving decoded notifications on a separate thread.
+     * @param listener The listener to add.
+     */
+    public void addNotificationListener(Orbit360Transport.NotificationListener listener) {
+        notificationListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener added by addNotificationListener.
+     * @param listener The listener to remove.
+     */
+    public void removeNotificationListener(Orbit360Transport.NotificationListener listener) {
+        notificationListeners.remove(listener);
+    }
+
+    /**
+     * @return The time between two commands the connection delivers, in nanoseconds, or zero if
+     * the transport does not report it.
+     */
+    public long getWriteIntervalNanos() {
+        if (transport instanceof Orbit360Transport.Paced) {
+            return ((Orbit360Transport.Paced) transport).getWriteIntervalNanos();
+        }
+        return 0;
+    }
+
+    /**
+     * Sends a command to the Orbit360. If a previous command did not finish execution, the previous
+     * command will be interrupted.
+     * @param command The command to send.
+     */
+    public synchronized void sendCommand(Command command) {
+        transport.write(command.getFrame(), null);
+    }
+
+    /**
+     * Sends a command to the Orbit360 and reports whether it was written.
+     * Please refer sendCommand(Command) for information about the behavior.
+     * @param command The command to send. It may be modified as soon as this method returns.
+     * @param callback The callback to call when the command was written or dropped. Can be null.
+     */
+    public synchronized void sendCommand(Command command, Orbit360Transport.WriteCallback callback) {
+        transport.write(command.getFrame(), callback);
+    }
+
+    /**
+     * Shorthand to move the Orbit360 by a certain number of steps.
+     * Please refer Command.moveXYSteps for information about the parameters.
+     */
+    public void moveSteps(Point2f steps, Point2f speedInSteps) {
+        sendCommand(Command.moveXYSteps(steps, speedInSteps));
+    }
+
+    /**
+     * Shorthand to move the Orbit360 by a certain number of steps, without allocating a command.
+     * Please refer Command.setMoveXYSteps for information about the parameters.
+     */
+    public synchronized void moveSteps(float stepsX, float stepsY, float speedX, float speedY) {
+        sendCommand(scratchCommand.setMoveXYSteps(stepsX, stepsY, speedX, speedY));
+    }
+
+    /**
+     * Shorthand to move the Orbit360 by a certain number of degrees.
+     * Please refer Command.move for information about the parameters.
+     */
+    public void move(Point2f degrees, Point2f speedInDegrees) {
+        sendCommand(Command.moveXY(degrees, speedInDegrees));
+    }
+
+    /**
+     * Shorthand to move the Orbit360 by a certain number of degrees, without allocating a command.
+     * Please refer Command.setMoveXY for information about the parameters.
+     */
+    public synchronized void move(float degreesX, float degreesY, float speedInDegreesX, float speedInDegreesY) {
+        sendCommand(scratchCommand.setMoveXY(degreesX, degreesY, speedInDegreesX, speedInDegreesY));
+    }
+
+    /**
+     * Shorthand to stop the Orbit360.
+     * Please refer Command.stop for information about the method.
+     */
+    public synchronized void stop() {
+        sendCommand(stopCommand);
+    }
+
+    /**
+     * Stops the Orbit360 as fast as possible. If the transport supports it, the stop command is
+     * written before all commands which are waiting in the transport, and these commands are
+     * discarded. Otherwise, it is queued like any other command.
+     * @param callback The callback to call when the stop command was written or dropped. Can be null.
+     */
+    public synchronized void stopImmediately(Orbit360Transport.WriteCallback callback) {
+        if (transport instanceof Orbit360Transport.Prioritized) {
+            ((Orbit360Transport.Prioritized) transport).writeFirst(stopCommand.getFrame(), callback);
+        } else {
+            transport.write(stopCommand.getFrame(), callback);
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.dscvr.orbit360sdk;
+
+import java.util.Arrays;
+
+/**
+ * A decoded notification of an Orbit360. Instances are immutable.
+ *
+ * Please refer FrameDecoder.decode for creating events from notifications.
+ */
+public final class Orbit360Event {
+    /**
+     * The kinds of notifications.
+     */
+    public enum Type {
+        /**
+         * A button on the remote was pressed. Please refer getButton.
+         */
+        BUTTON_PRESSED,
+        /**
+         * A movement finished. Please refer getStepsX, getStepsY, getSpeedX and getSpeedY.
+         */
+        MOVEMENT_FINISHED,
+        /**
+         * A valid notification with an unknown function code or payload. Please refer getFunction and getPayload.
+         */
+        UNKNOWN
+    }
+
+    /**
+     * The buttons on the remote.
+     */
+    public enum Button {
+        TOP,
+        BOTTOM
+    }
+
+    private final Type type;
+    private final byte function;
+    private final byte[] payload;
+    private final long timestampNanos;
+    private final Button button;
+    private final int stepsX;
+    private final int stepsY;
+    private final int speedX;
+    private final int speedY;
+
+    Orbit360Event(Type type, byte function, byte[] payload, long timestampNanos, Button button,
+                  int stepsX, int stepsY, int speedX, int speedY) {
+        this.type = type;
+        this.function = function;
+        this.payload = payload;
+        this.timestampNanos = timestampNanos;
+        this.button = button;
+        this.stepsX = stepsX;
+        this.stepsY = stepsY;
+        this.speedX = speedX;
+        this.speedY = speedY;
+    }
+
+    /**
+     * @return The kind of this notification.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The function code of the notification frame.
+     */
+    public byte getFunction() {
+        return function;
+    }
+
+    /**
+     * @return A copy of the payload of the notification frame.
+     */
+    public byte[] getPayload() {
+        return Arrays.copyOf(payload, payload.length);
+    }
+
+    /**
+     * @return The time the notification was received, in nanoseconds of the receiver's clock.
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * @return The pressed button, or null if this is no BUTTON_PRESSED event.
+     */
+    public Button getButton() {
+        return button;
+    }
+
+    /**
+     * @return The steps of the finished movement on the X-axis, or zero if the notification does not contain them.
+     */
+    public int getStepsX() {
+        return stepsX;
+    }
+
+    /**
+     * @return The steps of the finished movement on the Y-axis, or zero if the notification does not contain them.
+     */
+    public int getStepsY() {
+        return stepsY;
+    }
+
+    /**
+     * @return The speed of the finished movement on the X-axis, in steps per second, or zero if the
+     * notification does not contain it.
+     */
+    public int getSpeedX() {
+        return speedX;
+    }
+
+    /**
+     * @return The speed of the finished movement on the Y-axis, in steps per second, or zero if the
+     * notification does not contain it.
+     */
+    public int getSpeedY() {
+        return speedY;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case BUTTON_PRESSED:
+                return "Orbit360Event[BUTTON_PRESSED " + button + "]";
+            case MOVEMENT_FINISHED:
+                return "Orbit360Event[MOVEMENT_FINISHED " + stepsX + ", " + stepsY + "]";
+            default:
+                return "Orbit360Event[UNKNOWN function " + function + "]";
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.dscvr.orbit360sdk;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decodes the notifications of an Orbit360 and delivers them as Orbit360Events on its own thread.
+ *
+ * Notifications arrive on a Bluetooth Binder thread, which must not be blocked. This class only
+ * decodes the frame there and hands the event to a bounded, lock-free queue. A dispatcher thread
+ * calls the listeners, so slow listeners delay later events, but never the Bluetooth callbacks.
+ * If the queue is full, new events are dropped and counted.
+ *
+ * Register an instance with Orbit360Control.addNotificationListener, or pass frames to
+ * notificationReceived directly.
+ */
+public class Orbit360EventDispatcher implements Orbit360Transport.NotificationListener {
+    /**
+     * The default count of events which can wait for delivery.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final BoundedQueue<Orbit360Event> queue;
+    private final Clock clock;
+    private final CopyOnWriteArrayList<EventListener> listeners = new CopyOnWriteArrayList<>();
+    private final Thread thread;
+    private volatile boolean waiting = false;
+    private volatile boolean closed = false;
+
+    private final AtomicLong receivedCount = new AtomicLong();
+    private final AtomicLong invalidCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong deliveredCount = new AtomicLong();
+
+    /**
+     * Creates a new instance of this class with the default capacity, and starts its thread.
+     */
+    public Orbit360EventDispatcher() {
+        this(DEFAULT_CAPACITY, Clock.SYSTEM);
+    }
+
+    /**
+     * Creates a new instance of this class and starts its thread.
+     * The instance has to be closed when it is no longer used.
+     * @param capacity The count of events which can wait for delivery. Rounded up to a power of two.
+     * @param clock The clock to timestamp events with.
+     */
+    public Orbit360EventDispatcher(int capacity, Clock clock) {
+        this.queue = new BoundedQueue<>(capacity);
+        this.clock = clock;
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatchLoop();
+            }
+        }, "Orbit360EventDispatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Registers a listener. Listeners are called on the dispatcher thread, in the order of registration.
+     * @param listener The listener to add.
+     */
+    public void addListener(EventListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener added by addListener.
+     * @param listener The listener to remove.
+     */
+    public void removeListener(EventListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Decodes a notification and queues the event. Never blocks.
+     * @param frame The notification, as sent by the Orbit360.
+     */
+    @Override
+    public void notificationReceived(byte[] frame) {
+        receivedCount.incrementAndGet();
+        Orbit360Event event = FrameDecoder.decode(frame, 0, frame.length, clock.nanoTime());
+        if (event == null) {
+            invalidCount.incrementAndGet();
+            return;
+        }
+        dispatch(event);
+    }
+
+    /**
+     * Queues an event for delivery. Never blocks.
+     * @param event The event to deliver.
+     * @return False if the queue was full or the dispatcher is closed, and the event was dropped.
+     */
+    public boolean dispatch(Orbit360Event event) {
+        if (closed || !queue.offer(event)) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        if (waiting) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    /**
+     * @return The count of notifications passed to notificationReceived.
+     */
+    public long getReceivedCount() {
+        return receivedCount.get();
+    }
+
+    /**
+     * @return The count of notifications which were no valid frames, for example because of a wrong checksum.
+     */
+    public long getInvalidCount() {
+        return invalidCount.get();
+    }
+
+    /**
+     * @return The count of events which were dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return The count of events which were delivered to the listeners.
+     */
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    /**
+     * @return The count of events waiting for delivery.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Stops the dispatcher thread. Events which were not delivered yet are discarded.
+     */
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+    }
+
+    private void dispatchLoop() {
+        while (!closed) {
+            Orbit360Event event = queue.poll();
+            if (event == null) {
+                waiting = true;
+                // Check again, an event may have been queued before waiting was visible.
+                event = queue.poll();
+                if (event == null && !closed) {
+                    LockSupport.park(this);
+                }
+                waiting = false;
+                if (event == null) {
+                    continue;
+                }
+            }
+            for (EventListener listener : listeners) {
+                try {
+                    listener.eventReceived(event);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            deliveredCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Interface for listeners of decoded notifications.
+     */
+    public interface EventListener {
+        /**
+         * Called on the dispatcher thread.
+         * @param event The decoded notification.
+         */
+        void eventReceived(Orbit360Event event);
+    }
+}
@@ -0,0 +1,366 @@
+package com.dscvr.orbit360sdk;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A group of Orbit360s which execute the same commands at the same time, for example several bases
+ * in a studio.
+ *
+ * A broadcast encodes the command once and hands it to the transports of all members back-to-back,
+ * so the time between the first and the last send is a few microseconds. The remaining skew between
+ * the members is caused by the links, mostly by the phase of their connection intervals, and is
+ * measured from the write acknowledgements. High priority connections keep it small.
+ *
+ * The control of each member is resolved on every broadcast, so a group of members which reconnect,
+ * for example Orbit360Sessions, sends to their current connections. Members which are not connected
+ * or whose transport rejects the command count as failed, and the command is still sent to all
+ * other members.
+ */
+public class Orbit360Group {
+    private final List<Member> members;
+    private final Clock clock;
+
+    private long broadcastCount;
+    private long lastAckSkewNanos;
+    private long maxAckSkewNanos;
+
+    /**
+     * Creates a new group, which uses the system clock to measure skew.
+     * @param controls The connected Orbit360Control instances of the members.
+     */
+    public Orbit360Group(List<Orbit360Control> controls) {
+        this(controls, Clock.SYSTEM);
+    }
+
+    /**
+     * Creates a new group.
+     * @param controls The connected Orbit360Control instances of the members.
+     * @param clock The clock to measure skew with.
+     */
+    public Orbit360Group(List<Orbit360Control> controls, Clock clock) {
+        this(clock, fixedMembers(controls));
+    }
+
+    private Orbit360Group(Clock clock, List<Member> members) {
+        this.members = Collections.unmodifiableList(members);
+        this.clock = clock;
+    }
+
+    /**
+     * Creates a new group of members whose control can change, which uses the system clock to measure skew.
+     * @param members The members, for example Orbit360Sessions.
+     * @return The group.
+     */
+    public static Orbit360Group ofMembers(Collection<? extends Member> members) {
+        return ofMembers(members, Clock.SYSTEM);
+    }
+
+    /**
+     * Creates a new group of members whose control can change.
+     * @param members The members, for example Orbit360Sessions.
+     * @param clock The clock to measure skew with.
+     * @return The group.
+     */
+    public static Orbit360Group ofMembers(Collection<? extends Member> members, Clock clock) {
+        return new Orbit360Group(clock, new ArrayList<Member>(members));
+    }
+
+    private static List<Member> fixedMembers(List<Orbit360Control> controls) {
+        List<Member> members = new ArrayList<>(controls.size());
+        for (final Orbit360Control control : controls) {
+            members.add(new Member() {
+                @Override
+                public Orbit360Control getControl() {
+                    return control;
+                }
+            });
+        }
+        return members;
+    }
+
+    /**
+     * @return The current controls of the connected members of this group.
+     */
+    public List<Orbit360Control> getControls() {
+        List<Orbit360Control> controls = new ArrayList<>(members.size());
+        for (Member member : members) {
+            Orbit360Control control = member.getControl();
+            if (control != null) {
+                controls.add(control);
+            }
+        }
+        return controls;
+    }
+
+    /**
+     * @return The members of this group.
+     */
+    public List<Member> getMembers() {
+        return members;
+    }
+
+    /**
+     * @return The count of members of this group.
+     */
+    public int size() {
+        return members.size();
+    }
+
+    /**
+     * Sends a command to all members.
+     * @param command The command to send. It may be modified as soon as this method returns.
+     * @param listener The listener which is called when all members acknowledged or dropped the command. Can be null.
+     */
+    public void broadcast(Command command, BroadcastListener listener) {
+        Broadcast broadcast = new Broadcast(members.size(), listener);
+        if (members.isEmpty()) {
+            broadcast.finish();
+            return;
+        }
+        for (int i = 0; i < members.size(); i++) {
+            Orbit360Control control = members.get(i).getControl();
+            long now = clock.nanoTime();
+            synchronized (broadcast) {
+                broadcast.sendTimes[i] = now;
+            }
+            if (control == null) {
+                broadcast.acknowledged(i, false);
+                continue;
+            }
+            try {
+                control.sendCommand(command, broadcast.callback(i));
+            } catch (RuntimeException e) {
+                // The other members still get the command.
+                broadcast.acknowledged(i, false);
+            }
+        }
+    }
+
+    /**
+     * Moves all members.
+     * Please refer Command.setMoveXYSteps for information about the parameters.
+     */
+    public void moveSteps(float stepsX, float stepsY, float speedX, float speedY, BroadcastListener listener) {
+        Command command = new Command();
+        command.setMoveXYSteps(stepsX, stepsY, speedX, speedY);
+        broadcast(command, listener);
+    }
+
+    /**
+     * Moves all members.
+     * Please refer Command.setMoveXY for information about the parameters.
+     */
+    public void move(float degreesX, float degreesY, float speedInDegreesX, float speedInDegreesY, BroadcastListener listener) {
+        Command command = new Command();
+        command.setMoveXY(degreesX, degreesY, speedInDegreesX, speedInDegreesY);
+        broadcast(command, listener);
+    }
+
+    /**
+     * Stops all members.
+     * @param listener The listener which is called when all members acknowledged or dropped the stop-command. Can be null.
+     */
+    public void stop(BroadcastListener listener) {
+        broadcast(Command.stop(), listener);
+    }
+
+    /**
+     * @return The count of finished broadcasts.
+     */
+    public synchronized long getBroadcastCount() {
+        return broadcastCount;
+    }
+
+    /**
+     * @return The acknowledgement skew of the last finished broadcast, in nanoseconds.
+     */
+    public synchronized long getLastAckSkewNanos() {
+        return lastAckSkewNanos;
+    }
+
+    /**
+     * @return The largest acknowledgement skew of all finished broadcasts, in nanoseconds.
+     */
+    public synchronized long getMaxAckSkewNanos() {
+        return maxAckSkewNanos;
+    }
+
+    private synchronized void recordSkew(long ackSkewNanos) {
+        broadcastCount++;
+        lastAckSkewNanos = ackSkewNanos;
+        maxAckSkewNanos = Math.max(maxAckSkewNanos, ackSkewNanos);
+    }
+
+    /**
+     * The measured timing of a finished broadcast. All times are in nanoseconds of the group's clock.
+     */
+    public static final class BroadcastResult {
+        private final long[] sendTimes;
+        private final long[] ackTimes;
+        private final boolean[] success;
+
+        BroadcastResult(long[] sendTimes, long[] ackTimes, boolean[] success) {
+            this.sendTimes = sendTimes;
+            this.ackTimes = ackTimes;
+            this.success = success;
+        }
+
+        /**
+         * @return The count of members the command was sent to.
+         */
+        public int size() {
+            return success.length;
+        }
+
+        /**
+         * @return The time the command was handed to the transport of a member.
+         */
+        public long getSendTime(int member) {
+            return sendTimes[member];
+        }
+
+        /**
+         * @return The time a member acknowledged or dropped the command.
+         */
+        public long getAckTime(int member) {
+            return ackTimes[member];
+        }
+
+        /**
+         * @return True if the command was written to a member.
+         */
+        public boolean isSuccessful(int member) {
+            return success[member];
+        }
+
+        /**
+         * @return The count of members the command was written to.
+         */
+        public int getSuccessfulCount() {
+            int count = 0;
+            for (boolean s : success) {
+                if (s) count++;
+            }
+            return count;
+        }
+
+        /**
+         * @return The time between the first and the last send.
+         */
+        public long getSendSkewNanos() {
+            return spread(sendTimes, null);
+        }
+
+        /**
+         * @return The time between the first and the last acknowledgement of a successful write.
+         */
+        public long getAckSkewNanos() {
+            return spread(ackTimes, success);
+        }
+
+        /**
+         * @return The longest time between the send and the acknowledgement of a successful write.
+         */
+        public long getMaxLatencyNanos() {
+            long max = 0;
+            for (int i = 0; i < success.length; i++) {
+                if (success[i]) max = Math.max(max, ackTimes[i] - sendTimes[i]);
+            }
+            return max;
+        }
+
+        private static long spread(long[] times, boolean[] filter) {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < times.length; i++) {
+                if (filter != null && !filter[i]) continue;
+                min = Math.min(min, times[i]);
+                max = Math.max(max, times[i]);
+            }
+            return min > max ? 0 : max - min;
+        }
+    }
+
+    /**
+     * A member of a group.
+     */
+    public interface Member {
+        /**
+         * @return The current control of the member, or null if it is not connected.
+         */
+        Orbit360Control getControl();
+    }
+
+    /**
+     * Interface for the callback which is called when a broadcast finished.
+     */
+    public interface BroadcastListener {
+        /**
+         * Called on the thread of the last acknowledgement.
+         * @param result The measured timing of the broadcast.
+         * @param sender The group which sent the broadcast.
+         */
+        void broadcastFinished(BroadcastResult result, Orbit360Group sender);
+    }
+
+    /**
+     * Collects the acknowledgements of a single broadcast.
+     */
+    private class Broadcast {
+        final long[] sendTimes;
+        final long[] ackTimes;
+        final boolean[] success;
+        final boolean[] acknowledged;
+        final BroadcastListener listener;
+        int remaining;
+
+        Broadcast(int size, BroadcastListener listener) {
+            this.sendTimes = new long[size];
+            this.ackTimes = new long[size];
+            this.success = new boolean[size];
+            this.acknowledged = new boolean[size];
+            this.listener = listener;
+            this.remaining = size;
+        }
+
+        Orbit360Transport.WriteCallback callback(final int member) {
+            return new Orbit360Transport.WriteCallback() {
+                @Override
+                public void writeFinished(boolean written) {
+                    acknowledged(member, written);
+                }
+            };
+        }
+
+        void acknowledged(int member, boolean written) {
+            long now = clock.nanoTime();
+            synchronized (this) {
+                // A transport may call back before it throws.
+                if (acknowledged[member]) {
+                    return;
+                }
+                acknowledged[member] = true;
+                ackTimes[member] = now;
+                success[member] = written;
+                if (--remaining > 0) {
+                    return;
+                }
+            }
+            finish();
+        }
+
+        void finish() {
+            BroadcastResult result;
+            synchronized (this) {
+                result = new BroadcastResult(sendTimes, ackTimes, success);
+            }
+            recordSkew(result.getAckSkewNanos());
+            if (listener != null) {
+                listener.broadcastFinished(result, Orbit360Group.this);
+            }
+        }
+    }
+}
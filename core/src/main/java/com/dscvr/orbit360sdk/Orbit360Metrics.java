@@ -0,0 +1,246 @@
+package com.dscvr.orbit360sdk;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregates the timing events of the command path into latency histograms and counters.
+ *
+ * Pass an instance to Orbit360Control.setMetricsListener, ScriptRunner.setMetricsListener or
+ * SetpointStreamer.setMetricsListener. Recording is lock-free, so one instance can be shared by
+ * several components and devices. Please refer snapshot for reading the current values.
+ */
+public class Orbit360Metrics implements MetricsListener {
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    private final LatencyHistogram commandLatency = new LatencyHistogram();
+    private final LatencyHistogram movementLatency = new LatencyHistogram();
+    private final LatencyHistogram stopLatency = new LatencyHistogram();
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong acknowledged = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    private final MetricsListener forward;
+
+    /**
+     * Creates a new instance of this class.
+     */
+    public Orbit360Metrics() {
+        this(NONE);
+    }
+
+    /**
+     * Creates a new instance of this class, which also forwards all events to another listener.
+     * @param forward The listener to forward the events to.
+     */
+    public Orbit360Metrics(MetricsListener forward) {
+        this.forward = forward;
+    }
+
+    @Override
+    public void commandEnqueued(long enqueueTimeNanos, int depth) {
+        enqueued.incrementAndGet();
+        queueDepth.set(depth);
+        int currentMax = maxQueueDepth.get();
+        while (depth > currentMax && !maxQueueDepth.compareAndSet(currentMax, depth)) {
+            currentMax = maxQueueDepth.get();
+        }
+        forward.commandEnqueued(enqueueTimeNanos, depth);
+    }
+
+    @Override
+    public void writeIssued(long enqueueTimeNanos, long issueTimeNanos) {
+        queueWait.record(issueTimeNanos - enqueueTimeNanos);
+        forward.writeIssued(enqueueTimeNanos, issueTimeNanos);
+    }
+
+    @Override
+    public void writeAcknowledged(long enqueueTimeNanos, long issueTimeNanos, long ackTimeNanos, boolean success) {
+        if (success) {
+            acknowledged.incrementAndGet();
+            commandLatency.record(ackTimeNanos - enqueueTimeNanos);
+            if (issueTimeNanos >= 0) {
+                writeLatency.record(ackTimeNanos - issueTimeNanos);
+            }
+        } else {
+            dropped.incrementAndGet();
+        }
+        forward.writeAcknowledged(enqueueTimeNanos, issueTimeNanos, ackTimeNanos, success);
+    }
+
+    @Override
+    public void movementCompleted(long sendTimeNanos, long completionTimeNanos) {
+        completed.incrementAndGet();
+        movementLatency.record(completionTimeNanos - sendTimeNanos);
+        forward.movementCompleted(sendTimeNanos, completionTimeNanos);
+    }
+
+    @Override
+    public void commandRetried() {
+        retried.incrementAndGet();
+        forward.commandRetried();
+    }
+
+    @Override
+    public void setpointCoalesced() {
+        coalesced.incrementAndGet();
+        forward.setpointCoalesced();
+    }
+
+    @Override
+    public void stopCompleted(long requestTimeNanos, long writtenTimeNanos) {
+        stopLatency.record(writtenTimeNanos - requestTimeNanos);
+        forward.stopCompleted(requestTimeNanos, writtenTimeNanos);
+    }
+
+    /**
+     * Copies the current values. Values recorded while copying may or may not be included.
+     * @return The copy.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * An immutable copy of the metrics.
+     */
+    public static final class Snapshot {
+        private final LatencyHistogram.Snapshot queueWait;
+        private final LatencyHistogram.Snapshot writeLatency;
+        private final LatencyHistogram.Snapshot commandLatency;
+        private final LatencyHistogram.Snapshot movementLatency;
+        private final LatencyHistogram.Snapshot stopLatency;
+        private final long enqueuedCount;
+        private final long acknowledgedCount;
+        private final long droppedCount;
+        private final long retriedCount;
+        private final long coalescedCount;
+        private final long completedCount;
+        private final int queueDepth;
+        private final int maxQueueDepth;
+
+        Snapshot(Orbit360Metrics metrics) {
+            this.queueWait = metrics.queueWait.snapshot();
+            this.writeLatency = metrics.writeLatency.snapshot();
+            this.commandLatency = metrics.commandLatency.snapshot();
+            this.movementLatency = metrics.movementLatency.snapshot();
+            this.stopLatency = metrics.stopLatency.snapshot();
+            this.enqueuedCount = metrics.enqueued.get();
+            this.acknowledgedCount = metrics.acknowledged.get();
+            this.droppedCount = metrics.dropped.get();
+            this.retriedCount = metrics.retried.get();
+            this.coalescedCount = metrics.coalesced.get();
+            this.completedCount = metrics.completed.get();
+            this.queueDepth = metrics.queueDepth.get();
+            this.maxQueueDepth = metrics.maxQueueDepth.get();
+        }
+
+        /**
+         * @return The time commands waited in the transport before their write was started.
+         */
+        public LatencyHistogram.Snapshot getQueueWait() {
+            return queueWait;
+        }
+
+        /**
+         * @return The time from starting a write until it was acknowledged.
+         */
+        public LatencyHistogram.Snapshot getWriteLatency() {
+            return writeLatency;
+        }
+
+        /**
+         * @return The time from handing a command to the transport until its write was acknowledged.
+         */
+        public LatencyHistogram.Snapshot getCommandLatency() {
+            return commandLatency;
+        }
+
+        /**
+         * @return The time from sending a move until the Orbit360 notified its completion.
+         */
+        public LatencyHistogram.Snapshot getMovementLatency() {
+            return movementLatency;
+        }
+
+        /**
+         * @return The time from requesting a stop until the stop command was written. The count of
+         * the histogram is the count of confirmed stops.
+         */
+        public LatencyHistogram.Snapshot getStopLatency() {
+            return stopLatency;
+        }
+
+        /**
+         * @return The count of commands handed to the transport.
+         */
+        public long getEnqueuedCount() {
+            return enqueuedCount;
+        }
+
+        /**
+         * @return The count of acknowledged writes.
+         */
+        public long getAcknowledgedCount() {
+            return acknowledgedCount;
+        }
+
+        /**
+         * @return The count of commands which were not written.
+         */
+        public long getDroppedCount() {
+            return droppedCount;
+        }
+
+        /**
+         * @return The count of commands which were sent again.
+         */
+        public long getRetriedCount() {
+            return retriedCount;
+        }
+
+        /**
+         * @return The count of discarded setpoints.
+         */
+        public long getCoalescedCount() {
+            return coalescedCount;
+        }
+
+        /**
+         * @return The count of completion notifications.
+         */
+        public long getCompletedCount() {
+            return completedCount;
+        }
+
+        /**
+         * @return The queue depth of the transport at the last enqueue.
+         */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        /**
+         * @return The largest queue depth of the transport at an enqueue.
+         */
+        public int getMaxQueueDepth() {
+            return maxQueueDepth;
+        }
+
+        @Override
+        public String toString() {
+            return "enqueued=" + enqueuedCount + " acknowledged=" + acknowledgedCount + " dropped=" + droppedCount +
+                    " retried=" + retriedCount + " coalesced=" + coalescedCount + " completed=" + completedCount +
+                    " queueDepth=" + queueDepth + " maxQueueDepth=" + maxQueueDepth +
+                    "\n  queueWait: " + queueWait + "\n  writeLatency: " + writeLatency +
+                    "\n  commandLatency: " + commandLatency + "\n  movementLatency: " + movementLatency +
+                    "\n  stopLatency: " + stopLatency;
+        }
+    }
+}
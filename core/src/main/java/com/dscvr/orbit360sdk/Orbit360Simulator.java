@@ -0,0 +1,358 @@
+package com.dscvr.orbit360sdk;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * An in-process Orbit360, which can be used as transport to run and measure the SDK without a device.
+ *
+ * The simulator decodes the frames written to it and moves two virtual motors with the encoded
+ * speeds, exactly like the firmware: a new move interrupts the running one. The motors follow a
+ * MotorModel, so they can accelerate like real motors. Write latency, jitter,
+ * dropped writes and notifications can be configured. All timing is based on a VirtualClock, and all
+ * randomness on a seeded generator, so runs are deterministic and much faster than real-time.
+ */
+public class Orbit360Simulator implements Orbit360Transport, Orbit360Transport.Instrumented,
+        Orbit360Transport.Prioritized {
+    private final VirtualClock clock;
+    private final Random random;
+
+    private long writeLatencyNanos = 7500000;
+    private long jitterNanos = 0;
+    private double dropProbability = 0;
+    private NotificationListener notificationListener;
+    private long lastArrivalTime;
+    private boolean movementFinishedNotifications = true;
+    private long movementGeneration;
+    private final ArrayDeque<PendingWrite> writesInFlight = new ArrayDeque<>();
+    private volatile MetricsListener metricsListener = MetricsListener.NONE;
+    private MotorModel motorModel = MotorModel.INSTANT;
+
+    private final Axis x = new Axis();
+    private final Axis y = new Axis();
+
+    private long receivedFrames;
+    private long droppedFrames;
+    private long invalidFrames;
+
+    /**
+     * State of a single virtual motor.
+     */
+    private static class Axis {
+        final MotorModel.Profile profile = new MotorModel.Profile();
+        double startPosition;
+        long startTime;
+
+        double position(long time) {
+            return startPosition + profile.travelled(time - startTime);
+        }
+
+        long endTime() {
+            double duration = profile.getDurationSeconds();
+            // A move without speed never ends, like in the firmware.
+            if (profile.getMovement() == 0 || Double.isInfinite(duration)) {
+                return startTime;
+            }
+            return startTime + (long) Math.ceil(duration * 1e9);
+        }
+
+        /**
+         * Starts a move from the current position. The interrupted move ends immediately, and the new
+         * one starts from rest.
+         */
+        void start(long time) {
+            this.startPosition = position(time);
+            this.startTime = time;
+        }
+    }
+
+    /**
+     * Creates a new simulator.
+     * @param clock The clock to run on.
+     * @param seed The seed for jitter and dropped writes.
+     */
+    public Orbit360Simulator(VirtualClock clock, long seed) {
+        this.clock = clock;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @param nanos The time between a write and its arrival at the motors, in nanoseconds.
+     */
+    public synchronized void setWriteLatencyNanos(long nanos) {
+        this.writeLatencyNanos = nanos;
+    }
+
+    /**
+     * @param model The model the motors follow. The default is MotorModel.INSTANT.
+     */
+    public synchronized void setMotorModel(MotorModel model) {
+        this.motorModel = model;
+    }
+
+    /**
+     * @param nanos The maximum additional, uniformly distributed latency of a write, in nanoseconds.
+     */
+    public synchronized void setJitterNanos(long nanos) {
+        this.jitterNanos = nanos;
+    }
+
+    /**
+     * @param probability The probability that a write fails and does not reach the motors.
+     */
+    public synchronized void setDropProbability(double probability) {
+        this.dropProbability = probability;
+    }
+
+    /**
+     * @param enabled True if the simulator notifies finished movements, like the firmware. Enabled by default.
+     */
+    public synchronized void setMovementFinishedNotifications(boolean enabled) {
+        this.movementFinishedNotifications = enabled;
+    }
+
+    @Override
+    public synchronized void setNotificationListener(NotificationListener listener) {
+        this.notificationListener = listener;
+    }
+
+    /**
+     * Reports every write as issued when it is written and as acknowledged when it arrives.
+     */
+    @Override
+    public void setMetricsListener(MetricsListener listener) {
+        this.metricsListener = listener;
+    }
+
+    @Override
+    public void write(byte[] frame, WriteCallback callback) {
+        write(frame, callback, false);
+    }
+
+    /**
+     * Writes the frame ahead of all writes which did not arrive yet. These writes are dropped
+     * immediately and reported as failed.
+     */
+    @Override
+    public void writeFirst(byte[] frame, WriteCallback callback) {
+        write(frame, callback, true);
+    }
+
+    private void write(byte[] frame, WriteCallback callback, boolean first) {
+        PendingWrite write = new PendingWrite(frame.clone(), callback, clock.nanoTime(), metricsListener);
+        List<PendingWrite> preempted = null;
+        long arrival;
+        int depth;
+        synchronized (this) {
+            if (first && !writesInFlight.isEmpty()) {
+                preempted = new ArrayList<>(writesInFlight);
+                writesInFlight.clear();
+                lastArrivalTime = 0;
+            }
+            writesInFlight.add(write);
+            depth = writesInFlight.size();
+            write.dropped = dropProbability > 0 && random.nextDouble() < dropProbability;
+            long jitter = jitterNanos > 0 ? (long) (random.nextDouble() * jitterNanos) : 0;
+            // Writes on a connection are not reordered.
+            arrival = Math.max(clock.nanoTime() + writeLatencyNanos + jitter, lastArrivalTime);
+            lastArrivalTime = arrival;
+        }
+        if (preempted != null) {
+            for (PendingWrite discarded : preempted) {
+                discarded.discard();
+            }
+        }
+        if (write.metrics != MetricsListener.NONE) {
+            write.metrics.commandEnqueued(write.enqueueTime, depth);
+            write.metrics.writeIssued(write.enqueueTime, write.enqueueTime);
+        }
+        clock.scheduleAt(arrival, write);
+    }
+
+    /**
+     * A write which did not arrive at the motors yet.
+     */
+    private class PendingWrite implements Runnable {
+        final byte[] frame;
+        final WriteCallback callback;
+        final long enqueueTime;
+        final MetricsListener metrics;
+        boolean dropped;
+        private boolean discarded;
+
+        PendingWrite(byte[] frame, WriteCallback callback, long enqueueTime, MetricsListener metrics) {
+            this.frame = frame;
+            this.callback = callback;
+            this.enqueueTime = enqueueTime;
+            this.metrics = metrics;
+        }
+
+        void discard() {
+            synchronized (Orbit360Simulator.this) {
+                discarded = true;
+                droppedFrames++;
+            }
+            finished(false);
+        }
+
+        @Override
+        public void run() {
+            synchronized (Orbit360Simulator.this) {
+                if (discarded) {
+                    return;
+                }
+                writesInFlight.remove(this);
+                if (dropped) {
+                    droppedFrames++;
+                }
+            }
+            if (!dropped) {
+                receive(frame);
+            }
+            finished(!dropped);
+        }
+
+        private void finished(boolean success) {
+            if (metrics != MetricsListener.NONE) {
+                metrics.writeAcknowledged(enqueueTime, enqueueTime, clock.nanoTime(), success);
+            }
+            if (callback != null) {
+                callback.writeFinished(success);
+            }
+        }
+    }
+
+    /**
+     * Sends a notification to the listener of this transport, as if the Orbit360 sent it.
+     * @param frame The notification.
+     * @param delayNanos The time until the notification is delivered, in nanoseconds.
+     */
+    public void injectNotification(final byte[] frame, long delayNanos) {
+        final byte[] copy = frame.clone();
+        clock.schedule(delayNanos, new Runnable() {
+            @Override
+            public void run() {
+                notifyListener(copy);
+            }
+        });
+    }
+
+    private void notifyListener(byte[] frame) {
+        NotificationListener listener;
+        synchronized (this) {
+            listener = notificationListener;
+        }
+        if (listener != null) {
+            listener.notificationReceived(frame);
+        }
+    }
+
+    /**
+     * Notifies the end of a move. The notification carries the steps and speeds of the move, so it
+     * can be told apart from the notifications of other moves.
+     */
+    private void scheduleMovementFinished(byte[] move) {
+        final long generation = ++movementGeneration;
+        if (!movementFinishedNotifications) {
+            return;
+        }
+        int length = CommandEncoder.MOVE_XY_PAYLOAD_LENGTH - 1;
+        final byte[] frame = new byte[CommandEncoder.HEADER_LENGTH + length + 1];
+        System.arraycopy(move, 0, frame, 0, CommandEncoder.HEADER_LENGTH + length);
+        frame[1] = (byte) length;
+        frame[2] = FrameDecoder.FUNCTION_MOVEMENT_FINISHED;
+        frame[frame.length - 1] = CommandEncoder.checksum(frame, 0, frame.length - 1);
+        clock.scheduleAt(getMotionEndTime(), new Runnable() {
+            @Override
+            public void run() {
+                synchronized (Orbit360Simulator.this) {
+                    // The movement was interrupted by a newer one.
+                    if (generation != movementGeneration) {
+                        return;
+                    }
+                }
+                notifyListener(frame);
+            }
+        });
+    }
+
+    private synchronized void receive(byte[] frame) {
+        receivedFrames++;
+        if (!FrameDecoder.isValid(frame, 0, frame.length)) {
+            invalidFrames++;
+            return;
+        }
+        long now = clock.nanoTime();
+        switch (FrameDecoder.function(frame, 0)) {
+            case CommandEncoder.FUNCTION_MOVE_XY:
+                x.start(now);
+                y.start(now);
+                motorModel.profileX(FrameDecoder.moveStepsX(frame, 0), FrameDecoder.moveSpeedX(frame, 0), x.profile);
+                motorModel.profileY(FrameDecoder.moveStepsY(frame, 0), FrameDecoder.moveSpeedY(frame, 0), y.profile);
+                scheduleMovementFinished(frame);
+                break;
+            case CommandEncoder.FUNCTION_STOP:
+                x.start(now);
+                y.start(now);
+                motorModel.profileX(0, 0, x.profile);
+                motorModel.profileY(0, 0, y.profile);
+                movementGeneration++;
+                break;
+            default:
+                invalidFrames++;
+                break;
+        }
+    }
+
+    /**
+     * @return The current position of the motors, in steps, relative to the start of the simulation.
+     */
+    public synchronized Point2f getPositionSteps() {
+        long now = clock.nanoTime();
+        return new Point2f((float) x.position(now), (float) y.position(now));
+    }
+
+    /**
+     * @return The current position of the motors, in degrees, relative to the start of the simulation.
+     */
+    public Point2f getPosition() {
+        return getPositionSteps().div(Orbit360Control.DEGREES_TO_STEPS);
+    }
+
+    /**
+     * @return True if any motor is moving.
+     */
+    public synchronized boolean isMoving() {
+        return getMotionEndTime() > clock.nanoTime();
+    }
+
+    /**
+     * @return The time at which both motors will have finished the current movement, in nanoseconds.
+     */
+    public synchronized long getMotionEndTime() {
+        return Math.max(x.endTime(), y.endTime());
+    }
+
+    /**
+     * @return The count of frames which reached the motors.
+     */
+    public synchronized long getReceivedFrameCount() {
+        return receivedFrames;
+    }
+
+    /**
+     * @return The count of writes which were dropped.
+     */
+    public synchronized long getDroppedFrameCount() {
+        return droppedFrames;
+    }
+
+    /**
+     * @return The count of received frames which were malformed or had an unknown function.
+     */
+    public synchronized long getInvalidFrameCount() {
+        return invalidFrames;
+    }
+}
@@ -0,0 +1,80 @@
+package com.dscvr.orbit360sdk;
+
+/**
+ * Interface for the link which carries encoded command frames to an Orbit360.
+ *
+ * On Android, the link is a Bluetooth GATT characteristic. Other implementations can be used to
+ * run the SDK without a device.
+ */
+public interface Orbit360Transport {
+    /**
+     * Queues a single frame for writing to the Orbit360. Frames are written in the order of the calls.
+     * @param frame The frame, as encoded by CommandEncoder. The array may be reused by the caller
+     *              as soon as this method returns.
+     * @param callback The callback to call when the write finished or failed. Can be null.
+     */
+    void write(byte[] frame, WriteCallback callback);
+
+    /**
+     * Sets the listener which receives the notifications of the Orbit360, for example remote button
+     * presses. Replaces the previous listener.
+     * @param listener The listener. Can be null.
+     */
+    void setNotificationListener(NotificationListener listener);
+
+    /**
+     * Interface for the callback which is called when a write finished.
+     */
+    interface WriteCallback {
+        /**
+         * @param success True if the frame was written to the Orbit360, false if it was dropped.
+         */
+        void writeFinished(boolean success);
+    }
+
+    /**
+     * Interface for transports which report the timing of their writes.
+     */
+    interface Instrumented {
+        /**
+         * Sets the listener which receives the enqueue, issue and acknowledgement times of all
+         * following writes.
+         * @param listener The listener. MetricsListener.NONE disables reporting.
+         */
+        void setMetricsListener(MetricsListener listener);
+    }
+
+    /**
+     * Interface for transports which can send a frame ahead of the frames queued before it.
+     */
+    interface Prioritized {
+        /**
+         * Writes a frame before all queued frames whose write was not started yet. These frames are
+         * discarded and their callbacks report failure, so none of them is written after this frame.
+         * Please refer write for information about the parameters.
+         */
+        void writeFirst(byte[] frame, WriteCallback callback);
+    }
+
+    /**
+     * Interface for transports whose link delivers frames in fixed intervals, for example the
+     * connection interval of a Bluetooth connection.
+     */
+    interface Paced {
+        /**
+         * @return The time between two frames the link delivers, in nanoseconds. Frames which are
+         * written faster wait in a queue.
+         */
+        long getWriteIntervalNanos();
+    }
+
+    /**
+     * Interface for notifications sent by the Orbit360.
+     */
+    interface NotificationListener {
+        /**
+         * @param frame The notification, as sent by the Orbit360. Only valid during the call.
+         */
+        void notificationReceived(byte[] frame);
+    }
+}
@@ -0,0 +1,225 @@
+package com.dscvr.orbit360sdk;
+
+/**
+ * Fixed-capacity history of the movements of an Orbit360, for looking up the position of the arm at
+ * a past time. Camera frames are usually delivered tens of milliseconds after their exposure, so
+ * asking for the current position when a frame arrives gives the wrong pose.
+ *
+ * The history stores one segment (start time, start position, and the profile of the movement per
+ * axis) per published movement in preallocated arrays. Queries use a binary search over the start
+ * times and evaluate the profiles of the segment, which include the acceleration of the motors if a
+ * MotorModel was recorded with the segment. Neither recording nor queries allocate. When the capacity
+ * is exceeded, the oldest segments are overwritten.
+ *
+ * Timestamps are in nanoseconds of the Clock of the recording PositionEstimator, which is
+ * System.nanoTime() by default. Camera2 sensor timestamps share this base if their timestamp source
+ * is SENSOR_INFO_TIMESTAMP_SOURCE_UNKNOWN; REALTIME timestamps have to be converted first.
+ *
+ * All positions are in steps. Please refer Vec2.stepsToDegrees for converting them to degrees.
+ */
+public class PoseHistory {
+    /**
+     * The default capacity, in segments.
+     */
+    public static final int DEFAULT_CAPACITY = 512;
+
+    private final int capacity;
+    private final long[] startTimes;
+    private final double[] startX;
+    private final double[] startY;
+    private final MotorModel.Profile[] profilesX;
+    private final MotorModel.Profile[] profilesY;
+    private long recorded = 0;
+
+    /**
+     * Creates a new, empty history.
+     * @param capacity The maximum count of segments to keep.
+     */
+    public PoseHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.startTimes = new long[capacity];
+        this.startX = new double[capacity];
+        this.startY = new double[capacity];
+        this.profilesX = new MotorModel.Profile[capacity];
+        this.profilesY = new MotorModel.Profile[capacity];
+        for (int i = 0; i < capacity; i++) {
+            profilesX[i] = new MotorModel.Profile();
+            profilesY[i] = new MotorModel.Profile();
+        }
+    }
+
+    /**
+     * @return The maximum count of segments kept by this history.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The count of segments recorded since the creation of this history, including overwritten ones.
+     */
+    public synchronized long getRecordedCount() {
+        return recorded;
+    }
+
+    /**
+     * @return The start time of the oldest segment which is still kept, or Long.MAX_VALUE if the history is empty.
+     */
+    public synchronized long getOldestTime() {
+        return recorded == 0 ? Long.MAX_VALUE : startTimes[slot(oldest())];
+    }
+
+    /**
+     * Records a segment of motors which reach their speed immediately.
+     * Please refer record(long, double, double, double, double, double, double, MotorModel) for information about the parameters.
+     */
+    public void record(long startTime, double x, double y, double movementX, double movementY, double speedX, double speedY) {
+        record(startTime, x, y, movementX, movementY, speedX, speedY, MotorModel.INSTANT);
+    }
+
+    /**
+     * Records a segment. Segments have to be recorded in the order of their start times; an earlier
+     * start time is moved to the start time of the previous segment.
+     * @param startTime The time the segment starts, in nanoseconds.
+     * @param x The position on the X-axis at the start time, in steps.
+     * @param y The position on the Y-axis at the start time, in steps.
+     * @param movementX The steps moved on the X-axis.
+     * @param movementY The steps moved on the Y-axis.
+     * @param speedX The speed on the X-axis, in steps per second.
+     * @param speedY The speed on the Y-axis, in steps per second.
+     * @param model The model of the motors, which moved the segment.
+     */
+    public synchronized void record(long startTime, double x, double y, double movementX, double movementY, double speedX, double speedY,
+                                    MotorModel model) {
+        if (recorded > 0) {
+            startTime = Math.max(startTime, startTimes[slot(recorded - 1)]);
+        }
+        int i = slot(recorded);
+        startTimes[i] = startTime;
+        startX[i] = x;
+        startY[i] = y;
+        model.profileX(movementX, speedX, profilesX[i]);
+        model.profileY(movementY, speedY, profilesY[i]);
+        recorded++;
+    }
+
+    /**
+     * Discards all segments.
+     */
+    public synchronized void clear() {
+        recorded = 0;
+    }
+
+    /**
+     * Writes the position of the arm at a given time to a vector.
+     *
+     * Times after the newest segment are extrapolated from it. Times before the oldest kept segment
+     * can not be answered; the start position of the oldest segment is written instead.
+     * @param timestampNanos The time, in nanoseconds.
+     * @param target The vector to write the position in steps to.
+     * @return True if the time is covered by the history, false if it is too old or the history is empty.
+     */
+    public synchronized boolean poseAt(long timestampNanos, Vec2 target) {
+        if (recorded == 0) {
+            target.set(0, 0);
+            return false;
+        }
+        long k = find(timestampNanos, oldest());
+        if (k < 0) {
+            int i = slot(oldest());
+            target.set(startX[i], startY[i]);
+            return false;
+        }
+        int i = slot(k);
+        target.set(x(i, timestampNanos), y(i, timestampNanos));
+        return true;
+    }
+
+    /**
+     * Looks up the positions of the arm for a batch of times, for example the timestamps of buffered
+     * camera frames. The lookup is fastest if the times are ascending.
+     * Please refer poseAt for the handling of times outside of the history.
+     * @param timestamps The times, in nanoseconds.
+     * @param offset The index of the first time to look up.
+     * @param count The count of times to look up.
+     * @param positions The array to write the positions in steps to, as pairs of X and Y.
+     * @param positionsOffset The index in positions to write the first X-position to.
+     * @return The count of times which were covered by the history.
+     */
+    public synchronized int posesAt(long[] timestamps, int offset, int count, double[] positions, int positionsOffset) {
+        if (offset < 0 || count < 0 || offset + count > timestamps.length ||
+                positionsOffset < 0 || positionsOffset + 2 * count > positions.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        int covered = 0;
+        long oldest = oldest();
+        long from = oldest;
+        long previousTime = Long.MIN_VALUE;
+        for (int n = 0; n < count; n++) {
+            long time = timestamps[offset + n];
+            int p = positionsOffset + 2 * n;
+            if (recorded == 0) {
+                positions[p] = 0;
+                positions[p + 1] = 0;
+                continue;
+            }
+            if (time < previousTime) {
+                from = oldest;
+            }
+            previousTime = time;
+            long k = find(time, from);
+            if (k < 0) {
+                int i = slot(oldest);
+                positions[p] = startX[i];
+                positions[p + 1] = startY[i];
+                continue;
+            }
+            from = k;
+            int i = slot(k);
+            positions[p] = x(i, time);
+            positions[p + 1] = y(i, time);
+            covered++;
+        }
+        return covered;
+    }
+
+    private long oldest() {
+        return Math.max(0, recorded - capacity);
+    }
+
+    private int slot(long k) {
+        return (int) (k % capacity);
+    }
+
+    /**
+     * @return The newest segment, starting from the given one, which starts at or before the given
+     * time, or -1 if the time is before the given segment.
+     */
+    private long find(long time, long from) {
+        if (startTimes[slot(from)] > time) {
+            return -1;
+        }
+        long low = from;
+        long high = recorded - 1;
+        while (low < high) {
+            long mid = (low + high + 1) >>> 1;
+            if (startTimes[slot(mid)] <= time) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private double x(int i, long time) {
+        return startX[i] + profilesX[i].travelled(time - startTimes[i]);
+    }
+
+    private double y(int i, long time) {
+        return startY[i] + profilesY[i].travelled(time - startTimes[i]);
+    }
+}
@@ -0,0 +1,206 @@
+package com.dscvr.orbit360sdk;
+
+/**
+ * Estimates the position of the Orbit360's arm from the movements sent to it.
+ *
+ * Every movement is published as an immutable segment (start time, start position, and the profile
+ * of the movement per axis) through a single volatile reference. Readers therefore always see a consistent
+ * segment, never a mix of an old and a new movement, and neither lock, retry nor allocate. Any number
+ * of threads can read, for example to tag camera frames, while one thread publishes movements.
+ *
+ * All times are taken from the estimator's Clock, which is monotonic. Every published movement is
+ * also recorded to a PoseHistory, which answers queries for past times.
+ *
+ * Positions during a movement follow the MotorModel of the estimator, which includes the
+ * acceleration and deceleration of the motors. An interrupted movement is assumed to end at the
+ * position at the time of the interruption, and the next movement to start from rest.
+ */
+public class PositionEstimator {
+    private final Clock clock;
+    private final PoseHistory history;
+    private volatile Segment segment;
+    private volatile MotorModel motorModel = MotorModel.INSTANT;
+
+    /**
+     * A single movement, starting at a known time and position.
+     */
+    private static final class Segment {
+        final long startTime;
+        final double startX;
+        final double startY;
+        final double movementX;
+        final double movementY;
+        final double speedX;
+        final double speedY;
+        final MotorModel model;
+        // Computed once and never modified, so they can be read without synchronization.
+        private final MotorModel.Profile profileX;
+        private final MotorModel.Profile profileY;
+
+        Segment(long startTime, double startX, double startY, double movementX, double movementY, double speedX, double speedY,
+                MotorModel model) {
+            this.startTime = startTime;
+            this.startX = startX;
+            this.startY = startY;
+            this.movementX = movementX;
+            this.movementY = movementY;
+            this.speedX = Math.abs(speedX);
+            this.speedY = Math.abs(speedY);
+            this.model = model;
+            this.profileX = model.profileX(movementX, speedX, new MotorModel.Profile());
+            this.profileY = model.profileY(movementY, speedY, new MotorModel.Profile());
+        }
+
+        double x(long time) {
+            return startX + profileX.travelled(time - startTime);
+        }
+
+        double y(long time) {
+            return startY + profileY.travelled(time - startTime);
+        }
+    }
+
+    /**
+     * Creates a new estimator at position zero, with a history of the default capacity.
+     * @param clock The clock to take times from.
+     */
+    public PositionEstimator(Clock clock) {
+        this(clock, new PoseHistory(PoseHistory.DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Creates a new estimator at position zero.
+     * @param clock The clock to take times from.
+     * @param history The history to record the movements to.
+     */
+    public PositionEstimator(Clock clock, PoseHistory history) {
+        this.clock = clock;
+        this.history = history;
+        publish(new Segment(clock.nanoTime(), 0, 0, 0, 0, 0, 0, MotorModel.INSTANT));
+    }
+
+    /**
+     * @return The clock of this estimator.
+     */
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * @return The history the movements are recorded to.
+     */
+    public PoseHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Sets the model of the motors, which is used for the following movements.
+     * @param model The model. The default is MotorModel.INSTANT.
+     */
+    public void setMotorModel(MotorModel model) {
+        if (model == null) {
+            throw new IllegalArgumentException("model must not be null");
+        }
+        this.motorModel = model;
+    }
+
+    /**
+     * @return The model of the motors.
+     */
+    public MotorModel getMotorModel() {
+        return motorModel;
+    }
+
+    /**
+     * Publishes a movement, which starts at the target of the previous movement.
+     * @param startTime The time the movement started, in nanoseconds of the estimator's clock.
+     * @param movementX The steps to move on the X-axis.
+     * @param movementY The steps to move on the Y-axis.
+     * @param speedX The speed on the X-axis, in steps per second.
+     * @param speedY The speed on the Y-axis, in steps per second.
+     */
+    public void beginMovement(long startTime, double movementX, double movementY, double speedX, double speedY) {
+        Segment previous = segment;
+        publish(new Segment(startTime, previous.startX + previous.movementX, previous.startY + previous.movementY,
+                movementX, movementY, speedX, speedY, motorModel));
+    }
+
+    /**
+     * Publishes that the current movement reached its target.
+     */
+    public void finishMovement() {
+        Segment previous = segment;
+        publish(new Segment(clock.nanoTime(), previous.startX + previous.movementX, previous.startY + previous.movementY, 0, 0, 0, 0,
+                MotorModel.INSTANT));
+    }
+
+    /**
+     * Publishes that the current movement was interrupted, for example by a stop-command.
+     * @param time The time of the interruption, in nanoseconds of the estimator's clock.
+     */
+    public void interruptMovement(long time) {
+        Segment previous = segment;
+        publish(new Segment(time, previous.x(time), previous.y(time), 0, 0, 0, 0, MotorModel.INSTANT));
+    }
+
+    /**
+     * Publishes a known position, without movement.
+     * @param x The position on the X-axis, in steps.
+     * @param y The position on the Y-axis, in steps.
+     */
+    public void reset(double x, double y) {
+        publish(new Segment(clock.nanoTime(), x, y, 0, 0, 0, 0, MotorModel.INSTANT));
+    }
+
+    private void publish(Segment next) {
+        segment = next;
+        history.record(next.startTime, next.startX, next.startY, next.movementX, next.movementY, next.speedX, next.speedY, next.model);
+    }
+
+    /**
+     * Writes the estimated position at the current time, in steps, to a vector.
+     * @param target The vector to write to.
+     * @return The target vector.
+     */
+    public Vec2 getPositionSteps(Vec2 target) {
+        return getPositionSteps(clock.nanoTime(), target);
+    }
+
+    /**
+     * Writes the estimated position at the given time, in steps, to a vector. Only times during or
+     * after the current movement are estimated correctly.
+     * @param time The time, in nanoseconds of the estimator's clock.
+     * @param target The vector to write to.
+     * @return The target vector.
+     */
+    public Vec2 getPositionSteps(long time, Vec2 target) {
+        Segment current = segment;
+        return target.set(current.x(time), current.y(time));
+    }
+
+    /**
+     * Writes the estimated position at the current time, in degrees, to a vector.
+     * @param target The vector to write to.
+     * @return The target vector.
+     */
+    public Vec2 getPosition(Vec2 target) {
+        return getPositionSteps(target).stepsToDegrees();
+    }
+
+    /**
+     * @return The target of the current movement, in steps.
+     */
+    public Vec2 getTargetSteps(Vec2 target) {
+        Segment current = segment;
+        return target.set(current.startX + current.movementX, current.startY + current.movementY);
+    }
+
+    /**
+     * @return True if the current movement has not reached its target at the current time.
+     */
+    public boolean isMoving() {
+        Segment current = segment;
+        long time = clock.nanoTime();
+        return current.x(time) != current.startX + current.movementX || current.y(time) != current.startY + current.movementY;
+    }
+}
@@ -0,0 +1,1268 @@
+package com.dscvr.orbit360sdk;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class allows asynchronous execution of multiple commands, in order. It also provides basic
+ * estimation of the position of the Orbit360's arm.
+ *
+ * If you use this class, you should not call methods of the passed Orbit360Control instance directly.
+ * Also, you should not use two ScriptRunner instances on the same Orbit360Control instance simultaneously.
+ *
+ * The position estimation is always relative to the initial position, when the ScriptRunner instance
+ * was created. Durations and positions follow the MotorModel of the runner. The default model
+ * assumes motors which reach their speed immediately; a calibrated model (see MotorModelCalibration)
+ * includes their acceleration, which makes the position at the start and the end of each move exact.
+ *
+ * Every command write is confirmed by the transport. If a write fails, for example because the
+ * connection was lost, the runner assumes the command was not executed, corrects the estimated
+ * position and waits until a new Orbit360Control is bound with setControl. Then the script resumes
+ * with the failed command. A write without a result is never taken as confirmed: the runner waits for
+ * it until the write timeout, which is longer than the timeout of the GATT operations, and then
+ * treats it as failed.
+ *
+ * Scripts do not block a thread of their own. Their commands are dispatched by a DeadlineScheduler,
+ * which is shared by all runners on Clock.SYSTEM. In the TIMED execution mode, each command is due
+ * at an absolute deadline: the time the previous command was sent plus its predicted duration, so
+ * the time the dispatcher needs between two commands does not add up over the script. A command which
+ * is sent late delays the following deadlines. Sending the next command on the original schedule
+ * would cut the late command short on the Orbit360, and the estimated position would drift away from
+ * the arm. Call close when the runner is no longer used.
+ *
+ * All handlers and listeners of a runner, and its CommandSources, are called on a thread of its
+ * DeadlineScheduler. On Clock.SYSTEM, these threads are shared by all runners, so the callbacks must
+ * return quickly and must not block. Hand longer work, for example I/O or UI updates, to another thread.
+ *
+ * Scripts are queued and run one after another. INTERACTIVE scripts run before BACKGROUND scripts
+ * and interrupt a running background command. abort stops the Orbit360 with a stop command which
+ * is sent before all queued writes, and only returns to the queue once the stop was written.
+ */
+public class ScriptRunner {
+
+    private static final int DEFAULT_LOOKAHEAD = 1;
+
+    private static final long DEFAULT_RECONNECT_TIMEOUT_NANOS = 300000000000L;
+
+    private static final long DEFAULT_WRITE_TIMEOUT_NANOS = 10000000000L;
+
+    private final DeadlineScheduler scheduler;
+    private final boolean ownsScheduler;
+    private final Object scriptLock = new Object();
+    private final DeadlineScheduler.Task task;
+    // Guarded by scriptLock. The head of each queue is the running or preempted script.
+    private final ArrayDeque<QueuedScript> interactiveScripts = new ArrayDeque<>();
+    private final ArrayDeque<QueuedScript> backgroundScripts = new ArrayDeque<>();
+    private final List<StopHandler> stopHandlers = new ArrayList<>();
+    private boolean stopRequested = false;
+    private long stopRequestTime;
+    // Written by the dispatcher while holding scriptLock.
+    private QueuedScript activeScript;
+    private volatile boolean closed = false;
+
+    private volatile Orbit360Control control;
+    private final Object controlLock = new Object();
+    private final Orbit360Transport.NotificationListener completionListener;
+    private final Clock clock;
+    private final PositionEstimator estimator;
+
+    private volatile MotorModel motorModel = MotorModel.INSTANT;
+    private volatile ExecutionMode executionMode = ExecutionMode.TIMED;
+    private volatile float completionTimeoutFactor = 1.5f;
+    private volatile long completionTimeoutMarginNanos = 500000000L;
+    private volatile CommandTimingListener timingListener;
+    private volatile ConnectionRecoveryListener recoveryListener;
+    private volatile MetricsListener metricsListener = MetricsListener.NONE;
+    private volatile long reconnectTimeoutNanos = DEFAULT_RECONNECT_TIMEOUT_NANOS;
+    private volatile long writeTimeoutNanos = DEFAULT_WRITE_TIMEOUT_NANOS;
+    private final Object completionLock = new Object();
+    // Guarded by completionLock. The move the dispatcher waits for, and its matching notifications.
+    private long completionCount;
+    private long completionTime;
+    private int expectedStepsX;
+    private int expectedStepsY;
+    private int expectedSpeedX;
+    private int expectedSpeedY;
+
+    /**
+     * Modes to decide when a command finished and the next command is sent.
+     */
+    public enum ExecutionMode {
+        /**
+         * Waits for the time the command is predicted to take by the MotorModel.
+         */
+        TIMED,
+        /**
+         * Waits until the Orbit360 notifies the finished movement. The predicted time, extended by the
+         * completion timeout, is only used as fallback. Notifications which carry the steps and speeds
+         * of another move, for example the late notification of a command whose timeout expired, are ignored.
+         */
+        COMPLETION
+    }
+
+    /**
+     * Creates a new instance of this class.
+     * @param control The connected Orbit360Control instance.
+     */
+    public ScriptRunner(Orbit360Control control) {
+        this(control, Clock.SYSTEM);
+    }
+
+    /**
+     * Creates a new instance of this class, which uses a custom clock for timing and position estimation.
+     * Runners on Clock.SYSTEM share a scheduler, runners on other clocks get a scheduler of their own.
+     * @param control The connected Orbit360Control instance.
+     * @param clock The clock to use, for example a VirtualClock driving an Orbit360Simulator.
+     */
+    public ScriptRunner(Orbit360Control control, Clock clock) {
+        this(control, clock == Clock.SYSTEM ? DeadlineScheduler.getShared() : new DeadlineScheduler(clock, 1),
+                clock != Clock.SYSTEM);
+    }
+
+    /**
+     * Creates a new instance of this class, which dispatches its commands on the given scheduler.
+     * Several runners can share a scheduler, for example runners of a simulation on the same VirtualClock.
+     * @param control The connected Orbit360Control instance.
+     * @param scheduler The scheduler. Its clock is used for timing and position estimation. It is
+     *                  not closed by close.
+     */
+    public ScriptRunner(Orbit360Control control, DeadlineScheduler scheduler) {
+        this(control, scheduler, false);
+    }
+
+    private ScriptRunner(Orbit360Control control, DeadlineScheduler scheduler, boolean ownsScheduler) {
+        this.control = control;
+        this.clock = scheduler.getClock();
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+        this.estimator = new PositionEstimator(clock);
+        this.task = scheduler.newTask(new Dispatcher());
+        this.completionListener = new Orbit360Transport.NotificationListener() {
+            @Override
+            public void notificationReceived(byte[] frame) {
+                if (!FrameDecoder.isMovementFinished(frame)) {
+                    return;
+                }
+                long now = clock.nanoTime();
+                boolean hasMove = FrameDecoder.payloadLength(frame, 0) >= CommandEncoder.MOVE_XY_PAYLOAD_LENGTH - 1;
+                synchronized (completionLock) {
+                    // The late notification of a command whose completion timeout expired must not
+                    // finish the current command.
+                    if (hasMove && (FrameDecoder.moveStepsX(frame, 0) != expectedStepsX
+                            || FrameDecoder.moveStepsY(frame, 0) != expectedStepsY
+                            || FrameDecoder.moveSpeedX(frame, 0) != expectedSpeedX
+                            || FrameDecoder.moveSpeedY(frame, 0) != expectedSpeedY)) {
+                        return;
+                    }
+                    completionCount++;
+                    completionTime = now;
+                }
+                task.wake();
+            }
+        };
+        control.addNotificationListener(completionListener);
+    }
+
+    /**
+     * Binds the runner to a new Orbit360Control instance, for example after the connection to the
+     * Orbit360 was re-established. A script waiting for a new connection resumes with the first
+     * command which was not confirmed.
+     * @param newControl The connected Orbit360Control instance.
+     */
+    public void setControl(Orbit360Control newControl) {
+        synchronized (controlLock) {
+            if (newControl == control) {
+                return;
+            }
+            control.removeNotificationListener(completionListener);
+            newControl.addNotificationListener(completionListener);
+            if (metricsListener != MetricsListener.NONE) {
+                newControl.setMetricsListener(metricsListener);
+            }
+            control = newControl;
+        }
+        task.wake();
+    }
+
+    /**
+     * @return The Orbit360Control instance the runner is bound to.
+     */
+    public Orbit360Control getControl() {
+        return control;
+    }
+
+    /**
+     * Sets how long a script waits for a new connection after a command could not be written.
+     * If no new Orbit360Control is bound in time, all scripts end without calling their handlers.
+     * @param timeoutMillis The timeout in milliseconds. The default is five minutes.
+     */
+    public void setReconnectTimeout(long timeoutMillis) {
+        this.reconnectTimeoutNanos = timeoutMillis * 1000000L;
+    }
+
+    /**
+     * Sets how long the runner waits for the result of a command write. A write which is neither
+     * confirmed nor failed in time is treated as failed, and the script waits for a new connection.
+     * @param timeoutMillis The timeout in milliseconds. The default is ten seconds, twice the time
+     *                      after which a GATT write fails.
+     */
+    public void setWriteTimeout(long timeoutMillis) {
+        this.writeTimeoutNanos = timeoutMillis * 1000000L;
+    }
+
+    /**
+     * Sets the listener which receives the timing of the commands of this runner: completions,
+     * retries, and, through the bound Orbit360Control, all writes. The listener is also applied to
+     * controls bound later with setControl.
+     * @param listener The listener. MetricsListener.NONE disables reporting.
+     */
+    public void setMetricsListener(MetricsListener listener) {
+        synchronized (controlLock) {
+            this.metricsListener = listener;
+            control.setMetricsListener(listener);
+        }
+    }
+
+    /**
+     * Sets the listener which is notified when a script lost and regained the connection.
+     * @param listener The listener. Can be null.
+     */
+    public void setConnectionRecoveryListener(ConnectionRecoveryListener listener) {
+        this.recoveryListener = listener;
+    }
+
+    /**
+     * Sets how the runner decides when a command finished. Takes effect with the next command.
+     * @param mode The execution mode. The default is TIMED.
+     */
+    public void setExecutionMode(ExecutionMode mode) {
+        this.executionMode = mode;
+    }
+
+    /**
+     * @return The current execution mode.
+     */
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * Sets the timeout for the COMPLETION execution mode. If no notification arrives in time, the next
+     * command is sent anyway.
+     * @param factor The factor to multiply the predicted time of a command with. The default is 1.5.
+     * @param marginMillis The time to add to the scaled predicted time, in milliseconds. The default is 500.
+     */
+    public void setCompletionTimeout(float factor, long marginMillis) {
+        this.completionTimeoutFactor = factor;
+        this.completionTimeoutMarginNanos = marginMillis * 1000000L;
+    }
+
+    /**
+     * Sets the model of the motors, which predicts the duration of the commands and the position
+     * during them. Takes effect with the next command which is requested from a script.
+     * @param model The model. The default is MotorModel.INSTANT.
+     */
+    public void setMotorModel(MotorModel model) {
+        estimator.setMotorModel(model);
+        this.motorModel = model;
+    }
+
+    /**
+     * @return The model of the motors.
+     */
+    public MotorModel getMotorModel() {
+        return motorModel;
+    }
+
+    /**
+     * Sets the listener which receives the measured and the predicted duration of every executed command.
+     * @param listener The listener. Can be null.
+     */
+    public void setCommandTimingListener(CommandTimingListener listener) {
+        this.timingListener = listener;
+    }
+
+    /**
+     * Executes a list of commands, in order, with BACKGROUND priority. If other scripts are running
+     * or queued, the script is queued behind them.
+     * @param commands The commands to execute.
+     * @param handler The callback to call when execution is finished.
+     * @return The queued script, which can be used to cancel it.
+     */
+    public QueuedScript runScript(List<Command> commands, ExecutionFinishedHandler handler) {
+        return runScript(commands, Priority.BACKGROUND, handler);
+    }
+
+    /**
+     * Executes a list of commands, in order. Please refer runScript(CommandSource, int, Priority,
+     * SourceFinishedHandler) for information about the priority.
+     * @param commands The commands to execute.
+     * @param priority The priority of the script.
+     * @param handler The callback to call when execution is finished. Can be null.
+     * @return The queued script, which can be used to cancel it.
+     */
+    public QueuedScript runScript(final List<Command> commands, Priority priority, final ExecutionFinishedHandler handler) {
+        return submit(new ListSource(commands), DEFAULT_LOOKAHEAD, priority, handler == null ? null : new Runnable() {
+            @Override
+            public void run() {
+                handler.commandExecutionFinished(commands, ScriptRunner.this);
+            }
+        });
+    }
+
+    /**
+     * Executes a script compiled by MotionPlanner, using the predicted durations of the script, with
+     * BACKGROUND priority. If other scripts are running or queued, the script is queued behind them.
+     * @param script The script to execute.
+     * @param handler The callback to call when execution is finished. Can be null.
+     * @return The queued script, which can be used to cancel it.
+     */
+    public QueuedScript runScript(final CompiledScript script, final CompiledScriptFinishedHandler handler) {
+        return submit(script.source(), DEFAULT_LOOKAHEAD, Priority.BACKGROUND, handler == null ? null : new Runnable() {
+            @Override
+            public void run() {
+                handler.compiledScriptFinished(script, ScriptRunner.this);
+            }
+        });
+    }
+
+    /**
+     * Executes the commands of a source until it is exhausted, with the default lookahead of one command.
+     * Please refer runScript(CommandSource, int, SourceFinishedHandler) for information about the parameters.
+     */
+    public QueuedScript runScript(CommandSource source, SourceFinishedHandler handler) {
+        return runScript(source, DEFAULT_LOOKAHEAD, handler);
+    }
+
+    /**
+     * Executes the commands of a source until it is exhausted, with BACKGROUND priority.
+     * Please refer runScript(CommandSource, int, Priority, SourceFinishedHandler) for information
+     * about the parameters.
+     */
+    public QueuedScript runScript(CommandSource source, int lookahead, SourceFinishedHandler handler) {
+        return runScript(source, lookahead, Priority.BACKGROUND, handler);
+    }
+
+    /**
+     * Executes the commands of a source until it is exhausted. The source is only asked for the next
+     * commands when they are needed, so memory usage does not depend on the length of the script.
+     *
+     * Scripts of the same priority run one after another, in the order they were queued. An
+     * INTERACTIVE script preempts a running BACKGROUND script immediately. The background script
+     * resumes with the rest of its interrupted command when no interactive script is queued anymore.
+     * @param source The source to execute.
+     * @param lookahead The maximum count of commands requested from the source ahead of the command
+     *                  being executed. With a lookahead of zero, the next command is requested only
+     *                  after the current command finished.
+     * @param priority The priority of the script.
+     * @param handler The callback to call when execution is finished. Can be null.
+     * @return The queued script, which can be used to cancel it.
+     */
+    public QueuedScript runScript(final CommandSource source, int lookahead, Priority priority, final SourceFinishedHandler handler) {
+        if (lookahead < 0) {
+            throw new IllegalArgumentException("lookahead must not be negative");
+        }
+        return submit(source, lookahead, priority, handler == null ? null : new Runnable() {
+            @Override
+            public void run() {
+                handler.sourceExecutionFinished(source, ScriptRunner.this);
+            }
+        });
+    }
+
+    private QueuedScript submit(CommandSource source, int lookahead, Priority priority, Runnable onFinished) {
+        QueuedScript script = new QueuedScript(source, lookahead, priority, onFinished);
+        synchronized (scriptLock) {
+            if (closed) {
+                throw new IllegalStateException("the runner is closed");
+            }
+            queueOf(priority).add(script);
+        }
+        task.wake();
+        return script;
+    }
+
+    private ArrayDeque<QueuedScript> queueOf(Priority priority) {
+        return priority == Priority.INTERACTIVE ? interactiveScripts : backgroundScripts;
+    }
+
+    /**
+     * @return The count of running and queued scripts.
+     */
+    public int getQueuedScriptCount() {
+        synchronized (scriptLock) {
+            return interactiveScripts.size() + backgroundScripts.size();
+        }
+    }
+
+    /**
+     * @return The estimated position of the arm in steps.
+     */
+    public Point2f getPositionSteps() {
+        return getPositionSteps(new Vec2()).toPoint2f();
+    }
+
+    /**
+     * @return The estimated position of the arm in degrees.
+     */
+    public Point2f getPosition() {
+        return getPosition(new Vec2()).toPoint2f();
+    }
+
+    /**
+     * Writes the estimated position of the arm in steps to a vector, without allocating.
+     * @param target The vector to write to.
+     * @return The target vector.
+     */
+    public Vec2 getPositionSteps(Vec2 target) {
+        return estimator.getPositionSteps(target);
+    }
+
+    /**
+     * Writes the estimated position of the arm in degrees to a vector, without allocating.
+     * @param target The vector to write to.
+     * @return The target vector.
+     */
+    public Vec2 getPosition(Vec2 target) {
+        return estimator.getPosition(target);
+    }
+
+    /**
+     * @return The estimator which holds the position of this runner. It can be read from any thread.
+     */
+    public PositionEstimator getPositionEstimator() {
+        return estimator;
+    }
+
+    /**
+     * @return The history of the movements of this runner, for looking up the position of the arm at
+     * a past time, for example the exposure time of a camera frame.
+     */
+    public PoseHistory getPoseHistory() {
+        return estimator.getHistory();
+    }
+
+    /**
+     * Cancels the running and all queued scripts and stops the Orbit360.
+     * Please refer abort(StopHandler) for information about the behavior.
+     */
+    public void abort() {
+        abort(null);
+    }
+
+    /**
+     * Cancels the running and all queued scripts and stops the Orbit360. The stop command is sent
+     * before all commands which are still waiting in the transport. If it can not be written, it is
+     * sent again once a new Orbit360Control is bound. The handlers of the cancelled scripts are not
+     * called. The estimated position will still be consistent.
+     * @param handler The callback to call when the stop command was written, or could not be
+     *                written until the reconnect timeout expired. Can be null.
+     */
+    public void abort(StopHandler handler) {
+        synchronized (scriptLock) {
+            if (closed) {
+                return;
+            }
+            cancelAll();
+            requestStop(handler);
+        }
+        task.wake();
+    }
+
+    /**
+     * Cancels all scripts and unregisters the runner from its Orbit360Control. If a script was
+     * running, a stop command is sent, without waiting for its confirmation. If the runner created
+     * its own scheduler, the scheduler is closed. The runner can not be used afterwards.
+     */
+    public void close() {
+        boolean wasRunning;
+        synchronized (scriptLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            wasRunning = activeScript != null;
+            cancelAll();
+        }
+        task.cancel();
+        synchronized (controlLock) {
+            if (wasRunning) {
+                try {
+                    control.stopImmediately(null);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            control.removeNotificationListener(completionListener);
+        }
+        if (ownsScheduler) {
+            scheduler.close();
+        }
+    }
+
+    /**
+     * @return The scheduler which dispatches the commands of this runner.
+     */
+    public DeadlineScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Must be called while holding scriptLock.
+     */
+    private void cancelAll() {
+        for (ArrayDeque<QueuedScript> queue : Arrays.asList(interactiveScripts, backgroundScripts)) {
+            for (QueuedScript script : queue) {
+                script.cancelled = true;
+                script.done = true;
+            }
+            queue.clear();
+        }
+    }
+
+    /**
+     * Must be called while holding scriptLock.
+     */
+    private void requestStop(StopHandler handler) {
+        if (!stopRequested) {
+            stopRequested = true;
+            stopRequestTime = clock.nanoTime();
+        }
+        if (handler != null) {
+            stopHandlers.add(handler);
+        }
+    }
+
+    /**
+     * Priorities of scripts.
+     */
+    public enum Priority {
+        /**
+         * For commands of the user, for example from a button. Preempts running BACKGROUND scripts.
+         */
+        INTERACTIVE,
+        /**
+         * For long-running scripts, for example a panorama. The default.
+         */
+        BACKGROUND
+    }
+
+    /**
+     * A script which was passed to runScript. It is queued until the scripts before it finished.
+     */
+    public final class QueuedScript {
+        private final CommandSource source;
+        private final Runnable onFinished;
+        private final Priority priority;
+        private final int lookahead;
+        private final Command[] ring;
+        private final long[] durations;
+        private int head = 0;
+        private int count = 0;
+        private boolean exhausted = false;
+        // The rest of a command which was interrupted by an INTERACTIVE script.
+        private final Command remainder = new Command();
+        private long remainderDuration;
+        private boolean hasRemainder = false;
+        // Guarded by scriptLock.
+        private boolean cancelled = false;
+        private volatile boolean done = false;
+
+        private QueuedScript(CommandSource source, int lookahead, Priority priority, Runnable onFinished) {
+            this.source = source;
+            this.lookahead = lookahead;
+            this.priority = priority;
+            this.onFinished = onFinished;
+            this.ring = new Command[lookahead + 1];
+            this.durations = new long[lookahead + 1];
+            for (int i = 0; i < ring.length; i++) {
+                ring[i] = new Command();
+            }
+        }
+
+        /**
+         * @return The priority of the script.
+         */
+        public Priority getPriority() {
+            return priority;
+        }
+
+        /**
+         * @return True if the script finished, failed or was cancelled, and its handler returned.
+         */
+        public boolean isDone() {
+            return done;
+        }
+
+        /**
+         * @return True if the script was cancelled, by cancel, abort or close.
+         */
+        public boolean isCancelled() {
+            synchronized (scriptLock) {
+                return cancelled;
+            }
+        }
+
+        /**
+         * Cancels the script, without calling its handler. If the script is queued or was preempted,
+         * it is removed from the queue. If it is running, the Orbit360 is stopped like with abort,
+         * and the next queued script starts after the stop was written.
+         */
+        public void cancel() {
+            synchronized (scriptLock) {
+                if (done || cancelled) {
+                    return;
+                }
+                cancelled = true;
+                if (this != activeScript) {
+                    queueOf(priority).remove(this);
+                    done = true;
+                    return;
+                }
+                requestStop(null);
+            }
+            task.wake();
+        }
+
+        /**
+         * Requests commands from the source until the given count of commands is buffered.
+         */
+        private void topUp(int target) {
+            while (count < target && !exhausted) {
+                int slot = (head + count) % ring.length;
+                if (!source.next(ring[slot], ScriptRunner.this)) {
+                    exhausted = true;
+                    return;
+                }
+                MotorModel model = motorModel;
+                if (source instanceof CommandSource.Timed) {
+                    // Timed sources predict nominal durations; the model adds the time the motors
+                    // need to accelerate and decelerate.
+                    durations[slot] = ((CommandSource.Timed) source).getPredictedDurationNanos()
+                            + model.durationNanos(ring[slot]) - nominalDurationNanos(ring[slot]);
+                } else {
+                    durations[slot] = model.durationNanos(ring[slot]);
+                }
+                count++;
+            }
+        }
+
+        /**
+         * Requests commands from the source until lookahead commands are buffered behind the
+         * command returned by command.
+         */
+        private void fillLookahead() {
+            // The buffer holds the current command until it was written, unless it is a remainder.
+            topUp(hasRemainder ? lookahead : lookahead + 1);
+        }
+
+        /**
+         * @return False if the source is exhausted.
+         */
+        private boolean hasCommand() {
+            if (hasRemainder) {
+                return true;
+            }
+            if (count == 0) {
+                topUp(1);
+            }
+            return count > 0;
+        }
+
+        private Command command() {
+            return hasRemainder ? remainder : ring[head];
+        }
+
+        private long duration() {
+            return hasRemainder ? remainderDuration : durations[head];
+        }
+
+        /**
+         * Removes the command returned by command, after it was written.
+         */
+        private void advance() {
+            if (hasRemainder) {
+                hasRemainder = false;
+            } else {
+                head = (head + 1) % ring.length;
+                count--;
+            }
+        }
+
+        private void setRemainder(float stepsX, float stepsY, float speedX, float speedY, long duration) {
+            remainder.setMoveXYSteps(stepsX, stepsY, speedX, speedY);
+            // The motors start the rest of the command from rest, which can take longer.
+            remainderDuration = Math.max(duration, motorModel.durationNanos(remainder));
+            hasRemainder = true;
+        }
+
+        /**
+         * Ends the script. The handler is only called if the source was exhausted.
+         */
+        private void finish(boolean exhaustedSource) {
+            try {
+                if (exhaustedSource && onFinished != null) {
+                    onFinished.run();
+                }
+            } finally {
+                done = true;
+            }
+        }
+    }
+
+    /**
+     * Interface for the callback which is called when the stop command of abort was written.
+     * It is called on a scheduler thread and must not block.
+     */
+    public interface StopHandler {
+        /**
+         * @param confirmed True if the stop command was written, false if it could not be written
+         *                  until the reconnect timeout expired.
+         * @param latencyNanos The time from the call of abort until the stop command was written,
+         *                     or until the runner gave up, in nanoseconds.
+         * @param sender The script runner which invoked the callback.
+         */
+        void stopFinished(boolean confirmed, long latencyNanos, ScriptRunner sender);
+    }
+
+    /**
+     * Interface for the callback which is called upon finished execution. It is called on a
+     * scheduler thread and must not block.
+     */
+    public interface ExecutionFinishedHandler {
+        /**
+         * @param commands The list of command which was executed.
+         * @param sender The script runner which invoked the callback.
+         */
+        void commandExecutionFinished(List<Command> commands, ScriptRunner sender);
+    }
+
+    /**
+     * Interface for the callback which is called upon finished execution of a compiled script.
+     * It is called on a scheduler thread and must not block.
+     */
+    public interface CompiledScriptFinishedHandler {
+        /**
+         * @param script The script which was executed.
+         * @param sender The script runner which invoked the callback.
+         */
+        void compiledScriptFinished(CompiledScript script, ScriptRunner sender);
+    }
+
+    /**
+     * Interface for the callback which is called upon finished execution of a command source.
+     * It is called on a scheduler thread and must not block.
+     */
+    public interface SourceFinishedHandler {
+        /**
+         * @param source The source which was executed.
+         * @param sender The script runner which invoked the callback.
+         */
+        void sourceExecutionFinished(CommandSource source, ScriptRunner sender);
+    }
+
+    /**
+     * Interface for the callback which is called whenever a command of a script finished. It is
+     * called on a scheduler thread, between two commands, so a slow listener delays the next command.
+     */
+    public interface CommandTimingListener {
+        /**
+         * @param command The finished command. Only valid during the call.
+         * @param predictedNanos The time the command was predicted to take, by the MotorModel of the
+         *                       runner or by the source, in nanoseconds.
+         * @param measuredNanos The time between sending the command and the start of the next one, in nanoseconds.
+         * @param completed True if the Orbit360 notified the finished movement, false if the runner
+         *                  waited for the predicted time or the completion timeout.
+         */
+        void commandFinished(Command command, long predictedNanos, long measuredNanos, boolean completed);
+    }
+
+    /**
+     * Interface for the callbacks which are called when a script lost and regained the connection.
+     * They are called on a scheduler thread and must not block.
+     */
+    public interface ConnectionRecoveryListener {
+        /**
+         * Called when a command could not be written. The script waits for a new Orbit360Control.
+         * @param sender The script runner which invoked the callback.
+         */
+        void connectionLost(ScriptRunner sender);
+
+        /**
+         * Called when the first command after a new Orbit360Control was bound was confirmed.
+         * @param outageNanos The time from the failed write until the new control was bound, in nanoseconds.
+         * @param timeToRecoverNanos The time from the failed write until the script was resumed, in nanoseconds.
+         * @param sender The script runner which invoked the callback.
+         */
+        void connectionRecovered(long outageNanos, long timeToRecoverNanos, ScriptRunner sender);
+    }
+
+    /**
+     * @return The time the command needs at its nominal speed, in nanoseconds.
+     */
+    static long nominalDurationNanos(Command command) {
+        float timeNeededX = (command.getStepsX() != 0f ? (Math.abs(command.getStepsX()) * 1000f / command.getSpeedX()) : 0f);
+        float timeNeededY = (command.getStepsY() != 0f ? (Math.abs(command.getStepsY()) * 1000f / command.getSpeedY()) : 0f);
+        return (long) (Math.max(timeNeededX, timeNeededY) * 1e6);
+    }
+
+    /**
+     * Executes the commands of the queued scripts, one after another. The dispatcher does not block:
+     * it is run by the scheduler whenever the deadline of its current state expires or an event
+     * arrives, and advances as far as possible. A requested stop is handled before anything else.
+     */
+    private class Dispatcher implements Runnable {
+        private static final int SEND = 0;
+        private static final int AWAIT_WRITE = 1;
+        private static final int AWAIT_CONTROL = 2;
+        private static final int AWAIT_FINISH = 3;
+        private static final int AWAIT_STOP = 4;
+
+        private int state = SEND;
+        private long stateDeadline;
+        private boolean started = false;
+        private long due;
+        private Command current;
+        private long predicted;
+        private long timeout;
+        private ExecutionMode mode;
+        private long completionsBefore;
+        private Orbit360Control currentControl;
+        private long currentStartTime;
+        private WriteConfirmation confirmation;
+        private long outageStart = -1;
+        private long outageEnd = -1;
+
+        private final List<StopHandler> pendingStopHandlers = new ArrayList<>();
+        private long pendingStopRequestTime;
+        private Orbit360Control stopControl;
+        private long stopSendTime;
+        private WriteConfirmation stopConfirmation;
+        private final Vec2 position = new Vec2();
+        private final Vec2 target = new Vec2();
+
+        @Override
+        public void run() {
+            try {
+                step();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                // Only the script which failed ends, the queued scripts still run.
+                QueuedScript script = activeScript;
+                if (script != null) {
+                    remove(script);
+                    script.finish(false);
+                }
+                started = false;
+                state = SEND;
+                task.wake();
+            }
+        }
+
+        private void step() {
+            while (!closed) {
+                long now = clock.nanoTime();
+                if (takeStopRequest(now)) {
+                    continue;
+                }
+                switch (state) {
+                    case SEND:
+                        QueuedScript script = nextScript();
+                        if (script == null) {
+                            started = false;
+                            return;
+                        }
+                        if (started && due > now) {
+                            task.scheduleAt(due);
+                            return;
+                        }
+                        send(script);
+                        break;
+                    case AWAIT_WRITE:
+                        int result = confirmation.getState();
+                        if (result == WriteConfirmation.PENDING && now < stateDeadline) {
+                            task.scheduleAt(stateDeadline);
+                            return;
+                        }
+                        // Without a result until the timeout, the command may not have reached the
+                        // Orbit360, so the script resumes with it once a new control is bound.
+                        if (result == WriteConfirmation.WRITTEN) {
+                            writeConfirmed(now);
+                        } else {
+                            writeFailed(now);
+                        }
+                        break;
+                    case AWAIT_CONTROL:
+                        if (control != currentControl) {
+                            outageEnd = now;
+                            metricsListener.commandRetried();
+                            due = now;
+                            state = SEND;
+                        } else if (now < stateDeadline) {
+                            task.scheduleAt(stateDeadline);
+                            return;
+                        } else {
+                            giveUp();
+                        }
+                        break;
+                    case AWAIT_FINISH:
+                        if (activeScript.priority == Priority.BACKGROUND && hasInteractiveScript()) {
+                            preempt(now);
+                            break;
+                        }
+                        boolean completed = false;
+                        long finishTime = now;
+                        if (mode == ExecutionMode.COMPLETION) {
+                            synchronized (completionLock) {
+                                // The Orbit360 can not finish a move before it received it, so
+                                // earlier notifications belong to a previous, identical move.
+                                completed = completionCount != completionsBefore
+                                        && completionTime >= confirmation.finishTime;
+                                if (completed) {
+                                    finishTime = completionTime;
+                                }
+                            }
+                            if (!completed && now < stateDeadline) {
+                                task.scheduleAt(stateDeadline);
+                                return;
+                            }
+                            MetricsListener metrics = metricsListener;
+                            if (completed && metrics != MetricsListener.NONE) {
+                                metrics.movementCompleted(currentStartTime, finishTime);
+                            }
+                            due = now;
+                        } else {
+                            if (now < stateDeadline) {
+                                task.scheduleAt(stateDeadline);
+                                return;
+                            }
+                            due = stateDeadline;
+                        }
+                        CommandTimingListener listener = timingListener;
+                        if (listener != null) {
+                            listener.commandFinished(current, predicted, finishTime - currentStartTime, completed);
+                        }
+                        estimator.finishMovement();
+                        state = SEND;
+                        break;
+                    case AWAIT_STOP:
+                        if (!awaitStop(now)) {
+                            return;
+                        }
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown state " + state);
+                }
+            }
+        }
+
+        /**
+         * @return The script to send the next command of, or null if no script is queued. Scripts
+         * whose source is exhausted are finished on the way.
+         */
+        private QueuedScript nextScript() {
+            while (true) {
+                QueuedScript script;
+                synchronized (scriptLock) {
+                    script = interactiveScripts.peek();
+                    if (script == null) {
+                        script = backgroundScripts.peek();
+                    }
+                    if (script == null) {
+                        activeScript = null;
+                        return null;
+                    }
+                }
+                // The source is called without holding the lock.
+                boolean hasCommand = script.hasCommand();
+                synchronized (scriptLock) {
+                    if (script.cancelled) {
+                        // Cancelled while the source was called.
+                        queueOf(script.priority).remove(script);
+                        script.done = true;
+                        continue;
+                    }
+                    if (hasCommand) {
+                        if (script != activeScript) {
+                            // A new script starts its own schedule.
+                            activeScript = script;
+                            started = false;
+                        }
+                        return script;
+                    }
+                }
+                remove(script);
+                script.finish(true);
+            }
+        }
+
+        private void send(QueuedScript script) {
+            current = script.command();
+            predicted = script.duration();
+            mode = executionMode;
+            synchronized (completionLock) {
+                completionsBefore = completionCount;
+                expectedStepsX = (int) current.getStepsX();
+                expectedStepsY = (int) current.getStepsY();
+                expectedSpeedX = (int) current.getSpeedX() & 0xFFFF;
+                expectedSpeedY = (int) current.getSpeedY() & 0xFFFF;
+            }
+            currentControl = control;
+            currentStartTime = clock.nanoTime();
+            // A late command moves the schedule. Keeping the deadline of its successor would cut it short.
+            if (!started || currentStartTime > due) {
+                due = currentStartTime;
+                started = true;
+            }
+            estimator.beginMovement(currentStartTime, current.getStepsX(), current.getStepsY(), current.getSpeedX(), current.getSpeedY());
+            confirmation = reuse(confirmation);
+            try {
+                currentControl.sendCommand(current, confirmation);
+            } catch (RuntimeException e) {
+                confirmation.writeFinished(false);
+            }
+            // Generate the next commands while the Orbit360 moves.
+            script.fillLookahead();
+            timeout = (long) (predicted * completionTimeoutFactor) + completionTimeoutMarginNanos;
+            state = AWAIT_WRITE;
+            stateDeadline = currentStartTime + writeTimeoutNanos;
+        }
+
+        /**
+         * @return The given confirmation reset for the next write, or a new one if the given one is
+         * still waiting for the result of its write, which may arrive after the next write was sent.
+         */
+        private WriteConfirmation reuse(WriteConfirmation previous) {
+            if (previous != null && previous.reset()) {
+                return previous;
+            }
+            return new WriteConfirmation();
+        }
+
+        private void writeFailed(long now) {
+            // The command did not reach the Orbit360, so the arm did not move.
+            estimator.interruptMovement(currentStartTime);
+            if (outageStart < 0) {
+                outageStart = now;
+                ConnectionRecoveryListener listener = recoveryListener;
+                if (listener != null) {
+                    listener.connectionLost(ScriptRunner.this);
+                }
+            }
+            state = AWAIT_CONTROL;
+            stateDeadline = now + reconnectTimeoutNanos;
+        }
+
+        private void writeConfirmed(long now) {
+            if (outageStart >= 0) {
+                ConnectionRecoveryListener listener = recoveryListener;
+                if (listener != null) {
+                    listener.connectionRecovered(outageEnd - outageStart, now - outageStart, ScriptRunner.this);
+                }
+                outageStart = -1;
+            }
+            activeScript.advance();
+            state = AWAIT_FINISH;
+            stateDeadline = mode == ExecutionMode.COMPLETION ? currentStartTime + timeout : due + predicted;
+        }
+
+        /**
+         * Interrupts the running command of a BACKGROUND script. The script keeps the rest of the
+         * command, which is sent when the script resumes. The INTERACTIVE command is sent right
+         * away and replaces the interrupted one on the Orbit360.
+         */
+        private void preempt(long now) {
+            QueuedScript script = activeScript;
+            estimator.getPositionSteps(now, position);
+            estimator.getTargetSteps(target);
+            long remaining = predicted - (now - currentStartTime);
+            float stepsX = (float) (target.x - position.x);
+            float stepsY = (float) (target.y - position.y);
+            if (remaining > 0 && (Math.abs(stepsX) >= 1 || Math.abs(stepsY) >= 1)) {
+                script.setRemainder(stepsX, stepsY, current.getSpeedX(), current.getSpeedY(), remaining);
+            }
+            estimator.interruptMovement(now);
+            state = SEND;
+        }
+
+        /**
+         * Sends a requested stop, or adds the request to the stop which is already being written.
+         * @return True if the state changed.
+         */
+        private boolean takeStopRequest(long now) {
+            long requestTime;
+            synchronized (scriptLock) {
+                if (!stopRequested) {
+                    return false;
+                }
+                stopRequested = false;
+                requestTime = stopRequestTime;
+                pendingStopHandlers.addAll(stopHandlers);
+                stopHandlers.clear();
+                if (activeScript != null && activeScript.cancelled) {
+                    queueOf(activeScript.priority).remove(activeScript);
+                    activeScript.done = true;
+                    activeScript = null;
+                }
+            }
+            if (state == AWAIT_STOP) {
+                // The stop being written covers the new request as well.
+                return false;
+            }
+            if (state == AWAIT_WRITE && confirmation.getState() != WriteConfirmation.WRITTEN) {
+                // The stop discards the command if it was not written yet. If it was, the position
+                // is corrected by the stop.
+                estimator.interruptMovement(currentStartTime);
+            }
+            pendingStopRequestTime = requestTime;
+            outageStart = -1;
+            sendStop(now);
+            return true;
+        }
+
+        private void sendStop(long now) {
+            stopControl = control;
+            stopSendTime = now;
+            stopConfirmation = reuse(stopConfirmation);
+            try {
+                stopControl.stopImmediately(stopConfirmation);
+            } catch (RuntimeException e) {
+                stopConfirmation.writeFinished(false);
+            }
+            state = AWAIT_STOP;
+            stateDeadline = now + reconnectTimeoutNanos;
+        }
+
+        /**
+         * Waits until the stop was written. If it could not be written, it is sent again once a new
+         * control was bound.
+         * @return False if the dispatcher has to wait.
+         */
+        private boolean awaitStop(long now) {
+            int result = stopConfirmation.getState();
+            if (result == WriteConfirmation.WRITTEN) {
+                long writtenTime = stopConfirmation.finishTime;
+                // Moves start in the estimate when they are sent, so the stop has to end them when
+                // it is sent as well. Both reach the Orbit360 about one write latency later.
+                estimator.interruptMovement(stopSendTime);
+                MetricsListener metrics = metricsListener;
+                if (metrics != MetricsListener.NONE) {
+                    metrics.stopCompleted(pendingStopRequestTime, writtenTime);
+                }
+                stopFinished(true, writtenTime - pendingStopRequestTime);
+                return true;
+            }
+            if (result == WriteConfirmation.FAILED && control != stopControl) {
+                sendStop(now);
+                return true;
+            }
+            if (now < stateDeadline) {
+                task.scheduleAt(stateDeadline);
+                return false;
+            }
+            stopFinished(false, now - pendingStopRequestTime);
+            return true;
+        }
+
+        private void stopFinished(boolean confirmed, long latencyNanos) {
+            started = false;
+            state = SEND;
+            StopHandler[] handlers = pendingStopHandlers.toArray(new StopHandler[pendingStopHandlers.size()]);
+            pendingStopHandlers.clear();
+            for (StopHandler handler : handlers) {
+                handler.stopFinished(confirmed, latencyNanos, ScriptRunner.this);
+            }
+        }
+
+        /**
+         * Ends all scripts without calling their handlers, because no new control was bound in time.
+         */
+        private void giveUp() {
+            synchronized (scriptLock) {
+                cancelAll();
+                activeScript = null;
+            }
+            outageStart = -1;
+            started = false;
+            state = SEND;
+        }
+    }
+
+    /**
+     * Removes a script from its queue.
+     */
+    private void remove(QueuedScript script) {
+        synchronized (scriptLock) {
+            queueOf(script.priority).remove(script);
+            if (activeScript == script) {
+                activeScript = null;
+            }
+        }
+    }
+
+    private boolean hasInteractiveScript() {
+        synchronized (scriptLock) {
+            return !interactiveScripts.isEmpty();
+        }
+    }
+
+    /**
+     * Receives the result of a single write and wakes the dispatcher. Once the result arrived, the
+     * instance can be reset for the next write.
+     */
+    private class WriteConfirmation implements Orbit360Transport.WriteCallback {
+        static final int PENDING = 0;
+        static final int WRITTEN = 1;
+        static final int FAILED = 2;
+
+        private int state = PENDING;
+        private long finishTime;
+
+        @Override
+        public void writeFinished(boolean success) {
+            synchronized (this) {
+                state = success ? WRITTEN : FAILED;
+                finishTime = clock.nanoTime();
+            }
+            task.wake();
+        }
+
+        synchronized int getState() {
+            return state;
+        }
+
+        /**
+         * @return False if the result of the write did not arrive yet, in which case nothing is reset.
+         */
+        synchronized boolean reset() {
+            if (state == PENDING) {
+                return false;
+            }
+            state = PENDING;
+            return true;
+        }
+    }
+
+    /**
+     * Source which copies the commands of a list.
+     */
+    private static class ListSource implements CommandSource {
+        private final List<Command> commands;
+        private int index = 0;
+
+        ListSource(List<Command> commands) {
+            this.commands = commands;
+        }
+
+        @Override
+        public boolean next(Command target, ScriptRunner runner) {
+            if (index >= commands.size()) {
+                return false;
+            }
+            target.set(commands.get(index++));
+            return true;
+        }
+    }
+}
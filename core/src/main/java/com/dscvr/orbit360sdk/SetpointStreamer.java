@@ -0,0 +1,233 @@
+package com.dscvr.orbit360sdk;
+
+/**
+ * This class streams move commands to an Orbit360 faster than the Bluetooth link could carry them
+ * one by one, for example from a joystick or a tracking algorithm.
+ *
+ * Only the most recent command is kept. A command which was not sent yet when a newer one arrives
+ * is discarded (coalesced), since the Orbit360 would interrupt it anyway. At most one command is in
+ * flight, and commands are sent at most once per write interval of the connection, which is the
+ * connection interval of its ConnectionProfile. This keeps the end-to-end latency bounded, instead of
+ * growing with the length of a queue. If the profile changes, the next command uses its interval.
+ *
+ * Delayed commands are sent by a DeadlineScheduler, so the streamer needs no thread of its own.
+ */
+public class SetpointStreamer {
+    private final Orbit360Control control;
+    private final Clock clock;
+    private final DeadlineScheduler.Task sendTask;
+
+    private final Command pending = new Command();
+    private final Command sending = new Command();
+    private boolean hasPending = false;
+    private boolean inFlight = false;
+    private boolean hasSent = false;
+    private boolean closed = false;
+    private long lastSendTime;
+    private volatile MetricsListener metricsListener = MetricsListener.NONE;
+
+    private long submittedCount;
+    private long coalescedCount;
+    private long sentCount;
+    private long droppedCount;
+
+    private final Orbit360Transport.WriteCallback writeCallback = new Orbit360Transport.WriteCallback() {
+        @Override
+        public void writeFinished(boolean success) {
+            synchronized (SetpointStreamer.this) {
+                inFlight = false;
+                if (!success) {
+                    droppedCount++;
+                }
+            }
+            trySend();
+        }
+    };
+
+    /**
+     * Creates a new instance of this class, which delays commands on the shared DeadlineScheduler.
+     * The instance has to be closed when it is no longer used.
+     * @param control The connected Orbit360Control instance.
+     */
+    public SetpointStreamer(Orbit360Control control) {
+        this(control, DeadlineScheduler.getShared());
+    }
+
+    /**
+     * Creates a new instance of this class, which delays commands on the given scheduler.
+     * @param control The connected Orbit360Control instance.
+     * @param scheduler The scheduler. Its clock is used to measure the write interval.
+     */
+    public SetpointStreamer(Orbit360Control control, DeadlineScheduler scheduler) {
+        this.control = control;
+        this.clock = scheduler.getClock();
+        this.sendTask = scheduler.newTask(new Runnable() {
+            @Override
+            public void run() {
+                trySend();
+            }
+        });
+    }
+
+    /**
+     * Submits a command, replacing the pending one if it was not sent yet.
+     * @param command The command to send. It is copied, so it may be modified as soon as this method returns.
+     * @return True if a pending command was discarded in favor of this one.
+     */
+    public boolean submit(Command command) {
+        boolean coalesced;
+        synchronized (this) {
+            pending.set(command);
+            coalesced = markPending();
+        }
+        return submitted(coalesced);
+    }
+
+    /**
+     * Submits a move, replacing the pending command if it was not sent yet.
+     * Please refer Command.setMoveXYSteps for information about the parameters.
+     * @return True if a pending command was discarded in favor of this one.
+     */
+    public boolean moveSteps(float stepsX, float stepsY, float speedX, float speedY) {
+        boolean coalesced;
+        synchronized (this) {
+            pending.setMoveXYSteps(stepsX, stepsY, speedX, speedY);
+            coalesced = markPending();
+        }
+        return submitted(coalesced);
+    }
+
+    /**
+     * Submits a move, replacing the pending command if it was not sent yet.
+     * Please refer Command.setMoveXY for information about the parameters.
+     * @return True if a pending command was discarded in favor of this one.
+     */
+    public boolean move(float degreesX, float degreesY, float speedInDegreesX, float speedInDegreesY) {
+        boolean coalesced;
+        synchronized (this) {
+            pending.setMoveXY(degreesX, degreesY, speedInDegreesX, speedInDegreesY);
+            coalesced = markPending();
+        }
+        return submitted(coalesced);
+    }
+
+    /**
+     * Submits a stop-command, replacing the pending command if it was not sent yet.
+     * @return True if a pending command was discarded in favor of the stop-command.
+     */
+    public boolean stop() {
+        boolean coalesced;
+        synchronized (this) {
+            pending.setStop();
+            coalesced = markPending();
+        }
+        return submitted(coalesced);
+    }
+
+    /**
+     * Sets the listener which receives the count of coalesced setpoints. Please refer
+     * Orbit360Control.setMetricsListener for the timing of the writes.
+     * @param listener The listener. MetricsListener.NONE disables reporting.
+     */
+    public void setMetricsListener(MetricsListener listener) {
+        this.metricsListener = listener;
+    }
+
+    /**
+     * @return The count of commands submitted to this instance.
+     */
+    public synchronized long getSubmittedCount() {
+        return submittedCount;
+    }
+
+    /**
+     * @return The count of commands which were discarded because a newer command was submitted.
+     */
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * @return The count of commands which were sent to the Orbit360.
+     */
+    public synchronized long getSentCount() {
+        return sentCount;
+    }
+
+    /**
+     * @return The count of sent commands which the transport reported as failed.
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Discards the pending command and removes it from the scheduler.
+     */
+    public void close() {
+        synchronized (this) {
+            hasPending = false;
+            closed = true;
+        }
+        sendTask.cancel();
+    }
+
+    /**
+     * Must be called while holding the lock of this instance.
+     */
+    private boolean markPending() {
+        submittedCount++;
+        if (hasPending) {
+            coalescedCount++;
+            return true;
+        }
+        hasPending = true;
+        return false;
+    }
+
+    private boolean submitted(boolean coalesced) {
+        // Reported without holding the lock, so a slow listener does not block the write callback.
+        if (coalesced) {
+            metricsListener.setpointCoalesced();
+        }
+        trySend();
+        return coalesced;
+    }
+
+    private void trySend() {
+        long sendTime;
+        boolean delayed;
+        synchronized (this) {
+            if (!hasPending || inFlight || closed) {
+                return;
+            }
+            long now = clock.nanoTime();
+            // Read for every command, since the profile of the connection can change.
+            sendTime = hasSent ? lastSendTime + control.getWriteIntervalNanos() : now;
+            delayed = sendTime > now;
+            if (!delayed) {
+                sending.set(pending);
+                hasPending = false;
+                inFlight = true;
+                hasSent = true;
+                lastSendTime = now;
+                sentCount++;
+            }
+        }
+        if (delayed) {
+            // Scheduled without holding the lock, the scheduler runs the task while holding its own.
+            sendTask.scheduleAt(sendTime);
+            return;
+        }
+        // Only one command is in flight, so sending is not modified until the write finished.
+        try {
+            control.sendCommand(sending, writeCallback);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                inFlight = false;
+                droppedCount++;
+            }
+            throw e;
+        }
+    }
+}
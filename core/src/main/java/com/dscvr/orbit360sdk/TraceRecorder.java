@@ -0,0 +1,373 @@
+package com.dscvr.orbit360sdk;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+
+/**
+ * Records the frames exchanged with an Orbit360 to an append-only trace file, which can be read
+ * with FrameTrace and replayed with TraceReplayer.
+ *
+ * Wrap the transport of an Orbit360Control with wrap, or pass the recorder to
+ * Orbit360Listener.setTraceRecorder. Every written frame is recorded when its write finished,
+ * together with its latency and whether it was written. Every notification is recorded when it
+ * was received. Entries are collected in a direct buffer. A full buffer is handed to a background
+ * thread, which appends it to the file while entries are collected in a second buffer, so recording
+ * never waits for the file system on the thread of the transport. flush and close wait until all
+ * entries were appended.
+ *
+ * Recording never throws into the transport. If the file can not be written, recording stops and
+ * getFailureCount is increased. Entries which arrive while both buffers are full, because the file
+ * system is slower than the link, are discarded and counted as failures as well.
+ */
+public class TraceRecorder {
+    /**
+     * The size of each of the two buffers which collect entries before they are appended to the
+     * file, in bytes.
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_FRAME_LENGTH = BUFFER_SIZE - FrameTrace.ENTRY_HEADER_SIZE;
+
+    private final Clock clock;
+    private final long startTime;
+    private final FileOutputStream stream;
+    private final FileChannel channel;
+    private final Object lock = new Object();
+    // Guarded by lock. Entries are appended to buffer. A full buffer is handed to the writer thread
+    // as pendingBuffer, and returns as spareBuffer once it was appended to the file.
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private ByteBuffer spareBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private ByteBuffer pendingBuffer;
+    private IOException writeFailure;
+    private long lastTimestamp;
+    private long entryCount;
+    private long failureCount;
+    private boolean closed;
+    private boolean stopped;
+
+    /**
+     * Creates a new trace file, replacing an existing one, and starts recording.
+     * @param file The file to write to.
+     * @param clock The clock to timestamp entries with.
+     */
+    public TraceRecorder(File file, Clock clock) throws IOException {
+        this.clock = clock;
+        this.stream = new FileOutputStream(file);
+        this.channel = stream.getChannel();
+        this.startTime = clock.nanoTime();
+        buffer.putInt(FrameTrace.MAGIC).putInt(FrameTrace.VERSION).putInt(FrameTrace.ENTRY_HEADER_SIZE)
+                .putLong(System.currentTimeMillis());
+        try {
+            // Through Buffer, since newer JDKs return ByteBuffer, which older runtimes do not have.
+            ((Buffer) buffer).flip();
+            writeFully(buffer);
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        } finally {
+            ((Buffer) buffer).clear();
+        }
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWriter();
+            }
+        }, "TraceRecorder");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Wraps a transport, so all frames written to it and all its notifications are recorded.
+     * @param transport The transport to record.
+     * @return The recording transport, which forwards everything to the given transport.
+     */
+    public Orbit360Transport wrap(Orbit360Transport transport) {
+        return new RecordingTransport(transport);
+    }
+
+    /**
+     * Records a frame written to the Orbit360.
+     * @param frame The buffer containing the frame.
+     * @param length The count of bytes in the buffer.
+     * @param sendTimeNanos The time the frame was handed to the transport, by the clock of this recorder.
+     * @param success True if the frame was written.
+     */
+    public void recordWrite(byte[] frame, int length, long sendTimeNanos, boolean success) {
+        append(FrameTrace.TYPE_WRITE, success ? FrameTrace.OUTCOME_OK : FrameTrace.OUTCOME_FAILED,
+                sendTimeNanos, frame, length);
+    }
+
+    /**
+     * Records a notification received from the Orbit360.
+     * @param frame The notification.
+     */
+    public void recordNotification(byte[] frame) {
+        boolean valid = FrameDecoder.isValid(frame, 0, frame.length);
+        append(FrameTrace.TYPE_NOTIFICATION, valid ? FrameTrace.OUTCOME_OK : FrameTrace.OUTCOME_INVALID,
+                -1, frame, frame.length);
+    }
+
+    /**
+     * @return The count of recorded entries, including the ones not yet appended to the file.
+     */
+    public long getEntryCount() {
+        synchronized (lock) {
+            return entryCount;
+        }
+    }
+
+    /**
+     * @return The count of entries which could not be recorded because the file could not be
+     * written fast enough, or not at all.
+     */
+    public long getFailureCount() {
+        synchronized (lock) {
+            return failureCount;
+        }
+    }
+
+    /**
+     * Appends all recorded entries to the file, and waits until they were written.
+     */
+    public void flush() throws IOException {
+        synchronized (lock) {
+            if (!closed) {
+                writeAll();
+            }
+        }
+    }
+
+    /**
+     * Appends all recorded entries to the file and closes it. Later entries are discarded.
+     */
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (stopped) {
+                return;
+            }
+            try {
+                if (!closed) {
+                    closed = true;
+                    writeAll();
+                }
+            } finally {
+                stopped = true;
+                lock.notifyAll();
+                stream.close();
+            }
+        }
+    }
+
+    private void append(byte type, byte outcome, long sendTimeNanos, byte[] frame, int length) {
+        // Bytes after the checksum, for example the padding of a characteristic value, are not recorded.
+        if (FrameDecoder.isValid(frame, 0, length)) {
+            length = FrameDecoder.frameLength(frame, 0);
+        }
+        length = Math.min(length, MAX_FRAME_LENGTH);
+        synchronized (lock) {
+            if (writeFailure != null) {
+                closed = true;
+            }
+            if (closed) {
+                failureCount++;
+                return;
+            }
+            // The timestamp is taken under the lock, so entries are ordered by it.
+            long now = clock.nanoTime();
+            long timestamp = Math.max(now - startTime, lastTimestamp);
+            lastTimestamp = timestamp;
+            long latency = sendTimeNanos < 0 ? 0 : Math.max(0, Math.min(timestamp, now - sendTimeNanos));
+            if (buffer.remaining() < FrameTrace.ENTRY_HEADER_SIZE + length && !handOver()) {
+                failureCount++;
+                return;
+            }
+            FrameTrace.putEntry(buffer, type, outcome, timestamp, latency, frame, length);
+            entryCount++;
+        }
+    }
+
+    /**
+     * Hands the current buffer to the writer thread and continues with the spare one. Must be
+     * called while holding the lock.
+     * @return False if the writer is still busy with the previous buffer.
+     */
+    private boolean handOver() {
+        if (spareBuffer == null) {
+            return false;
+        }
+        ((Buffer) buffer).flip();
+        pendingBuffer = buffer;
+        buffer = spareBuffer;
+        spareBuffer = null;
+        lock.notifyAll();
+        return true;
+    }
+
+    /**
+     * Hands all entries to the writer thread and waits until they were written. Must be called while
+     * holding the lock.
+     */
+    private void writeAll() throws IOException {
+        try {
+            while (pendingBuffer != null) {
+                lock.wait();
+            }
+            if (buffer.position() > 0 && writeFailure == null) {
+                handOver();
+                while (pendingBuffer != null) {
+                    lock.wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing the trace");
+        }
+        if (writeFailure != null) {
+            throw writeFailure;
+        }
+    }
+
+    private void runWriter() {
+        while (true) {
+            ByteBuffer entries;
+            synchronized (lock) {
+                while (pendingBuffer == null && !stopped) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pendingBuffer == null) {
+                    return;
+                }
+                entries = pendingBuffer;
+            }
+            IOException failure = null;
+            try {
+                writeFully(entries);
+            } catch (IOException e) {
+                failure = e;
+            }
+            ((Buffer) entries).clear();
+            synchronized (lock) {
+                pendingBuffer = null;
+                spareBuffer = entries;
+                if (failure != null && writeFailure == null) {
+                    writeFailure = failure;
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer entries) throws IOException {
+        while (entries.hasRemaining()) {
+            channel.write(entries);
+        }
+    }
+
+    /**
+     * Forwards all calls to another transport and records the frames.
+     */
+    private class RecordingTransport implements Orbit360Transport, Orbit360Transport.Instrumented,
+            Orbit360Transport.Prioritized, Orbit360Transport.Paced {
+        private final Orbit360Transport transport;
+        private final ArrayDeque<RecordedWrite> freeWrites = new ArrayDeque<>();
+
+        RecordingTransport(Orbit360Transport transport) {
+            this.transport = transport;
+        }
+
+        @Override
+        public void write(byte[] frame, WriteCallback callback) {
+            transport.write(frame, recording(frame, callback));
+        }
+
+        @Override
+        public void writeFirst(byte[] frame, WriteCallback callback) {
+            if (transport instanceof Prioritized) {
+                ((Prioritized) transport).writeFirst(frame, recording(frame, callback));
+            } else {
+                transport.write(frame, recording(frame, callback));
+            }
+        }
+
+        private WriteCallback recording(byte[] frame, WriteCallback callback) {
+            RecordedWrite write;
+            synchronized (freeWrites) {
+                write = freeWrites.poll();
+            }
+            if (write == null) {
+                write = new RecordedWrite();
+            }
+            // Copied, since the caller may reuse the frame as soon as write returns.
+            if (write.frame.length < frame.length) {
+                write.frame = new byte[frame.length];
+            }
+            System.arraycopy(frame, 0, write.frame, 0, frame.length);
+            write.length = frame.length;
+            write.sendTime = clock.nanoTime();
+            write.callback = callback;
+            return write;
+        }
+
+        /**
+         * A write whose frame is recorded when it finished. Instances are reused, so recording does
+         * not allocate for every frame.
+         */
+        private class RecordedWrite implements WriteCallback {
+            byte[] frame = new byte[CommandEncoder.FRAME_CAPACITY];
+            int length;
+            long sendTime;
+            WriteCallback callback;
+
+            @Override
+            public void writeFinished(boolean success) {
+                recordWrite(frame, length, sendTime, success);
+                WriteCallback finishedCallback = callback;
+                callback = null;
+                synchronized (freeWrites) {
+                    freeWrites.push(this);
+                }
+                if (finishedCallback != null) {
+                    finishedCallback.writeFinished(success);
+                }
+            }
+        }
+
+        @Override
+        public void setNotificationListener(final NotificationListener listener) {
+            if (listener == null) {
+                transport.setNotificationListener(null);
+                return;
+            }
+            transport.setNotificationListener(new NotificationListener() {
+                @Override
+                public void notificationReceived(byte[] frame) {
+                    recordNotification(frame);
+                    listener.notificationReceived(frame);
+                }
+            });
+        }
+
+        @Override
+        public void setMetricsListener(MetricsListener listener) {
+            if (transport instanceof Instrumented) {
+                ((Instrumented) transport).setMetricsListener(listener);
+            }
+        }
+
+        @Override
+        public long getWriteIntervalNanos() {
+            return transport instanceof Paced ? ((Paced) transport).getWriteIntervalNanos() : 0;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.dscvr.orbit360sdk;
+
+import java.util.Arrays;
+
+/**
+ * Replays a recorded FrameTrace through a transport, for example to compare the latency of a
+ * firmware, transport or device against an earlier recording.
+ *
+ * Written frames are sent at the times they were originally handed to the transport, divided by
+ * the speed factor. Deadlines are absolute, so a late write does not delay the following ones.
+ * Recorded notifications can be delivered to a listener at their original times as well. The
+ * replay measures how late each frame was sent and how long its write took.
+ *
+ * With a VirtualClock and an Orbit360Simulator, a trace can be replayed much faster than real-time.
+ */
+public class TraceReplayer {
+    /**
+     * The default time to wait for outstanding writes after the last frame was sent, in nanoseconds.
+     */
+    public static final long DEFAULT_ACKNOWLEDGEMENT_TIMEOUT_NANOS = 5000000000L;
+
+    private final FrameTrace trace;
+    private final Clock clock;
+    private double speedFactor = 1;
+    private boolean failedWritesSkipped = true;
+    private long acknowledgementTimeoutNanos = DEFAULT_ACKNOWLEDGEMENT_TIMEOUT_NANOS;
+    private Orbit360Transport.NotificationListener notificationListener;
+
+    /**
+     * Creates a new instance of this class.
+     * @param trace The trace to replay.
+     * @param clock The clock to schedule the frames with.
+     */
+    public TraceReplayer(FrameTrace trace, Clock clock) {
+        this.trace = trace;
+        this.clock = clock;
+    }
+
+    /**
+     * @param factor The factor to speed up the replay by. 1 replays at the original speed, 10 ten
+     *               times faster. Must be positive.
+     */
+    public void setSpeedFactor(double factor) {
+        if (!(factor > 0)) {
+            throw new IllegalArgumentException("The speed factor must be positive: " + factor);
+        }
+        this.speedFactor = factor;
+    }
+
+    /**
+     * @param skipped True if writes which failed in the recording are not replayed. Enabled by default.
+     */
+    public void setFailedWritesSkipped(boolean skipped) {
+        this.failedWritesSkipped = skipped;
+    }
+
+    /**
+     * @param nanos The time to wait for outstanding writes after the last frame was sent, in nanoseconds.
+     */
+    public void setAcknowledgementTimeoutNanos(long nanos) {
+        this.acknowledgementTimeoutNanos = nanos;
+    }
+
+    /**
+     * Sets the listener which receives the recorded notifications at their original times. Invalid
+     * notifications are delivered as well.
+     * @param listener The listener. Null if notifications are not replayed, which is the default.
+     */
+    public void setNotificationListener(Orbit360Transport.NotificationListener listener) {
+        this.notificationListener = listener;
+    }
+
+    /**
+     * Replays the trace. Blocks until all frames were sent and their writes finished, or the
+     * acknowledgement timeout elapsed.
+     * @param transport The transport to send the written frames to.
+     * @return The measurements of the replay.
+     */
+    public Result replay(Orbit360Transport transport) throws InterruptedException {
+        final Result result = new Result();
+        Orbit360Transport.NotificationListener notifications = notificationListener;
+        byte[] frame = new byte[TraceRecorder.BUFFER_SIZE];
+
+        // Writes are scheduled by their send time, notifications by their receive time. Both are
+        // mostly ascending within their type, so the two are merged with one cursor per type.
+        FrameTrace.Cursor writes = trace.cursor();
+        FrameTrace.Cursor received = trace.cursor();
+        boolean hasWrite = nextWrite(writes);
+        boolean hasNotification = notifications != null && next(received, FrameTrace.TYPE_NOTIFICATION);
+        long firstTime = Math.min(hasWrite ? writes.getSendTimeNanos() : Long.MAX_VALUE,
+                hasNotification ? received.getTimestampNanos() : Long.MAX_VALUE);
+        long start = clock.nanoTime();
+
+        while (hasWrite || hasNotification) {
+            boolean isWrite = hasWrite && (!hasNotification || writes.getSendTimeNanos() <= received.getTimestampNanos());
+            FrameTrace.Cursor cursor = isWrite ? writes : received;
+            long recordedTime = isWrite ? cursor.getSendTimeNanos() : cursor.getTimestampNanos();
+            long deadline = start + (long) ((recordedTime - firstTime) / speedFactor);
+            long now = clock.nanoTime();
+            if (deadline > now) {
+                clock.sleepNanos(deadline - now);
+                now = clock.nanoTime();
+            }
+            result.lateness.record(now - deadline);
+            int length = cursor.getFrame(frame);
+
+            if (isWrite) {
+                result.recordedLatency.record(cursor.getLatencyNanos());
+                final long sendTime = now;
+                synchronized (result) {
+                    result.sentCount++;
+                }
+                transport.write(Arrays.copyOf(frame, length), new Orbit360Transport.WriteCallback() {
+                    @Override
+                    public void writeFinished(boolean success) {
+                        long ackTime = clock.nanoTime();
+                        synchronized (result) {
+                            if (success) {
+                                result.acknowledgedCount++;
+                                result.ackLatency.record(ackTime - sendTime);
+                            } else {
+                                result.failedCount++;
+                            }
+                            result.notifyAll();
+                        }
+                    }
+                });
+                hasWrite = nextWrite(writes);
+            } else {
+                synchronized (result) {
+                    result.notificationCount++;
+                }
+                notifications.notificationReceived(Arrays.copyOf(frame, length));
+                hasNotification = next(received, FrameTrace.TYPE_NOTIFICATION);
+            }
+        }
+
+        long deadline = clock.nanoTime() + acknowledgementTimeoutNanos;
+        synchronized (result) {
+            long remaining;
+            while (result.acknowledgedCount + result.failedCount < result.sentCount
+                    && (remaining = deadline - clock.nanoTime()) > 0) {
+                clock.waitNanos(result, remaining);
+            }
+            result.durationNanos = clock.nanoTime() - start;
+        }
+        return result;
+    }
+
+    private boolean nextWrite(FrameTrace.Cursor cursor) {
+        while (next(cursor, FrameTrace.TYPE_WRITE)) {
+            if (!failedWritesSkipped || cursor.getOutcome() == FrameTrace.OUTCOME_OK) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean next(FrameTrace.Cursor cursor, byte type) {
+        while (cursor.next()) {
+            if (cursor.getType() == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The measurements of a replay.
+     */
+    public static final class Result {
+        private final LatencyHistogram lateness = new LatencyHistogram();
+        private final LatencyHistogram ackLatency = new LatencyHistogram();
+        private final LatencyHistogram recordedLatency = new LatencyHistogram();
+        private long sentCount;
+        private long acknowledgedCount;
+        private long failedCount;
+        private long notificationCount;
+        private long durationNanos;
+
+        Result() {
+        }
+
+        /**
+         * @return The count of frames sent to the transport.
+         */
+        public synchronized long getSentCount() {
+            return sentCount;
+        }
+
+        /**
+         * @return The count of frames which were written.
+         */
+        public synchronized long getAcknowledgedCount() {
+            return acknowledgedCount;
+        }
+
+        /**
+         * @return The count of frames which were dropped. Frames which were neither written nor
+         * dropped within the acknowledgement timeout are not counted.
+         */
+        public synchronized long getFailedCount() {
+            return failedCount;
+        }
+
+        /**
+         * @return The count of delivered notifications.
+         */
+        public synchronized long getNotificationCount() {
+            return notificationCount;
+        }
+
+        /**
+         * @return The time from the start of the replay until the last write finished, in nanoseconds.
+         */
+        public synchronized long getDurationNanos() {
+            return durationNanos;
+        }
+
+        /**
+         * @return How late the frames and notifications were sent, compared to their scheduled times.
+         */
+        public LatencyHistogram.Snapshot getLateness() {
+            return lateness.snapshot();
+        }
+
+        /**
+         * @return The time from sending a frame until its write was acknowledged, in this replay.
+         */
+        public LatencyHistogram.Snapshot getAcknowledgementLatency() {
+            return ackLatency.snapshot();
+        }
+
+        /**
+         * @return The time from sending a frame until its write finished, in the recording.
+         */
+        public LatencyHistogram.Snapshot getRecordedLatency() {
+            return recordedLatency.snapshot();
+        }
+
+        @Override
+        public String toString() {
+            return "sent=" + getSentCount() + " acknowledged=" + getAcknowledgedCount() + " failed=" + getFailedCount() +
+                    " notifications=" + getNotificationCount() + " durationNanos=" + getDurationNanos() +
+                    "\n  lateness: " + getLateness() + "\n  acknowledgementLatency: " + getAcknowledgementLatency() +
+                    "\n  recordedLatency: " + getRecordedLatency();
+        }
+    }
+}
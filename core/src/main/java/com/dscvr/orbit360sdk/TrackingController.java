@@ -0,0 +1,565 @@
+package com.dscvr.orbit360sdk;
+
+/**
+ * This class makes the Orbit360 follow a moving target, for example a subject found by a vision
+ * tracker, without the overshoot and oscillation of sending a move for every camera frame.
+ *
+ * Targets are passed as angles with the time they were measured at, for example the exposure time
+ * of the camera frame. An alpha-beta filter estimates the position and velocity of the target. At a
+ * fixed update rate, the controller predicts where the target will be when the next command takes
+ * effect, compares it with where the arm will be at that time, and computes a velocity from the
+ * velocity of the target (feed-forward) and a PID term on the error. The velocity is sent as a move
+ * which lasts a few update periods, so the arm keeps moving smoothly until the next command
+ * interrupts it, instead of stopping between commands.
+ *
+ * The time a command takes to take effect is measured from the acknowledgement of every write, and
+ * averaged. At most one command is in flight; an update which finds the previous command still in
+ * flight is skipped. The update rate should therefore be slightly lower than the rate the connection
+ * can carry, about 20Hz for high priority connections.
+ *
+ * All angles are in degrees, relative to the position of the arm when the controller was created.
+ * If you use this class, you should not move the Orbit360 by other means while tracking.
+ */
+public class TrackingController {
+    private static final long DEFAULT_PERIOD_NANOS = 50000000L;
+    private static final long DEFAULT_LATENCY_NANOS = 30000000L;
+    private static final long DEFAULT_TARGET_TIMEOUT_NANOS = 500000000L;
+    private static final int LATENCY_SHIFT = 3;
+
+    private final Orbit360Control control;
+    private final Clock clock;
+    private final DeadlineScheduler scheduler;
+    private final boolean ownsScheduler;
+    private final DeadlineScheduler.Task task;
+    private final PositionEstimator estimator;
+
+    // Tuning, guarded by this.
+    private float kp = 6f;
+    private float ki = 0f;
+    private float kd = 0f;
+    private float feedForward = 1f;
+    private float alpha = 0.5f;
+    private float beta = 0.3f;
+    private float maxSpeedX = 90f;
+    private float maxSpeedY = 30f;
+    private float deadband = 0.1f;
+    private float horizonPeriods = 2f;
+    private long periodNanos = DEFAULT_PERIOD_NANOS;
+    private long targetTimeoutNanos = DEFAULT_TARGET_TIMEOUT_NANOS;
+
+    // Target filter, guarded by this.
+    private boolean hasTarget = false;
+    private long targetTime;
+    private double targetX;
+    private double targetY;
+    private double targetSpeedX;
+    private double targetSpeedY;
+    private long rejectedTargetCount;
+
+    // Command in flight, guarded by this.
+    private boolean inFlight = false;
+    private boolean sentStop;
+    private long sendTime;
+    private final Command command = new Command();
+    private long latencyNanos = DEFAULT_LATENCY_NANOS;
+
+    // Loop state, guarded by this.
+    private boolean running = false;
+    private boolean closed = false;
+    private long deadline;
+    private long lastUpdateTime = -1;
+    private double integralX;
+    private double integralY;
+    private double lastErrorX;
+    private double lastErrorY;
+    private long updateCount;
+    private long sentCount;
+    private long skippedCount;
+    private long droppedCount;
+
+    private final LatencyHistogram updateLateness = new LatencyHistogram();
+    private final LatencyHistogram commandLatency = new LatencyHistogram();
+    private final LatencyHistogram targetAge = new LatencyHistogram();
+    private final Vec2 arm = new Vec2();
+    private final Command stopCommand = Command.stop();
+
+    private final Orbit360Transport.WriteCallback writeCallback = new Orbit360Transport.WriteCallback() {
+        @Override
+        public void writeFinished(boolean success) {
+            writeDone(success);
+        }
+    };
+
+    /**
+     * Creates a new instance of this class, which runs on the scheduler shared by all runners on Clock.SYSTEM.
+     * @param control The connected Orbit360Control instance.
+     */
+    public TrackingController(Orbit360Control control) {
+        this(control, DeadlineScheduler.getShared(), false);
+    }
+
+    /**
+     * Creates a new instance of this class, which runs on the given scheduler.
+     * @param control The connected Orbit360Control instance.
+     * @param scheduler The scheduler. Its clock is used for all times. It is not closed by close.
+     */
+    public TrackingController(Orbit360Control control, DeadlineScheduler scheduler) {
+        this(control, scheduler, false);
+    }
+
+    /**
+     * Creates a new instance of this class, with a scheduler of its own on the given clock, for
+     * example a VirtualClock driving an Orbit360Simulator.
+     * @param control The connected Orbit360Control instance.
+     * @param clock The clock to use.
+     */
+    public TrackingController(Orbit360Control control, Clock clock) {
+        this(control, clock == Clock.SYSTEM ? DeadlineScheduler.getShared() : new DeadlineScheduler(clock, 1),
+                clock != Clock.SYSTEM);
+    }
+
+    private TrackingController(Orbit360Control control, DeadlineScheduler scheduler, boolean ownsScheduler) {
+        this.control = control;
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+        this.clock = scheduler.getClock();
+        this.estimator = new PositionEstimator(clock);
+        this.task = scheduler.newTask(new Runnable() {
+            @Override
+            public void run() {
+                update();
+            }
+        });
+    }
+
+    /**
+     * Sets the gains of the PID term, which corrects the error between the predicted target and
+     * the predicted position of the arm.
+     * @param kp The proportional gain, in degrees per second per degree of error. The default is 6.
+     * @param ki The integral gain, in degrees per second per degree-second of error. The default is 0.
+     * @param kd The derivative gain, in degrees per second per degree per second of error. The default is 0.
+     * @return This instance.
+     */
+    public synchronized TrackingController setGains(float kp, float ki, float kd) {
+        this.kp = kp;
+        this.ki = ki;
+        this.kd = kd;
+        integralX = 0;
+        integralY = 0;
+        return this;
+    }
+
+    /**
+     * @param gain The factor to apply the estimated velocity of the target with. 1 follows the
+     *             target at its own speed, 0 disables feed-forward. The default is 1.
+     * @return This instance.
+     */
+    public synchronized TrackingController setFeedForward(float gain) {
+        this.feedForward = gain;
+        return this;
+    }
+
+    /**
+     * Sets the gains of the alpha-beta filter which estimates the target from the measurements.
+     * Lower values smooth noisy measurements more, but follow changes of the target later.
+     * @param alpha The share of the measurement error which corrects the position, between 0 and 1. The default is 0.5.
+     * @param beta The share of the measurement error which corrects the velocity, between 0 and 1. The default is 0.3.
+     * @return This instance.
+     */
+    public synchronized TrackingController setTargetFilter(float alpha, float beta) {
+        this.alpha = alpha;
+        this.beta = beta;
+        return this;
+    }
+
+    /**
+     * @param maxSpeedX The maximum speed on the X-axis, in degrees per second. The default is 90.
+     * @param maxSpeedY The maximum speed on the Y-axis, in degrees per second. The default is 30.
+     * @return This instance.
+     */
+    public synchronized TrackingController setMaxSpeed(float maxSpeedX, float maxSpeedY) {
+        this.maxSpeedX = maxSpeedX;
+        this.maxSpeedY = maxSpeedY;
+        return this;
+    }
+
+    /**
+     * @param degrees The error below which the arm stands still if the target does not move. The default is 0.1.
+     * @return This instance.
+     */
+    public synchronized TrackingController setDeadband(float degrees) {
+        this.deadband = degrees;
+        return this;
+    }
+
+    /**
+     * @param updateRate The count of updates per second, and therefore the maximum count of commands
+     *                   per second. The default is 20.
+     * @return This instance.
+     */
+    public synchronized TrackingController setUpdateRate(float updateRate) {
+        if (!(updateRate > 0)) {
+            throw new IllegalArgumentException("The update rate must be positive: " + updateRate);
+        }
+        this.periodNanos = (long) (1e9 / updateRate);
+        return this;
+    }
+
+    /**
+     * @param periods The count of update periods each move lasts, if it is not interrupted by the
+     *                next one. Must be more than 1, so the arm does not stop between two commands.
+     *                The default is 2.
+     * @return This instance.
+     */
+    public synchronized TrackingController setHorizon(float periods) {
+        this.horizonPeriods = periods;
+        return this;
+    }
+
+    /**
+     * @param timeoutMillis The time without a new target after which the arm is stopped, in milliseconds. The default is 500.
+     * @return This instance.
+     */
+    public synchronized TrackingController setTargetTimeout(long timeoutMillis) {
+        this.targetTimeoutNanos = timeoutMillis * 1000000L;
+        return this;
+    }
+
+    /**
+     * @param latencyMillis The command latency assumed until it was measured, in milliseconds. The default is 30.
+     * @return This instance.
+     */
+    public synchronized TrackingController setInitialLatency(long latencyMillis) {
+        this.latencyNanos = latencyMillis * 1000000L;
+        return this;
+    }
+
+    /**
+     * Passes a measurement of the target.
+     * @param timestampNanos The time the target was at the given position, by the clock of this
+     *                       controller, for example the exposure time of the camera frame.
+     *                       Measurements older than the previous one are ignored.
+     * @param degreesX The position of the target on the X-axis, in degrees.
+     * @param degreesY The position of the target on the Y-axis, in degrees.
+     */
+    public synchronized void updateTarget(long timestampNanos, double degreesX, double degreesY) {
+        if (!hasTarget) {
+            hasTarget = true;
+            targetTime = timestampNanos;
+            targetX = degreesX;
+            targetY = degreesY;
+            targetSpeedX = 0;
+            targetSpeedY = 0;
+            return;
+        }
+        long elapsed = timestampNanos - targetTime;
+        if (elapsed <= 0) {
+            rejectedTargetCount++;
+            return;
+        }
+        double seconds = elapsed / 1e9;
+        double predictedX = targetX + targetSpeedX * seconds;
+        double predictedY = targetY + targetSpeedY * seconds;
+        double residualX = degreesX - predictedX;
+        double residualY = degreesY - predictedY;
+        targetX = predictedX + alpha * residualX;
+        targetY = predictedY + alpha * residualY;
+        targetSpeedX += beta * residualX / seconds;
+        targetSpeedY += beta * residualY / seconds;
+        targetTime = timestampNanos;
+    }
+
+    /**
+     * Passes a measurement of the target relative to the camera, for example the angle of a subject
+     * from the centre of the frame. The position of the arm at the time of the measurement is looked
+     * up in the history of the estimator, so measurements which arrive late are still correct.
+     * Please refer updateTarget for information about the parameters.
+     */
+    public void updateTargetOffset(long timestampNanos, double offsetX, double offsetY) {
+        Vec2 pose = new Vec2();
+        estimator.getHistory().poseAt(timestampNanos, pose);
+        pose.stepsToDegrees();
+        updateTarget(timestampNanos, pose.x + offsetX, pose.y + offsetY);
+    }
+
+    /**
+     * Starts tracking. The arm does not move until the first target was passed.
+     */
+    public void start() {
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("the controller is closed");
+            }
+            if (running) {
+                return;
+            }
+            running = true;
+            deadline = clock.nanoTime();
+            lastUpdateTime = -1;
+        }
+        task.wake();
+    }
+
+    /**
+     * Stops tracking and stops the arm. Measurements passed afterwards are kept for the next start.
+     */
+    public void stop() {
+        synchronized (this) {
+            running = false;
+        }
+        // The stop is sent by the update, after the command in flight.
+        task.wake();
+    }
+
+    /**
+     * Stops tracking and releases the scheduler, if it is owned by this instance. The controller can
+     * not be used afterwards.
+     */
+    public void close() {
+        synchronized (this) {
+            running = false;
+            closed = true;
+        }
+        task.cancel();
+        if (ownsScheduler) {
+            scheduler.close();
+        }
+    }
+
+    /**
+     * @return True if the controller is tracking.
+     */
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return The estimator which holds the position of the arm. It can be read from any thread.
+     */
+    public PositionEstimator getPositionEstimator() {
+        return estimator;
+    }
+
+    /**
+     * Writes the estimated position and velocity of the target to vectors.
+     * @param position The vector to write the position at the time of the last measurement to, in degrees.
+     * @param velocity The vector to write the velocity to, in degrees per second.
+     * @return False if no target was passed yet.
+     */
+    public synchronized boolean getTarget(Vec2 position, Vec2 velocity) {
+        position.set(targetX, targetY);
+        velocity.set(targetSpeedX, targetSpeedY);
+        return hasTarget;
+    }
+
+    /**
+     * Writes the error of the last update to a vector: the predicted target minus the predicted
+     * position of the arm, when the command of the update takes effect.
+     * @param target The vector to write the error to, in degrees.
+     * @return The target vector.
+     */
+    public synchronized Vec2 getTrackingError(Vec2 target) {
+        return target.set(lastErrorX, lastErrorY);
+    }
+
+    /**
+     * @return The averaged time from sending a command until it was acknowledged, in nanoseconds.
+     * It is the time the controller predicts ahead.
+     */
+    public synchronized long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * @return How late the updates ran, compared to their deadlines.
+     */
+    public LatencyHistogram.Snapshot getUpdateLateness() {
+        return updateLateness.snapshot();
+    }
+
+    /**
+     * @return The time from sending a command until it was acknowledged.
+     */
+    public LatencyHistogram.Snapshot getCommandLatency() {
+        return commandLatency.snapshot();
+    }
+
+    /**
+     * @return The age of the newest measurement of the target at each update.
+     */
+    public LatencyHistogram.Snapshot getTargetAge() {
+        return targetAge.snapshot();
+    }
+
+    /**
+     * @return The count of updates.
+     */
+    public synchronized long getUpdateCount() {
+        return updateCount;
+    }
+
+    /**
+     * @return The count of commands sent to the Orbit360.
+     */
+    public synchronized long getSentCount() {
+        return sentCount;
+    }
+
+    /**
+     * @return The count of updates which sent no command, because the previous one was still in flight.
+     */
+    public synchronized long getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * @return The count of commands which the transport reported as failed.
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return The count of measurements which were ignored because they were older than the previous one.
+     */
+    public synchronized long getRejectedTargetCount() {
+        return rejectedTargetCount;
+    }
+
+    private void update() {
+        long now = clock.nanoTime();
+        Command toSend;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (!running) {
+                // Stopped: only the stop of the arm is left to send.
+                if (!estimator.isMoving() || inFlight) {
+                    return;
+                }
+                toSend = prepareStop();
+            } else {
+                if (now < deadline) {
+                    task.scheduleAt(deadline);
+                    return;
+                }
+                updateLateness.record(now - deadline);
+                updateCount++;
+                // Deadlines are absolute. After a longer delay, the schedule starts over.
+                deadline = now - deadline > periodNanos ? now + periodNanos : deadline + periodNanos;
+                task.scheduleAt(deadline);
+                if (inFlight) {
+                    skippedCount++;
+                    return;
+                }
+                toSend = computeCommand(now);
+                if (toSend == null) {
+                    return;
+                }
+            }
+            inFlight = true;
+            sendTime = now;
+            sentCount++;
+        }
+        try {
+            control.sendCommand(toSend, writeCallback);
+        } catch (RuntimeException e) {
+            writeDone(false);
+        }
+    }
+
+    /**
+     * Computes the next move. Must be called while holding this.
+     * @return The command to send, or null if none is needed.
+     */
+    private Command computeCommand(long now) {
+        if (!hasTarget || now - targetTime > targetTimeoutNanos) {
+            integralX = 0;
+            integralY = 0;
+            lastUpdateTime = -1;
+            return estimator.isMoving() ? prepareStop() : null;
+        }
+        targetAge.record(now - targetTime);
+
+        // The command takes effect after the latency, so the error is predicted for that time.
+        long effective = now + latencyNanos;
+        double ahead = (effective - targetTime) / 1e9;
+        double predictedX = targetX + targetSpeedX * ahead;
+        double predictedY = targetY + targetSpeedY * ahead;
+        estimator.getPositionSteps(effective, arm).stepsToDegrees();
+        double errorX = predictedX - arm.x;
+        double errorY = predictedY - arm.y;
+
+        double dt = lastUpdateTime < 0 ? periodNanos / 1e9 : (now - lastUpdateTime) / 1e9;
+        double derivativeX = lastUpdateTime < 0 ? 0 : (errorX - lastErrorX) / dt;
+        double derivativeY = lastUpdateTime < 0 ? 0 : (errorY - lastErrorY) / dt;
+        // The integral is limited to what can change the speed by the maximum speed (anti-windup).
+        if (ki != 0) {
+            integralX = clamp(integralX + errorX * dt, maxSpeedX / Math.abs(ki));
+            integralY = clamp(integralY + errorY * dt, maxSpeedY / Math.abs(ki));
+        }
+        lastUpdateTime = now;
+        lastErrorX = errorX;
+        lastErrorY = errorY;
+
+        double speedX = feedForward * targetSpeedX + kp * errorX + ki * integralX + kd * derivativeX;
+        double speedY = feedForward * targetSpeedY + kp * errorY + ki * integralY + kd * derivativeY;
+        speedX = clamp(speedX, maxSpeedX);
+        speedY = clamp(speedY, maxSpeedY);
+        if (Math.abs(errorX) < deadband && Math.abs(targetSpeedX) * horizonPeriods * periodNanos / 1e9 < deadband) {
+            speedX = 0;
+        }
+        if (Math.abs(errorY) < deadband && Math.abs(targetSpeedY) * horizonPeriods * periodNanos / 1e9 < deadband) {
+            speedY = 0;
+        }
+
+        double horizon = horizonPeriods * periodNanos / 1e9;
+        float stepsX = Math.round(speedX * horizon * Orbit360Control.DEGREES_TO_STEPS_X);
+        float stepsY = Math.round(speedY * horizon * Orbit360Control.DEGREES_TO_STEPS_Y);
+        if (stepsX == 0 && stepsY == 0) {
+            return estimator.isMoving() ? prepareStop() : null;
+        }
+        sentStop = false;
+        return command.setMoveXYSteps(stepsX, stepsY,
+                (float) Math.max(1, Math.abs(speedX) * Orbit360Control.DEGREES_TO_STEPS_X),
+                (float) Math.max(1, Math.abs(speedY) * Orbit360Control.DEGREES_TO_STEPS_Y));
+    }
+
+    /**
+     * Must be called while holding this.
+     */
+    private Command prepareStop() {
+        sentStop = true;
+        return stopCommand;
+    }
+
+    private void writeDone(boolean success) {
+        long now = clock.nanoTime();
+        boolean wake;
+        synchronized (this) {
+            inFlight = false;
+            if (success) {
+                long latency = now - sendTime;
+                commandLatency.record(latency);
+                latencyNanos += (latency - latencyNanos) >> LATENCY_SHIFT;
+                // The Orbit360 interrupts the running move when the new command arrives.
+                estimator.interruptMovement(now);
+                if (!sentStop) {
+                    estimator.beginMovement(now, command.getStepsX(), command.getStepsY(), command.getSpeedX(), command.getSpeedY());
+                }
+            } else {
+                droppedCount++;
+            }
+            // A stop requested while a move was in flight is sent now. A failed stop is not repeated.
+            wake = success && !running && estimator.isMoving();
+        }
+        if (wake) {
+            task.wake();
+        }
+    }
+
+    private static double clamp(double value, double limit) {
+        return Math.max(-limit, Math.min(limit, value));
+    }
+}
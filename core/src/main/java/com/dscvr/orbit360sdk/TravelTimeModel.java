@@ -0,0 +1,108 @@
+package com.dscvr.orbit360sdk;
+
+/**
+ * Predicts the time the Orbit360 needs to move between two positions, in the way ScriptRunner
+ * executes a move: both axes start together and the move takes as long as the slower axis.
+ *
+ * One degree on the Y-axis takes about three times the steps of one degree on the X-axis, so at the
+ * same speed in steps per second, the Y-axis is about three times slower. Orderings of capture
+ * points which avoid moves on the Y-axis are therefore much faster.
+ *
+ * Instances are immutable and can be used by several threads.
+ */
+public class TravelTimeModel {
+    private final float speedX;
+    private final float speedY;
+    private final double nanosPerDegreeX;
+    private final double nanosPerDegreeY;
+    private final long commandOverheadNanos;
+    private final boolean wrapX;
+
+    /**
+     * Creates a new instance of this class, without overhead per command and with wrapping on the X-axis.
+     * @param speedX The speed on the X-axis, in steps per second.
+     * @param speedY The speed on the Y-axis, in steps per second.
+     */
+    public TravelTimeModel(float speedX, float speedY) {
+        this(speedX, speedY, 0, true);
+    }
+
+    /**
+     * Creates a new instance of this class.
+     * @param speedX The speed on the X-axis, in steps per second.
+     * @param speedY The speed on the Y-axis, in steps per second.
+     * @param commandOverheadNanos The time added to every move, for example the latency of a command
+     *                             write or the time to take a picture, in nanoseconds.
+     * @param wrapX True if the X-axis can turn endlessly, so moves on it take the shorter way around.
+     */
+    public TravelTimeModel(float speedX, float speedY, long commandOverheadNanos, boolean wrapX) {
+        if (!(speedX > 0) || !(speedY > 0)) {
+            throw new IllegalArgumentException("Speeds must be positive: " + speedX + ", " + speedY);
+        }
+        this.speedX = speedX;
+        this.speedY = speedY;
+        this.nanosPerDegreeX = Orbit360Control.DEGREES_TO_STEPS_X / speedX * 1e9;
+        this.nanosPerDegreeY = Orbit360Control.DEGREES_TO_STEPS_Y / speedY * 1e9;
+        this.commandOverheadNanos = commandOverheadNanos;
+        this.wrapX = wrapX;
+    }
+
+    /**
+     * @return The speed on the X-axis, in steps per second.
+     */
+    public float getSpeedX() {
+        return speedX;
+    }
+
+    /**
+     * @return The speed on the Y-axis, in steps per second.
+     */
+    public float getSpeedY() {
+        return speedY;
+    }
+
+    /**
+     * @return The time added to every move, in nanoseconds.
+     */
+    public long getCommandOverheadNanos() {
+        return commandOverheadNanos;
+    }
+
+    /**
+     * @return True if moves on the X-axis take the shorter way around.
+     */
+    public boolean isWrapX() {
+        return wrapX;
+    }
+
+    /**
+     * @param fromX The start on the X-axis, in degrees.
+     * @param toX The target on the X-axis, in degrees.
+     * @return The movement on the X-axis from start to target, in degrees. With wrapping, the result
+     * is between -180 and 180.
+     */
+    public double deltaX(double fromX, double toX) {
+        double delta = toX - fromX;
+        if (wrapX) {
+            delta -= 360 * Math.floor(delta / 360 + 0.5);
+        }
+        return delta;
+    }
+
+    /**
+     * Predicts the time of a move. Moves to the same position take no time.
+     * @param fromX The start on the X-axis, in degrees.
+     * @param fromY The start on the Y-axis, in degrees.
+     * @param toX The target on the X-axis, in degrees.
+     * @param toY The target on the Y-axis, in degrees.
+     * @return The predicted time, in nanoseconds.
+     */
+    public long travelTimeNanos(double fromX, double fromY, double toX, double toY) {
+        double timeX = Math.abs(deltaX(fromX, toX)) * nanosPerDegreeX;
+        double timeY = Math.abs(toY - fromY) * nanosPerDegreeY;
+        if (timeX == 0 && timeY == 0) {
+            return 0;
+        }
+        return (long) Math.max(timeX, timeY) + commandOverheadNanos;
+    }
+}
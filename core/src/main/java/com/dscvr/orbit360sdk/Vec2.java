@@ -0,0 +1,136 @@
+package com.dscvr.orbit360sdk;
+
+/**
+ * Mutable two-dimensional vector with double precision, for calculations on hot paths.
+ *
+ * Unlike Point2f, all operations modify and return this instance, so chains of operations do not
+ * allocate. Use toPoint2f to hand results to code expecting the immutable Point2f.
+ */
+public final class Vec2 {
+    public double x;
+    public double y;
+
+    public Vec2() {
+    }
+
+    public Vec2(double x, double y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public Vec2 set(double x, double y) {
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
+    public Vec2 set(Vec2 b) {
+        this.x = b.x;
+        this.y = b.y;
+        return this;
+    }
+
+    public Vec2 set(Point2f b) {
+        this.x = b.getX();
+        this.y = b.getY();
+        return this;
+    }
+
+    public Vec2 add(Vec2 b) {
+        x += b.x;
+        y += b.y;
+        return this;
+    }
+
+    public Vec2 add(double bx, double by) {
+        x += bx;
+        y += by;
+        return this;
+    }
+
+    public Vec2 sub(Vec2 b) {
+        x -= b.x;
+        y -= b.y;
+        return this;
+    }
+
+    public Vec2 mul(Vec2 b) {
+        x *= b.x;
+        y *= b.y;
+        return this;
+    }
+
+    public Vec2 mul(double b) {
+        x *= b;
+        y *= b;
+        return this;
+    }
+
+    public Vec2 mul(double bx, double by) {
+        x *= bx;
+        y *= by;
+        return this;
+    }
+
+    public Vec2 div(Vec2 b) {
+        x /= b.x;
+        y /= b.y;
+        return this;
+    }
+
+    public Vec2 div(double b) {
+        x /= b;
+        y /= b;
+        return this;
+    }
+
+    public Vec2 div(double bx, double by) {
+        x /= bx;
+        y /= by;
+        return this;
+    }
+
+    public Vec2 abs() {
+        x = Math.abs(x);
+        y = Math.abs(y);
+        return this;
+    }
+
+    public Vec2 min(Vec2 b) {
+        x = Math.min(x, b.x);
+        y = Math.min(y, b.y);
+        return this;
+    }
+
+    public Vec2 max(Vec2 b) {
+        x = Math.max(x, b.x);
+        y = Math.max(y, b.y);
+        return this;
+    }
+
+    /**
+     * Converts steps to degrees, in place.
+     */
+    public Vec2 stepsToDegrees() {
+        return div(Orbit360Control.DEGREES_TO_STEPS_X, Orbit360Control.DEGREES_TO_STEPS_Y);
+    }
+
+    /**
+     * Converts degrees to steps, in place.
+     */
+    public Vec2 degreesToSteps() {
+        return mul(Orbit360Control.DEGREES_TO_STEPS_X, Orbit360Control.DEGREES_TO_STEPS_Y);
+    }
+
+    /**
+     * @return A new, immutable copy of this vector.
+     */
+    public Point2f toPoint2f() {
+        return new Point2f((float) x, (float) y);
+    }
+
+    @Override
+    public String toString() {
+        return "(" + x + ", " + y + ")";
+    }
+}
@@ -0,0 +1,158 @@
+package com.dscvr.orbit360sdk;
+
+import java.util.PriorityQueue;
+
+/**
+ * A clock which only advances when it is told to, and which executes scheduled events in order of
+ * their time.
+ *
+ * Sleeping on this clock advances it immediately, running all events which are due in the meantime
+ * on the sleeping thread. As long as a single thread advances the clock, all events happen in a
+ * deterministic order, independent of the speed of the host.
+ */
+public class VirtualClock implements Clock {
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private long now;
+    private long sequence;
+
+    private static class Event implements Comparable<Event> {
+        final long time;
+        final long sequence;
+        final Runnable action;
+
+        Event(long time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            if (time != other.time) {
+                return time < other.time ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    /**
+     * Creates a new clock, starting at zero.
+     */
+    public VirtualClock() {
+        this(0);
+    }
+
+    /**
+     * Creates a new clock.
+     * @param startTime The initial time, in nanoseconds.
+     */
+    public VirtualClock(long startTime) {
+        this.now = startTime;
+    }
+
+    @Override
+    public synchronized long nanoTime() {
+        return now;
+    }
+
+    @Override
+    public void sleepNanos(long nanos) {
+        advanceBy(Math.max(0, nanos));
+    }
+
+    /**
+     * Advances the clock to the next scheduled event, if it is due within the given time, and runs
+     * it. Otherwise, advances the clock by the given time. The monitor is not released, so the
+     * events are run while holding it.
+     */
+    @Override
+    public void waitNanos(Object monitor, long nanos) {
+        if (nanos <= 0) {
+            return;
+        }
+        long deadline;
+        long next;
+        synchronized (this) {
+            deadline = now + nanos;
+            Event event = events.peek();
+            next = event == null ? deadline : Math.min(event.time, deadline);
+        }
+        advanceTo(next);
+    }
+
+    /**
+     * Schedules an action to be run when the clock is advanced past the given time.
+     * Events at the same time run in the order they were scheduled.
+     * @param time The time to run the action at, in nanoseconds.
+     * @param action The action to run.
+     */
+    public synchronized void scheduleAt(long time, Runnable action) {
+        events.add(new Event(Math.max(time, now), sequence++, action));
+    }
+
+    /**
+     * Schedules an action to be run after the given delay.
+     * @param delayNanos The delay, in nanoseconds.
+     * @param action The action to run.
+     */
+    public synchronized void schedule(long delayNanos, Runnable action) {
+        scheduleAt(now + delayNanos, action);
+    }
+
+    /**
+     * Advances the clock by the given time, running all events which are due.
+     * @param nanos The time to advance by, in nanoseconds.
+     */
+    public void advanceBy(long nanos) {
+        long target;
+        synchronized (this) {
+            target = now + nanos;
+        }
+        advanceTo(target);
+    }
+
+    /**
+     * Advances the clock to the given time, running all events which are due. Events scheduled by
+     * running events are executed as well, if they are due.
+     * @param time The time to advance to, in nanoseconds.
+     */
+    public void advanceTo(long time) {
+        while (true) {
+            Event next;
+            synchronized (this) {
+                next = events.peek();
+                if (next == null || next.time > time) {
+                    now = Math.max(now, time);
+                    return;
+                }
+                events.poll();
+                now = next.time;
+            }
+            next.action.run();
+        }
+    }
+
+    /**
+     * Advances the clock to the next scheduled event and runs it.
+     * @return False if no event was scheduled.
+     */
+    public boolean runNext() {
+        long time;
+        synchronized (this) {
+            Event next = events.peek();
+            if (next == null) {
+                return false;
+            }
+            time = next.time;
+        }
+        advanceTo(time);
+        return true;
+    }
+
+    /**
+     * @return The count of scheduled events which did not run yet.
+     */
+    public synchronized int getPendingEventCount() {
+        return events.size();
+    }
+}
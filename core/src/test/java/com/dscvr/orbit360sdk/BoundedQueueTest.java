@@ -0,0 +1,93 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class BoundedQueueTest {
+    @Test
+    public void capacity_isRoundedUpToPowerOfTwo() throws Exception {
+        assertEquals(1, new BoundedQueue<Integer>(1).capacity());
+        assertEquals(8, new BoundedQueue<Integer>(5).capacity());
+        assertEquals(8, new BoundedQueue<Integer>(8).capacity());
+    }
+
+    @Test
+    public void offerAndPoll_areFifoAndBounded() throws Exception {
+        BoundedQueue<Integer> queue = new BoundedQueue<>(4);
+        assertNull(queue.poll());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse("full", queue.offer(4));
+        assertEquals(4, queue.size());
+
+        assertEquals(Integer.valueOf(0), queue.poll());
+        assertTrue("a slot was freed", queue.offer(4));
+        // Wraps around the ring several times.
+        for (int i = 1; i < 100; i++) {
+            assertEquals(Integer.valueOf(i), queue.poll());
+            assertTrue(queue.offer(i + 4));
+        }
+        assertEquals(4, queue.size());
+    }
+
+    @Test
+    public void concurrentProducersAndConsumers_deliverEveryElementOnce() throws Exception {
+        final BoundedQueue<Long> queue = new BoundedQueue<>(64);
+        final int producers = 4;
+        final int consumers = 4;
+        final long perProducer = 50000;
+        final AtomicLong sum = new AtomicLong();
+        final AtomicLong count = new AtomicLong();
+        final CountDownLatch producersDone = new CountDownLatch(producers);
+        Thread[] threads = new Thread[producers + consumers];
+        for (int p = 0; p < producers; p++) {
+            final long base = p * perProducer;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (long i = 1; i <= perProducer; i++) {
+                        while (!queue.offer(base + i)) {
+                            Thread.yield();
+                        }
+                    }
+                    producersDone.countDown();
+                }
+            });
+        }
+        for (int c = 0; c < consumers; c++) {
+            threads[producers + c] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (true) {
+                        Long element = queue.poll();
+                        if (element != null) {
+                            sum.addAndGet(element);
+                            count.incrementAndGet();
+                        } else if (producersDone.getCount() == 0 && queue.size() == 0) {
+                            return;
+                        } else {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join(30000);
+            assertFalse(thread.isAlive());
+        }
+
+        long total = producers * perProducer;
+        assertEquals(total, count.get());
+        assertEquals(total * (total + 1) / 2, sum.get());
+        assertNull(queue.poll());
+    }
+}
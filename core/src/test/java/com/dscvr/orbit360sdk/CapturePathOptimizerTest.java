@@ -0,0 +1,127 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class CapturePathOptimizerTest {
+    private final TravelTimeModel model = new TravelTimeModel(1000, 1000, 0, false);
+
+    @Test
+    public void serpentine_entersEachRowAtTheEndClosestToThePreviousRow() throws Exception {
+        CapturePath grid = CapturePath.grid(0, 0, 10, 10, 5, 4);
+        CapturePathOptimizer optimizer = new CapturePathOptimizer(model);
+
+        CapturePath optimized = optimizer.optimize(grid, CapturePathOptimizer.Ordering.SERPENTINE);
+
+        assertPermutation(grid, optimized);
+        double[] x = new double[20];
+        double[] y = new double[20];
+        for (int row = 0; row < 4; row++) {
+            for (int column = 0; column < 5; column++) {
+                x[row * 5 + column] = 10 * (row % 2 == 0 ? column : 4 - column);
+                y[row * 5 + column] = 10 * row;
+            }
+        }
+        long serpentine = CapturePath.of(x, y).getTravelTimeNanos(model, 0, 0);
+        assertTrue(optimized.getTravelTimeNanos(model, 0, 0) <= serpentine);
+        assertTrue(serpentine < grid.getTravelTimeNanos(model, 0, 0));
+    }
+
+    @Test
+    public void serpentine_traversesWrappedRowsAsCircles() throws Exception {
+        TravelTimeModel wrapping = new TravelTimeModel(1000, 1000, 0, true);
+        CapturePath turntable = CapturePath.turntable(12, 0, 30, 60);
+        CapturePathOptimizer optimizer = new CapturePathOptimizer(wrapping);
+
+        CapturePath optimized = optimizer.optimize(turntable, CapturePathOptimizer.Ordering.SERPENTINE);
+
+        assertPermutation(turntable, optimized);
+        // Every row needs 11 moves of 30 degrees, and the rows are connected by tilting only.
+        long shot = wrapping.travelTimeNanos(0, 0, 30, 0);
+        long tilt = wrapping.travelTimeNanos(0, 0, 0, 30);
+        assertEquals(3 * 11 * shot + 2 * tilt, optimized.getTravelTimeNanos(wrapping, 0, 0), 3);
+    }
+
+    @Test
+    public void tour_shortensARandomPath() throws Exception {
+        CapturePath path = randomPath(150, 1);
+        CapturePathOptimizer optimizer = new CapturePathOptimizer(model);
+
+        CapturePath optimized = optimizer.optimize(path, CapturePathOptimizer.Ordering.TOUR);
+
+        assertPermutation(path, optimized);
+        assertTrue(optimized.getTravelTimeNanos(model, 0, 0) < path.getTravelTimeNanos(model, 0, 0) / 4);
+    }
+
+    @Test
+    public void best_isNotSlowerThanEitherOrdering() throws Exception {
+        CapturePathOptimizer optimizer = new CapturePathOptimizer(model);
+        CapturePath[] paths = {randomPath(100, 2), CapturePath.grid(-50, -20, 5, 8, 12, 6),
+                CapturePath.sphericalPanorama(60, 45, 0.3f)};
+
+        for (CapturePath path : paths) {
+            long best = optimizer.optimize(path, CapturePathOptimizer.Ordering.BEST).getTravelTimeNanos(model, 0, 0);
+            long serpentine = optimizer.optimize(path, CapturePathOptimizer.Ordering.SERPENTINE).getTravelTimeNanos(model, 0, 0);
+            long tour = optimizer.optimize(path, CapturePathOptimizer.Ordering.TOUR).getTravelTimeNanos(model, 0, 0);
+            assertEquals(Math.min(serpentine, tour), best);
+        }
+    }
+
+    @Test
+    public void largePath_hasTheSameTourOnEveryPool() throws Exception {
+        // Large enough for the neighbour search to be split.
+        CapturePath path = randomPath(1000, 3);
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool parallel = new ForkJoinPool(4);
+        try {
+            CapturePath first = new CapturePathOptimizer(model, single).optimize(path, CapturePathOptimizer.Ordering.TOUR, 10, 10);
+            CapturePath second = new CapturePathOptimizer(model, parallel).optimize(path, CapturePathOptimizer.Ordering.TOUR, 10, 10);
+
+            assertPermutation(path, first);
+            for (int i = 0; i < path.size(); i++) {
+                assertEquals(first.getX(i), second.getX(i), 0);
+                assertEquals(first.getY(i), second.getY(i), 0);
+            }
+        } finally {
+            single.shutdown();
+            parallel.shutdown();
+        }
+    }
+
+    @Test
+    public void shortPath_isReturnedUnchanged() throws Exception {
+        CapturePath path = CapturePath.of(new double[]{40}, new double[]{10});
+        CapturePathOptimizer optimizer = new CapturePathOptimizer(model);
+
+        assertSame(path, optimizer.optimize(path, CapturePathOptimizer.Ordering.BEST));
+    }
+
+    private static CapturePath randomPath(int size, long seed) {
+        Random random = new Random(seed);
+        double[] x = new double[size];
+        double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = random.nextDouble() * 300 - 150;
+            y[i] = random.nextDouble() * 120 - 60;
+        }
+        return CapturePath.of(x, y);
+    }
+
+    private static void assertPermutation(CapturePath expected, CapturePath actual) {
+        assertEquals(expected.size(), actual.size());
+        String[] a = new String[expected.size()];
+        String[] b = new String[actual.size()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = expected.getX(i) + "," + expected.getY(i);
+            b[i] = actual.getX(i) + "," + actual.getY(i);
+        }
+        Arrays.sort(a);
+        Arrays.sort(b);
+        assertArrayEquals(a, b);
+    }
+}
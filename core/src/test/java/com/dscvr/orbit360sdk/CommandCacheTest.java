@@ -0,0 +1,126 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class CommandCacheTest {
+    @Test
+    public void get_returnsTheSameFrozenCommand() throws Exception {
+        CommandCache cache = new CommandCache(16);
+
+        Command command = cache.get(100, -200, 300, 400);
+
+        assertSame(command, cache.get(100, -200, 300, 400));
+        assertSame(command, cache.moveXYSteps(100.7f, -200.2f, 300, 400));
+        assertArrayEquals(Command.moveXYSteps(new Point2f(100, -200), new Point2f(300, 400)).getValue(), command.getValue());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+        try {
+            command.setStop();
+            fail("The cached command is not frozen");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void sharedCommand_valueCanNotBeModified() throws Exception {
+        Command command = CommandCache.getShared().get(100, -200, 300, 400);
+        byte[] expected = command.getValue().clone();
+
+        command.getValue()[4] = 0x7F;
+
+        assertArrayEquals(expected, command.getValue());
+        assertEquals(100, FrameDecoder.moveStepsX(command.getValue(), 0));
+    }
+
+    @Test
+    public void get_overCapacity_evictsCommands() throws Exception {
+        CommandCache cache = new CommandCache(8);
+
+        for (int i = 0; i < 100; i++) {
+            cache.get(i, 0, 1000, 1000);
+        }
+
+        assertTrue(cache.size() <= cache.getCapacity());
+        assertEquals(100, cache.getMissCount());
+        assertEquals(100 - cache.size(), cache.getEvictionCount());
+        // Evicted commands are created again, and stay correct.
+        assertEquals(3, cache.get(3, 0, 1000, 1000).getStepsX(), 0);
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void get_recentlyUsedCommands_surviveEviction() throws Exception {
+        CommandCache cache = new CommandCache(1);
+        Command first = cache.get(1, 0, 1000, 1000);
+        cache.get(2, 0, 1000, 1000);
+
+        assertNotSame(first, cache.get(1, 0, 1000, 1000));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void get_concurrently_returnsOneInstancePerKey() throws Exception {
+        final CommandCache cache = new CommandCache(1024);
+        final int keys = 256;
+        int threadCount = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Command[]> results = Collections.synchronizedList(new ArrayList<Command[]>());
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final long seed = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Random random = new Random(seed);
+                        Command[] seen = new Command[keys];
+                        start.await();
+                        for (int n = 0; n < 20000; n++) {
+                            int key = random.nextInt(keys);
+                            Command command = cache.get(key, -key, 500, 500);
+                            if (seen[key] == null) {
+                                seen[key] = command;
+                            } else if (seen[key] != command) {
+                                throw new AssertionError("Key " + key + " returned two instances");
+                            }
+                        }
+                        results.add(seen);
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(30000);
+        }
+
+        assertEquals(Collections.emptyList(), errors);
+        assertEquals(threadCount, results.size());
+        for (int key = 0; key < keys; key++) {
+            Command expected = cache.get(key, -key, 500, 500);
+            assertEquals(key, expected.getStepsX(), 0);
+            assertEquals(-key, expected.getStepsY(), 0);
+            for (Command[] seen : results) {
+                if (seen[key] != null) {
+                    assertSame(expected, seen[key]);
+                }
+            }
+        }
+        assertEquals(keys, cache.getMissCount());
+        assertEquals(0, cache.getEvictionCount());
+    }
+}
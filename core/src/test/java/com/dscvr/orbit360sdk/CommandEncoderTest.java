@@ -0,0 +1,120 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CommandEncoderTest {
+    private static final int[][] MOVES = {
+            {0, 0, 0, 0},
+            {1000, 500, -250, 125},
+            {-1, 1, 1, 1},
+            {Integer.MAX_VALUE, 0xFFFF, Integer.MIN_VALUE + 1, 0xFFFF},
+            {-123456, 40000, 654321, 65535},
+            {5, 70000, -5, 65536},
+    };
+
+    @Test
+    public void encodeMoveXY_matchesBaselineEncoding() throws Exception {
+        for (int[] move : MOVES) {
+            assertMoveMatchesBaseline(move[0], move[1], move[2], move[3]);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            assertMoveMatchesBaseline(random.nextInt(), random.nextInt(0x10000), random.nextInt(), random.nextInt(0x10000));
+        }
+    }
+
+    @Test
+    public void encodeStop_matchesBaselineEncoding() throws Exception {
+        byte[] frame = new byte[CommandEncoder.FRAME_CAPACITY];
+        assertEquals(CommandEncoder.STOP_FRAME_LENGTH, CommandEncoder.encodeStop(frame, 0));
+        assertArrayEquals(baselineFrame((byte) 0x04, new byte[0]), frame);
+        assertArrayEquals(baselineFrame((byte) 0x04, new byte[0]), Command.stop().getValue());
+    }
+
+    @Test
+    public void reusedCommand_clearsTheRestOfALongerFrame() throws Exception {
+        Command command = Command.moveXYSteps(new Point2f(1000, -2000), new Point2f(300, 400));
+        command.setStop();
+        assertArrayEquals(baselineFrame((byte) 0x04, new byte[0]), command.getValue());
+        assertEquals(CommandEncoder.STOP_FRAME_LENGTH, command.getLength());
+    }
+
+    @Test
+    public void encodeIntoByteBuffer_matchesArrayEncoding() throws Exception {
+        byte[] expected = new byte[CommandEncoder.FRAME_CAPACITY];
+        CommandEncoder.encodeMoveXY(-1234, 567, 890, 1011, expected, 0);
+        for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(64), ByteBuffer.allocateDirect(64)}) {
+            assertEquals(CommandEncoder.MOVE_XY_FRAME_LENGTH, CommandEncoder.encodeMoveXY(-1234, 567, 890, 1011, buffer, 7));
+            assertEquals("position is not modified", 0, buffer.position());
+            byte[] actual = new byte[CommandEncoder.MOVE_XY_FRAME_LENGTH];
+            for (int i = 0; i < actual.length; i++) {
+                actual[i] = buffer.get(7 + i);
+            }
+            assertArrayEquals(slice(expected, CommandEncoder.MOVE_XY_FRAME_LENGTH), actual);
+        }
+    }
+
+    private static void assertMoveMatchesBaseline(int stepsX, int speedX, int stepsY, int speedY) {
+        byte[] expected = baselineMove(stepsX, speedX, stepsY, speedY);
+        byte[] frame = new byte[CommandEncoder.FRAME_CAPACITY];
+        assertEquals(CommandEncoder.MOVE_XY_FRAME_LENGTH, CommandEncoder.encodeMoveXY(stepsX, speedX, stepsY, speedY, frame, 0));
+        assertArrayEquals(expected, frame);
+
+        // At an offset, the bytes around the frame are left alone.
+        byte[] shifted = new byte[CommandEncoder.FRAME_CAPACITY + 8];
+        CommandEncoder.encodeMoveXY(stepsX, speedX, stepsY, speedY, shifted, 5);
+        assertEquals(0, shifted[4]);
+        assertArrayEquals(slice(expected, CommandEncoder.MOVE_XY_FRAME_LENGTH),
+                slice(shifted, 5, CommandEncoder.MOVE_XY_FRAME_LENGTH));
+        assertEquals(0, shifted[5 + CommandEncoder.MOVE_XY_FRAME_LENGTH]);
+    }
+
+    /**
+     * The encoding of the original Command.moveXYSteps, before CommandEncoder existed.
+     */
+    private static byte[] baselineMove(int stepsX, int speedX, int stepsY, int speedY) {
+        byte[] dataX = baselineData(stepsX, speedX);
+        byte[] dataY = baselineData(-stepsY, speedY);
+        byte[] data = new byte[dataX.length + dataY.length + 1];
+        System.arraycopy(dataX, 0, data, 0, dataX.length);
+        System.arraycopy(dataY, 0, data, dataX.length, dataY.length);
+        // Full steps.
+        data[data.length - 1] = 0x00;
+        return baselineFrame((byte) 0x03, data);
+    }
+
+    private static byte[] baselineData(int steps, int speed) {
+        byte[] stepsAsArray = ByteBuffer.allocate(4).putInt(steps).array();
+        byte[] speedAsArray = ByteBuffer.allocate(4).putInt(speed).array();
+        return new byte[]{stepsAsArray[0], stepsAsArray[1], stepsAsArray[2], stepsAsArray[3], speedAsArray[2], speedAsArray[3]};
+    }
+
+    private static byte[] baselineFrame(byte function, byte[] data) {
+        byte[] value = new byte[32];
+        value[0] = (byte) 0xFE;
+        value[1] = (byte) data.length;
+        value[2] = function;
+        System.arraycopy(data, 0, value, 3, data.length);
+        int checksum = 0;
+        for (int i = 0; i < data.length + 3; i++) {
+            checksum += value[i];
+        }
+        value[data.length + 3] = (byte) (checksum & 0xFF);
+        return value;
+    }
+
+    private static byte[] slice(byte[] array, int length) {
+        return slice(array, 0, length);
+    }
+
+    private static byte[] slice(byte[] array, int offset, int length) {
+        byte[] result = new byte[length];
+        System.arraycopy(array, offset, result, 0, length);
+        return result;
+    }
+}
@@ -0,0 +1,124 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CompiledScriptTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("script", ".o360");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void writeToAndMap_roundTripTheScript() throws Exception {
+        List<Command> script = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            script.add(Command.moveXYSteps(new Point2f(100 + i, i % 2 == 0 ? -40 : 60), new Point2f(800, 300 + i)));
+            if (i % 25 == 24) {
+                script.add(Command.stop());
+            }
+        }
+        CompiledScript compiled = new MotionPlanner().setMergeMoves(false).setSynchronizeAxes(false).compile(script);
+
+        compiled.writeTo(file);
+        CompiledScript mapped = CompiledScript.map(file);
+
+        assertEquals(script.size(), mapped.size());
+        assertEquals(compiled.getTotalDurationNanos(), mapped.getTotalDurationNanos());
+        assertEquals(compiled.getTotalSteps().getX(), mapped.getTotalSteps().getX(), 0);
+        assertEquals(compiled.getTotalSteps().getY(), mapped.getTotalSteps().getY(), 0);
+        byte[] expected = new byte[CommandEncoder.FRAME_CAPACITY];
+        byte[] actual = new byte[CommandEncoder.FRAME_CAPACITY];
+        for (int i = 0; i < compiled.size(); i++) {
+            assertEquals(compiled.getPredictedDurationNanos(i), mapped.getPredictedDurationNanos(i));
+            assertEquals(compiled.copyFrame(i, expected, 0), mapped.copyFrame(i, actual, 0));
+            assertArrayEquals("frame " + i, expected, actual);
+            assertArrayEquals(script.get(i).getValue(), mapped.getCommand(i, new Command()).getValue());
+        }
+    }
+
+    @Test
+    public void sourceOfMappedScript_readsEveryCommandInOrder() throws Exception {
+        List<Command> script = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            script.add(Command.moveXYSteps(new Point2f(i + 1, 0), new Point2f(1000, 1000)));
+        }
+        new MotionPlanner().setMergeMoves(false).compile(script).writeTo(file);
+        CompiledScript mapped = CompiledScript.map(file);
+
+        CommandSource.Timed source = mapped.source();
+        Command command = new Command();
+        for (int i = 0; i < script.size(); i++) {
+            assertTrue(source.next(command, null));
+            assertEquals(i + 1, command.getStepsX(), 0);
+            assertEquals(mapped.getPredictedDurationNanos(i), source.getPredictedDurationNanos());
+        }
+        assertFalse(source.next(command, null));
+    }
+
+    @Test
+    public void getCommand_holdsTheStoredFrame() throws Exception {
+        CompiledScript.Builder builder = new CompiledScript.Builder();
+        // Floats can not represent these steps, re-encoding them would round.
+        builder.addMove(16777217, -16777219, 1000, 65535, 1000000000L);
+        builder.addStop();
+        CompiledScript compiled = builder.build();
+
+        byte[] expected = new byte[CommandEncoder.FRAME_CAPACITY];
+        int length = CommandEncoder.encodeMoveXY(16777217, 1000, -16777219, 65535, expected, 0);
+        Command command = compiled.getCommand(0, new Command());
+        assertEquals(length, command.getLength());
+        assertArrayEquals(expected, command.getValue());
+        assertEquals(length, compiled.copyFrame(0, expected, 0));
+        assertArrayEquals(expected, command.getValue());
+        assertEquals(65535, command.getSpeedY(), 0);
+
+        compiled.getCommand(1, command);
+        assertArrayEquals(Command.stop().getValue(), command.getValue());
+        assertEquals(0, command.getStepsX(), 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void map_rejectsOtherFiles() throws Exception {
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            stream.write(new byte[CompiledScript.HEADER_SIZE + CompiledScript.RECORD_SIZE]);
+        }
+        CompiledScript.map(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void map_rejectsTruncatedFiles() throws Exception {
+        List<Command> script = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            script.add(Command.moveXYSteps(new Point2f(100, 0), new Point2f(1000, 1000)));
+        }
+        new MotionPlanner().setMergeMoves(false).compile(script).writeTo(file);
+        File truncated = File.createTempFile("truncated", ".o360");
+        try {
+            byte[] content = Files.readAllBytes(file.toPath());
+            try (FileOutputStream stream = new FileOutputStream(truncated)) {
+                stream.write(content, 0, content.length - CompiledScript.RECORD_SIZE);
+            }
+            CompiledScript.map(truncated);
+        } finally {
+            truncated.delete();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DeadlineSchedulerTest {
+    private static final long MILLISECOND = 1000000;
+
+    private DeadlineScheduler scheduler;
+
+    @After
+    public void tearDown() {
+        if (scheduler != null) {
+            scheduler.close();
+        }
+    }
+
+    @Test
+    public void tasks_runAtTheirDeadlinesInOrder() throws Exception {
+        final VirtualClock clock = new VirtualClock();
+        scheduler = new DeadlineScheduler(clock, 1);
+        final List<String> runs = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done = new CountDownLatch(3);
+        CountDownLatch resume = pause();
+
+        DeadlineScheduler.Task late = record(clock, "late", runs, done);
+        DeadlineScheduler.Task early = record(clock, "early", runs, done);
+        DeadlineScheduler.Task middle = record(clock, "middle", runs, done);
+        late.scheduleAt(30 * MILLISECOND);
+        early.scheduleAt(10 * MILLISECOND);
+        middle.scheduleAt(20 * MILLISECOND);
+        resume.countDown();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("early@10", "middle@20", "late@30"), runs);
+        assertEquals(0, scheduler.getLateness().getMaxNanos());
+    }
+
+    @Test
+    public void scheduleAt_keepsTheEarlierDeadline() throws Exception {
+        final VirtualClock clock = new VirtualClock();
+        scheduler = new DeadlineScheduler(clock, 1);
+        final List<String> runs = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done = new CountDownLatch(2);
+        CountDownLatch resume = pause();
+
+        DeadlineScheduler.Task task = record(clock, "task", runs, done);
+        task.scheduleAt(50 * MILLISECOND);
+        task.scheduleAt(20 * MILLISECOND);
+        task.scheduleAt(40 * MILLISECOND);
+        DeadlineScheduler.Task marker = record(clock, "marker", runs, done);
+        marker.scheduleAt(60 * MILLISECOND);
+        resume.countDown();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        // Rescheduled to 20, the later deadlines are ignored.
+        assertEquals(Arrays.asList("task@20", "marker@60"), runs);
+    }
+
+    @Test
+    public void cancel_removesTheTask() throws Exception {
+        final VirtualClock clock = new VirtualClock();
+        scheduler = new DeadlineScheduler(clock, 1);
+        final List<String> runs = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done = new CountDownLatch(1);
+        CountDownLatch resume = pause();
+
+        DeadlineScheduler.Task cancelled = record(clock, "cancelled", runs, done);
+        cancelled.scheduleAt(10 * MILLISECOND);
+        cancelled.cancel();
+        record(clock, "marker", runs, done).scheduleAt(20 * MILLISECOND);
+        resume.countDown();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("marker@20"), runs);
+    }
+
+    @Test
+    public void scheduleWhileRunning_runsTheTaskAgainAfterwards() throws Exception {
+        final VirtualClock clock = new VirtualClock();
+        scheduler = new DeadlineScheduler(clock, 2);
+        final List<Long> runs = Collections.synchronizedList(new ArrayList<Long>());
+        final CountDownLatch done = new CountDownLatch(3);
+        final DeadlineScheduler.Task[] task = new DeadlineScheduler.Task[1];
+        task[0] = scheduler.newTask(new Runnable() {
+            @Override
+            public void run() {
+                runs.add(clock.nanoTime() / MILLISECOND);
+                done.countDown();
+                if (runs.size() < 3) {
+                    // Scheduled from its own action, like a dispatcher waiting for its next deadline.
+                    task[0].scheduleAt(clock.nanoTime() + 5 * MILLISECOND);
+                }
+            }
+        });
+        task[0].scheduleAt(10 * MILLISECOND);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(10L, 15L, 20L), runs);
+    }
+
+    @Test
+    public void failingTask_doesNotStopTheScheduler() throws Exception {
+        final VirtualClock clock = new VirtualClock();
+        scheduler = new DeadlineScheduler(clock, 1);
+        final List<String> runs = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done = new CountDownLatch(1);
+        CountDownLatch resume = pause();
+        scheduler.newTask(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("expected by the test");
+            }
+        }).scheduleAt(10 * MILLISECOND);
+        record(clock, "after", runs, done).scheduleAt(20 * MILLISECOND);
+        resume.countDown();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("after@20"), runs);
+    }
+
+    @Test
+    public void lateWakeUps_areCompensated() throws Exception {
+        final VirtualClock virtualClock = new VirtualClock();
+        JitteryClock clock = new JitteryClock(virtualClock, 1, MILLISECOND, MILLISECOND);
+        scheduler = new DeadlineScheduler(clock, 1);
+        final int count = 100;
+        final long[] lateness = new long[count];
+        final CountDownLatch done = new CountDownLatch(1);
+        final DeadlineScheduler.Task[] task = new DeadlineScheduler.Task[1];
+        task[0] = scheduler.newTask(new Runnable() {
+            private int run = 0;
+
+            @Override
+            public void run() {
+                lateness[run] = virtualClock.nanoTime() - (run + 1) * 10 * MILLISECOND;
+                run++;
+                if (run < count) {
+                    task[0].scheduleAt((run + 1) * 10 * MILLISECOND);
+                } else {
+                    done.countDown();
+                }
+            }
+        });
+        task[0].scheduleAt(10 * MILLISECOND);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        // Without compensation, every wake-up is a millisecond late.
+        assertEquals(MILLISECOND, lateness[0]);
+        assertEquals(MILLISECOND, scheduler.getCompensationNanos(), 0.01 * MILLISECOND);
+        for (int i = count / 2; i < count; i++) {
+            assertTrue("run " + i + " was late by " + lateness[i], lateness[i] >= 0 && lateness[i] < 0.01 * MILLISECOND);
+        }
+    }
+
+    @Test
+    public void earlyWakeUps_sleepUntilTheDeadline() throws Exception {
+        final VirtualClock virtualClock = new VirtualClock();
+        JitteryClock clock = new JitteryClock(virtualClock, 1, 0, 2 * MILLISECOND);
+        scheduler = new DeadlineScheduler(clock, 1);
+        final int count = 200;
+        final long[] lateness = new long[count];
+        final CountDownLatch done = new CountDownLatch(1);
+        final DeadlineScheduler.Task[] task = new DeadlineScheduler.Task[1];
+        task[0] = scheduler.newTask(new Runnable() {
+            private int run = 0;
+
+            @Override
+            public void run() {
+                lateness[run] = virtualClock.nanoTime() - (run + 1) * 10 * MILLISECOND;
+                run++;
+                if (run < count) {
+                    task[0].scheduleAt((run + 1) * 10 * MILLISECOND);
+                } else {
+                    done.countDown();
+                }
+            }
+        });
+        task[0].scheduleAt(10 * MILLISECOND);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        // The scheduler wakes up about a millisecond early, then sleeps the rest of the time.
+        assertEquals(MILLISECOND, scheduler.getCompensationNanos(), 0.3 * MILLISECOND);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            assertTrue("run " + i + " ran early", lateness[i] >= 0);
+            total += lateness[i];
+        }
+        assertTrue(total / count < MILLISECOND / 2);
+    }
+
+    @Test
+    public void compensation_isLimited() throws Exception {
+        final VirtualClock virtualClock = new VirtualClock();
+        JitteryClock clock = new JitteryClock(virtualClock, 1, 10 * MILLISECOND, 10 * MILLISECOND);
+        scheduler = new DeadlineScheduler(clock, 1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final DeadlineScheduler.Task[] task = new DeadlineScheduler.Task[1];
+        task[0] = scheduler.newTask(new Runnable() {
+            private int run = 0;
+
+            @Override
+            public void run() {
+                if (++run < 100) {
+                    task[0].scheduleAt(virtualClock.nanoTime() + 50 * MILLISECOND);
+                } else {
+                    done.countDown();
+                }
+            }
+        });
+        task[0].scheduleAt(50 * MILLISECOND);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(scheduler.getCompensationNanos() <= DeadlineScheduler.MAX_COMPENSATION_NANOS);
+        assertTrue(scheduler.getCompensationNanos() > DeadlineScheduler.MAX_COMPENSATION_NANOS * 9 / 10);
+    }
+
+    /**
+     * Blocks the thread of the scheduler, so it does not advance the virtual clock while a test
+     * schedules its tasks.
+     * @return The latch to count down when the tasks are scheduled.
+     */
+    private CountDownLatch pause() throws InterruptedException {
+        final CountDownLatch paused = new CountDownLatch(1);
+        final CountDownLatch resume = new CountDownLatch(1);
+        scheduler.newTask(new Runnable() {
+            @Override
+            public void run() {
+                paused.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }).scheduleAt(0);
+        assertTrue(paused.await(10, TimeUnit.SECONDS));
+        return resume;
+    }
+
+    private DeadlineScheduler.Task record(final Clock clock, final String name, final List<String> runs, final CountDownLatch done) {
+        return scheduler.newTask(new Runnable() {
+            @Override
+            public void run() {
+                runs.add(name + "@" + clock.nanoTime() / MILLISECOND);
+                done.countDown();
+            }
+        });
+    }
+}
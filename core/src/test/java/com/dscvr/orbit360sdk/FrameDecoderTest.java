@@ -0,0 +1,72 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameDecoderTest {
+    // The notifications as sent by the remote, padded with 0xFF.
+    private static final byte[] TOP_BUTTON = {(byte) 0xFE, 0x01, 0x08, 0x01, 0x08, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF};
+    private static final byte[] BOTTOM_BUTTON = {(byte) 0xFE, 0x01, 0x08, 0x00, 0x07, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF};
+
+    @Test
+    public void moveFrame_decodesEncodedStepsAndSpeeds() throws Exception {
+        byte[] frame = new byte[CommandEncoder.FRAME_CAPACITY];
+        CommandEncoder.encodeMoveXY(-1234, 65535, 98765, 1, frame, 0);
+
+        assertTrue(FrameDecoder.isValid(frame, 0, frame.length));
+        assertTrue(FrameDecoder.isMovementFinished(frame));
+        assertEquals(CommandEncoder.MOVE_XY_FRAME_LENGTH, FrameDecoder.frameLength(frame, 0));
+        assertEquals(-1234, FrameDecoder.moveStepsX(frame, 0));
+        assertEquals(65535, FrameDecoder.moveSpeedX(frame, 0));
+        assertEquals(98765, FrameDecoder.moveStepsY(frame, 0));
+        assertEquals(1, FrameDecoder.moveSpeedY(frame, 0));
+
+        Orbit360Event event = FrameDecoder.decode(frame, 0, frame.length, 42);
+        assertEquals(Orbit360Event.Type.MOVEMENT_FINISHED, event.getType());
+        assertEquals(-1234, event.getStepsX());
+        assertEquals(98765, event.getStepsY());
+        assertEquals(42, event.getTimestampNanos());
+    }
+
+    @Test
+    public void buttonFrames_decodeToButtonEvents() throws Exception {
+        Orbit360Event top = FrameDecoder.decode(TOP_BUTTON, 0, TOP_BUTTON.length, 0);
+        Orbit360Event bottom = FrameDecoder.decode(BOTTOM_BUTTON, 0, BOTTOM_BUTTON.length, 0);
+
+        assertEquals(Orbit360Event.Type.BUTTON_PRESSED, top.getType());
+        assertEquals(Orbit360Event.Button.TOP, top.getButton());
+        assertEquals(Orbit360Event.Type.BUTTON_PRESSED, bottom.getType());
+        assertEquals(Orbit360Event.Button.BOTTOM, bottom.getButton());
+    }
+
+    @Test
+    public void invalidFrames_areRejected() throws Exception {
+        byte[] frame = new byte[CommandEncoder.FRAME_CAPACITY];
+        CommandEncoder.encodeMoveXY(100, 200, 300, 400, frame, 0);
+
+        // Truncated before the checksum.
+        assertFalse(FrameDecoder.isValid(frame, 0, CommandEncoder.MOVE_XY_FRAME_LENGTH - 1));
+        assertNull(FrameDecoder.decode(frame, 0, CommandEncoder.MOVE_XY_FRAME_LENGTH - 1, 0));
+
+        byte[] corrupted = frame.clone();
+        corrupted[5] ^= 0x10;
+        assertFalse(FrameDecoder.isValid(corrupted, 0, corrupted.length));
+
+        byte[] noStart = frame.clone();
+        noStart[0] = 0;
+        assertFalse(FrameDecoder.isValid(noStart, 0, noStart.length));
+        assertFalse(FrameDecoder.isValid(new byte[2], 0, 2));
+    }
+
+    @Test
+    public void frameAtOffset_isDecoded() throws Exception {
+        byte[] buffer = new byte[64];
+        CommandEncoder.encodeStop(buffer, 10);
+
+        assertTrue(FrameDecoder.isValid(buffer, 10, buffer.length - 10));
+        assertEquals(CommandEncoder.FUNCTION_STOP, FrameDecoder.function(buffer, 10));
+        assertEquals(CommandEncoder.STOP_FRAME_LENGTH, FrameDecoder.frameLength(buffer, 10));
+        assertEquals(Orbit360Event.Type.UNKNOWN, FrameDecoder.decode(buffer, 10, buffer.length - 10, 0).getType());
+    }
+}
@@ -0,0 +1,46 @@
+package com.dscvr.orbit360sdk;
+
+import java.util.Random;
+
+/**
+ * A clock on top of a VirtualClock, which wakes waiting threads late, like an operating system.
+ * Sleeping is exact, like parking a thread.
+ */
+class JitteryClock implements Clock {
+    private final VirtualClock clock;
+    private final Random random;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+
+    /**
+     * @param clock The clock to advance.
+     * @param seed The seed of the delays.
+     * @param minDelayNanos The minimum delay of a wait which is not ended by an event, in nanoseconds.
+     * @param maxDelayNanos The maximum delay, in nanoseconds.
+     */
+    JitteryClock(VirtualClock clock, long seed, long minDelayNanos, long maxDelayNanos) {
+        this.clock = clock;
+        this.random = new Random(seed);
+        this.minDelayNanos = minDelayNanos;
+        this.maxDelayNanos = maxDelayNanos;
+    }
+
+    @Override
+    public long nanoTime() {
+        return clock.nanoTime();
+    }
+
+    @Override
+    public void sleepNanos(long nanos) {
+        clock.sleepNanos(nanos);
+    }
+
+    @Override
+    public void waitNanos(Object monitor, long nanos) {
+        long delay;
+        synchronized (random) {
+            delay = minDelayNanos + (long) (random.nextDouble() * (maxDelayNanos - minDelayNanos));
+        }
+        clock.waitNanos(monitor, nanos + delay);
+    }
+}
@@ -0,0 +1,100 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+    private static final long MILLISECOND = 1000000;
+
+    @Test
+    public void buckets_boundValuesWithinTheirResolution() throws Exception {
+        Random random = new Random(1);
+        int previous = -1;
+        for (long value = 0; value < 100000; value++) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue("buckets are ordered", bucket >= previous);
+            previous = bucket;
+            assertBounded(value);
+        }
+        for (int i = 0; i < 100000; i++) {
+            assertBounded(random.nextLong() >>> 1);
+        }
+        assertBounded(Long.MAX_VALUE);
+    }
+
+    private static void assertBounded(long value) {
+        long upper = LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(value));
+        assertTrue(value + " <= " + upper, upper >= value);
+        assertTrue(value + " resolved to " + upper, upper - value <= value / 32);
+    }
+
+    @Test
+    public void percentiles_areExactToTheResolutionOfTheBuckets() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i * MILLISECOND / 10);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(10000, snapshot.getCount());
+        assertEquals(500.05 * MILLISECOND, snapshot.getMeanNanos(), 1e-3);
+        assertEquals(1000 * MILLISECOND, snapshot.getMaxNanos());
+        assertEquals(500 * MILLISECOND, snapshot.getPercentileNanos(50), 500 * MILLISECOND / 32);
+        assertEquals(990 * MILLISECOND, snapshot.getPercentileNanos(99), 990 * MILLISECOND / 32);
+        assertEquals(1000 * MILLISECOND, snapshot.getPercentileNanos(100));
+        assertEquals(MILLISECOND / 10, snapshot.getPercentileNanos(0), MILLISECOND / 10 / 32);
+    }
+
+    @Test
+    public void emptyHistogram_reportsZero() throws Exception {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMeanNanos(), 0);
+        assertEquals(0, snapshot.getPercentileNanos(99));
+        assertEquals(0, snapshot.getMaxNanos());
+    }
+
+    @Test
+    public void negativeDuration_isRecordedAsZero() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        histogram.record(-5);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(0, snapshot.getPercentileNanos(50));
+        assertEquals(0, snapshot.getMaxNanos());
+    }
+
+    @Test
+    public void concurrentRecording_losesNoValues() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 100000; i++) {
+                        histogram.record(i + offset);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(400000, snapshot.getCount());
+        // Each thread records 0..99999 plus its offset of 0..3.
+        assertEquals((4 * 99999L * 100000 / 2 + 6 * 100000L) / 400000.0, snapshot.getMeanNanos(), 1e-6);
+        assertEquals(100002, snapshot.getMaxNanos());
+    }
+}
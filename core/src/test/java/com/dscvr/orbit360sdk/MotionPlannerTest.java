@@ -0,0 +1,85 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MotionPlannerTest {
+    @Test
+    public void fractionalMoves_accumulateWithoutRoundingDrift() throws Exception {
+        List<Command> script = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            script.add(Command.moveXYSteps(new Point2f(0.3f, -0.7f), new Point2f(1000, 1000)));
+        }
+
+        CompiledScript compiled = new MotionPlanner().compile(script);
+
+        // Rounding every move would end at (0, -100).
+        assertEquals(30, compiled.getTotalSteps().getX(), 0);
+        assertEquals(-70, compiled.getTotalSteps().getY(), 0);
+        long x = 0;
+        long y = 0;
+        Command command = new Command();
+        for (int i = 0; i < compiled.size(); i++) {
+            compiled.getCommand(i, command);
+            x += (long) command.getStepsX();
+            y += (long) command.getStepsY();
+        }
+        assertEquals(30, x);
+        assertEquals(-70, y);
+    }
+
+    @Test
+    public void longMove_isSplitIntoEvenParts() throws Exception {
+        CompiledScript compiled = new MotionPlanner()
+                .setMaxStepsPerCommand(300)
+                .compile(Arrays.asList(Command.moveXYSteps(new Point2f(1000, 250), new Point2f(1000, 1000))));
+
+        assertEquals(4, compiled.size());
+        Command command = new Command();
+        long total = 0;
+        for (int i = 0; i < compiled.size(); i++) {
+            compiled.getCommand(i, command);
+            assertEquals(250, command.getStepsX(), 0);
+            assertEquals(62.5, command.getStepsY(), 0.5);
+            // The Y-axis is slowed down to arrive together with the X-axis.
+            assertEquals(1000, command.getSpeedX(), 0);
+            assertEquals(250, command.getSpeedY(), 0);
+            assertEquals(MotionPlanner.durationNanos(250, (long) command.getStepsY(), 1000, 250), compiled.getPredictedDurationNanos(i));
+            total += compiled.getPredictedDurationNanos(i);
+        }
+        assertEquals(250, compiled.getTotalSteps().getY(), 0);
+        // The parts with 63 steps on the Y-axis take 252ms instead of 250ms.
+        assertEquals(1004000000L, total);
+        assertEquals(total, compiled.getTotalDurationNanos());
+    }
+
+    @Test
+    public void collinearMoves_areMergedUntilTheStop() throws Exception {
+        CompiledScript compiled = new MotionPlanner().compile(Arrays.asList(
+                Command.moveXYSteps(new Point2f(100, 0), new Point2f(500, 500)),
+                Command.moveXYSteps(new Point2f(100, 0), new Point2f(500, 500)),
+                Command.stop(),
+                Command.moveXYSteps(new Point2f(100, 0), new Point2f(500, 500))));
+
+        assertEquals(3, compiled.size());
+        Command command = new Command();
+        assertEquals(200, compiled.getCommand(0, command).getStepsX(), 0);
+        assertEquals(400000000L, compiled.getPredictedDurationNanos(0));
+        assertEquals(CommandEncoder.FUNCTION_STOP, compiled.getCommand(1, command).getFunction());
+        assertEquals(100, compiled.getCommand(2, command).getStepsX(), 0);
+    }
+
+    @Test
+    public void mergingDisabled_keepsEveryMove() throws Exception {
+        CompiledScript compiled = new MotionPlanner().setMergeMoves(false).compile(Arrays.asList(
+                Command.moveXYSteps(new Point2f(100, 0), new Point2f(500, 500)),
+                Command.moveXYSteps(new Point2f(100, 0), new Point2f(500, 500))));
+
+        assertEquals(2, compiled.size());
+    }
+}
@@ -0,0 +1,88 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MotorModelCalibrationTest {
+    private static final long OVERHEAD_NANOS = 20000000;
+
+    @Test
+    public void fit_recoversKnownAccelerations() throws Exception {
+        MotorModel model = new MotorModel(3000, 2000);
+        MotorModelCalibration calibration = new MotorModelCalibration();
+        addSamples(calibration, model, null);
+
+        MotorModelCalibration.Fit fit = calibration.fit();
+
+        assertEquals(3000, fit.getModel().getAccelerationX(), 3000 * 0.02);
+        assertEquals(2000, fit.getModel().getAccelerationY(), 2000 * 0.02);
+        assertEquals(OVERHEAD_NANOS, fit.getOverheadNanos(), 1000000);
+        assertTrue(fit.getRmsErrorNanos() < 1000000);
+        assertTrue(fit.getRmsErrorNanos() < fit.getInstantRmsErrorNanos());
+    }
+
+    @Test
+    public void fit_withNoise_staysClose() throws Exception {
+        MotorModel model = new MotorModel(3000, 2000);
+        MotorModelCalibration calibration = new MotorModelCalibration();
+        Random random = new Random(7);
+        for (int i = 0; i < 5; i++) {
+            addSamples(calibration, model, random);
+        }
+
+        MotorModelCalibration.Fit fit = calibration.fit();
+
+        assertEquals(3000, fit.getModel().getAccelerationX(), 3000 * 0.1);
+        assertEquals(2000, fit.getModel().getAccelerationY(), 2000 * 0.1);
+        assertEquals(OVERHEAD_NANOS, fit.getOverheadNanos(), 3000000);
+    }
+
+    @Test
+    public void fit_unmovedAxis_getsInfiniteAcceleration() throws Exception {
+        MotorModel model = new MotorModel(3000, 2000);
+        MotorModelCalibration calibration = new MotorModelCalibration();
+        for (int steps : new int[]{100, 500, 1000, 2000, 5000, 10000}) {
+            for (int speed : new int[]{4000, 2000}) {
+                calibration.addSample(steps, 0, speed, 1000, model.durationNanos(steps, 0, speed, 1000) + OVERHEAD_NANOS);
+            }
+        }
+
+        MotorModelCalibration.Fit fit = calibration.fit();
+
+        assertEquals(3000, fit.getModel().getAccelerationX(), 3000 * 0.02);
+        assertTrue(Double.isInfinite(fit.getModel().getAccelerationY()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void fit_needsThreeSamples() throws Exception {
+        MotorModelCalibration calibration = new MotorModelCalibration();
+        calibration.addSample(100, 0, 1000, 1000, 100000000);
+        calibration.addSample(200, 0, 1000, 1000, 200000000);
+        calibration.fit();
+    }
+
+    /**
+     * Adds samples like the ones of the calibration script: moves of growing distances on each axis,
+     * at two speeds, which take the duration of the model plus the overhead.
+     */
+    private static void addSamples(MotorModelCalibration calibration, MotorModel model, Random noise) {
+        for (int speed : new int[]{4000, 2000}) {
+            for (int steps : new int[]{100, 500, 1000, 2000, 5000, 10000}) {
+                calibration.addSample(steps, 0, speed, 1000, measured(model, steps, 0, speed, 1000, noise));
+            }
+        }
+        for (int speed : new int[]{3000, 1500}) {
+            for (int steps : new int[]{100, 500, 1000, 2000, 3000}) {
+                calibration.addSample(0, steps, 3000, speed, measured(model, 0, steps, 3000, speed, noise));
+            }
+        }
+    }
+
+    private static long measured(MotorModel model, int stepsX, int stepsY, int speedX, int speedY, Random noise) {
+        long jitter = noise == null ? 0 : (long) (noise.nextGaussian() * 2000000);
+        return model.durationNanos(stepsX, stepsY, speedX, speedY) + OVERHEAD_NANOS + jitter;
+    }
+}
@@ -0,0 +1,151 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class Orbit360GroupTest {
+    private static final long MILLISECOND = 1000000;
+
+    private VirtualClock clock;
+    private final List<Orbit360Simulator> simulators = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        clock = new VirtualClock();
+        long[] latencies = {5 * MILLISECOND, 7500000, 12 * MILLISECOND};
+        for (long latency : latencies) {
+            Orbit360Simulator simulator = new Orbit360Simulator(clock, 1);
+            simulator.setWriteLatencyNanos(latency);
+            simulators.add(simulator);
+        }
+    }
+
+    @Test
+    public void broadcast_movesAllMembersAndMeasuresTheSkew() throws Exception {
+        Orbit360Group group = new Orbit360Group(controls(), clock);
+        BroadcastRecorder recorder = new BroadcastRecorder();
+
+        group.moveSteps(100, -50, 1000, 1000, recorder);
+        clock.advanceBy(500 * MILLISECOND);
+
+        assertEquals(1, recorder.results.size());
+        Orbit360Group.BroadcastResult result = recorder.results.get(0);
+        assertEquals(3, result.size());
+        assertEquals(3, result.getSuccessfulCount());
+        assertEquals(0, result.getSendSkewNanos());
+        assertEquals(7 * MILLISECOND, result.getAckSkewNanos());
+        assertEquals(12 * MILLISECOND, result.getMaxLatencyNanos());
+        for (Orbit360Simulator simulator : simulators) {
+            assertEquals(100, simulator.getPositionSteps().getX(), 0);
+            assertEquals(-50, simulator.getPositionSteps().getY(), 0);
+        }
+        assertEquals(1, group.getBroadcastCount());
+        assertEquals(7 * MILLISECOND, group.getLastAckSkewNanos());
+        assertEquals(7 * MILLISECOND, group.getMaxAckSkewNanos());
+    }
+
+    @Test
+    public void failingMembers_doNotKeepTheCommandFromTheOthers() throws Exception {
+        List<Orbit360Control> controls = controls();
+        controls.set(1, new Orbit360Control(new Orbit360Transport() {
+            @Override
+            public void write(byte[] frame, WriteCallback callback) {
+                throw new IllegalStateException("not connected");
+            }
+
+            @Override
+            public void setNotificationListener(NotificationListener listener) {
+            }
+        }));
+        List<Orbit360Group.Member> members = new ArrayList<>();
+        members.add(member(controls.get(0)));
+        members.add(member(controls.get(1)));
+        members.add(member(null));
+        members.add(member(controls.get(2)));
+        Orbit360Group group = Orbit360Group.ofMembers(members, clock);
+        BroadcastRecorder recorder = new BroadcastRecorder();
+
+        group.moveSteps(100, 0, 1000, 1000, recorder);
+        clock.advanceBy(500 * MILLISECOND);
+
+        assertEquals(1, recorder.results.size());
+        Orbit360Group.BroadcastResult result = recorder.results.get(0);
+        assertEquals(4, result.size());
+        assertEquals(2, result.getSuccessfulCount());
+        assertFalse(result.isSuccessful(1));
+        assertFalse(result.isSuccessful(2));
+        // Failed members do not count into the skew.
+        assertEquals(7 * MILLISECOND, result.getAckSkewNanos());
+        assertEquals(100, simulators.get(0).getPositionSteps().getX(), 0);
+        assertEquals(100, simulators.get(2).getPositionSteps().getX(), 0);
+        // The member without control is not connected.
+        assertEquals(3, group.getControls().size());
+    }
+
+    @Test
+    public void membersWithChangingControls_getTheBroadcastOnTheirCurrentControl() throws Exception {
+        final Orbit360Control[] current = {null};
+        Orbit360Group group = Orbit360Group.ofMembers(Collections.singletonList(new Orbit360Group.Member() {
+            @Override
+            public Orbit360Control getControl() {
+                return current[0];
+            }
+        }), clock);
+        BroadcastRecorder recorder = new BroadcastRecorder();
+
+        group.moveSteps(100, 0, 1000, 1000, recorder);
+        // Like a session which reconnected.
+        current[0] = new Orbit360Control(simulators.get(0));
+        group.moveSteps(100, 0, 1000, 1000, recorder);
+        clock.advanceBy(500 * MILLISECOND);
+
+        assertEquals(2, recorder.results.size());
+        assertEquals(0, recorder.results.get(0).getSuccessfulCount());
+        assertEquals(1, recorder.results.get(1).getSuccessfulCount());
+        assertEquals(100, simulators.get(0).getPositionSteps().getX(), 0);
+    }
+
+    @Test
+    public void emptyGroup_finishesRightAway() throws Exception {
+        Orbit360Group group = new Orbit360Group(new ArrayList<Orbit360Control>(), clock);
+        BroadcastRecorder recorder = new BroadcastRecorder();
+
+        group.stop(recorder);
+
+        assertEquals(1, recorder.results.size());
+        assertEquals(0, recorder.results.get(0).size());
+        assertEquals(0, recorder.results.get(0).getAckSkewNanos());
+    }
+
+    private List<Orbit360Control> controls() {
+        return new ArrayList<>(Arrays.asList(
+                new Orbit360Control(simulators.get(0)),
+                new Orbit360Control(simulators.get(1)),
+                new Orbit360Control(simulators.get(2))));
+    }
+
+    private static Orbit360Group.Member member(final Orbit360Control control) {
+        return new Orbit360Group.Member() {
+            @Override
+            public Orbit360Control getControl() {
+                return control;
+            }
+        };
+    }
+
+    private static class BroadcastRecorder implements Orbit360Group.BroadcastListener {
+        final List<Orbit360Group.BroadcastResult> results = new ArrayList<>();
+
+        @Override
+        public void broadcastFinished(Orbit360Group.BroadcastResult result, Orbit360Group sender) {
+            results.add(result);
+        }
+    }
+}
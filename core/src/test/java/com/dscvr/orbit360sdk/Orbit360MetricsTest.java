@@ -0,0 +1,82 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class Orbit360MetricsTest {
+    private static final long MILLISECOND = 1000000;
+
+    @Test
+    public void events_areCountedAndTimed() throws Exception {
+        Orbit360Metrics metrics = new Orbit360Metrics();
+
+        metrics.commandEnqueued(0, 3);
+        metrics.commandEnqueued(1 * MILLISECOND, 1);
+        metrics.writeIssued(0, 2 * MILLISECOND);
+        metrics.writeAcknowledged(0, 2 * MILLISECOND, 10 * MILLISECOND, true);
+        metrics.writeAcknowledged(1 * MILLISECOND, -1, 20 * MILLISECOND, true);
+        metrics.writeAcknowledged(1 * MILLISECOND, 12 * MILLISECOND, 30 * MILLISECOND, false);
+        metrics.movementCompleted(0, 100 * MILLISECOND);
+        metrics.commandRetried();
+        metrics.setpointCoalesced();
+        metrics.setpointCoalesced();
+        metrics.stopCompleted(40 * MILLISECOND, 45 * MILLISECOND);
+
+        Orbit360Metrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.getEnqueuedCount());
+        assertEquals(1, snapshot.getQueueDepth());
+        assertEquals(3, snapshot.getMaxQueueDepth());
+        assertEquals(2 * MILLISECOND, snapshot.getQueueWait().getMaxNanos());
+        assertEquals(2, snapshot.getAcknowledgedCount());
+        assertEquals(1, snapshot.getDroppedCount());
+        // Only the acknowledgement with a known issue time has a write latency.
+        assertEquals(1, snapshot.getWriteLatency().getCount());
+        assertEquals(8 * MILLISECOND, snapshot.getWriteLatency().getMaxNanos());
+        assertEquals(2, snapshot.getCommandLatency().getCount());
+        assertEquals(19 * MILLISECOND, snapshot.getCommandLatency().getMaxNanos());
+        assertEquals(1, snapshot.getCompletedCount());
+        assertEquals(100 * MILLISECOND, snapshot.getMovementLatency().getMaxNanos());
+        assertEquals(1, snapshot.getRetriedCount());
+        assertEquals(2, snapshot.getCoalescedCount());
+        assertEquals(5 * MILLISECOND, snapshot.getStopLatency().getMaxNanos());
+    }
+
+    @Test
+    public void events_areForwarded() throws Exception {
+        Orbit360Metrics forward = new Orbit360Metrics();
+        Orbit360Metrics metrics = new Orbit360Metrics(forward);
+
+        metrics.commandEnqueued(0, 1);
+        metrics.writeIssued(0, 0);
+        metrics.writeAcknowledged(0, 0, 7 * MILLISECOND, true);
+        metrics.movementCompleted(0, 50 * MILLISECOND);
+        metrics.commandRetried();
+        metrics.setpointCoalesced();
+        metrics.stopCompleted(0, MILLISECOND);
+
+        assertEquals(metrics.snapshot().toString(), forward.snapshot().toString());
+    }
+
+    @Test
+    public void simulatedWrites_reportTheWriteLatency() throws Exception {
+        VirtualClock clock = new VirtualClock();
+        Orbit360Simulator simulator = new Orbit360Simulator(clock, 1);
+        simulator.setWriteLatencyNanos(7500000);
+        Orbit360Metrics metrics = new Orbit360Metrics();
+        simulator.setMetricsListener(metrics);
+        Orbit360Control control = new Orbit360Control(simulator);
+
+        for (int i = 0; i < 10; i++) {
+            control.moveSteps(10, 0, 1000, 1000);
+            clock.advanceBy(20 * MILLISECOND);
+        }
+
+        Orbit360Metrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(10, snapshot.getEnqueuedCount());
+        assertEquals(10, snapshot.getAcknowledgedCount());
+        assertEquals(0, snapshot.getDroppedCount());
+        assertEquals(7500000, snapshot.getWriteLatency().getMaxNanos());
+        assertEquals(7500000, snapshot.getWriteLatency().getMeanNanos(), 1e-6);
+    }
+}
@@ -0,0 +1,163 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class Orbit360SimulatorTest {
+    private static final long LATENCY = 10000000;
+    private static final long SECOND = 1000000000L;
+
+    private VirtualClock clock;
+    private Orbit360Simulator simulator;
+    private final List<Boolean> results = Collections.synchronizedList(new ArrayList<Boolean>());
+    private final List<Long> notificationTimes = Collections.synchronizedList(new ArrayList<Long>());
+    private final Orbit360Transport.WriteCallback recorder = new Orbit360Transport.WriteCallback() {
+        @Override
+        public void writeFinished(boolean success) {
+            results.add(success);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        clock = new VirtualClock();
+        simulator = new Orbit360Simulator(clock, 1);
+        simulator.setWriteLatencyNanos(LATENCY);
+        simulator.setNotificationListener(new Orbit360Transport.NotificationListener() {
+            @Override
+            public void notificationReceived(byte[] frame) {
+                if (FrameDecoder.isMovementFinished(frame)) {
+                    notificationTimes.add(clock.nanoTime());
+                }
+            }
+        });
+    }
+
+    @Test
+    public void move_startsAfterLatencyAndNotifiesWhenFinished() throws Exception {
+        simulator.write(move(1000, -500, 1000, 1000), recorder);
+
+        clock.advanceTo(LATENCY - 1);
+        assertEquals(0, simulator.getPositionSteps().getX(), 0);
+        assertEquals(Collections.<Boolean>emptyList(), results);
+
+        clock.advanceTo(LATENCY + 500000000L);
+        assertEquals(Collections.singletonList(true), results);
+        assertEquals(500, simulator.getPositionSteps().getX(), 1e-3);
+        // The Y-axis already arrived.
+        assertEquals(-500, simulator.getPositionSteps().getY(), 1e-3);
+        assertTrue(simulator.isMoving());
+
+        clock.advanceTo(2 * SECOND);
+        assertFalse(simulator.isMoving());
+        assertEquals(1000, simulator.getPositionSteps().getX(), 1e-3);
+        assertEquals(Collections.singletonList(LATENCY + SECOND), notificationTimes);
+    }
+
+    @Test
+    public void newMove_interruptsTheRunningOne() throws Exception {
+        simulator.write(move(1000, 0, 1000, 1000), recorder);
+        clock.advanceTo(500000000L);
+        simulator.write(move(-100, 0, 1000, 1000), recorder);
+
+        clock.advanceTo(2 * SECOND);
+
+        // Interrupted after 500 steps, then 100 steps back.
+        assertEquals(400, simulator.getPositionSteps().getX(), 1e-3);
+        // Only the last movement is notified.
+        assertEquals(1, notificationTimes.size());
+    }
+
+    @Test
+    public void stop_endsTheMovementWithoutNotification() throws Exception {
+        simulator.write(move(1000, 0, 1000, 1000), recorder);
+        clock.advanceTo(200000000L);
+        byte[] stop = new byte[CommandEncoder.FRAME_CAPACITY];
+        CommandEncoder.encodeStop(stop, 0);
+        simulator.write(stop, recorder);
+
+        clock.advanceTo(2 * SECOND);
+
+        assertEquals(200, simulator.getPositionSteps().getX(), 1e-3);
+        assertEquals(Collections.<Long>emptyList(), notificationTimes);
+    }
+
+    @Test
+    public void writeFirst_discardsWritesInFlight() throws Exception {
+        simulator.write(move(1000, 0, 1000, 1000), recorder);
+        simulator.write(move(1000, 0, 1000, 1000), recorder);
+        byte[] stop = new byte[CommandEncoder.FRAME_CAPACITY];
+        CommandEncoder.encodeStop(stop, 0);
+        simulator.writeFirst(stop, recorder);
+
+        clock.advanceTo(SECOND);
+
+        assertEquals(Arrays.asList(false, false, true), results);
+        assertEquals(0, simulator.getPositionSteps().getX(), 0);
+        assertEquals(1, simulator.getReceivedFrameCount());
+        assertEquals(2, simulator.getDroppedFrameCount());
+    }
+
+    @Test
+    public void droppedAndInvalidWrites_areCountedAndDoNotMove() throws Exception {
+        simulator.setDropProbability(1);
+        simulator.write(move(1000, 0, 1000, 1000), recorder);
+        clock.advanceTo(SECOND);
+        simulator.setDropProbability(0);
+        byte[] corrupted = move(1000, 0, 1000, 1000);
+        corrupted[4] ^= 1;
+        simulator.write(corrupted, recorder);
+        clock.advanceTo(2 * SECOND);
+
+        assertEquals(Arrays.asList(false, true), results);
+        assertEquals(1, simulator.getDroppedFrameCount());
+        assertEquals(1, simulator.getInvalidFrameCount());
+        assertEquals(0, simulator.getPositionSteps().getX(), 0);
+    }
+
+    @Test
+    public void writes_arriveInOrderDespiteJitter() throws Exception {
+        simulator.setJitterNanos(50000000);
+        // Slow moves, which are interrupted by the next write, and a fast last one.
+        for (int i = 0; i < 19; i++) {
+            simulator.write(move(1000, 0, 1, 1), recorder);
+        }
+        simulator.write(move(-5, 0, 100000, 100000), recorder);
+
+        clock.advanceTo(SECOND);
+
+        // Had a slow move arrived last, the motors would still move.
+        assertEquals(20, results.size());
+        assertFalse(simulator.isMoving());
+        assertEquals(-5, simulator.getPositionSteps().getX(), 0.1);
+    }
+
+    @Test
+    public void acceleratingMotors_followTheMotorModel() throws Exception {
+        MotorModel model = new MotorModel(2000, 2000);
+        simulator.setMotorModel(model);
+        simulator.write(move(1000, 0, 1000, 1000), recorder);
+
+        long duration = model.durationNanos(1000, 0, 1000, 1000);
+        clock.advanceTo(LATENCY + duration / 4);
+        // Slower than without acceleration.
+        assertTrue(simulator.getPositionSteps().getX() < 1000 * (duration / 4) / 1e9);
+        clock.advanceTo(LATENCY + duration + 1);
+        assertEquals(1000, simulator.getPositionSteps().getX(), 1e-3);
+        assertEquals(LATENCY + duration, simulator.getMotionEndTime(), 1);
+    }
+
+
+    private static byte[] move(int stepsX, int stepsY, int speedX, int speedY) {
+        byte[] frame = new byte[CommandEncoder.FRAME_CAPACITY];
+        CommandEncoder.encodeMoveXY(stepsX, speedX, stepsY, speedY, frame, 0);
+        return frame;
+    }
+}
@@ -0,0 +1,79 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PoseHistoryTest {
+    private static final long SECOND = 1000000000L;
+
+    /**
+     * Records segments of one second, each moving 1000 steps on the X-axis, so the X-position is
+     * the time in milliseconds.
+     */
+    private static PoseHistory history(int capacity, int segments) {
+        PoseHistory history = new PoseHistory(capacity);
+        for (int k = 0; k < segments; k++) {
+            history.record(k * SECOND, k * 1000, 0, 1000, 0, 1000, 1000);
+        }
+        return history;
+    }
+
+    @Test
+    public void poseAt_afterWrapAround_keepsTheNewestSegments() throws Exception {
+        PoseHistory history = history(4, 10);
+        Vec2 pose = new Vec2();
+
+        assertEquals(10, history.getRecordedCount());
+        assertEquals(6 * SECOND, history.getOldestTime());
+        assertTrue(history.poseAt(6500000000L, pose));
+        assertEquals(6500, pose.x, 1e-6);
+        assertTrue(history.poseAt(9250000000L, pose));
+        assertEquals(9250, pose.x, 1e-6);
+        // Overwritten segments can not be answered.
+        assertFalse(history.poseAt(2 * SECOND, pose));
+        assertEquals(6000, pose.x, 1e-6);
+    }
+
+    @Test
+    public void posesAt_descendingBatch_matchesSingleLookups() throws Exception {
+        PoseHistory history = history(4, 10);
+        long[] timestamps = {0, 9500000000L, 8250000000L, 7000000000L, 6100000000L, 3000000000L};
+        double[] positions = new double[2 + 2 * (timestamps.length - 1)];
+
+        int covered = history.posesAt(timestamps, 1, timestamps.length - 1, positions, 2);
+
+        assertEquals(4, covered);
+        double[] expected = {0, 0, 9500, 0, 8250, 0, 7000, 0, 6100, 0, 6000, 0};
+        assertArrayEquals(expected, positions, 1e-6);
+        Vec2 pose = new Vec2();
+        for (int n = 1; n < timestamps.length; n++) {
+            history.poseAt(timestamps[n], pose);
+            assertEquals(pose.x, positions[2 * n], 1e-9);
+        }
+    }
+
+    @Test
+    public void posesAt_mixedOrder_findsEverySegment() throws Exception {
+        PoseHistory history = history(8, 20);
+        long[] timestamps = {12500000000L, 19000000000L, 13000000000L, 18999999999L, 12000000000L};
+        double[] positions = new double[2 * timestamps.length];
+
+        assertEquals(timestamps.length, history.posesAt(timestamps, 0, timestamps.length, positions, 0));
+        for (int n = 0; n < timestamps.length; n++) {
+            assertEquals(timestamps[n] / 1e6, positions[2 * n], 1e-3);
+        }
+    }
+
+    @Test
+    public void posesAt_emptyHistory_coversNothing() throws Exception {
+        double[] positions = {1, 1};
+        assertEquals(0, new PoseHistory(4).posesAt(new long[]{SECOND}, 0, 1, positions, 0));
+        assertArrayEquals(new double[]{0, 0}, positions, 0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void posesAt_rejectsTooSmallOutput() throws Exception {
+        history(4, 4).posesAt(new long[3], 0, 3, new double[5], 0);
+    }
+}
@@ -0,0 +1,151 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PositionEstimatorTest {
+    private static final long MILLISECOND = 1000000;
+
+    private VirtualClock clock;
+    private PositionEstimator estimator;
+    private final Vec2 position = new Vec2();
+
+    @Before
+    public void setUp() {
+        clock = new VirtualClock();
+        estimator = new PositionEstimator(clock);
+    }
+
+    @Test
+    public void movement_isInterpolatedUntilItReachedItsTarget() throws Exception {
+        estimator.beginMovement(0, 100, -50, 1000, 500);
+
+        clock.advanceBy(50 * MILLISECOND);
+        assertTrue(estimator.isMoving());
+        estimator.getPositionSteps(position);
+        assertEquals(50, position.x, 1e-6);
+        assertEquals(-25, position.y, 1e-6);
+
+        clock.advanceBy(100 * MILLISECOND);
+        assertFalse(estimator.isMoving());
+        estimator.getPositionSteps(position);
+        assertEquals(100, position.x, 1e-6);
+        assertEquals(-50, position.y, 1e-6);
+    }
+
+    @Test
+    public void nextMovement_startsAtTheTargetOfThePreviousOne() throws Exception {
+        estimator.beginMovement(0, 100, 0, 1000, 1000);
+        clock.advanceBy(100 * MILLISECOND);
+        estimator.finishMovement();
+
+        estimator.beginMovement(clock.nanoTime(), 100, 20, 1000, 1000);
+        clock.advanceBy(200 * MILLISECOND);
+
+        estimator.getPositionSteps(position);
+        assertEquals(200, position.x, 1e-6);
+        assertEquals(20, position.y, 1e-6);
+        estimator.getTargetSteps(position);
+        assertEquals(200, position.x, 1e-6);
+    }
+
+    @Test
+    public void interruptedMovement_endsAtThePositionOfTheInterruption() throws Exception {
+        estimator.beginMovement(0, 1000, 0, 1000, 1000);
+        clock.advanceBy(500 * MILLISECOND);
+
+        estimator.interruptMovement(300 * MILLISECOND);
+
+        assertFalse(estimator.isMoving());
+        estimator.getPositionSteps(position);
+        assertEquals(300, position.x, 1e-6);
+        estimator.beginMovement(clock.nanoTime(), 100, 0, 1000, 1000);
+        estimator.getTargetSteps(position);
+        assertEquals(400, position.x, 1e-6);
+    }
+
+    @Test
+    public void motorModel_rampsUpTheFollowingMovements() throws Exception {
+        estimator.setMotorModel(new MotorModel(4000, 4000));
+        estimator.beginMovement(0, 1000, 0, 1000, 1000);
+
+        // Without the ramp, the arm would be at 100 steps after 100ms.
+        estimator.getPositionSteps(100 * MILLISECOND, position);
+        assertTrue(position.x < 100);
+        assertTrue(position.x > 0);
+        estimator.getPositionSteps(2000 * MILLISECOND, position);
+        assertEquals(1000, position.x, 1e-6);
+    }
+
+    @Test
+    public void reset_publishesAPositionWithoutMovement() throws Exception {
+        estimator.beginMovement(0, 1000, 0, 1000, 1000);
+
+        estimator.reset(-30, 40);
+
+        assertFalse(estimator.isMoving());
+        estimator.getPositionSteps(position);
+        assertEquals(-30, position.x, 1e-6);
+        assertEquals(40, position.y, 1e-6);
+    }
+
+    @Test
+    public void movements_areRecordedToTheHistory() throws Exception {
+        estimator.beginMovement(0, 100, 0, 1000, 1000);
+        clock.advanceBy(100 * MILLISECOND);
+        estimator.finishMovement();
+        estimator.beginMovement(clock.nanoTime(), -100, 0, 1000, 1000);
+        clock.advanceBy(200 * MILLISECOND);
+
+        PoseHistory history = estimator.getHistory();
+        // The initial position, two movements and the finish.
+        assertEquals(4, history.getRecordedCount());
+        assertTrue(history.poseAt(50 * MILLISECOND, position));
+        assertEquals(50, position.x, 1e-6);
+        assertTrue(history.poseAt(150 * MILLISECOND, position));
+        assertEquals(50, position.x, 1e-6);
+    }
+
+    @Test
+    public void concurrentReaders_seeConsistentMovements() throws Exception {
+        // Every movement moves both axes by the same steps at the same speed, so a reader which saw
+        // a mix of two movements would read different positions on the axes.
+        final AtomicInteger inconsistent = new AtomicInteger();
+        Thread[] readers = new Thread[3];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Vec2 read = new Vec2();
+                    while (!Thread.currentThread().isInterrupted()) {
+                        estimator.getPositionSteps(read);
+                        if (read.x != read.y) {
+                            inconsistent.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            readers[i].start();
+        }
+        try {
+            for (int i = 0; i < 100000; i++) {
+                estimator.beginMovement(clock.nanoTime(), i % 2 == 0 ? 13 : -7, i % 2 == 0 ? 13 : -7, 1000, 1000);
+                clock.advanceBy(MILLISECOND);
+                if (i % 3 == 0) {
+                    estimator.interruptMovement(clock.nanoTime());
+                }
+            }
+        } finally {
+            for (Thread reader : readers) {
+                reader.interrupt();
+                reader.join();
+            }
+        }
+
+        assertEquals(0, inconsistent.get());
+    }
+}
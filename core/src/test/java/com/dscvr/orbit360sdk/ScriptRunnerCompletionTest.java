@@ -0,0 +1,103 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs scripts in the COMPLETION execution mode against the simulator.
+ */
+public class ScriptRunnerCompletionTest extends SimulationTestBase {
+    @Test
+    public void completionScript_waitsForEveryMovementAndEndsAtPredictedPosition() throws Exception {
+        simulator.setJitterNanos(5000000);
+        runner.setExecutionMode(ScriptRunner.ExecutionMode.COMPLETION);
+        final List<Boolean> completed = Collections.synchronizedList(new ArrayList<Boolean>());
+        runner.setCommandTimingListener(new ScriptRunner.CommandTimingListener() {
+            @Override
+            public void commandFinished(Command command, long predictedNanos, long measuredNanos, boolean notified) {
+                completed.add(notified);
+                // The next command is only sent once the Orbit360 arrived.
+                assertTrue(measuredNanos >= predictedNanos);
+            }
+        });
+        List<Command> script = zigzag(10);
+
+        long finishTime = runAndAwait(script, ScriptRunner.Priority.BACKGROUND);
+
+        assertMoves(script, transport.getFrames());
+        assertEquals(Collections.nCopies(script.size(), true), completed);
+        assertFalse(simulator.isMoving());
+        assertPosition(expectedEnd(script), simulator.getPositionSteps());
+        assertPosition(simulator.getPositionSteps(), runner.getPositionSteps());
+        // Every command waits for the latency of its write and of the notification.
+        assertTrue(finishTime >= nominalDuration(script) + script.size() * WRITE_LATENCY_NANOS);
+    }
+
+    @Test
+    public void missingNotifications_fallBackToTheCompletionTimeout() throws Exception {
+        simulator.setMovementFinishedNotifications(false);
+        runner.setExecutionMode(ScriptRunner.ExecutionMode.COMPLETION);
+        runner.setCompletionTimeout(1.5f, 100);
+        final List<Boolean> completed = Collections.synchronizedList(new ArrayList<Boolean>());
+        runner.setCommandTimingListener(new ScriptRunner.CommandTimingListener() {
+            @Override
+            public void commandFinished(Command command, long predictedNanos, long measuredNanos, boolean notified) {
+                completed.add(notified);
+            }
+        });
+        List<Command> script = repeat(3, 100, 0, 1000);
+
+        long finishTime = runAndAwait(script, ScriptRunner.Priority.BACKGROUND);
+
+        assertEquals(Collections.nCopies(script.size(), false), completed);
+        assertEquals(3 * (150000000L + 100000000L), finishTime);
+        assertPosition(expectedEnd(script), simulator.getPositionSteps());
+    }
+
+    @Test
+    public void lateNotificationOfATimedOutCommand_doesNotFinishTheNextCommand() throws Exception {
+        simulator.setMovementFinishedNotifications(false);
+        runner.setExecutionMode(ScriptRunner.ExecutionMode.COMPLETION);
+        runner.setCompletionTimeout(1.5f, 100);
+        final List<Boolean> completed = Collections.synchronizedList(new ArrayList<Boolean>());
+        final List<Long> measured = Collections.synchronizedList(new ArrayList<Long>());
+        runner.setCommandTimingListener(new ScriptRunner.CommandTimingListener() {
+            @Override
+            public void commandFinished(Command command, long predictedNanos, long measuredNanos, boolean notified) {
+                completed.add(notified);
+                measured.add(measuredNanos);
+            }
+        });
+        List<Command> script = Arrays.asList(
+                Command.moveXYSteps(new Point2f(100, 0), new Point2f(1000, 1000)),
+                Command.moveXYSteps(new Point2f(200, 0), new Point2f(1000, 1000)));
+        // The first command times out at 250ms, the second one is sent then and arrives at 257.5ms.
+        simulator.injectNotification(finishedNotification(100, 0, 1000, 1000), 300000000L);
+        simulator.injectNotification(finishedNotification(200, 0, 1000, 1000), 460000000L);
+
+        long finishTime = runAndAwait(script, ScriptRunner.Priority.BACKGROUND);
+
+        assertEquals(Arrays.asList(false, true), completed);
+        assertEquals(Arrays.asList(250000000L, 210000000L), measured);
+        assertEquals(460000000L, finishTime);
+    }
+
+    /**
+     * @return The notification the Orbit360 sends when the given move finished.
+     */
+    private static byte[] finishedNotification(int stepsX, int stepsY, int speedX, int speedY) {
+        byte[] frame = new byte[CommandEncoder.FRAME_CAPACITY];
+        CommandEncoder.encodeMoveXY(stepsX, speedX, stepsY, speedY, frame, 0);
+        int length = CommandEncoder.MOVE_XY_PAYLOAD_LENGTH - 1;
+        int checksumIndex = CommandEncoder.HEADER_LENGTH + length;
+        frame[1] = (byte) length;
+        frame[checksumIndex] = CommandEncoder.checksum(frame, 0, checksumIndex);
+        return Arrays.copyOf(frame, checksumIndex + 1);
+    }
+}
@@ -0,0 +1,109 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests preemption by INTERACTIVE scripts and abort against the simulator.
+ */
+public class ScriptRunnerPriorityTest extends SimulationTestBase {
+    @Test
+    public void interactiveScript_preemptsBackgroundScriptWhichKeepsItsRemainder() throws Exception {
+        final List<Command> background = repeat(4, 1000, 0, 1000);
+        final List<Command> interactive = repeat(1, 0, 500, 1000);
+        final List<String> finished = Collections.synchronizedList(new ArrayList<String>());
+        final Point2f[] positionAtInterrupt = new Point2f[1];
+        final CountDownLatch done = new CountDownLatch(2);
+        // In the middle of the third background command.
+        clock.scheduleAt(2500000000L, new Runnable() {
+            @Override
+            public void run() {
+                positionAtInterrupt[0] = simulator.getPositionSteps();
+                runner.runScript(interactive, ScriptRunner.Priority.INTERACTIVE, new ScriptRunner.ExecutionFinishedHandler() {
+                    @Override
+                    public void commandExecutionFinished(List<Command> commands, ScriptRunner sender) {
+                        finished.add("interactive");
+                        done.countDown();
+                    }
+                });
+            }
+        });
+        runner.runScript(background, new ScriptRunner.ExecutionFinishedHandler() {
+            @Override
+            public void commandExecutionFinished(List<Command> commands, ScriptRunner sender) {
+                finished.add("background");
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        clock.advanceBy(2 * WRITE_LATENCY_NANOS);
+        assertEquals(Arrays.asList("interactive", "background"), finished);
+
+        List<int[]> frames = transport.getFrames();
+        assertEquals(2500, positionAtInterrupt[0].getX(), 10);
+        // Three background commands, the interactive one, the remainder and the last background command.
+        assertEquals(6, frames.size());
+        assertArrayEquals(new int[]{0, 500}, new int[]{frames.get(3)[1], frames.get(3)[3]});
+        int remainder = frames.get(4)[1];
+        assertEquals(1000 - (positionAtInterrupt[0].getX() - 2000), remainder, 10);
+        assertPosition(new Point2f(4000, 500), simulator.getPositionSteps());
+        assertPosition(simulator.getPositionSteps(), runner.getPositionSteps());
+    }
+
+    @Test
+    public void abort_isConfirmedByStopAndCancelsQueuedScripts() throws Exception {
+        final boolean[] handlerCalled = {false};
+        final boolean[] confirmed = {false};
+        final CountDownLatch stopped = new CountDownLatch(1);
+        final ScriptRunner.QueuedScript[] queued = new ScriptRunner.QueuedScript[1];
+        // Queued on the clock, so it is queued before the virtual time reaches the abort.
+        clock.scheduleAt(1, new Runnable() {
+            @Override
+            public void run() {
+                queued[0] = runner.runScript(repeat(10, 1000, 1000, 1000), null);
+            }
+        });
+        clock.scheduleAt(3300000000L, new Runnable() {
+            @Override
+            public void run() {
+                runner.abort(new ScriptRunner.StopHandler() {
+                    @Override
+                    public void stopFinished(boolean stopConfirmed, long latencyNanos, ScriptRunner sender) {
+                        confirmed[0] = stopConfirmed;
+                        stopped.countDown();
+                    }
+                });
+            }
+        });
+        ScriptRunner.QueuedScript running = runner.runScript(repeat(10, 1000, 1000, 1000), new ScriptRunner.ExecutionFinishedHandler() {
+            @Override
+            public void commandExecutionFinished(List<Command> commands, ScriptRunner sender) {
+                handlerCalled[0] = true;
+            }
+        });
+
+        assertTrue(stopped.await(10, TimeUnit.SECONDS));
+        assertTrue(confirmed[0]);
+        List<int[]> frames = transport.getFrames();
+        assertEquals(CommandEncoder.FUNCTION_STOP, frames.get(frames.size() - 1)[0]);
+        // The stop arrives one write latency after it was confirmed.
+        clock.advanceBy(WRITE_LATENCY_NANOS);
+        assertFalse(simulator.isMoving());
+        assertEquals(3300, simulator.getPositionSteps().getX(), 20);
+        assertPosition(simulator.getPositionSteps(), runner.getPositionSteps());
+        assertTrue(running.isCancelled());
+        assertTrue(queued[0].isCancelled());
+        assertTrue(queued[0].isDone());
+        assertFalse(handlerCalled[0]);
+        assertEquals(0, runner.getQueuedScriptCount());
+    }
+}
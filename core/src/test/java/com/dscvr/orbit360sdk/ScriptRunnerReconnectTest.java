@@ -0,0 +1,174 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drops the link in the middle of a script and binds a new control, like the session does after
+ * it reconnected.
+ */
+public class ScriptRunnerReconnectTest extends SimulationTestBase {
+    private static final long GATT_TIMEOUT_NANOS = 5000000000L;
+
+    @Test
+    public void linkDrop_withWriteInFlight_resumesWithTheUnconfirmedCommand() throws Exception {
+        final LinkTransport link = new LinkTransport(simulator);
+        runner.setControl(new Orbit360Control(link));
+        final long[] recovery = new long[3];
+        runner.setConnectionRecoveryListener(new ScriptRunner.ConnectionRecoveryListener() {
+            @Override
+            public void connectionLost(ScriptRunner sender) {
+                recovery[0]++;
+            }
+
+            @Override
+            public void connectionRecovered(long outageNanos, long timeToRecoverNanos, ScriptRunner sender) {
+                recovery[1] = outageNanos;
+                recovery[2] = timeToRecoverNanos;
+            }
+        });
+        final long dropTime = 350000000L;
+        final long reconnectTime = 6000000000L;
+        clock.scheduleAt(dropTime, new Runnable() {
+            @Override
+            public void run() {
+                link.drop();
+            }
+        });
+        // The GATT queue reports the write as failed once its operation timed out.
+        clock.scheduleAt(dropTime + GATT_TIMEOUT_NANOS, new Runnable() {
+            @Override
+            public void run() {
+                link.failHeldWrites();
+            }
+        });
+        clock.scheduleAt(reconnectTime, new Runnable() {
+            @Override
+            public void run() {
+                runner.setControl(new Orbit360Control(transport));
+            }
+        });
+        List<Command> script = repeat(10, 100, 0, 1000);
+
+        long finishTime = runAndAwait(script, ScriptRunner.Priority.BACKGROUND);
+
+        // The command written at 400ms was still in flight when the runner's completion timeout
+        // expired. It is sent again on the new control, with the rest of the script.
+        assertEquals(1, link.getHeldCount());
+        assertMoves(script.subList(4, script.size()), transport.getFrames());
+        assertPosition(expectedEnd(script), simulator.getPositionSteps());
+        assertPosition(simulator.getPositionSteps(), runner.getPositionSteps());
+        assertEquals(1, recovery[0]);
+        assertEquals(reconnectTime - dropTime - GATT_TIMEOUT_NANOS, recovery[1]);
+        assertTrue(recovery[2] >= recovery[1]);
+        assertTrue(finishTime >= reconnectTime + 6 * 100000000L);
+    }
+
+    @Test
+    public void writeWithoutResult_failsAfterTheWriteTimeout() throws Exception {
+        final LinkTransport link = new LinkTransport(simulator);
+        runner.setControl(new Orbit360Control(link));
+        runner.setWriteTimeout(2000);
+        link.drop();
+        clock.scheduleAt(3000000000L, new Runnable() {
+            @Override
+            public void run() {
+                runner.setControl(new Orbit360Control(transport));
+            }
+        });
+        List<Command> script = repeat(3, 100, 50, 1000);
+
+        runAndAwait(script, ScriptRunner.Priority.BACKGROUND);
+
+        // The write never finished, so it is not counted as executed.
+        assertEquals(1, link.getHeldCount());
+        assertMoves(script, transport.getFrames());
+        assertPosition(expectedEnd(script), simulator.getPositionSteps());
+        assertPosition(simulator.getPositionSteps(), runner.getPositionSteps());
+    }
+
+    @Test
+    public void lateResultOfATimedOutWrite_isNotTakenForTheNextWrite() throws Exception {
+        final LinkTransport link = new LinkTransport(simulator);
+        runner.setControl(new Orbit360Control(link));
+        runner.setWriteTimeout(2000);
+        link.drop();
+        clock.scheduleAt(3000000000L, new Runnable() {
+            @Override
+            public void run() {
+                runner.setControl(new Orbit360Control(transport));
+            }
+        });
+        // The lost link reports its write as failed while the write on the new control is in flight.
+        clock.scheduleAt(3000000000L + WRITE_LATENCY_NANOS / 2, new Runnable() {
+            @Override
+            public void run() {
+                link.failHeldWrites();
+            }
+        });
+        List<Command> script = repeat(3, 100, 50, 1000);
+
+        runAndAwait(script, ScriptRunner.Priority.BACKGROUND);
+
+        assertMoves(script, transport.getFrames());
+        assertPosition(expectedEnd(script), simulator.getPositionSteps());
+        assertPosition(simulator.getPositionSteps(), runner.getPositionSteps());
+    }
+
+    /**
+     * Forwards writes to the simulator until the link drops. Afterwards, writes stay in flight until
+     * they are failed, like the writes of a GATT connection which was lost.
+     */
+    private static class LinkTransport implements Orbit360Transport {
+        private final Orbit360Simulator simulator;
+        private final List<WriteCallback> held = new ArrayList<>();
+        private int heldCount;
+        private boolean dropped;
+
+        LinkTransport(Orbit360Simulator simulator) {
+            this.simulator = simulator;
+        }
+
+        @Override
+        public void write(byte[] frame, WriteCallback callback) {
+            synchronized (this) {
+                if (dropped) {
+                    held.add(callback);
+                    heldCount++;
+                    return;
+                }
+            }
+            simulator.write(frame, callback);
+        }
+
+        @Override
+        public void setNotificationListener(NotificationListener listener) {
+            simulator.setNotificationListener(listener);
+        }
+
+        synchronized void drop() {
+            dropped = true;
+        }
+
+        synchronized int getHeldCount() {
+            return heldCount;
+        }
+
+        void failHeldWrites() {
+            List<WriteCallback> callbacks;
+            synchronized (this) {
+                callbacks = new ArrayList<>(held);
+                held.clear();
+            }
+            for (WriteCallback callback : callbacks) {
+                if (callback != null) {
+                    callback.writeFinished(false);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs scripts on a scheduler which wakes up late, like on a loaded system.
+ */
+public class ScriptRunnerSchedulingTest extends SimulationTestBase {
+    @Test
+    public void lateDispatches_doNotMoveTheEstimateAwayFromTheOrbit360() throws Exception {
+        DeadlineScheduler scheduler = new DeadlineScheduler(new JitteryClock(clock, 3, 0, 4000000), 1);
+        runner.close();
+        runner = new ScriptRunner(new Orbit360Control(transport), scheduler);
+        try {
+            // 20ms per command, so every late command would be cut short by a noticeable part.
+            List<Command> script = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                script.add(Command.moveXYSteps(new Point2f(i % 3 == 0 ? -20 : 20, i % 2 == 0 ? 10 : -10), new Point2f(1000, 500)));
+            }
+
+            runAndAwait(script, ScriptRunner.Priority.BACKGROUND);
+
+            assertTrue("the scheduler was late", scheduler.getLateness().getMaxNanos() > 0);
+            assertFalse(simulator.isMoving());
+            assertPosition(expectedEnd(script), simulator.getPositionSteps());
+            assertPosition(simulator.getPositionSteps(), runner.getPositionSteps());
+        } finally {
+            runner.close();
+            scheduler.close();
+        }
+    }
+}
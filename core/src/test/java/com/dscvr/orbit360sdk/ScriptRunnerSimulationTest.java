@@ -0,0 +1,40 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs scripts in the TIMED execution mode against the simulator.
+ */
+public class ScriptRunnerSimulationTest extends SimulationTestBase {
+    @Test
+    public void timedScript_sendsCommandsInOrderAndEndsAtPredictedPosition() throws Exception {
+        List<Command> script = zigzag(10);
+
+        long finishTime = runAndAwait(script, ScriptRunner.Priority.BACKGROUND);
+
+        assertMoves(script, transport.getFrames());
+        assertPosition(expectedEnd(script), simulator.getPositionSteps());
+        assertPosition(simulator.getPositionSteps(), runner.getPositionSteps());
+        // Timed commands follow each other without waiting for the Orbit360.
+        long nominal = nominalDuration(script);
+        assertTrue("finished at " + finishTime, finishTime >= nominal && finishTime < nominal + 2 * WRITE_LATENCY_NANOS);
+    }
+
+    @Test
+    public void timedScript_withAcceleratingMotors_endsAtPredictedPosition() throws Exception {
+        MotorModel model = new MotorModel(2000, 1000);
+        simulator.setMotorModel(model);
+        runner.setMotorModel(model);
+        List<Command> script = zigzag(10);
+
+        runAndAwait(script, ScriptRunner.Priority.BACKGROUND);
+
+        assertFalse(simulator.isMoving());
+        assertPosition(expectedEnd(script), simulator.getPositionSteps());
+        assertPosition(simulator.getPositionSteps(), runner.getPositionSteps());
+    }
+}
@@ -0,0 +1,134 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs scripts from lazy sources and checks when the runner asks them for commands.
+ */
+public class ScriptRunnerSourceTest extends SimulationTestBase {
+    @Test
+    public void lookahead_requestsCommandsWhileTheCurrentCommandExecutes() throws Exception {
+        CountingSource source = new CountingSource(10);
+
+        runAndAwait(source, 2);
+
+        // The first command is requested before anything was sent. Afterwards, the source is two
+        // commands ahead of the command which was sent last.
+        List<Integer> expected = new ArrayList<>();
+        expected.add(0);
+        expected.add(1);
+        for (int i = 2; i < 10; i++) {
+            expected.add(i - 1);
+        }
+        assertEquals(expected, source.getSentAtRequest());
+        assertEquals(10, transport.getFrames().size());
+    }
+
+    @Test
+    public void defaultLookahead_requestsTheNextCommandWhenTheCurrentOneWasSent() throws Exception {
+        CountingSource source = new CountingSource(10);
+
+        runAndAwait(source, 1);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("sent before command " + i, i, (int) source.getSentAtRequest().get(i));
+            // The previous command was still moving the Orbit360.
+            if (i > 0) {
+                assertTrue(source.getPositionAtRequest().get(i) < 100 * i - 1);
+            }
+        }
+    }
+
+    @Test
+    public void lookaheadZero_requestsTheNextCommandAfterTheCurrentOneFinished() throws Exception {
+        CountingSource source = new CountingSource(10);
+
+        runAndAwait(source, 0);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("sent before command " + i, i, (int) source.getSentAtRequest().get(i));
+            // The source sees the position at the end of all previous commands.
+            assertEquals(100 * i, source.getPositionAtRequest().get(i), 1);
+        }
+        assertPosition(new Point2f(1000, 0), simulator.getPositionSteps());
+    }
+
+    @Test
+    public void longSource_isExhaustedOnceWithConstantLookahead() throws Exception {
+        CountingSource source = new CountingSource(2000);
+
+        runAndAwait(source, 4);
+
+        assertEquals(2000, transport.getFrames().size());
+        // One more call to learn that the source is exhausted.
+        assertEquals(2001, source.getCallCount());
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(i - source.getSentAtRequest().get(i) <= 4);
+        }
+        assertPosition(new Point2f(200000, 0), simulator.getPositionSteps());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeLookahead_isRejected() {
+        runner.runScript(new CountingSource(1), -1, null);
+    }
+
+    private void runAndAwait(CommandSource source, int lookahead) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        runner.runScript(source, lookahead, new ScriptRunner.SourceFinishedHandler() {
+            @Override
+            public void sourceExecutionFinished(CommandSource source, ScriptRunner sender) {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        // Let the last move arrive.
+        clock.advanceBy(2 * WRITE_LATENCY_NANOS);
+    }
+
+    /**
+     * Generates moves of 100 steps, and records how many commands were sent and where the runner
+     * estimated the Orbit360 when each command was requested.
+     */
+    private class CountingSource implements CommandSource {
+        private final int count;
+        private final List<Integer> sentAtRequest = new ArrayList<>();
+        private final List<Float> positionAtRequest = new ArrayList<>();
+        private int callCount;
+
+        CountingSource(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public synchronized boolean next(Command target, ScriptRunner runner) {
+            callCount++;
+            if (sentAtRequest.size() == count) {
+                return false;
+            }
+            sentAtRequest.add(transport.getFrames().size());
+            positionAtRequest.add(runner.getPositionSteps().getX());
+            target.setMoveXYSteps(100, 0, 1000, 1000);
+            return true;
+        }
+
+        synchronized List<Integer> getSentAtRequest() {
+            return new ArrayList<>(sentAtRequest);
+        }
+
+        synchronized List<Float> getPositionAtRequest() {
+            return new ArrayList<>(positionAtRequest);
+        }
+
+        synchronized int getCallCount() {
+            return callCount;
+        }
+    }
+}
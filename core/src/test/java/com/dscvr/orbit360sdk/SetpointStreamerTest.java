@@ -0,0 +1,186 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SetpointStreamerTest {
+    private static final long MILLISECOND = 1000000;
+
+    private VirtualClock clock;
+    private Orbit360Simulator simulator;
+    private DeadlineScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        clock = new VirtualClock();
+        simulator = new Orbit360Simulator(clock, 1);
+        simulator.setWriteLatencyNanos(7500000);
+        scheduler = new DeadlineScheduler(clock, 1);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.close();
+    }
+
+    @Test
+    public void burst_isPacedByTheWriteIntervalAndSendsTheLatestSetpoint() throws Exception {
+        PacedTransport transport = new PacedTransport(simulator, 15 * MILLISECOND);
+        final SetpointStreamer streamer = new SetpointStreamer(new Orbit360Control(transport), scheduler);
+        Orbit360Metrics metrics = new Orbit360Metrics();
+        streamer.setMetricsListener(metrics);
+        clock.scheduleAt(0, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= 10; i++) {
+                    streamer.moveSteps(i, 0, 1000, 1000);
+                }
+            }
+        });
+
+        runUntil(100 * MILLISECOND);
+
+        // The write of the first setpoint finished after 7.5ms, but the link only delivers one per interval.
+        assertEquals(Arrays.asList(0L, 15 * MILLISECOND), transport.getWriteTimes());
+        assertEquals(Arrays.asList(1, 10), transport.getStepsX());
+        assertEquals(10, streamer.getSubmittedCount());
+        assertEquals(8, streamer.getCoalescedCount());
+        assertEquals(2, streamer.getSentCount());
+        assertEquals(8, metrics.snapshot().getCoalescedCount());
+        streamer.close();
+    }
+
+    @Test
+    public void changedWriteInterval_appliesToTheNextSetpoint() throws Exception {
+        final PacedTransport transport = new PacedTransport(simulator, 50 * MILLISECOND);
+        final SetpointStreamer streamer = new SetpointStreamer(new Orbit360Control(transport), scheduler);
+        submitAt(streamer, 0, 1);
+        submitAt(streamer, 1 * MILLISECOND, 2);
+        clock.scheduleAt(2 * MILLISECOND, new Runnable() {
+            @Override
+            public void run() {
+                // Like a switch to the LOW_LATENCY profile.
+                transport.setWriteIntervalNanos(15 * MILLISECOND);
+            }
+        });
+
+        runUntil(100 * MILLISECOND);
+
+        assertEquals(Arrays.asList(0L, 15 * MILLISECOND), transport.getWriteTimes());
+        assertEquals(Arrays.asList(1, 2), transport.getStepsX());
+        streamer.close();
+    }
+
+    @Test
+    public void transportWithoutInterval_sendsWhenThePreviousWriteFinished() throws Exception {
+        PacedTransport transport = new PacedTransport(simulator, 0);
+        SetpointStreamer streamer = new SetpointStreamer(new Orbit360Control(transport), scheduler);
+        submitAt(streamer, 0, 1);
+        submitAt(streamer, 1 * MILLISECOND, 2);
+        submitAt(streamer, 2 * MILLISECOND, 3);
+
+        runUntil(100 * MILLISECOND);
+
+        assertEquals(Arrays.asList(0L, 7500000L), transport.getWriteTimes());
+        assertEquals(Arrays.asList(1, 3), transport.getStepsX());
+        assertEquals(1, streamer.getCoalescedCount());
+        streamer.close();
+    }
+
+    @Test
+    public void close_discardsTheDelayedSetpoint() throws Exception {
+        PacedTransport transport = new PacedTransport(simulator, 50 * MILLISECOND);
+        final SetpointStreamer streamer = new SetpointStreamer(new Orbit360Control(transport), scheduler);
+        submitAt(streamer, 0, 1);
+        submitAt(streamer, 10 * MILLISECOND, 2);
+        clock.scheduleAt(20 * MILLISECOND, new Runnable() {
+            @Override
+            public void run() {
+                streamer.close();
+            }
+        });
+
+        runUntil(100 * MILLISECOND);
+
+        assertEquals(Arrays.asList(1), transport.getStepsX());
+    }
+
+    private void submitAt(final SetpointStreamer streamer, long time, final int stepsX) {
+        clock.scheduleAt(time, new Runnable() {
+            @Override
+            public void run() {
+                streamer.moveSteps(stepsX, 0, 1000, 1000);
+            }
+        });
+    }
+
+    /**
+     * Lets the scheduler advance the clock until the given time, running all events on its thread.
+     */
+    private void runUntil(long time) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        scheduler.newTask(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        }).scheduleAt(time);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Records the time and the steps on the X-axis of every write, and reports a write interval
+     * like the GATT transport.
+     */
+    private class PacedTransport implements Orbit360Transport, Orbit360Transport.Paced {
+        private final Orbit360Simulator simulator;
+        private final List<Long> writeTimes = new ArrayList<>();
+        private final List<Integer> stepsX = new ArrayList<>();
+        private volatile long writeIntervalNanos;
+
+        PacedTransport(Orbit360Simulator simulator, long writeIntervalNanos) {
+            this.simulator = simulator;
+            this.writeIntervalNanos = writeIntervalNanos;
+        }
+
+        @Override
+        public void write(byte[] frame, WriteCallback callback) {
+            synchronized (this) {
+                writeTimes.add(clock.nanoTime());
+                stepsX.add(FrameDecoder.moveStepsX(frame, 0));
+            }
+            simulator.write(frame, callback);
+        }
+
+        @Override
+        public void setNotificationListener(NotificationListener listener) {
+            simulator.setNotificationListener(listener);
+        }
+
+        @Override
+        public long getWriteIntervalNanos() {
+            return writeIntervalNanos;
+        }
+
+        void setWriteIntervalNanos(long nanos) {
+            this.writeIntervalNanos = nanos;
+        }
+
+        synchronized List<Long> getWriteTimes() {
+            return new ArrayList<>(writeTimes);
+        }
+
+        synchronized List<Integer> getStepsX() {
+            return new ArrayList<>(stepsX);
+        }
+    }
+}
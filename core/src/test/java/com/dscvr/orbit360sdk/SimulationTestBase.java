@@ -0,0 +1,151 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.After;
+import org.junit.Before;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Base of the tests which run scripts against an Orbit360Simulator on a VirtualClock, so whole
+ * scripts take milliseconds and their timing is deterministic.
+ */
+public abstract class SimulationTestBase {
+    protected static final long WRITE_LATENCY_NANOS = 7500000;
+
+    protected VirtualClock clock;
+    protected Orbit360Simulator simulator;
+    protected RecordingTransport transport;
+    protected ScriptRunner runner;
+
+    @Before
+    public void setUp() {
+        clock = new VirtualClock();
+        simulator = new Orbit360Simulator(clock, 1);
+        simulator.setWriteLatencyNanos(WRITE_LATENCY_NANOS);
+        transport = new RecordingTransport(simulator);
+        runner = new ScriptRunner(new Orbit360Control(transport), clock);
+    }
+
+    @After
+    public void tearDown() {
+        runner.close();
+    }
+
+    /**
+     * Runs a script and waits until its handler was called.
+     * @return The virtual time at which the handler was called.
+     */
+    protected long runAndAwait(List<Command> script, ScriptRunner.Priority priority) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final long[] finishTime = new long[1];
+        runner.runScript(script, priority, new ScriptRunner.ExecutionFinishedHandler() {
+            @Override
+            public void commandExecutionFinished(List<Command> commands, ScriptRunner sender) {
+                finishTime[0] = clock.nanoTime();
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        // Let the last move arrive.
+        clock.advanceBy(2 * WRITE_LATENCY_NANOS);
+        return finishTime[0];
+    }
+
+    protected static List<Command> zigzag(int count) {
+        List<Command> script = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            script.add(Command.moveXYSteps(new Point2f(100 + 10 * i, i % 2 == 0 ? 50 : -30), new Point2f(500, 250)));
+        }
+        return script;
+    }
+
+    protected static List<Command> repeat(int count, float stepsX, float stepsY, float speed) {
+        List<Command> script = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            script.add(Command.moveXYSteps(new Point2f(stepsX, stepsY), new Point2f(speed, speed)));
+        }
+        return script;
+    }
+
+    protected static Point2f expectedEnd(List<Command> script) {
+        float x = 0;
+        float y = 0;
+        for (Command command : script) {
+            x += command.getStepsX();
+            y += command.getStepsY();
+        }
+        return new Point2f(x, y);
+    }
+
+    protected static long nominalDuration(List<Command> script) {
+        long duration = 0;
+        for (Command command : script) {
+            duration += ScriptRunner.nominalDurationNanos(command);
+        }
+        return duration;
+    }
+
+    protected static void assertMoves(List<Command> script, List<int[]> frames) {
+        assertEquals(script.size(), frames.size());
+        for (int i = 0; i < script.size(); i++) {
+            Command command = script.get(i);
+            int[] frame = frames.get(i);
+            assertEquals(CommandEncoder.FUNCTION_MOVE_XY, frame[0]);
+            assertEquals("steps X of command " + i, (int) command.getStepsX(), frame[1]);
+            assertEquals("steps Y of command " + i, (int) command.getStepsY(), frame[3]);
+        }
+    }
+
+    protected static void assertPosition(Point2f expected, Point2f actual) {
+        assertEquals(expected.getX(), actual.getX(), 1);
+        assertEquals(expected.getY(), actual.getY(), 1);
+    }
+
+    /**
+     * Records the function, steps and speeds of every written frame.
+     */
+    protected static class RecordingTransport implements Orbit360Transport, Orbit360Transport.Prioritized {
+        private final Orbit360Simulator simulator;
+        private final List<int[]> frames = new ArrayList<>();
+
+        RecordingTransport(Orbit360Simulator simulator) {
+            this.simulator = simulator;
+        }
+
+        @Override
+        public void write(byte[] frame, WriteCallback callback) {
+            record(frame);
+            simulator.write(frame, callback);
+        }
+
+        @Override
+        public void writeFirst(byte[] frame, WriteCallback callback) {
+            record(frame);
+            simulator.writeFirst(frame, callback);
+        }
+
+        @Override
+        public void setNotificationListener(NotificationListener listener) {
+            simulator.setNotificationListener(listener);
+        }
+
+        synchronized List<int[]> getFrames() {
+            return new ArrayList<>(frames);
+        }
+
+        private synchronized void record(byte[] frame) {
+            byte function = FrameDecoder.function(frame, 0);
+            if (function == CommandEncoder.FUNCTION_MOVE_XY) {
+                frames.add(new int[]{function, FrameDecoder.moveStepsX(frame, 0), FrameDecoder.moveSpeedX(frame, 0),
+                        FrameDecoder.moveStepsY(frame, 0), FrameDecoder.moveSpeedY(frame, 0)});
+            } else {
+                frames.add(new int[]{function});
+            }
+        }
+    }
+}
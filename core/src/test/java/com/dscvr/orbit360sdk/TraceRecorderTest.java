@@ -0,0 +1,118 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class TraceRecorderTest {
+    private static final long LATENCY = 7500000;
+
+    private File file;
+    private VirtualClock clock;
+    private Orbit360Simulator simulator;
+    private TraceRecorder recorder;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("trace", ".o3tr");
+        clock = new VirtualClock();
+        simulator = new Orbit360Simulator(clock, 1);
+        simulator.setWriteLatencyNanos(LATENCY);
+        recorder = new TraceRecorder(file, clock);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        recorder.close();
+        file.delete();
+    }
+
+    @Test
+    public void recordedTrace_isReadBackAndReplayed() throws Exception {
+        Orbit360Control control = new Orbit360Control(recorder.wrap(simulator));
+        Command command = new Command();
+        // Enough entries to fill more than one buffer.
+        int count = 1000;
+        for (int i = 0; i < count; i++) {
+            control.sendCommand(command.setMoveXYSteps(i % 7, -(i % 5), 1000, 1000));
+            clock.advanceBy(10000000);
+        }
+        // Let the last movement finish.
+        clock.advanceBy(10000000);
+        recorder.close();
+
+        assertEquals(2 * count, recorder.getEntryCount());
+        assertEquals(0, recorder.getFailureCount());
+        FrameTrace trace = FrameTrace.map(file);
+        FrameTrace.Cursor cursor = trace.cursor();
+        byte[] frame = new byte[CommandEncoder.FRAME_CAPACITY];
+        for (int i = 0; i < count; i++) {
+            assertTrue(cursor.next());
+            assertEquals(FrameTrace.TYPE_WRITE, cursor.getType());
+            assertEquals(FrameTrace.OUTCOME_OK, cursor.getOutcome());
+            assertEquals(i * 10000000L, cursor.getSendTimeNanos());
+            assertEquals(LATENCY, cursor.getLatencyNanos());
+            assertEquals(CommandEncoder.MOVE_XY_FRAME_LENGTH, cursor.getFrame(frame));
+            assertEquals(i % 7, FrameDecoder.moveStepsX(frame, 0));
+            assertEquals(-(i % 5), FrameDecoder.moveStepsY(frame, 0));
+            assertTrue(cursor.next());
+            assertEquals(FrameTrace.TYPE_NOTIFICATION, cursor.getType());
+        }
+        assertFalse(cursor.next());
+
+        VirtualClock replayClock = new VirtualClock();
+        Orbit360Simulator replayed = new Orbit360Simulator(replayClock, 1);
+        replayed.setWriteLatencyNanos(LATENCY);
+        TraceReplayer.Result result = new TraceReplayer(trace, replayClock).replay(replayed);
+
+        assertEquals(count, result.getSentCount());
+        assertEquals(count, result.getAcknowledgedCount());
+        assertEquals(0, result.getLateness().getMaxNanos());
+        replayClock.advanceBy(10000000);
+        assertEquals(simulator.getPositionSteps().getX(), replayed.getPositionSteps().getX(), 0);
+        assertEquals(simulator.getPositionSteps().getY(), replayed.getPositionSteps().getY(), 0);
+    }
+
+    @Test
+    public void reusedFrame_isRecordedAsItWasWritten() throws Exception {
+        Orbit360Transport transport = recorder.wrap(simulator);
+        byte[] frame = new byte[CommandEncoder.FRAME_CAPACITY];
+        CommandEncoder.encodeMoveXY(100, 1000, 0, 1000, frame, 0);
+        transport.write(frame, null);
+        // The caller may reuse the frame before the write finished.
+        CommandEncoder.encodeMoveXY(200, 1000, 0, 1000, frame, 0);
+        transport.write(frame, null);
+        clock.advanceBy(2 * LATENCY);
+        recorder.flush();
+
+        FrameTrace.Cursor cursor = FrameTrace.map(file).cursor();
+        byte[] recorded = new byte[CommandEncoder.FRAME_CAPACITY];
+        assertTrue(cursor.next());
+        cursor.getFrame(recorded);
+        assertEquals(100, FrameDecoder.moveStepsX(recorded, 0));
+        assertTrue(cursor.next());
+        cursor.getFrame(recorded);
+        assertEquals(200, FrameDecoder.moveStepsX(recorded, 0));
+    }
+
+    @Test
+    public void entriesAfterClose_areCountedAsFailures() throws Exception {
+        recorder.recordNotification(new byte[]{(byte) 0xFE, 0, 0x08, 0});
+        recorder.close();
+
+        recorder.recordNotification(new byte[]{(byte) 0xFE, 0, 0x08, 0});
+
+        assertEquals(1, recorder.getEntryCount());
+        assertEquals(1, recorder.getFailureCount());
+        FrameTrace.Cursor cursor = FrameTrace.map(file).cursor();
+        assertTrue(cursor.next());
+        assertEquals(FrameTrace.TYPE_NOTIFICATION, cursor.getType());
+        assertEquals(FrameTrace.OUTCOME_INVALID, cursor.getOutcome());
+        assertFalse(cursor.next());
+    }
+}
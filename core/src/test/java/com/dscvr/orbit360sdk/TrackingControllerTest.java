@@ -0,0 +1,165 @@
+package com.dscvr.orbit360sdk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TrackingControllerTest {
+    private static final long MILLISECOND = 1000000;
+    private static final long LATENCY = 7500000;
+
+    private VirtualClock clock;
+    private Orbit360Simulator simulator;
+    private DeadlineScheduler scheduler;
+    private TrackingController controller;
+
+    @Before
+    public void setUp() {
+        clock = new VirtualClock();
+        simulator = new Orbit360Simulator(clock, 1);
+        simulator.setWriteLatencyNanos(LATENCY);
+        scheduler = new DeadlineScheduler(clock, 1);
+        controller = new TrackingController(new Orbit360Control(simulator), scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        controller.close();
+        scheduler.close();
+    }
+
+    @Test
+    public void movingTarget_isFollowed() throws Exception {
+        // 20 degrees per second on the X-axis, measured by a camera at 100 frames per second.
+        measure(10, 20, 5, 0, 3000 * MILLISECOND);
+        controller.start();
+        final Vec2 arm = new Vec2();
+        clock.scheduleAt(3000 * MILLISECOND, new Runnable() {
+            @Override
+            public void run() {
+                arm.set(armDegrees());
+            }
+        });
+
+        runUntil(3000 * MILLISECOND);
+
+        assertEquals(10 + 20 * 3, arm.x, 2);
+        assertEquals(5, arm.y, 1);
+        Vec2 position = new Vec2();
+        Vec2 velocity = new Vec2();
+        assertTrue(controller.getTarget(position, velocity));
+        assertEquals(20, velocity.x, 0.1);
+        assertEquals(0, velocity.y, 0.1);
+        // The latency started at the default of 30ms and converged to the one of the link.
+        assertEquals(LATENCY, controller.getLatencyNanos(), MILLISECOND);
+        assertEquals(LATENCY, controller.getCommandLatency().getMaxNanos());
+        assertEquals(0, controller.getDroppedCount());
+        assertTrue(controller.getSentCount() > 50);
+    }
+
+    @Test
+    public void lostTarget_stopsTheArmAfterTheTimeout() throws Exception {
+        measure(0, 20, 0, 0, 1000 * MILLISECOND);
+        controller.setTargetTimeout(200);
+        controller.start();
+
+        runUntil(2000 * MILLISECOND);
+
+        assertTrue(controller.isRunning());
+        assertFalse(simulator.isMoving());
+        long sent = controller.getSentCount();
+        runUntil(2500 * MILLISECOND);
+        assertEquals(sent, controller.getSentCount());
+    }
+
+    @Test
+    public void stop_stopsTheArm() throws Exception {
+        measure(0, 20, 0, 0, 3000 * MILLISECOND);
+        controller.start();
+        clock.scheduleAt(1000 * MILLISECOND, new Runnable() {
+            @Override
+            public void run() {
+                controller.stop();
+            }
+        });
+
+        runUntil(1500 * MILLISECOND);
+
+        assertFalse(controller.isRunning());
+        assertFalse(simulator.isMoving());
+        assertFalse(controller.getPositionEstimator().isMoving());
+        // Stopped shortly after the arm reached about 20 degrees.
+        assertEquals(20, armDegrees().x, 2);
+    }
+
+    @Test
+    public void olderMeasurement_isRejected() throws Exception {
+        controller.updateTarget(100 * MILLISECOND, 1, 1);
+        controller.updateTarget(200 * MILLISECOND, 2, 1);
+
+        controller.updateTarget(150 * MILLISECOND, 50, 50);
+
+        assertEquals(1, controller.getRejectedTargetCount());
+        Vec2 position = new Vec2();
+        Vec2 velocity = new Vec2();
+        controller.getTarget(position, velocity);
+        assertTrue(position.x < 2);
+        assertEquals(1, position.y, 1e-9);
+    }
+
+    @Test
+    public void targetOffset_isRelativeToTheArmAtTheTimeOfTheMeasurement() throws Exception {
+        PositionEstimator estimator = controller.getPositionEstimator();
+        estimator.beginMovement(0, 100 * Orbit360Control.DEGREES_TO_STEPS_X, 0, 10 * Orbit360Control.DEGREES_TO_STEPS_X, 1000);
+        clock.advanceBy(5000 * MILLISECOND);
+
+        // The arm was at 10 degrees after one second, and has moved on since.
+        controller.updateTargetOffset(1000 * MILLISECOND, 3, 4);
+
+        Vec2 position = new Vec2();
+        assertTrue(controller.getTarget(position, new Vec2()));
+        assertEquals(13, position.x, 1e-3);
+        assertEquals(4, position.y, 1e-3);
+    }
+
+    /**
+     * Passes measurements of a target moving on the X-axis every 10ms, from the given start until the end time.
+     */
+    private void measure(final double startX, final double speedX, final double y, long from, final long until) {
+        clock.scheduleAt(from, new Runnable() {
+            @Override
+            public void run() {
+                long now = clock.nanoTime();
+                controller.updateTarget(now, startX + speedX * now / 1e9, y);
+                if (now + 10 * MILLISECOND <= until) {
+                    clock.scheduleAt(now + 10 * MILLISECOND, this);
+                }
+            }
+        });
+    }
+
+    private Vec2 armDegrees() {
+        return new Vec2().set(simulator.getPositionSteps()).stepsToDegrees();
+    }
+
+    /**
+     * Lets the scheduler advance the clock until the given time, running all events on its thread.
+     * The scheduler keeps advancing the clock afterwards, so state at an exact time has to be taken
+     * by an event.
+     */
+    private void runUntil(long time) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        scheduler.newTask(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        }).scheduleAt(time);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,90 @@
+package com.dscvr.orbit360sdk;
+
+import android.bluetooth.BluetoothGatt;
+
+/**
+ * Trades the latency of the Bluetooth connection to an Orbit360 against its power consumption.
+ *
+ * A profile sets the connection priority, the MTU which is negotiated and whether commands are
+ * written with or without response. It is applied by Orbit360Listener when the services are
+ * discovered, and can be changed while connected.
+ *
+ * A frame is CommandEncoder.FRAME_CAPACITY bytes, which does not fit into the default MTU of 23
+ * bytes. Without a larger MTU, Android splits every command into a long write of several round
+ * trips, and a write without response would be truncated. All profiles therefore negotiate an MTU
+ * which fits a frame, and writes without response are only used once it was granted.
+ */
+public enum ConnectionProfile {
+    /**
+     * The shortest connection interval, a large MTU and writes without response. Commands take
+     * effect about one connection interval after they were written, but the write callback only
+     * means that the frame was accepted by the Bluetooth stack, not that the Orbit360 received it.
+     * Uses the most power.
+     */
+    LOW_LATENCY(BluetoothGatt.CONNECTION_PRIORITY_HIGH, 15000000L, ConnectionProfile.MAX_MTU, true),
+    /**
+     * The default connection interval and acknowledged writes, so every write callback confirms
+     * that the Orbit360 received the command.
+     */
+    BALANCED(BluetoothGatt.CONNECTION_PRIORITY_BALANCED, 50000000L, ConnectionProfile.MIN_MTU, false),
+    /**
+     * The longest connection interval and acknowledged writes, for example while the Orbit360 only
+     * waits for remote button presses.
+     */
+    LOW_POWER(BluetoothGatt.CONNECTION_PRIORITY_LOW_POWER, 125000000L, ConnectionProfile.MIN_MTU, false);
+
+    /**
+     * The MTU of a connection before it was negotiated.
+     */
+    public static final int DEFAULT_MTU = 23;
+    /**
+     * The smallest MTU which fits a frame into a single write: the frame and the three bytes of the
+     * ATT header.
+     */
+    public static final int MIN_MTU = CommandEncoder.FRAME_CAPACITY + 3;
+    /**
+     * The largest MTU whose packets fit into a single link layer packet with data length extension.
+     */
+    public static final int MAX_MTU = 247;
+
+    private final int connectionPriority;
+    private final long connectionIntervalNanos;
+    private final int mtu;
+    private final boolean writeWithoutResponse;
+
+    ConnectionProfile(int connectionPriority, long connectionIntervalNanos, int mtu, boolean writeWithoutResponse) {
+        this.connectionPriority = connectionPriority;
+        this.connectionIntervalNanos = connectionIntervalNanos;
+        this.mtu = mtu;
+        this.writeWithoutResponse = writeWithoutResponse;
+    }
+
+    /**
+     * @return The connection priority, one of the CONNECTION_PRIORITY constants of BluetoothGatt.
+     */
+    public int getConnectionPriority() {
+        return connectionPriority;
+    }
+
+    /**
+     * @return The longest connection interval Android negotiates for the connection priority, in
+     * nanoseconds. The link carries at most one command per interval.
+     */
+    public long getConnectionIntervalNanos() {
+        return connectionIntervalNanos;
+    }
+
+    /**
+     * @return The MTU which is requested, in bytes.
+     */
+    public int getMtu() {
+        return mtu;
+    }
+
+    /**
+     * @return True if commands are written without response, when the MTU and the characteristic allow it.
+     */
+    public boolean isWriteWithoutResponse() {
+        return writeWithoutResponse;
+    }
+}
@@ -0,0 +1,356 @@
+package com.dscvr.orbit360sdk;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Serializes GATT operations on a single connection.
+ *
+ * Android only allows one outstanding GATT operation per connection and silently rejects any other.
+ * This queue starts the next operation only after the previous one was acknowledged by
+ * onCharacteristicWrite, onDescriptorWrite or onMtuChanged, which have to be forwarded by the
+ * owning callback.
+ *
+ * Operations are started without holding the lock of the queue, so a slow operation, or a
+ * MetricsListener called by it, does not block the threads which enqueue or acknowledge. An
+ * operation which is not acknowledged within OPERATION_TIMEOUT_NANOS fails, and the queue continues
+ * with the next one. Android rejects new operations while it still waits for the lost one, so they
+ * fail quickly until the connection recovers or is lost.
+ */
+class GattOperationQueue {
+    /**
+     * The time an operation may take until it is acknowledged, in nanoseconds. Far longer than a
+     * round trip of the slowest ConnectionProfile.
+     */
+    static final long OPERATION_TIMEOUT_NANOS = 5000000000L;
+
+    private final BluetoothGatt gatt;
+    private final Clock clock;
+    private final long timeoutNanos;
+    private final DeadlineScheduler.Task timeoutTask;
+    private final ArrayDeque<Operation> pending = new ArrayDeque<>();
+    private Operation current;
+    private long currentDeadline;
+
+    GattOperationQueue(BluetoothGatt gatt) {
+        this(gatt, DeadlineScheduler.getShared(), OPERATION_TIMEOUT_NANOS);
+    }
+
+    /**
+     * Creates a new queue.
+     * @param gatt The connection.
+     * @param scheduler The scheduler which fails operations that were not acknowledged in time.
+     * @param timeoutNanos The time an operation may take until it is acknowledged, in nanoseconds.
+     */
+    GattOperationQueue(BluetoothGatt gatt, DeadlineScheduler scheduler, long timeoutNanos) {
+        this.gatt = gatt;
+        this.clock = scheduler.getClock();
+        this.timeoutNanos = timeoutNanos;
+        this.timeoutTask = scheduler.newTask(new Runnable() {
+            @Override
+            public void run() {
+                expireCurrent();
+            }
+        });
+    }
+
+    /**
+     * Base class for a single GATT operation.
+     */
+    abstract static class Operation {
+        // Guarded by the queue. An operation can be discarded by clear or the timeout while
+        // startNext still executes it, so it is only released once both are done.
+        private boolean executing;
+        private boolean done;
+
+        /**
+         * Starts the operation. Called without holding the lock of the queue.
+         * @return True if the operation was started and will be acknowledged by a callback.
+         */
+        abstract boolean execute(BluetoothGatt gatt);
+
+        /**
+         * Called exactly once, when the operation was acknowledged, failed to start or was discarded.
+         * Called without holding the lock of the queue.
+         */
+        abstract void finished(boolean success);
+
+        /**
+         * Called once the queue no longer uses the operation: after finished was called and execute
+         * returned. The operation can be reused from then on. Called without holding the lock of the queue.
+         */
+        void released() {
+        }
+    }
+
+    /**
+     * Writes a value to a descriptor.
+     */
+    static class DescriptorWrite extends Operation {
+        private final BluetoothGattDescriptor descriptor;
+        private final byte[] value;
+        private final Orbit360Transport.WriteCallback callback;
+
+        DescriptorWrite(BluetoothGattDescriptor descriptor, byte[] value, Orbit360Transport.WriteCallback callback) {
+            this.descriptor = descriptor;
+            this.value = value;
+            this.callback = callback;
+        }
+
+        @Override
+        boolean execute(BluetoothGatt gatt) {
+            descriptor.setValue(value);
+            return gatt.writeDescriptor(descriptor);
+        }
+
+        @Override
+        void finished(boolean success) {
+            if (callback != null) callback.writeFinished(success);
+        }
+    }
+
+    /**
+     * Writes a value to a characteristic.
+     */
+    static class CharacteristicWrite extends Operation {
+        BluetoothGattCharacteristic characteristic;
+        int writeType;
+        final byte[] value;
+        Orbit360Transport.WriteCallback callback;
+
+        CharacteristicWrite(int capacity) {
+            this.value = new byte[capacity];
+        }
+
+        @Override
+        boolean execute(BluetoothGatt gatt) {
+            characteristic.setWriteType(writeType);
+            characteristic.setValue(value);
+            return gatt.writeCharacteristic(characteristic);
+        }
+
+        @Override
+        void finished(boolean success) {
+            if (callback != null) callback.writeFinished(success);
+        }
+    }
+
+    /**
+     * Requests an MTU. The negotiated MTU can be smaller or larger than the requested one.
+     */
+    static class MtuRequest extends Operation {
+        private final int mtu;
+        private final Orbit360Transport.WriteCallback callback;
+
+        MtuRequest(int mtu, Orbit360Transport.WriteCallback callback) {
+            this.mtu = mtu;
+            this.callback = callback;
+        }
+
+        @Override
+        boolean execute(BluetoothGatt gatt) {
+            return gatt.requestMtu(mtu);
+        }
+
+        @Override
+        void finished(boolean success) {
+            if (callback != null) callback.writeFinished(success);
+        }
+    }
+
+    /**
+     * Adds an operation to the end of the queue and starts it if the connection is idle.
+     */
+    void enqueue(Operation operation) {
+        synchronized (this) {
+            operation.done = false;
+            pending.add(operation);
+        }
+        startNext();
+    }
+
+    /**
+     * Adds an operation to the front of the queue. All pending characteristic writes are discarded,
+     * so none of them is executed after this operation. The running operation can not be recalled.
+     */
+    void enqueueFirst(Operation operation) {
+        List<Operation> discarded = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Operation> iterator = pending.iterator();
+            while (iterator.hasNext()) {
+                Operation queued = iterator.next();
+                if (queued instanceof CharacteristicWrite) {
+                    iterator.remove();
+                    discarded.add(queued);
+                }
+            }
+            operation.done = false;
+            pending.addFirst(operation);
+        }
+        for (Operation queued : discarded) {
+            finish(queued, false);
+        }
+        startNext();
+    }
+
+    /**
+     * @return The count of pending operations, including the running one.
+     */
+    synchronized int size() {
+        return pending.size() + (current != null ? 1 : 0);
+    }
+
+    /**
+     * Must be called from BluetoothGattCallback.onCharacteristicWrite.
+     */
+    void characteristicWritten(int status) {
+        completeCurrent(status == BluetoothGatt.GATT_SUCCESS);
+    }
+
+    /**
+     * Must be called from BluetoothGattCallback.onDescriptorWrite.
+     */
+    void descriptorWritten(int status) {
+        completeCurrent(status == BluetoothGatt.GATT_SUCCESS);
+    }
+
+    /**
+     * Must be called from BluetoothGattCallback.onMtuChanged. Completes a running MtuRequest. The
+     * MTU can also change without a request, for example when the Orbit360 requested it.
+     */
+    void mtuChanged(int status) {
+        synchronized (this) {
+            if (!(current instanceof MtuRequest)) {
+                return;
+            }
+        }
+        completeCurrent(status == BluetoothGatt.GATT_SUCCESS);
+    }
+
+    /**
+     * Fails the running and all pending operations, for example after the connection was lost.
+     */
+    void clear() {
+        timeoutTask.cancel();
+        while (true) {
+            Operation discarded;
+            synchronized (this) {
+                if (current != null) {
+                    discarded = current;
+                    current = null;
+                } else {
+                    discarded = pending.poll();
+                }
+            }
+            if (discarded == null) {
+                return;
+            }
+            finish(discarded, false);
+        }
+    }
+
+    private void completeCurrent(boolean success) {
+        Operation completed;
+        synchronized (this) {
+            completed = current;
+            current = null;
+        }
+        if (completed == null) {
+            Log.w("GattOperationQueue", "Acknowledgement without pending operation");
+        } else {
+            finish(completed, success);
+        }
+        startNext();
+    }
+
+    private void startNext() {
+        while (true) {
+            Operation next;
+            long deadline;
+            synchronized (this) {
+                if (current != null || pending.isEmpty()) {
+                    return;
+                }
+                next = pending.poll();
+                next.executing = true;
+                current = next;
+                deadline = clock.nanoTime() + timeoutNanos;
+                currentDeadline = deadline;
+            }
+            timeoutTask.scheduleAt(deadline);
+            boolean started = false;
+            try {
+                started = next.execute(gatt);
+            } finally {
+                boolean release;
+                boolean failed;
+                synchronized (this) {
+                    next.executing = false;
+                    // The operation may have been discarded by clear or the timeout while it was started.
+                    release = next.done;
+                    failed = !started && current == next;
+                    if (failed) {
+                        current = null;
+                    }
+                }
+                if (release) {
+                    next.released();
+                }
+                if (failed) {
+                    Log.w("GattOperationQueue", "Could not start GATT operation");
+                    finish(next, false);
+                }
+            }
+            if (started) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reports the result of an operation, and releases it unless startNext still executes it.
+     */
+    private void finish(Operation operation, boolean success) {
+        operation.finished(success);
+        boolean release;
+        synchronized (this) {
+            operation.done = true;
+            release = !operation.executing;
+        }
+        if (release) {
+            operation.released();
+        }
+    }
+
+    private void expireCurrent() {
+        Operation expired;
+        long deadline;
+        synchronized (this) {
+            if (current == null) {
+                return;
+            }
+            deadline = currentDeadline;
+            if (clock.nanoTime() < deadline) {
+                expired = null;
+            } else {
+                expired = current;
+                current = null;
+            }
+        }
+        if (expired == null) {
+            // The task ran for an earlier operation, wait for the running one.
+            timeoutTask.scheduleAt(deadline);
+            return;
+        }
+        Log.w("GattOperationQueue", "GATT operation was not acknowledged in time");
+        finish(expired, false);
+        startNext();
+    }
+}
@@ -0,0 +1,194 @@
+package com.dscvr.orbit360sdk;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattService;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Transport which writes frames to the movement characteristic of a connected Orbit360.
+ *
+ * Writes are serialized through the GattOperationQueue of the connection. The characteristic is
+ * resolved once, when the transport is created. The write type is set by the ConnectionProfile of
+ * the connection, and the time from issuing each write until it was acknowledged is recorded in the
+ * round trip histogram of the profile. The connection interval of the profile is reported as write
+ * interval, so a SetpointStreamer does not send faster than the link delivers.
+ */
+class GattTransport implements Orbit360Transport, Orbit360Transport.Instrumented, Orbit360Transport.Prioritized,
+        Orbit360Transport.Paced {
+    private final GattOperationQueue operationQueue;
+    private final BluetoothGattCharacteristic characteristic;
+    private final boolean writable;
+    private final boolean writableWithResponse;
+    private final boolean writableWithoutResponse;
+    private volatile int writeType;
+    private volatile LatencyHistogram roundTrips;
+    private volatile long writeIntervalNanos;
+    private final ArrayDeque<PooledWrite> freeWrites = new ArrayDeque<>();
+    private volatile NotificationListener notificationListener;
+    private volatile MetricsListener metricsListener = MetricsListener.NONE;
+
+    GattTransport(GattOperationQueue operationQueue, BluetoothGattService service) {
+        this.operationQueue = operationQueue;
+        this.characteristic = service.getCharacteristic(Orbit360Discovery.CHARACTERISTIC_UUID);
+        this.writable = characteristic != null && ((characteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_WRITE) |
+                (characteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE)) > 0;
+        this.writableWithResponse = characteristic != null &&
+                (characteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_WRITE) != 0;
+        this.writableWithoutResponse = characteristic != null &&
+                (characteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE) != 0;
+        this.writeType = writable ? characteristic.getWriteType() : BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT;
+    }
+
+    /**
+     * Sets the write type of the following writes. Queued writes keep their write type.
+     * @param withoutResponse True to write without response, false to write with response.
+     * @return True if the write type is used, false if the characteristic does not support it.
+     */
+    boolean setWriteWithoutResponse(boolean withoutResponse) {
+        if (withoutResponse ? !writableWithoutResponse : !writableWithResponse) {
+            return false;
+        }
+        writeType = withoutResponse ? BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE : BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT;
+        return true;
+    }
+
+    /**
+     * @return True if the following writes are written without response.
+     */
+    boolean isWriteWithoutResponse() {
+        return writeType == BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE;
+    }
+
+    /**
+     * Sets the histogram which records the time from issuing a successful write until it was
+     * acknowledged, in nanoseconds.
+     * @param histogram The histogram. Null disables recording.
+     */
+    void setRoundTripHistogram(LatencyHistogram histogram) {
+        this.roundTrips = histogram;
+    }
+
+    /**
+     * @param nanos The connection interval of the ConnectionProfile, in nanoseconds.
+     */
+    void setWriteIntervalNanos(long nanos) {
+        this.writeIntervalNanos = nanos;
+    }
+
+    @Override
+    public long getWriteIntervalNanos() {
+        return writeIntervalNanos;
+    }
+
+    private class PooledWrite extends GattOperationQueue.CharacteristicWrite {
+        MetricsListener metrics;
+        LatencyHistogram roundTrips;
+        long enqueueTime;
+        long issueTime;
+
+        PooledWrite() {
+            super(CommandEncoder.FRAME_CAPACITY);
+        }
+
+        @Override
+        boolean execute(BluetoothGatt gatt) {
+            if (metrics != MetricsListener.NONE || roundTrips != null) {
+                issueTime = System.nanoTime();
+                if (metrics != MetricsListener.NONE) {
+                    metrics.writeIssued(enqueueTime, issueTime);
+                }
+            }
+            return super.execute(gatt);
+        }
+
+        @Override
+        void finished(boolean success) {
+            if (metrics != MetricsListener.NONE || roundTrips != null) {
+                long ackTime = System.nanoTime();
+                if (metrics != MetricsListener.NONE) {
+                    metrics.writeAcknowledged(enqueueTime, issueTime, ackTime, success);
+                }
+                // Writes which were discarded before they were issued have no round trip.
+                if (roundTrips != null && success && issueTime >= 0) {
+                    roundTrips.record(ackTime - issueTime);
+                }
+            }
+            Orbit360Transport.WriteCallback finishedCallback = callback;
+            callback = null;
+            if (finishedCallback != null) finishedCallback.writeFinished(success);
+        }
+
+        @Override
+        void released() {
+            synchronized (freeWrites) {
+                freeWrites.push(this);
+            }
+        }
+    }
+
+    @Override
+    public void write(byte[] frame, WriteCallback callback) {
+        operationQueue.enqueue(prepare(frame, callback));
+    }
+
+    /**
+     * Writes the frame as next GATT operation. Queued writes are discarded.
+     */
+    @Override
+    public void writeFirst(byte[] frame, WriteCallback callback) {
+        operationQueue.enqueueFirst(prepare(frame, callback));
+    }
+
+    private PooledWrite prepare(byte[] frame, WriteCallback callback) {
+        if (!writable) {
+            throw new IllegalArgumentException("Could not write to bluetooth service.");
+        }
+        PooledWrite write;
+        synchronized (freeWrites) {
+            write = freeWrites.poll();
+        }
+        if (write == null) {
+            write = new PooledWrite();
+        }
+        // Copy, since the caller may reuse the frame before the write is started.
+        int length = Math.min(frame.length, CommandEncoder.FRAME_CAPACITY);
+        System.arraycopy(frame, 0, write.value, 0, length);
+        Arrays.fill(write.value, length, CommandEncoder.FRAME_CAPACITY, (byte) 0);
+        write.characteristic = characteristic;
+        write.writeType = writeType;
+        write.callback = callback;
+        MetricsListener metrics = metricsListener;
+        write.metrics = metrics;
+        write.roundTrips = roundTrips;
+        write.issueTime = -1;
+        if (metrics != MetricsListener.NONE) {
+            write.enqueueTime = System.nanoTime();
+            metrics.commandEnqueued(write.enqueueTime, operationQueue.size() + 1);
+        }
+        return write;
+    }
+
+    @Override
+    public void setMetricsListener(MetricsListener listener) {
+        this.metricsListener = listener;
+    }
+
+    @Override
+    public void setNotificationListener(NotificationListener listener) {
+        this.notificationListener = listener;
+    }
+
+    /**
+     * Must be called when the response characteristic changed.
+     * @param value The new value of the characteristic.
+     */
+    void notificationReceived(byte[] value) {
+        NotificationListener listener = notificationListener;
+        if (listener != null) {
+            listener.notificationReceived(value);
+        }
+    }
+}
@@ -2,22 +2,40 @@ package com.dscvr.orbit360sdk;
 
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothProfile;
 import android.bluetooth.le.ScanCallback;
 import android.bluetooth.le.ScanFilter;
 import android.bluetooth.le.ScanResult;
 import android.bluetooth.le.ScanSettings;
 import android.content.Context;
 import android.os.Handler;
+import android.os.Looper;
 import android.os.ParcelUuid;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
 /**
  * This class wraps the Android Bluetooth API and helps with discovering a nearby Orbit360.
+ * Please refer Orbit360Manager for connecting to several Orbit360s at the same time.
+ *
+ * Connecting races three paths: a direct connection to the last connected Orbit360, remembered by
+ * an Orbit360SessionCache, direct connections to bonded Orbit360s, and a scan. The first connection
+ * which is established wins, all others are cancelled and the scan is stopped. The time to connect,
+ * to discover the services and to write the first command is recorded for every connection.
+ *
+ * If the established connection is lost, the same Orbit360 is reconnected with exponential backoff,
+ * like the sessions of an Orbit360Manager, until cancel or connect is called. The listener is
+ * called with the new Orbit360Control. A ScriptRunner passed to Orbit360Listener.setScriptRunner is
+ * bound to it and resumes its script.
  */
 public class Orbit360Discovery {
     /**
@@ -32,12 +50,61 @@ public class Orbit360Discovery {
     private final BluetoothAdapter adapter;
     private final Handler stopScanHandler;
     private Orbit360Listener listener;
-    private List<BluetoothDevice> knownDevices;
+    private final Orbit360SessionCache sessionCache;
+    private final List<ConnectAttempt> attempts = new ArrayList<>();
+    private final Set<String> attemptedAddresses = new HashSet<>();
+    private ConnectAttempt winner;
     private BluetoothLeScanCallback bluetoothScanCallback;
-    private boolean currentlyConnecting = false;
+    private boolean scanning = false;
+    private final Runnable stopScanRunnable = new Runnable() {
+        @Override
+        public void run() {
+            stopScan();
+        }
+    };
+    private final Handler reconnectHandler = new Handler(Looper.getMainLooper());
+    private final Runnable reconnectRunnable = new Runnable() {
+        @Override
+        public void run() {
+            reconnect();
+        }
+    };
+    private BluetoothDevice reconnectDevice;
+    private int reconnectAttempts = 0;
+    private volatile long initialReconnectDelayMillis = Orbit360Manager.DEFAULT_INITIAL_RECONNECT_DELAY;
+    private volatile long maxReconnectDelayMillis = Orbit360Manager.DEFAULT_MAX_RECONNECT_DELAY;
+    private volatile int maxReconnectAttempts = Orbit360Manager.DEFAULT_MAX_RECONNECT_ATTEMPTS;
     private Context context;
     private static final long SCAN_PERIOD = 60000;
 
+    private long connectStartTime;
+    private volatile long timeToConnectNanos = -1;
+    private volatile long timeToServicesDiscoveredNanos = -1;
+    private volatile long timeToFirstCommandNanos = -1;
+    private volatile ConnectionSource connectionSource;
+
+    /**
+     * The path which established a connection.
+     */
+    public enum ConnectionSource {
+        /**
+         * Direct connection to the last connected Orbit360.
+         */
+        CACHED,
+        /**
+         * Direct connection to a bonded Orbit360.
+         */
+        BONDED,
+        /**
+         * Connection to an Orbit360 found by scanning.
+         */
+        SCAN,
+        /**
+         * Direct connection to the Orbit360 whose connection was lost.
+         */
+        RECONNECT
+    }
+
     private class BluetoothLeScanCallback extends ScanCallback {
 
         private final BluetoothDeviceListener listener;
@@ -63,6 +130,114 @@ public class Orbit360Discovery {
         void deviceFound(BluetoothDevice device);
     }
 
+    /**
+     * A single connection attempt. Once it won the race, all callbacks are forwarded to the listener.
+     */
+    private class ConnectAttempt extends BluetoothGattCallback {
+        final BluetoothDevice device;
+        final ConnectionSource source;
+        BluetoothGatt gatt;
+
+        ConnectAttempt(BluetoothDevice device, ConnectionSource source) {
+            this.device = device;
+            this.source = source;
+        }
+
+        private boolean isWinner() {
+            synchronized (Orbit360Discovery.this) {
+                return winner == this;
+            }
+        }
+
+        void cancel() {
+            BluetoothGatt currentGatt;
+            synchronized (Orbit360Discovery.this) {
+                currentGatt = gatt;
+            }
+            if (currentGatt != null) {
+                currentGatt.disconnect();
+                currentGatt.close();
+            }
+        }
+
+        @Override
+        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
+            if (newState == BluetoothProfile.STATE_CONNECTED) {
+                if (connected(this)) {
+                    listener.onConnectionStateChange(gatt, status, newState);
+                } else {
+                    gatt.disconnect();
+                    gatt.close();
+                }
+            } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
+                boolean pending;
+                boolean lost;
+                synchronized (Orbit360Discovery.this) {
+                    pending = attempts.contains(this);
+                    lost = disconnected(this);
+                }
+                if (lost) {
+                    listener.onConnectionStateChange(gatt, status, newState);
+                }
+                gatt.close();
+                // A cancelled attempt is no longer pending, so it is not retried.
+                if (lost || pending && source == ConnectionSource.RECONNECT) {
+                    scheduleReconnect(device, lost);
+                }
+            }
+        }
+
+        @Override
+        public void onServicesDiscovered(BluetoothGatt gatt, int status) {
+            if (!isWinner()) return;
+            if (timeToServicesDiscoveredNanos < 0) {
+                timeToServicesDiscoveredNanos = System.nanoTime() - connectStartTime;
+                Log.i("Orbit360Discovery", "Services discovered after " + timeToServicesDiscoveredNanos / 1000000 + "ms");
+            }
+            listener.onServicesDiscovered(gatt, status);
+        }
+
+        @Override
+        public void onCharacteristicRead(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            if (isWinner()) listener.onCharacteristicRead(gatt, characteristic, status);
+        }
+
+        @Override
+        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            if (!isWinner()) return;
+            if (timeToFirstCommandNanos < 0) {
+                timeToFirstCommandNanos = System.nanoTime() - connectStartTime;
+                Log.i("Orbit360Discovery", "First command written after " + timeToFirstCommandNanos / 1000000 + "ms");
+            }
+            listener.onCharacteristicWrite(gatt, characteristic, status);
+        }
+
+        @Override
+        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
+            if (isWinner()) listener.onCharacteristicChanged(gatt, characteristic);
+        }
+
+        @Override
+        public void onDescriptorRead(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
+            if (isWinner()) listener.onDescriptorRead(gatt, descriptor, status);
+        }
+
+        @Override
+        public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
+            if (isWinner()) listener.onDescriptorWrite(gatt, descriptor, status);
+        }
+
+        @Override
+        public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
+            if (isWinner()) listener.onMtuChanged(gatt, mtu, status);
+        }
+
+        @Override
+        public void onReadRemoteRssi(BluetoothGatt gatt, int rssi, int status) {
+            if (isWinner()) listener.onReadRemoteRssi(gatt, rssi, status);
+        }
+    }
+
     /**
      * Creates a new instance of this class.
      * @param adapter The bluetooth adapter to use for discovery.
@@ -74,13 +249,13 @@ public class Orbit360Discovery {
     {
         this.adapter = adapter;
         this.listener = listener;
-        this.knownDevices =  new ArrayList<>();
         this.stopScanHandler = new Handler();
         this.context = context;
+        this.sessionCache = new Orbit360SessionCache(context);
         this.bluetoothScanCallback = new BluetoothLeScanCallback(new BluetoothDeviceListener() {
             @Override
             public void deviceFound(BluetoothDevice device) {
-                addDeviceFromScan(device);
+                attempt(device, ConnectionSource.SCAN);
             }
         });
     }
@@ -88,43 +263,220 @@ public class Orbit360Discovery {
     /**
      * Begin connecting.
      * On success, callback passed to the constructor of this instance is called.
+     * Calling this method again cancels the current connection and starts a new discovery.
      */
     public void connect() {
         if (adapter == null || !adapter.isEnabled() && adapter.getBluetoothLeScanner() == null) {
             throw new Orbit360DiscoveryException("Bluetooth is not enabled");
         }
-        List<BluetoothDevice> bluetoothDevices = searchCoupledDevices();
-        if (bluetoothDevices.size() > 0) {
-            connect(bluetoothDevices.get(0));
-            bluetoothDevices.remove(0);
-            knownDevices.addAll(bluetoothDevices);
-        } else {
-            findDevice();
+        cancel();
+        synchronized (this) {
+            connectStartTime = System.nanoTime();
+            timeToConnectNanos = -1;
+            timeToServicesDiscoveredNanos = -1;
+            timeToFirstCommandNanos = -1;
+            connectionSource = null;
+        }
+        String cachedAddress = sessionCache.getLastAddress();
+        if (cachedAddress != null) {
+            attempt(adapter.getRemoteDevice(cachedAddress), ConnectionSource.CACHED);
+        }
+        for (BluetoothDevice device : searchCoupledDevices()) {
+            attempt(device, ConnectionSource.BONDED);
+        }
+        findDevice();
+    }
+
+    /**
+     * Sets how the Orbit360 is reconnected after the connection was lost. The delay before each
+     * attempt is doubled, starting with the initial delay, up to the maximum delay.
+     * Please refer Orbit360Manager.setReconnectPolicy for information about the parameters.
+     */
+    public void setReconnectPolicy(long initialDelayMillis, long maxDelayMillis, int maxAttempts) {
+        this.initialReconnectDelayMillis = initialDelayMillis;
+        this.maxReconnectDelayMillis = maxDelayMillis;
+        this.maxReconnectAttempts = maxAttempts;
+    }
+
+    /**
+     * Stops scanning and reconnecting and cancels all connection attempts and the established connection.
+     */
+    public void cancel() {
+        stopScan();
+        reconnectHandler.removeCallbacks(reconnectRunnable);
+        List<ConnectAttempt> cancelled;
+        synchronized (this) {
+            cancelled = new ArrayList<>(attempts);
+            attempts.clear();
+            attemptedAddresses.clear();
+            winner = null;
+            reconnectDevice = null;
+            reconnectAttempts = 0;
+        }
+        for (ConnectAttempt attempt : cancelled) {
+            attempt.cancel();
+        }
+    }
+
+    /**
+     * @return The cache which remembers the last connected Orbit360.
+     */
+    public Orbit360SessionCache getSessionCache() {
+        return sessionCache;
+    }
+
+    /**
+     * @return The path which established the current connection, or null if there is none.
+     */
+    public ConnectionSource getConnectionSource() {
+        return connectionSource;
+    }
+
+    /**
+     * @return The time from calling connect, or from starting the last reconnect, until the
+     * connection was established, in nanoseconds, or -1 if it was not established yet.
+     */
+    public long getTimeToConnectNanos() {
+        return timeToConnectNanos;
+    }
+
+    /**
+     * @return The time from calling connect until the services were discovered, in nanoseconds,
+     * or -1 if they were not discovered yet.
+     */
+    public long getTimeToServicesDiscoveredNanos() {
+        return timeToServicesDiscoveredNanos;
+    }
+
+    /**
+     * @return The time from calling connect until the first command was written, in nanoseconds,
+     * or -1 if no command was written yet.
+     */
+    public long getTimeToFirstCommandNanos() {
+        return timeToFirstCommandNanos;
+    }
+
+    /**
+     * @return False if the connection could not be started.
+     */
+    private boolean attempt(BluetoothDevice device, ConnectionSource source) {
+        ConnectAttempt attempt;
+        synchronized (this) {
+            if (winner != null || !attemptedAddresses.add(device.getAddress())) {
+                return true;
+            }
+            attempt = new ConnectAttempt(device, source);
+            attempts.add(attempt);
+        }
+        // A direct connection (autoConnect = false) is established much faster than a background one.
+        BluetoothGatt gatt = device.connectGatt(context, false, attempt);
+        synchronized (this) {
+            if (gatt == null) {
+                Log.w("Orbit360Discovery", "Could not connect to " + device.getAddress());
+                attempts.remove(attempt);
+                attemptedAddresses.remove(device.getAddress());
+                return false;
+            }
+            attempt.gatt = gatt;
+            if (winner == null || winner == attempt) {
+                return true;
+            }
+        }
+        // Another attempt won while this one was started.
+        attempt.cancel();
+        return true;
+    }
+
+    private void scheduleReconnect(BluetoothDevice device, boolean connectionLost) {
+        long delay;
+        synchronized (this) {
+            if (connectionLost) {
+                reconnectDevice = device;
+            } else if (reconnectDevice != device) {
+                // Cancelled, or connect was called in the meantime.
+                return;
+            }
+            if (maxReconnectAttempts >= 0 && reconnectAttempts >= maxReconnectAttempts) {
+                Log.w("Orbit360Discovery", "Giving up reconnecting to " + device.getAddress());
+                reconnectDevice = null;
+                reconnectAttempts = 0;
+                return;
+            }
+            delay = Math.min(maxReconnectDelayMillis, initialReconnectDelayMillis << Math.min(reconnectAttempts, 20));
+            reconnectAttempts++;
+        }
+        Log.i("Orbit360Discovery", String.format("Reconnecting to %s in %dms", device.getAddress(), delay));
+        reconnectHandler.postDelayed(reconnectRunnable, delay);
+    }
+
+    private void reconnect() {
+        BluetoothDevice device;
+        synchronized (this) {
+            device = reconnectDevice;
+            if (device == null || winner != null) {
+                return;
+            }
+            connectStartTime = System.nanoTime();
+            timeToConnectNanos = -1;
+            timeToServicesDiscoveredNanos = -1;
+            timeToFirstCommandNanos = -1;
+        }
+        if (!attempt(device, ConnectionSource.RECONNECT)) {
+            scheduleReconnect(device, false);
         }
     }
 
-    private void addDeviceFromScan(BluetoothDevice device) {
-        knownDevices.add(device);
-        if (!currentlyConnecting) {
-            if (knownDevices.size() > 0) {
-                connect(knownDevices.get(0));
-                knownDevices.remove(0);
+    /**
+     * @return True if the attempt won the race.
+     */
+    private boolean connected(ConnectAttempt attempt) {
+        List<ConnectAttempt> losers;
+        synchronized (this) {
+            if (winner != null || !attempts.contains(attempt)) {
+                return false;
             }
+            winner = attempt;
+            losers = new ArrayList<>(attempts);
+            losers.remove(attempt);
+            attempts.clear();
+            attempts.add(attempt);
+            timeToConnectNanos = System.nanoTime() - connectStartTime;
+            connectionSource = attempt.source;
+            reconnectDevice = null;
+            reconnectAttempts = 0;
         }
+        Log.i("Orbit360Discovery", String.format("Connected %s via %s after %dms",
+                attempt.device.getAddress(), attempt.source, timeToConnectNanos / 1000000));
+        stopScan();
+        for (ConnectAttempt loser : losers) {
+            loser.cancel();
+        }
+        sessionCache.remember(attempt.device.getAddress());
+        return true;
     }
 
-    private void connect(BluetoothDevice device) {
-        currentlyConnecting = true;
-        device.connectGatt(context, true, listener);
+    /**
+     * @return True if the attempt was the established connection.
+     */
+    private synchronized boolean disconnected(ConnectAttempt attempt) {
+        attempts.remove(attempt);
+        attemptedAddresses.remove(attempt.device.getAddress());
+        if (winner != attempt) {
+            return false;
+        }
+        winner = null;
+        connectionSource = null;
+        return true;
     }
 
     private void findDevice() {
-        stopScanHandler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                adapter.getBluetoothLeScanner().stopScan(bluetoothScanCallback);
+        synchronized (this) {
+            if (scanning || winner != null) {
+                return;
             }
-        }, SCAN_PERIOD);
+            scanning = true;
+        }
+        stopScanHandler.postDelayed(stopScanRunnable, SCAN_PERIOD);
 
         ScanSettings settings = new ScanSettings.Builder()
                 .setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY)
@@ -134,6 +486,19 @@ public class Orbit360Discovery {
         adapter.getBluetoothLeScanner().startScan(filters, settings, bluetoothScanCallback);
     }
 
+    private void stopScan() {
+        synchronized (this) {
+            if (!scanning) {
+                return;
+            }
+            scanning = false;
+        }
+        stopScanHandler.removeCallbacks(stopScanRunnable);
+        if (adapter.getBluetoothLeScanner() != null) {
+            adapter.getBluetoothLeScanner().stopScan(bluetoothScanCallback);
+        }
+    }
+
     private List<BluetoothDevice> searchCoupledDevices() {
         Set<BluetoothDevice> bondedDevices = adapter.getBondedDevices();
         List<BluetoothDevice> contactableList = new ArrayList<>();
@@ -8,13 +8,24 @@ import android.bluetooth.BluetoothGattService;
 import android.bluetooth.BluetoothProfile;
 import android.util.Log;
 
-import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
  * This class wraps and calls callbacks when an Orbit360 is connected or
  * a remote button is pressed.
+ *
+ * Notifications are decoded by an Orbit360EventDispatcher, which calls the button listeners and all
+ * other event listeners on its own thread, so they never block the Bluetooth callbacks.
+ *
+ * The ConnectionProfile is applied to every connection when its services are discovered. The time
+ * from issuing a command write until it was acknowledged is recorded per profile, so the effect of
+ * a profile can be compared at runtime.
+ *
+ * A ScriptRunner passed to setScriptRunner is bound to the Orbit360Control of every later
+ * connection, so a running script resumes after Orbit360Discovery reconnected.
  */
 public class Orbit360Listener extends BluetoothGattCallback {
     /**
@@ -37,6 +48,16 @@ public class Orbit360Listener extends BluetoothGattCallback {
     private ButtonPressedListener bottomButton;
     private ButtonPressedListener topButton;
     private Orbit360ConnectedListener listener;
+    private volatile GattOperationQueue operationQueue;
+    private volatile GattTransport transport;
+    private volatile Orbit360EventDispatcher dispatcher;
+    private volatile MetricsListener metricsListener = MetricsListener.NONE;
+    private volatile TraceRecorder traceRecorder;
+    private volatile ScriptRunner scriptRunner;
+    private volatile ConnectionProfile connectionProfile = ConnectionProfile.BALANCED;
+    private volatile BluetoothGatt connectedGatt;
+    private volatile int mtu = ConnectionProfile.DEFAULT_MTU;
+    private final Map<ConnectionProfile, LatencyHistogram> roundTrips = new EnumMap<>(ConnectionProfile.class);
 
     /**
      * Creates a new instance of this class.
@@ -56,6 +77,170 @@ public class Orbit360Listener extends BluetoothGattCallback {
         this.topButton = topButton;
         this.bottomButton = bottomButton;
         this.listener = listener;
+        for (ConnectionProfile profile : ConnectionProfile.values()) {
+            roundTrips.put(profile, new LatencyHistogram());
+        }
+        if (bottomButton != null || topButton != null) {
+            getEventDispatcher().addListener(new Orbit360EventDispatcher.EventListener() {
+                @Override
+                public void eventReceived(Orbit360Event event) {
+                    buttonEventReceived(event);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return The dispatcher which delivers the decoded notifications of the Orbit360. It is created
+     * with the first call, or with the instance if button listeners were passed.
+     */
+    public synchronized Orbit360EventDispatcher getEventDispatcher() {
+        if (dispatcher == null) {
+            dispatcher = new Orbit360EventDispatcher();
+        }
+        return dispatcher;
+    }
+
+    /**
+     * Sets the listener which receives the timing of the command writes. It is applied to every
+     * Orbit360Control created by this instance, including the ones of later connections.
+     * @param listener The listener. MetricsListener.NONE disables reporting.
+     */
+    public void setMetricsListener(MetricsListener listener) {
+        this.metricsListener = listener;
+        GattTransport currentTransport = transport;
+        if (currentTransport != null) {
+            currentTransport.setMetricsListener(listener);
+        }
+    }
+
+    /**
+     * Sets the recorder which records the frames of the following connections. The connection
+     * which is already established is not recorded.
+     * @param recorder The recorder. Null disables recording.
+     */
+    public void setTraceRecorder(TraceRecorder recorder) {
+        this.traceRecorder = recorder;
+    }
+
+    /**
+     * Sets the runner which is bound to the control of every later connection, before the
+     * Orbit360ConnectedListener is called. A script which was interrupted by a lost connection
+     * resumes with the first command that was not confirmed.
+     * @param runner The runner, usually created for the control of the first connection. Null to
+     *               bind no runner.
+     */
+    public void setScriptRunner(ScriptRunner runner) {
+        this.scriptRunner = runner;
+    }
+
+    /**
+     * @return The runner which is bound to the control of every later connection, or null.
+     */
+    public ScriptRunner getScriptRunner() {
+        return scriptRunner;
+    }
+
+    /**
+     * Sets the connection profile. It is applied to the established connection, if there is one,
+     * and to all later connections. An MTU which was already negotiated is not decreased.
+     * @param profile The profile. The default is ConnectionProfile.BALANCED.
+     */
+    public void setConnectionProfile(ConnectionProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException("profile must not be null");
+        }
+        this.connectionProfile = profile;
+        BluetoothGatt currentGatt = connectedGatt;
+        GattOperationQueue queue = operationQueue;
+        GattTransport currentTransport = transport;
+        if (currentGatt != null && queue != null && currentTransport != null) {
+            applyConnectionProfile(profile, currentGatt, queue, currentTransport);
+        }
+    }
+
+    /**
+     * @return The connection profile which is applied to the connections.
+     */
+    public ConnectionProfile getConnectionProfile() {
+        return connectionProfile;
+    }
+
+    /**
+     * @return The MTU of the established connection, in bytes.
+     */
+    public int getMtu() {
+        return mtu;
+    }
+
+    /**
+     * @return True if commands of the established connection are written without response.
+     */
+    public boolean isWriteWithoutResponse() {
+        GattTransport currentTransport = transport;
+        return currentTransport != null && currentTransport.isWriteWithoutResponse();
+    }
+
+    /**
+     * Returns the times from issuing a command write until it was acknowledged, for all writes
+     * while the given profile was applied, over all connections. With writes without response, the
+     * acknowledgement means that the Bluetooth stack accepted the frame.
+     * @param profile The profile.
+     * @return The round trip times, in nanoseconds.
+     */
+    public LatencyHistogram.Snapshot getRoundTrip(ConnectionProfile profile) {
+        return roundTrips.get(profile).snapshot();
+    }
+
+    private void applyConnectionProfile(ConnectionProfile profile, BluetoothGatt gatt, GattOperationQueue queue, final GattTransport gattTransport) {
+        if (!gatt.requestConnectionPriority(profile.getConnectionPriority())) {
+            Log.w("Bluetooth", "Could not request connection priority for " + profile);
+        }
+        gattTransport.setRoundTripHistogram(roundTrips.get(profile));
+        gattTransport.setWriteIntervalNanos(profile.getConnectionIntervalNanos());
+        applyWriteType(gattTransport);
+        if (profile.getMtu() > mtu) {
+            // Queued, so the exchange does not race other operations. Commands written before it
+            // completed use the write type which fits the old MTU.
+            queue.enqueue(new GattOperationQueue.MtuRequest(profile.getMtu(), new Orbit360Transport.WriteCallback() {
+                @Override
+                public void writeFinished(boolean success) {
+                    if (!success) {
+                        Log.w("Bluetooth", "Could not negotiate MTU, using " + mtu);
+                    }
+                    applyWriteType(gattTransport);
+                }
+            }));
+        }
+        Log.i("Bluetooth", "Applied connection profile " + profile);
+    }
+
+    private void applyWriteType(GattTransport gattTransport) {
+        // A frame written without response is truncated to the MTU, so it must fit into one packet.
+        boolean withoutResponse = connectionProfile.isWriteWithoutResponse() && mtu >= ConnectionProfile.MIN_MTU;
+        if (!gattTransport.setWriteWithoutResponse(withoutResponse)) {
+            Log.w("Bluetooth", "Orbit360 does not support writes " + (withoutResponse ? "without" : "with") + " response");
+        }
+    }
+
+    /**
+     * Stops the thread of the event dispatcher, if there is one. No events are delivered afterwards.
+     */
+    public synchronized void close() {
+        if (dispatcher != null) {
+            dispatcher.close();
+        }
+    }
+
+    private void buttonEventReceived(Orbit360Event event) {
+        if (event.getType() != Orbit360Event.Type.BUTTON_PRESSED) {
+            return;
+        }
+        if (event.getButton() == Orbit360Event.Button.BOTTOM) {
+            if (bottomButton != null) bottomButton.buttonPressed();
+        } else if (event.getButton() == Orbit360Event.Button.TOP) {
+            if (topButton != null) topButton.buttonPressed();
+        }
     }
 
     /**
@@ -66,9 +251,15 @@ public class Orbit360Listener extends BluetoothGattCallback {
         Log.i("onConnectionStateChange", "Status: " + status);
         switch (newState) {
             case BluetoothProfile.STATE_CONNECTED:
+                mtu = ConnectionProfile.DEFAULT_MTU;
                 gatt.discoverServices();
                 break;
             case BluetoothProfile.STATE_DISCONNECTED:
+                connectedGatt = null;
+                GattOperationQueue queue = operationQueue;
+                if (queue != null) {
+                    queue.clear();
+                }
                 break;
             default: break;
         }
@@ -80,14 +271,54 @@ public class Orbit360Listener extends BluetoothGattCallback {
     @Override
     public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
         if (characteristic.getUuid().equals(RESPONSE_UUID)) {
-            if (Arrays.equals(characteristic.getValue(), BOTTOMBUTTON)) {
-                if(bottomButton!= null) bottomButton.buttonPressed();
-            }else if(Arrays.equals(characteristic.getValue(), TOPBUTTON)){
-                if(bottomButton!= null) topButton.buttonPressed();
+            byte[] value = characteristic.getValue();
+            Orbit360EventDispatcher currentDispatcher = dispatcher;
+            if (currentDispatcher != null) {
+                currentDispatcher.notificationReceived(value);
+            }
+            GattTransport currentTransport = transport;
+            if (currentTransport != null) {
+                currentTransport.notificationReceived(value);
             }
         }
     }
 
+    /**
+     * Do not call.
+     */
+    @Override
+    public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+        GattOperationQueue queue = operationQueue;
+        if (queue != null) {
+            queue.characteristicWritten(status);
+        }
+    }
+
+    /**
+     * Do not call.
+     */
+    @Override
+    public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
+        GattOperationQueue queue = operationQueue;
+        if (queue != null) {
+            queue.descriptorWritten(status);
+        }
+    }
+
+    /**
+     * Do not call.
+     */
+    @Override
+    public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
+        if (status == BluetoothGatt.GATT_SUCCESS) {
+            this.mtu = mtu;
+        }
+        GattOperationQueue queue = operationQueue;
+        if (queue != null) {
+            queue.mtuChanged(status);
+        }
+    }
+
     /**
      * Do not call.
      */
@@ -108,13 +339,34 @@ public class Orbit360Listener extends BluetoothGattCallback {
             return;
         }
 
+        GattOperationQueue queue = new GattOperationQueue(gatt);
+        operationQueue = queue;
+        GattTransport gattTransport = new GattTransport(queue, correctService);
+        transport = gattTransport;
+        connectedGatt = gatt;
+        applyConnectionProfile(connectionProfile, gatt, queue, gattTransport);
+
+        // The descriptor write is queued, so it can not race the first command.
         BluetoothGattCharacteristic characteristic = correctService.getCharacteristic(RESPONSE_UUID);
         gatt.setCharacteristicNotification(characteristic, true);
         BluetoothGattDescriptor descriptor = characteristic.getDescriptor(CHARACTERISTIC_UPDATE_NOTIFICATION_DESCRIPTOR_UUID);
-        descriptor.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
-        gatt.writeDescriptor(descriptor);
+        queue.enqueue(new GattOperationQueue.DescriptorWrite(descriptor, BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE, new Orbit360Transport.WriteCallback() {
+            @Override
+            public void writeFinished(boolean success) {
+                if (!success) {
+                    Log.w("Bluetooth", "Could not enable notifications");
+                }
+            }
+        }));
 
-        listener.orbit360Connected(new Orbit360Control(gatt, correctService));
+        TraceRecorder recorder = traceRecorder;
+        Orbit360Control control = new Orbit360Control(recorder != null ? recorder.wrap(gattTransport) : gattTransport);
+        control.setMetricsListener(metricsListener);
+        ScriptRunner runner = scriptRunner;
+        if (runner != null) {
+            runner.setControl(control);
+        }
+        listener.orbit360Connected(control);
     }
 
     /**
@@ -0,0 +1,329 @@
+package com.dscvr.orbit360sdk;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.content.Context;
+import android.os.ParcelUuid;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class wraps the Android Bluetooth API and connects to several Orbit360s at the same time.
+ *
+ * Every Orbit360 which is found is connected in its own Orbit360Session, up to a maximum count of
+ * sessions. Lost connections are re-established by the session, with exponential backoff. Sessions
+ * which gave up are removed, so the Orbit360 is connected again when it is found by a running
+ * discovery. Connected sessions can be combined into an Orbit360Group to move them together.
+ *
+ * The callbacks of the SessionListener are called on Binder threads.
+ */
+public class Orbit360Manager {
+    /**
+     * The default maximum count of sessions. Most Android devices support about seven simultaneous
+     * Bluetooth LE connections.
+     */
+    public static final int DEFAULT_MAX_SESSIONS = 7;
+    /**
+     * The default delay before the first reconnect attempt, in milliseconds.
+     */
+    public static final long DEFAULT_INITIAL_RECONNECT_DELAY = 250;
+    /**
+     * The default maximum delay between two reconnect attempts, in milliseconds.
+     */
+    public static final long DEFAULT_MAX_RECONNECT_DELAY = 8000;
+    /**
+     * The default maximum count of reconnect attempts after the connection was lost.
+     */
+    public static final int DEFAULT_MAX_RECONNECT_ATTEMPTS = 20;
+
+    private final BluetoothAdapter adapter;
+    private final Context context;
+    private final SessionListener listener;
+    private final Map<String, Orbit360Session> sessions = new LinkedHashMap<>();
+    private final ScanCallback scanCallback = new ScanCallback() {
+        @Override
+        public void onScanResult(int callbackType, ScanResult result) {
+            connect(result.getDevice());
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            Log.e("Orbit360Manager", "Scan failed, error code: " + errorCode);
+            synchronized (Orbit360Manager.this) {
+                scanning = false;
+            }
+        }
+    };
+    private int maxSessions = DEFAULT_MAX_SESSIONS;
+    private boolean scanning = false;
+    private volatile long initialReconnectDelayMillis = DEFAULT_INITIAL_RECONNECT_DELAY;
+    private volatile long maxReconnectDelayMillis = DEFAULT_MAX_RECONNECT_DELAY;
+    private volatile int maxReconnectAttempts = DEFAULT_MAX_RECONNECT_ATTEMPTS;
+    private volatile ConnectionProfile connectionProfile = ConnectionProfile.BALANCED;
+
+    /**
+     * Creates a new instance of this class.
+     * @param adapter The bluetooth adapter to use for discovery.
+     * @param context The application context.
+     * @param listener The listener which is called when a session connected or disconnected.
+     */
+    public Orbit360Manager(BluetoothAdapter adapter, Context context, SessionListener listener) {
+        this.adapter = adapter;
+        this.context = context;
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the maximum count of sessions. Further Orbit360s are ignored.
+     * @param maxSessions The maximum count of sessions, connected or connecting.
+     */
+    public synchronized void setMaxSessions(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * Sets how sessions reconnect after the connection was lost. The delay before each attempt is
+     * doubled, starting with the initial delay, up to the maximum delay.
+     * @param initialDelayMillis The delay before the first attempt, in milliseconds.
+     * @param maxDelayMillis The maximum delay between two attempts, in milliseconds.
+     * @param maxAttempts The count of attempts before the session gives up, or -1 to never give up.
+     *                    Zero disables reconnecting.
+     */
+    public void setReconnectPolicy(long initialDelayMillis, long maxDelayMillis, int maxAttempts) {
+        this.initialReconnectDelayMillis = initialDelayMillis;
+        this.maxReconnectDelayMillis = maxDelayMillis;
+        this.maxReconnectAttempts = maxAttempts;
+    }
+
+    /**
+     * Sets the connection profile of all sessions, including the ones which are created later.
+     * @param profile The profile. The default is ConnectionProfile.BALANCED.
+     */
+    public void setConnectionProfile(ConnectionProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException("profile must not be null");
+        }
+        this.connectionProfile = profile;
+        for (Orbit360Session session : getSessions()) {
+            session.setConnectionProfile(profile);
+        }
+    }
+
+    /**
+     * @return The connection profile of new sessions.
+     */
+    public ConnectionProfile getConnectionProfile() {
+        return connectionProfile;
+    }
+
+    long getInitialReconnectDelayMillis() {
+        return initialReconnectDelayMillis;
+    }
+
+    long getMaxReconnectDelayMillis() {
+        return maxReconnectDelayMillis;
+    }
+
+    int getMaxReconnectAttempts() {
+        return maxReconnectAttempts;
+    }
+
+    /**
+     * Connects to all bonded Orbit360s and scans for further ones, until stopDiscovery is called or
+     * the maximum count of sessions is reached.
+     */
+    public void startDiscovery() {
+        if (adapter == null || !adapter.isEnabled() || adapter.getBluetoothLeScanner() == null) {
+            throw new Orbit360DiscoveryException("Bluetooth is not enabled");
+        }
+        for (BluetoothDevice device : adapter.getBondedDevices()) {
+            if (isOrbit360(device)) {
+                connect(device);
+            }
+        }
+        synchronized (this) {
+            if (scanning || sessions.size() >= maxSessions) {
+                return;
+            }
+            scanning = true;
+        }
+        ScanSettings settings = new ScanSettings.Builder()
+                .setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY)
+                .build();
+        ArrayList<ScanFilter> filters = new ArrayList<>();
+        filters.add(new ScanFilter.Builder().setServiceUuid(Orbit360Discovery.SERVICE_UUID).build());
+        adapter.getBluetoothLeScanner().startScan(filters, settings, scanCallback);
+    }
+
+    /**
+     * Stops scanning for Orbit360s. Existing sessions are kept.
+     */
+    public void stopDiscovery() {
+        synchronized (this) {
+            if (!scanning) {
+                return;
+            }
+            scanning = false;
+        }
+        if (adapter.getBluetoothLeScanner() != null) {
+            adapter.getBluetoothLeScanner().stopScan(scanCallback);
+        }
+    }
+
+    /**
+     * Connects to an Orbit360, unless it already has a session.
+     * @param device The Orbit360 to connect to.
+     * @return The session of the Orbit360, or null if the maximum count of sessions was reached or
+     * the connection could not be started.
+     */
+    public Orbit360Session connect(BluetoothDevice device) {
+        Orbit360Session session;
+        boolean full;
+        synchronized (this) {
+            session = sessions.get(device.getAddress());
+            if (session != null) {
+                return session;
+            }
+            if (sessions.size() >= maxSessions) {
+                return null;
+            }
+            session = new Orbit360Session(device, this);
+            sessions.put(device.getAddress(), session);
+            full = sessions.size() >= maxSessions;
+        }
+        Log.i("Orbit360Manager", String.format("Connecting %s %s", device.getName(), device.getAddress()));
+        if (full) {
+            stopDiscovery();
+        }
+        if (!session.connect(context)) {
+            Log.w("Orbit360Manager", "Could not connect to " + device.getAddress());
+            synchronized (this) {
+                sessions.remove(device.getAddress());
+            }
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * @return All sessions, connected or connecting.
+     */
+    public synchronized List<Orbit360Session> getSessions() {
+        return new ArrayList<>(sessions.values());
+    }
+
+    /**
+     * @return The connected sessions.
+     */
+    public synchronized List<Orbit360Session> getConnectedSessions() {
+        List<Orbit360Session> connected = new ArrayList<>();
+        for (Orbit360Session session : sessions.values()) {
+            if (session.isConnected()) {
+                connected.add(session);
+            }
+        }
+        return connected;
+    }
+
+    /**
+     * Creates a group of the given sessions. The group sends to the current connection of each
+     * session, so it keeps working after reconnects. Broadcasts to sessions which are not connected fail.
+     * @param members The sessions to combine.
+     * @return The group.
+     */
+    public Orbit360Group createGroup(Collection<Orbit360Session> members) {
+        return Orbit360Group.ofMembers(members);
+    }
+
+    /**
+     * @return A group of all connected sessions.
+     */
+    public Orbit360Group createGroup() {
+        return createGroup(getConnectedSessions());
+    }
+
+    /**
+     * Stops scanning and disconnects all sessions.
+     */
+    public void disconnectAll() {
+        stopDiscovery();
+        for (Orbit360Session session : getSessions()) {
+            session.disconnect();
+        }
+    }
+
+    void sessionConnected(Orbit360Session session) {
+        listener.sessionConnected(session);
+    }
+
+    void sessionConnectionLost(Orbit360Session session) {
+        listener.sessionConnectionLost(session);
+    }
+
+    void sessionReconnected(Orbit360Session session, long outageNanos) {
+        listener.sessionReconnected(session, outageNanos);
+    }
+
+    void sessionDisconnected(Orbit360Session session, boolean wasConnected) {
+        synchronized (this) {
+            if (sessions.get(session.getAddress()) == session) {
+                sessions.remove(session.getAddress());
+            }
+        }
+        if (wasConnected) {
+            listener.sessionDisconnected(session);
+        }
+    }
+
+    private static boolean isOrbit360(BluetoothDevice device) {
+        ParcelUuid[] uuids = device.getUuids();
+        if (uuids == null) {
+            return false;
+        }
+        for (ParcelUuid uuid : uuids) {
+            if (uuid.equals(Orbit360Discovery.SERVICE_UUID)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Interface for the callbacks of an Orbit360Manager.
+     */
+    public interface SessionListener {
+        /**
+         * @param session The session, whose Orbit360 is connected and ready to receive commands.
+         */
+        void sessionConnected(Orbit360Session session);
+
+        /**
+         * Called when the connection of a session was lost. The session tries to reconnect.
+         * @param session The session, whose Orbit360 was disconnected.
+         */
+        void sessionConnectionLost(Orbit360Session session);
+
+        /**
+         * Called when the connection of a session was re-established. A new Orbit360Control was
+         * bound to the session's ScriptRunner.
+         * @param session The session, whose Orbit360 is connected again.
+         * @param outageNanos The time from the loss of the connection until it was re-established, in nanoseconds.
+         */
+        void sessionReconnected(Orbit360Session session, long outageNanos);
+
+        /**
+         * @param session The session, whose Orbit360 was disconnected and which gave up reconnecting,
+         *                or was disconnected on request. The session is not used anymore.
+         */
+        void sessionDisconnected(Orbit360Session session);
+    }
+}
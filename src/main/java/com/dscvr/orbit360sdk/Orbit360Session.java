@@ -0,0 +1,285 @@
+package com.dscvr.orbit360sdk;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothProfile;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * A connection to a single Orbit360, managed by an Orbit360Manager.
+ *
+ * Every session has its own GATT connection, operation queue, Orbit360Control and ScriptRunner,
+ * so several Orbit360s can be controlled independently and at the same time.
+ *
+ * If the connection is lost, the session reconnects with exponential backoff, bounded by the
+ * reconnect policy of the manager. A new Orbit360Control is bound to the existing ScriptRunner,
+ * which resumes a running script with the first command that was not confirmed.
+ */
+public class Orbit360Session implements Orbit360Group.Member {
+    private final BluetoothDevice device;
+    private final Orbit360Manager manager;
+    private final SessionCallback callback;
+    private final Handler reconnectHandler = new Handler(Looper.getMainLooper());
+    private final Runnable reconnectRunnable = new Runnable() {
+        @Override
+        public void run() {
+            reconnect();
+        }
+    };
+    private Context context;
+    private volatile BluetoothGatt gatt;
+    private volatile Orbit360Control control;
+    private volatile ScriptRunner scriptRunner;
+    private boolean closed = false;
+    private boolean disconnectRequested = false;
+    private int reconnectAttempts = 0;
+    private long disconnectTime = -1;
+
+    private long reconnectCount;
+    private long lastOutageNanos = -1;
+    private long totalOutageNanos;
+
+    Orbit360Session(BluetoothDevice device, Orbit360Manager manager) {
+        this.device = device;
+        this.manager = manager;
+        this.callback = new SessionCallback();
+        this.callback.setConnectionProfile(manager.getConnectionProfile());
+    }
+
+    /**
+     * Forwards the events of the connection to the session.
+     */
+    private class SessionCallback extends Orbit360Listener {
+        SessionCallback() {
+            super(new Orbit360ConnectedListener() {
+                @Override
+                public void orbit360Connected(Orbit360Control control) {
+                    connected(control);
+                }
+            });
+        }
+
+        @Override
+        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
+            super.onConnectionStateChange(gatt, status, newState);
+            if (newState == BluetoothProfile.STATE_DISCONNECTED) {
+                disconnected();
+            }
+        }
+    }
+
+    /**
+     * Starts connecting. Returns false if the connection could not be started.
+     */
+    boolean connect(Context context) {
+        synchronized (this) {
+            this.context = context;
+        }
+        gatt = device.connectGatt(context, false, callback);
+        return gatt != null;
+    }
+
+    private void connected(Orbit360Control newControl) {
+        boolean reconnected;
+        long outage = 0;
+        synchronized (this) {
+            reconnected = disconnectTime >= 0;
+            if (reconnected) {
+                outage = System.nanoTime() - disconnectTime;
+                lastOutageNanos = outage;
+                totalOutageNanos += outage;
+                reconnectCount++;
+                disconnectTime = -1;
+            }
+            reconnectAttempts = 0;
+        }
+        control = newControl;
+        if (scriptRunner == null) {
+            scriptRunner = new ScriptRunner(newControl);
+        } else {
+            scriptRunner.setControl(newControl);
+        }
+        if (reconnected) {
+            Log.i("Orbit360Session", String.format("Reconnected %s after %dms", getAddress(), outage / 1000000));
+            manager.sessionReconnected(this, outage);
+        } else {
+            manager.sessionConnected(this);
+        }
+    }
+
+    private void disconnected() {
+        boolean wasConnected = control != null;
+        control = null;
+        BluetoothGatt lostGatt = gatt;
+        gatt = null;
+        if (lostGatt != null) {
+            lostGatt.close();
+        }
+        long delay;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (wasConnected && disconnectTime < 0) {
+                disconnectTime = System.nanoTime();
+            }
+            boolean mayReconnect = !disconnectRequested && disconnectTime >= 0 &&
+                    (manager.getMaxReconnectAttempts() < 0 || reconnectAttempts < manager.getMaxReconnectAttempts());
+            if (!mayReconnect) {
+                closed = true;
+                delay = -1;
+            } else {
+                delay = Math.min(manager.getMaxReconnectDelayMillis(), manager.getInitialReconnectDelayMillis() << Math.min(reconnectAttempts, 20));
+                reconnectAttempts++;
+            }
+        }
+        if (delay < 0) {
+            callback.close();
+            ScriptRunner runner = scriptRunner;
+            if (runner != null) {
+                runner.close();
+            }
+            manager.sessionDisconnected(this, wasConnected || disconnectTime >= 0);
+            return;
+        }
+        if (wasConnected) {
+            manager.sessionConnectionLost(this);
+        }
+        Log.i("Orbit360Session", String.format("Connection to %s lost, reconnecting in %dms", getAddress(), delay));
+        reconnectHandler.postDelayed(reconnectRunnable, delay);
+    }
+
+    private void reconnect() {
+        Context currentContext;
+        synchronized (this) {
+            if (closed || disconnectRequested) {
+                return;
+            }
+            currentContext = context;
+        }
+        BluetoothGatt newGatt = device.connectGatt(currentContext, false, callback);
+        if (newGatt == null) {
+            disconnected();
+        } else {
+            gatt = newGatt;
+        }
+    }
+
+    /**
+     * @return The Bluetooth device of this session.
+     */
+    public BluetoothDevice getDevice() {
+        return device;
+    }
+
+    /**
+     * @return The hardware address of the Orbit360.
+     */
+    public String getAddress() {
+        return device.getAddress();
+    }
+
+    /**
+     * @return The count of successful reconnects.
+     */
+    public synchronized long getReconnectCount() {
+        return reconnectCount;
+    }
+
+    /**
+     * @return The time from the loss of the connection until it was re-established, for the last
+     * reconnect, in nanoseconds, or -1 if the session was never reconnected.
+     */
+    public synchronized long getLastOutageNanos() {
+        return lastOutageNanos;
+    }
+
+    /**
+     * @return The sum of all outages of this session, in nanoseconds.
+     */
+    public synchronized long getTotalOutageNanos() {
+        return totalOutageNanos;
+    }
+
+    /**
+     * @return True if the Orbit360 is connected and its services were discovered.
+     */
+    public boolean isConnected() {
+        return control != null;
+    }
+
+    /**
+     * @return The control of the connected Orbit360, or null if it is not connected.
+     */
+    @Override
+    public Orbit360Control getControl() {
+        return control;
+    }
+
+    /**
+     * @return The dispatcher which delivers the decoded notifications of the Orbit360, for example
+     * button presses. It is kept across reconnects.
+     */
+    public Orbit360EventDispatcher getEventDispatcher() {
+        return callback.getEventDispatcher();
+    }
+
+    /**
+     * Sets the connection profile of this session. It is applied to the established connection and
+     * to all reconnects.
+     * @param profile The profile.
+     */
+    public void setConnectionProfile(ConnectionProfile profile) {
+        callback.setConnectionProfile(profile);
+    }
+
+    /**
+     * @return The connection profile of this session.
+     */
+    public ConnectionProfile getConnectionProfile() {
+        return callback.getConnectionProfile();
+    }
+
+    /**
+     * @return The MTU of the connection, in bytes.
+     */
+    public int getMtu() {
+        return callback.getMtu();
+    }
+
+    /**
+     * Please refer Orbit360Listener.getRoundTrip for information about the parameters.
+     */
+    public LatencyHistogram.Snapshot getRoundTrip(ConnectionProfile profile) {
+        return callback.getRoundTrip(profile);
+    }
+
+    /**
+     * @return The script runner of the connected Orbit360, or null if it is not connected.
+     */
+    public ScriptRunner getScriptRunner() {
+        return scriptRunner;
+    }
+
+    /**
+     * Disconnects from the Orbit360, without reconnecting. The manager's SessionListener is called
+     * once the connection is closed.
+     */
+    public void disconnect() {
+        boolean waitingForReconnect;
+        synchronized (this) {
+            disconnectRequested = true;
+            waitingForReconnect = gatt == null;
+        }
+        reconnectHandler.removeCallbacks(reconnectRunnable);
+        BluetoothGatt currentGatt = gatt;
+        if (currentGatt != null) {
+            currentGatt.disconnect();
+        } else if (waitingForReconnect) {
+            disconnected();
+        }
+    }
+}
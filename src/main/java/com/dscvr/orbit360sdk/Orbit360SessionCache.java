@@ -0,0 +1,47 @@
+package com.dscvr.orbit360sdk;
+
+import android.bluetooth.BluetoothAdapter;
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Remembers the address of the last Orbit360 which was connected successfully, so the next
+ * connection can be started directly, without waiting for a scan.
+ */
+public class Orbit360SessionCache {
+    private static final String PREFERENCES_NAME = "com.dscvr.orbit360sdk.sessions";
+    private static final String KEY_LAST_ADDRESS = "lastAddress";
+
+    private final SharedPreferences preferences;
+
+    /**
+     * Creates a new instance of this class.
+     * @param context The application context.
+     */
+    public Orbit360SessionCache(Context context) {
+        this.preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return The address of the last connected Orbit360, or null if there is none.
+     */
+    public String getLastAddress() {
+        String address = preferences.getString(KEY_LAST_ADDRESS, null);
+        return address != null && BluetoothAdapter.checkBluetoothAddress(address) ? address : null;
+    }
+
+    /**
+     * Remembers the address of a successfully connected Orbit360.
+     * @param address The hardware address of the Orbit360.
+     */
+    public void remember(String address) {
+        preferences.edit().putString(KEY_LAST_ADDRESS, address).apply();
+    }
+
+    /**
+     * Forgets the remembered Orbit360, for example after the user chose to switch devices.
+     */
+    public void forget() {
+        preferences.edit().remove(KEY_LAST_ADDRESS).apply();
+    }
+}